@@ -20,7 +20,9 @@ package com.graphhopper;
 import com.graphhopper.routing.util.ShortestCalc;
 import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.util.shapes.GHPlace;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,8 +33,7 @@ import java.util.Map;
 public class GHRequest
 {
     private String algo = "astar";
-    private GHPlace from;
-    private GHPlace to;
+    private List<GHPlace> points;
     private Map<String, Object> hints = new HashMap<String, Object>(5);
     private String encoderName = "CAR";
     private WeightCalculation weightCalc = new ShortestCalc();    
@@ -50,35 +51,65 @@ public class GHRequest
      */
     public GHRequest( GHPlace startPoint, GHPlace endPoint )
     {
-        this.from = startPoint;
-        this.to = endPoint;
+        this.points = new ArrayList<GHPlace>(2);
+        points.add(startPoint);
+        points.add(endPoint);
+    }
+
+    /**
+     * Calculate the path from the first to the last of the specified points, visiting all the
+     * points in between in the specified order.
+     */
+    public GHRequest( List<GHPlace> points )
+    {
+        this.points = new ArrayList<GHPlace>(points);
     }
 
     public void check()
     {
-        if (from == null)
+        if (points.size() < 2)
+        {
+            throw new IllegalStateException("at least 2 points need to be specified but was " + points.size());
+        }
+        if (getFrom() == null)
         {
             throw new IllegalStateException("the 'from' point needs to be initialized but was null");
         }
-        if (to == null)
+        if (getTo() == null)
         {
             throw new IllegalStateException("the 'to' point needs to be initialized but was null");
         }
+        for (int i = 1; i < points.size() - 1; i++)
+        {
+            if (points.get(i) == null)
+            {
+                throw new IllegalStateException("the via point " + i + " needs to be initialized but was null");
+            }
+        }
     }
 
     public GHPlace getFrom()
     {
-        return from;
+        return points.get(0);
     }
 
     public GHPlace getTo()
     {
-        return to;
+        return points.get(points.size() - 1);
+    }
+
+    /**
+     * @return all points of this request including the start and the end point.
+     */
+    public List<GHPlace> getPoints()
+    {
+        return points;
     }
 
     /**
      * Possible values: astar (A* algorithm, default), astarbi (bidirectional A*) dijkstra
-     * (Dijkstra), dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra).
+     * (Dijkstra), dijkstrabi, dijkstraNative (a bit faster bidirectional Dijkstra) and
+     * dijkstrabiParallel (bidirectional Dijkstra with one thread per direction).
      */
     public GHRequest setAlgorithm( String algo )
     {
@@ -115,7 +146,16 @@ public class GHRequest
     @Override
     public String toString()
     {
-        return from + " " + to + " (" + algo + ")";
+        StringBuilder sb = new StringBuilder();
+        for (GHPlace p : points)
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(" ");
+            }
+            sb.append(p);
+        }
+        return sb.append(" (").append(algo).append(")").toString();
     }
 
     public GHRequest setType( WeightCalculation weightCalc )
@@ -36,11 +36,27 @@ public class GHResponse
     private String debugInfo = "";
     private List<Throwable> errors = new ArrayList<Throwable>(4);
     private InstructionList instructions = new InstructionList(0);
+    private int pointIndex = -1;
 
     public GHResponse()
     {
     }
 
+    /**
+     * @return the index of the requested point this route leads to, see GraphHopper.routeNearest.
+     * Otherwise -1.
+     */
+    public int getPointIndex()
+    {
+        return pointIndex;
+    }
+
+    public GHResponse setPointIndex( int pointIndex )
+    {
+        this.pointIndex = pointIndex;
+        return this;
+    }
+
     public GHResponse setPoints( PointList points )
     {
         list = points;
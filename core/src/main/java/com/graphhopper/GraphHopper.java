@@ -17,19 +17,29 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.reader.OSMChangeReader;
+import com.graphhopper.reader.OSMIDMapping;
 import com.graphhopper.reader.OSMReader;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHTBitSet;
+import com.graphhopper.routing.DijkstraNearestTargets;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingLimitException;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GHZipArchive;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Directory.DAType;
+import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.CachedLocation2IDIndex;
 import com.graphhopper.storage.index.Location2IDIndex;
 import com.graphhopper.storage.index.Location2IDQuadtree;
 // import com.graphhopper.storage.StorableProperties;
@@ -38,12 +48,31 @@ import com.graphhopper.storage.index.Location2NodesNtreeLG;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Constants;
 import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPlace;
+import com.graphhopper.util.shapes.Polygon;
+import com.graphhopper.util.shapes.Shape;
+import gnu.trove.map.hash.TLongIntHashMap;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +89,14 @@ public class GraphHopper implements GraphHopperAPI
         CmdArgs args = CmdArgs.read(strs);
         GraphHopper hopper = new GraphHopper().init(args);
         hopper.importOrLoad();
+        String changeFiles = args.get("osmreader.changes", "");
+        if (!Helper.isEmpty(changeFiles))
+        {
+            for (String changeFile : changeFiles.split(","))
+            {
+                hopper.applyOSMChanges(changeFile.trim());
+            }
+        }
         RoutingAlgorithmSpecialAreaTests tests = new RoutingAlgorithmSpecialAreaTests(hopper);
         if (args.getBool("graph.testIT", false))
         {
@@ -73,14 +110,27 @@ public class GraphHopper implements GraphHopperAPI
     private DAType dataAccessType;
     private boolean sortGraph = false;
     boolean removeZipped = true;
+    private long warmUpBytes = 0;
+    private int warmUpQueries = 0;
+    private long warmedUpBytes = 0;
+    private int warmUpRoutes = 0;
     // for routing:
     private boolean simplifyRequest = true;
     private String defaultAlgorithm = "bidijkstra";
+    private int routingThreads = -1;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private double maxWeight = Double.MAX_VALUE;
+    private long routingTimeout = -1;
+    private ExecutorService routingExecutor;
     // for index:
     private Location2IDIndex index;
     private int preciseIndexResolution = 500;
     private boolean edgeCalcOnSearch = true;
     private boolean searchRegion = true;
+    private int indexThreads = -1;
+    private int indexCacheSize = 0;
+    private double indexCachePrecision = 1;
+    private boolean indexCompactLeafs = false;
     // for prepare
     private AlgorithmPreparation prepare;
     private boolean doPrepare = true;
@@ -97,6 +147,10 @@ public class GraphHopper implements GraphHopperAPI
     private int workerThreads = -1;
     private int defaultSegmentSize = -1;
     private boolean enableInstructions = true;
+    private boolean storeOSMIds = false;
+    private boolean compactNodeMap = false;
+    private Shape clip;
+    private OSMIDMapping osmIdMapping;
 
     public GraphHopper()
     {
@@ -212,6 +266,98 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Specifies the number of threads used to calculate the legs of a route with via points. Use 1
+     * to calculate them sequentially in the calling thread. Default is the number of processors.
+     */
+    public GraphHopper setRoutingThreads( int threads )
+    {
+        routingThreads = threads;
+        return this;
+    }
+
+    /**
+     * Specifies the number of threads used to create the location index if it could not be
+     * loaded. Default is the number of processors.
+     */
+    public GraphHopper setIndexThreads( int threads )
+    {
+        indexThreads = threads;
+        return this;
+    }
+
+    /**
+     * Caches the results of the location lookup for recurring coordinates. Coordinates closer than
+     * roughly the specified precision in meter share one result. Use 0 to disable the cache which
+     * is the default.
+     */
+    public GraphHopper setIndexCache( int maxSize, double precisionInMeter )
+    {
+        indexCacheSize = maxSize;
+        indexCachePrecision = precisionInMeter;
+        return this;
+    }
+
+    /**
+     * Limits the number of nodes a routing algorithm may visit for one leg of a route. Can be
+     * overwritten per request via the hint 'routing.maxVisitedNodes'.
+     */
+    public GraphHopper setMaxVisitedNodes( int nodes )
+    {
+        maxVisitedNodes = nodes;
+        return this;
+    }
+
+    /**
+     * Limits the weight of one leg of a route. Can be overwritten per request via the hint
+     * 'routing.maxWeight'.
+     */
+    public GraphHopper setMaxWeight( double weight )
+    {
+        maxWeight = weight;
+        return this;
+    }
+
+    /**
+     * Limits the time in milliseconds a route request may spend in the routing algorithms. Can be
+     * overwritten per request via the hint 'routing.timeout'. Use a negative value for no limit.
+     */
+    public GraphHopper setRoutingTimeout( long timeoutInMillis )
+    {
+        routingTimeout = timeoutInMillis;
+        return this;
+    }
+
+    /**
+     * Prepares a loaded graph for the first requests. The memory mapped files are read into the
+     * page cache up to the specified number of bytes, the location index first. Then the
+     * specified number of routes between random points is calculated to compile the hot code.
+     * <p/>
+     * @param bytes use 0 to skip reading the files and a negative value to read them completely
+     */
+    public GraphHopper setWarmUp( long bytes, int queries )
+    {
+        warmUpBytes = bytes;
+        warmUpQueries = queries;
+        return this;
+    }
+
+    /**
+     * @return the bytes of the memory mapped files which were read while warming up
+     */
+    public long getWarmedUpBytes()
+    {
+        return warmedUpBytes;
+    }
+
+    /**
+     * @return the number of routes which were found while warming up
+     */
+    public int getWarmUpRoutes()
+    {
+        return warmUpRoutes;
+    }
+
     /**
      * This method specifies if the returned path should be simplified or not, via douglas-peucker
      * or similar algorithm.
@@ -329,6 +475,8 @@ public class GraphHopper implements GraphHopperAPI
         }
         sortGraph = args.getBool("graph.doSort", sortGraph);
         removeZipped = args.getBool("graph.removeZipped", removeZipped);
+        warmUpBytes = args.getLong("graph.warmUp.bytes", warmUpBytes);
+        warmUpQueries = args.getInt("graph.warmUp.queries", warmUpQueries);
 
         // prepare
         doPrepare = args.getBool("prepare.doPrepare", doPrepare);
@@ -354,16 +502,31 @@ public class GraphHopper implements GraphHopperAPI
 
         // routing
         defaultAlgorithm = args.get("routing.defaultAlgorithm", defaultAlgorithm);
+        routingThreads = args.getInt("routing.workerThreads", routingThreads);
+        maxVisitedNodes = args.getInt("routing.maxVisitedNodes", maxVisitedNodes);
+        maxWeight = args.getDouble("routing.maxWeight", maxWeight);
+        routingTimeout = args.getLong("routing.timeout", routingTimeout);
 
         // osm import
         wayPointMaxDistance = args.getDouble("osmreader.wayPointMaxDistance", wayPointMaxDistance);
         String type = args.get("osmreader.acceptWay", "CAR");
-        encodingManager = new EncodingManager(type);
+        encodingManager = new EncodingManager(type, args.getInt("graph.bytesForFlags", 4));
         workerThreads = args.getInt("osmreader.workerThreads", workerThreads);
         enableInstructions = args.getBool("osmreader.instructions", enableInstructions);
+        storeOSMIds = args.getBool("osmreader.storeOSMIds", storeOSMIds);
+        compactNodeMap = args.getBool("osmreader.compactNodeMap", compactNodeMap);
+        String clipStr = args.get("osmreader.clip", "");
+        if (!clipStr.isEmpty())
+        {
+            clip = parseClip(clipStr);
+        }
 
         // index
         preciseIndexResolution = args.getInt("index.highResolution", preciseIndexResolution);
+        indexThreads = args.getInt("index.workerThreads", indexThreads);
+        indexCacheSize = args.getInt("index.cacheSize", indexCacheSize);
+        indexCachePrecision = args.getDouble("index.cachePrecision", indexCachePrecision);
+        indexCompactLeafs = args.getBool("index.compactLeafs", indexCompactLeafs);
         return this;
     }
 
@@ -424,17 +587,146 @@ public class GraphHopper implements GraphHopperAPI
             throw new IllegalStateException("Your specified OSM file does not exist:" + osmTmpFile.getAbsolutePath());
         }
 
+        if (storeOSMIds && sortGraph)
+        {
+            throw new IllegalStateException("Storing the OSM ids is not possible when sorting the graph");
+        }
         logger.info("start creating graph from " + osmFile);
         OSMReader reader = new OSMReader(graph, expectedCapacity).
                 setWorkerThreads(workerThreads).
                setEncodingManager(encodingManager).
                 setWayPointMaxDistance(wayPointMaxDistance).
-                setEnableInstructions(enableInstructions);
+                setEnableInstructions(enableInstructions).
+                setStoreOSMIds(storeOSMIds).
+                setCompactNodeMap(compactNodeMap).
+                setClip(clip);
         logger.info("using " + graph.toString() + ", memory:" + Helper.getMemInfo());
         reader.doOSM2Graph(osmTmpFile);
+        osmIdMapping = reader.getOSMIDMapping();
         return reader;
     }
 
+    /**
+     * Imports only ways with at least one node inside of the specified shape e.g. a city out of a
+     * country extract.
+     */
+    public GraphHopper setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
+    /**
+     * @param str a bounding box minLat,minLon,maxLat,maxLon or the points of a polygon
+     * lat1,lon1,lat2,lon2,lat3,lon3,...
+     */
+    static Shape parseClip( String str )
+    {
+        String[] values = str.split(",");
+        if (values.length == 4)
+        {
+            return new BBox(Double.parseDouble(values[1].trim()), Double.parseDouble(values[3].trim()),
+                    Double.parseDouble(values[0].trim()), Double.parseDouble(values[2].trim()));
+        }
+        return Polygon.parse(str);
+    }
+
+    /**
+     * Keeps the temporary map of OSM node ids off the heap while importing. Necessary to import
+     * the planet with a few GB of RAM.
+     */
+    public GraphHopper setCompactNodeMap( boolean compactNodeMap )
+    {
+        this.compactNodeMap = compactNodeMap;
+        return this;
+    }
+
+    /**
+     * Stores the ids of the OSM nodes and ways while importing, which is necessary to apply OSM
+     * change files later.
+     */
+    public GraphHopper setStoreOSMIds( boolean storeOSMIds )
+    {
+        this.storeOSMIds = storeOSMIds;
+        return this;
+    }
+
+    /**
+     * Applies the specified OSM change file (.osc) to the loaded graph instead of importing
+     * everything again. The graph needs to be imported with setStoreOSMIds and without
+     * preparation.
+     * <p/>
+     * Limitation: if edges changed the whole location index is created again afterwards, which
+     * takes as long as for the import. The index is stored packed and its tiles cannot be updated
+     * in place.
+     */
+    public GraphHopper applyOSMChanges( String changeFile )
+    {
+        if (graph == null)
+        {
+            throw new IllegalStateException("Load or import a graph before applying OSM changes");
+        }
+        if ("true".equals(graph.getProperties().get("prepare.done")))
+        {
+            throw new IllegalStateException("OSM changes cannot be applied to a prepared graph. "
+                    + "Import it again or disable the preparation");
+        }
+        if (osmIdMapping == null)
+        {
+            OSMIDMapping tmpMapping = new OSMIDMapping(graph.getDirectory());
+            if (!tmpMapping.loadExisting())
+            {
+                throw new IllegalStateException("The OSM ids of the graph " + ghLocation + " were not stored. "
+                        + "Import it with osmreader.storeOSMIds=true");
+            }
+            osmIdMapping = tmpMapping;
+        }
+
+        Location2IDIndex tmpIndex = index;
+        if (tmpIndex instanceof CachedLocation2IDIndex)
+        {
+            tmpIndex = ((CachedLocation2IDIndex) tmpIndex).getIndex();
+        }
+        Location2NodesNtree changeIndex;
+        if (tmpIndex instanceof Location2NodesNtree)
+        {
+            changeIndex = (Location2NodesNtree) tmpIndex;
+        } else
+        {
+            // the quadtree cannot find the nodes of an area
+            changeIndex = createNtree(new RAMDirectory());
+            changeIndex.prepareIndex();
+        }
+        OSMChangeReader reader = new OSMChangeReader(graph, osmIdMapping, changeIndex).
+                setWayPointMaxDistance(wayPointMaxDistance).
+                setEnableInstructions(enableInstructions);
+        try
+        {
+            reader.applyChanges(new File(changeFile));
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Cannot apply OSM change file " + changeFile, ex);
+        } finally
+        {
+            if (changeIndex != tmpIndex)
+            {
+                changeIndex.close();
+            }
+        }
+        flush();
+        if (!reader.getChangedEdges().isEmpty())
+        {
+            // the location indices are stored packed and cannot be updated in place, see the limitation above
+            logger.info("recreating location index, changes are within " + reader.getChangedBounds());
+            index.close();
+            Directory dir = graph.getDirectory();
+            dir.remove(dir.find("locationIndex"));
+            dir.remove(dir.find("loc2idIndex"));
+            initIndex();
+        }
+        return this;
+    }
+
     /**
      * Opens or creates a graph. The specified args need a property 'graph' (a folder) and if no
      * such folder exist it'll create a graph from the provided osm file (property 'osm'). A
@@ -456,6 +748,11 @@ public class GraphHopper implements GraphHopperAPI
             throw new IllegalStateException("graph is already loaded");
         }
 
+        if (dataAccessType == null)
+        {
+            this.dataAccessType = DAType.RAM;
+        }
+        File compressed = null;
         if (graphHopperFolder.indexOf(".") < 0)
         {
             if (new File(graphHopperFolder + "-gh").exists())
@@ -467,9 +764,13 @@ public class GraphHopper implements GraphHopperAPI
             }
         } else
         {
-            File compressed = new File(graphHopperFolder + ".ghz");
-            if (compressed.exists() && !compressed.isDirectory())
+            compressed = new File(graphHopperFolder + ".ghz");
+            if (!compressed.exists() || compressed.isDirectory())
+            {
+                compressed = null;
+            } else if (dataAccessType == DAType.MMAP)
             {
+                // memory mapping needs the files
                 try
                 {
                     Helper.unzip(compressed.getAbsolutePath(), graphHopperFolder, removeZipped);
@@ -477,13 +778,10 @@ public class GraphHopper implements GraphHopperAPI
                 {
                     throw new RuntimeException("Couldn't extract file " + compressed.getAbsolutePath() + " to " + graphHopperFolder, ex);
                 }
+                compressed = null;
             }
         }
         setGraphHopperLocation(graphHopperFolder);
-        if (dataAccessType == null)
-        {
-            this.dataAccessType = DAType.RAM;
-        }
         GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
         if (chUsage)
         {
@@ -494,6 +792,22 @@ public class GraphHopper implements GraphHopperAPI
         }
 
         graph.setSegmentSize(defaultSegmentSize);
+        if (compressed != null)
+        {
+            // decompress the archive directly into memory instead of extracting it to disc
+            try
+            {
+                GHZipArchive.load(compressed, dir, Runtime.getRuntime().availableProcessors());
+            } catch (IOException ex)
+            {
+                throw new RuntimeException("Couldn't load file " + compressed.getAbsolutePath(), ex);
+            }
+        } else
+        {
+            // read the biggest files concurrently, the storages then use the loaded segments
+            dir.preload(Runtime.getRuntime().availableProcessors(),
+                    "nodes", "edges", "geometry", "names", "locationIndex");
+        }
         if (!graph.loadExisting())
         {
             return false;
@@ -501,9 +815,62 @@ public class GraphHopper implements GraphHopperAPI
 
         postProcessing();
         initIndex();
+        warmUp();
         return true;
     }
 
+    private void warmUp()
+    {
+        if (warmUpBytes != 0)
+        {
+            StopWatch sw = new StopWatch().start();
+            // the index is used by every request, the names only for instructions
+            warmedUpBytes = ((GHDirectory) graph.getDirectory()).warmUp(warmUpBytes,
+                    "locationIndex", "loc2idIndex", "nodes", "edges", "geometry", "names");
+            logger.info("warmed up " + warmedUpBytes / Helper.MB + "MB in " + sw.stop().getSeconds() + "s");
+        }
+        if (warmUpQueries > 0)
+        {
+            StopWatch sw = new StopWatch().start();
+            warmUpRoutes = routeRandomly(warmUpQueries, 0);
+            logger.info("warmed up with " + warmUpQueries + " queries, " + warmUpRoutes + " found, in "
+                    + sw.stop().getSeconds() + "s");
+        }
+    }
+
+    /**
+     * Calculates routes between the locations of random nodes of the graph e.g. to compile the hot
+     * code or to check a newly loaded graph. Other than random coordinates within the bounds these
+     * can always be looked up, also if the roads are sparse.
+     * <p/>
+     * @return the number of found routes
+     */
+    public int routeRandomly( int queries, long seed )
+    {
+        if (graph.getNodes() == 0)
+        {
+            return 0;
+        }
+        String vehicle = encodingManager.toString().split(",")[0];
+        Random rand = new Random(seed);
+        int found = 0;
+        for (int i = 0; i < queries; i++)
+        {
+            GHRequest request = new GHRequest(randomPlace(rand), randomPlace(rand)).setVehicle(vehicle);
+            if (route(request).isFound())
+            {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private GHPlace randomPlace( Random rand )
+    {
+        int node = rand.nextInt(graph.getNodes());
+        return new GHPlace(graph.getLatitude(node), graph.getLongitude(node));
+    }
+
     private void postProcessing()
     {
         encodingManager = graph.getEncodingManager();
@@ -542,6 +909,7 @@ public class GraphHopper implements GraphHopperAPI
     public GHResponse route( GHRequest request )
     {
         request.check();
+        long startTime = System.currentTimeMillis();
         StopWatch sw = new StopWatch().start();
         GHResponse rsp = new GHResponse();
 
@@ -552,34 +920,32 @@ public class GraphHopper implements GraphHopperAPI
         }
 
         EdgeFilter edgeFilter = new DefaultEdgeFilter(encodingManager.getEncoder(request.getVehicle()));
-        int from = index.findClosest(request.getFrom().lat, request.getFrom().lon, edgeFilter).getClosestNode();
-        int to = index.findClosest(request.getTo().lat, request.getTo().lon, edgeFilter).getClosestNode();
+        List<GHPlace> places = request.getPoints();
+        int[] nodes = findClosestNodes(places, edgeFilter);
         String debug = "idLookup:" + sw.stop().getSeconds() + "s";
 
-        if (from < 0)
+        for (int i = 0; i < nodes.length; i++)
         {
-            rsp.addError(new IllegalArgumentException("Cannot find point 1: " + request.getFrom()));
-        }
-        if (to < 0)
-        {
-            rsp.addError(new IllegalArgumentException("Cannot find point 2: " + request.getTo()));
+            if (nodes[i] < 0)
+            {
+                rsp.addError(new IllegalArgumentException("Cannot find point " + (i + 1) + ": " + places.get(i)));
+            }
         }
-        if (from == to)
+        for (int i = 1; i < nodes.length; i++)
         {
-            rsp.addError(new IllegalArgumentException("Point 1 is equal to point 2"));
+            if (nodes[i - 1] == nodes[i])
+            {
+                rsp.addError(new IllegalArgumentException("Point " + i + " is equal to point " + (i + 1)));
+            }
         }
 
         sw = new StopWatch().start();
-        RoutingAlgorithm algo = null;
-
+        AlgorithmPreparation tmpPrepare = null;
         if (chUsage)
         {
-            if (request.getAlgorithm().equals("dijkstrabi"))
-            {
-                algo = prepare.createAlgo();
-            } else if (request.getAlgorithm().equals("astarbi"))
+            if (request.getAlgorithm().equals("dijkstrabi") || request.getAlgorithm().equals("astarbi"))
             {
-                algo = ((PrepareContractionHierarchies) prepare).createAStar();
+                tmpPrepare = prepare;
             } else
             // or use defaultAlgorithm here?
             {
@@ -589,7 +955,7 @@ public class GraphHopper implements GraphHopperAPI
         {
             prepare = NoOpAlgorithmPreparation.createAlgoPrepare(graph, request.getAlgorithm(),
                     encodingManager.getEncoder(request.getVehicle()), request.getType());
-            algo = prepare.createAlgo();
+            tmpPrepare = prepare;
         }
 
         if (rsp.hasError())
@@ -598,11 +964,36 @@ public class GraphHopper implements GraphHopperAPI
         }
         debug += ", algoInit:" + sw.stop().getSeconds() + "s";
 
+        long timeout = request.getHint("routing.timeout", (Number) routingTimeout).longValue();
+        long deadline = timeout < 0 ? Long.MAX_VALUE : startTime + timeout;
         sw = new StopWatch().start();
-        Path path = algo.calcPath(from, to);
-        debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s"
-                + ", " + path.getDebugInfo();
-        PointList points = path.calcPoints();
+        List<Path> paths;
+        try
+        {
+            paths = calcPaths(request, tmpPrepare, nodes, deadline);
+        } catch (RoutingLimitException ex)
+        {
+            rsp.addError(ex);
+            return rsp.setDebugInfo(debug + ", " + request.getAlgorithm() + "-routing stopped:"
+                    + sw.stop().getSeconds() + "s");
+        }
+        debug += ", " + request.getAlgorithm() + "-routing (" + paths.size() + " legs):"
+                + sw.stop().getSeconds() + "s";
+        PointList points = new PointList(paths.size() * 10);
+        double distance = 0;
+        long time = 0;
+        for (Path path : paths)
+        {
+            debug += ", " + path.getDebugInfo();
+            if (!path.isFound())
+            {
+                return rsp.setPoints(new PointList(0)).setDebugInfo(debug);
+            }
+            points.add(path.calcPoints(), !points.isEmpty());
+            distance += path.getDistance();
+            time += path.getTime();
+        }
+
         simplifyRequest = request.getHint("simplifyRequest", simplifyRequest);
         if (simplifyRequest)
         {
@@ -620,40 +1011,354 @@ public class GraphHopper implements GraphHopperAPI
         if (enableInstructions)
         {
             sw = new StopWatch().start();
-            rsp.setInstructions(path.calcInstructions());
+            InstructionList instructions = new InstructionList(paths.size() * 4);
+            for (Path path : paths)
+            {
+                instructions.add(path.calcInstructions());
+            }
+            rsp.setInstructions(instructions);
             debug += ", instructions:" + sw.stop().getSeconds() + "s";
         }
-        return rsp.setPoints(points).setDistance(path.getDistance()).setTime(path.getTime()).setDebugInfo(debug);
+        return rsp.setPoints(points).setDistance(distance).setTime(time).setDebugInfo(debug);
     }
 
-    private void initIndex()
+    /**
+     * Finds the k points of the request which are nearest to its first point, e.g. the nearest
+     * vehicles of a customer. Instead of one route per point a single search is done which stops
+     * once k points are reached. With contraction hierarchies one route per point is calculated
+     * instead.
+     * <p/>
+     * @return the routes ordered by increasing weight, getPointIndex returns the index of the point
+     * in the request. Points which cannot be found or reached are skipped. If the request is invalid
+     * only one response containing the errors is returned.
+     */
+    public List<GHResponse> routeNearest( GHRequest request, int k )
     {
-        Directory dir = graph.getDirectory();
-        if (preciseIndexResolution > 0)
+        request.check();
+        long startTime = System.currentTimeMillis();
+        StopWatch sw = new StopWatch().start();
+        GHResponse errorRsp = new GHResponse();
+        if (!setSupportsVehicle(request.getVehicle()))
+        {
+            errorRsp.addError(new IllegalArgumentException("Vehicle " + request.getVehicle() + " unsupported. Supported are: " + getEncodingManager()));
+            return Collections.singletonList(errorRsp);
+        }
+
+        FlagEncoder encoder = encodingManager.getEncoder(request.getVehicle());
+        List<GHPlace> places = request.getPoints();
+        int[] nodes = findClosestNodes(places, new DefaultEdgeFilter(encoder));
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        if (nodes[0] < 0)
+        {
+            errorRsp.addError(new IllegalArgumentException("Cannot find point 1: " + places.get(0)));
+        }
+        if (chUsage && !request.getAlgorithm().equals("dijkstrabi") && !request.getAlgorithm().equals("astarbi"))
+        {
+            errorRsp.addError(new IllegalStateException("Only dijkstrabi and astarbi is supported for LevelGraph (using contraction hierarchies)!"));
+        }
+        if (errorRsp.hasError())
+        {
+            return Collections.singletonList(errorRsp);
+        }
+
+        long timeout = request.getHint("routing.timeout", (Number) routingTimeout).longValue();
+        long deadline = timeout < 0 ? Long.MAX_VALUE : startTime + timeout;
+        sw = new StopWatch().start();
+        List<Path> paths;
+        try
+        {
+            paths = calcNearestPaths(request, encoder, nodes, k, deadline);
+        } catch (RoutingLimitException ex)
+        {
+            errorRsp.addError(ex);
+            return Collections.singletonList(errorRsp.setDebugInfo(debug + ", nearest-routing stopped:"
+                    + sw.stop().getSeconds() + "s"));
+        }
+        debug += ", nearest-routing:" + sw.stop().getSeconds() + "s";
+
+        boolean calcPoints = request.getHint("calcPoints", true);
+        boolean calcInstructions = request.getHint("instructions", enableInstructions);
+        List<GHResponse> list = new ArrayList<GHResponse>(k);
+        boolean[] added = new boolean[nodes.length];
+        for (Path path : paths)
+        {
+            // several points can belong to the same node
+            for (int i = 1; i < nodes.length && list.size() < k; i++)
+            {
+                if (added[i] || nodes[i] != path.getEndNode())
+                {
+                    continue;
+                }
+                added[i] = true;
+                GHResponse rsp = new GHResponse().setPointIndex(i).setDistance(path.getDistance()).
+                        setTime(path.getTime()).setDebugInfo(debug);
+                rsp.setPoints(calcPoints ? path.calcPoints() : new PointList(0));
+                if (calcInstructions)
+                {
+                    rsp.setInstructions(path.calcInstructions());
+                }
+                list.add(rsp);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the paths to the nearest nodes of nodes[1..] ordered by weight. Every node is included
+     * at most once.
+     */
+    private List<Path> calcNearestPaths( GHRequest request, FlagEncoder encoder,
+            int[] nodes, int k, long deadline )
+    {
+        int tmpMaxVisitedNodes = request.getHint("routing.maxVisitedNodes", (Number) maxVisitedNodes).intValue();
+        double tmpMaxWeight = request.getHint("routing.maxWeight", (Number) maxWeight).doubleValue();
+        if (!chUsage)
+        {
+            GHBitSet targets = new GHTBitSet(nodes.length);
+            for (int i = 1; i < nodes.length; i++)
+            {
+                if (nodes[i] >= 0)
+                {
+                    targets.add(nodes[i]);
+                }
+            }
+            DijkstraNearestTargets algo = new DijkstraNearestTargets(graph, encoder);
+            algo.setType(request.getType()).setMaxVisitedNodes(tmpMaxVisitedNodes).
+                    setMaxWeight(tmpMaxWeight).setDeadline(deadline);
+            return algo.calcPaths(nodes[0], targets, k);
+        }
+
+        // a unidirectional search is not possible on the CH graph => one query per target
+        List<Path> paths = new ArrayList<Path>(nodes.length);
+        GHBitSet visited = new GHTBitSet(nodes.length);
+        for (int i = 1; i < nodes.length; i++)
         {
-            Location2NodesNtree tmpIndex;
-            if (graph instanceof LevelGraph)
+            int node = nodes[i];
+            if (node < 0 || visited.contains(node))
+            {
+                continue;
+            }
+            visited.add(node);
+            Path path;
+            if (node == nodes[0])
             {
-                tmpIndex = new Location2NodesNtreeLG((LevelGraph) graph, dir);
+                // the algorithms return no path for identical nodes, but the search without
+                // contraction hierarchies finds the start itself
+                path = new Path(graph, encoder).setEdgeEntry(new EdgeEntry(EdgeIterator.NO_EDGE, node, 0)).extract();
+                path.setWeight(0);
             } else
             {
-                tmpIndex = new Location2NodesNtree(graph, dir);
+                path = createAlgo(request, prepare).setMaxVisitedNodes(tmpMaxVisitedNodes).
+                        setMaxWeight(tmpMaxWeight).setDeadline(deadline).calcPath(nodes[0], node);
+            }
+            if (path.isFound())
+            {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths, new Comparator<Path>()
+        {
+            @Override
+            public int compare( Path o1, Path o2 )
+            {
+                return Double.compare(o1.getWeight(), o2.getWeight());
+            }
+        });
+        return paths.size() > k ? paths.subList(0, k) : paths;
+    }
+
+    /**
+     * Looks up the closest node of all specified places in one batch of the index before any
+     * routing is done. Identical places, e.g. a depot as start and end of a tour, are looked up
+     * only once. Places are identical if they are equal at the precision of the graph storage.
+     */
+    private int[] findClosestNodes( List<GHPlace> places, EdgeFilter edgeFilter )
+    {
+        TLongIntHashMap uniqueIndices = new TLongIntHashMap(places.size(), 0.5f, -1, -1);
+        int[] placeToUnique = new int[places.size()];
+        double[] lats = new double[places.size()];
+        double[] lons = new double[places.size()];
+        int uniqueCount = 0;
+        for (int i = 0; i < placeToUnique.length; i++)
+        {
+            GHPlace place = places.get(i);
+            long key = (long) Helper.degreeToInt(place.lat) << 32 | Helper.degreeToInt(place.lon) & 0xFFFFFFFFL;
+            int unique = uniqueIndices.get(key);
+            if (unique < 0)
+            {
+                unique = uniqueCount++;
+                uniqueIndices.put(key, unique);
+                lats[unique] = place.lat;
+                lons[unique] = place.lon;
+            }
+            placeToUnique[i] = unique;
+        }
+
+        int[] uniqueNodes = index.findClosest(Arrays.copyOf(lats, uniqueCount),
+                Arrays.copyOf(lons, uniqueCount), edgeFilter);
+        int[] nodes = new int[placeToUnique.length];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i] = uniqueNodes[placeToUnique[i]];
+        }
+        return nodes;
+    }
+
+    /**
+     * Calculates one path for every leg between the specified nodes. If there is more than one leg
+     * the legs are calculated concurrently where every worker gets its own algorithm. If one leg
+     * fails the algorithms of the other legs are cancelled.
+     */
+    private List<Path> calcPaths( GHRequest request, AlgorithmPreparation tmpPrepare,
+            int[] nodes, long deadline )
+    {
+        int tmpMaxVisitedNodes = request.getHint("routing.maxVisitedNodes", (Number) maxVisitedNodes).intValue();
+        double tmpMaxWeight = request.getHint("routing.maxWeight", (Number) maxWeight).doubleValue();
+        int legs = nodes.length - 1;
+        final RoutingAlgorithm[] algos = new RoutingAlgorithm[legs];
+        for (int i = 0; i < legs; i++)
+        {
+            algos[i] = createAlgo(request, tmpPrepare).setMaxVisitedNodes(tmpMaxVisitedNodes).
+                    setMaxWeight(tmpMaxWeight).setDeadline(deadline);
+        }
+
+        List<Path> paths = new ArrayList<Path>(legs);
+        if (legs == 1 || getRoutingThreads() <= 1)
+        {
+            for (int i = 0; i < legs; i++)
+            {
+                paths.add(algos[i].calcPath(nodes[i], nodes[i + 1]));
             }
+            return paths;
+        }
+
+        List<Future<Path>> futures = new ArrayList<Future<Path>>(legs);
+        ExecutorService executor = getRoutingExecutor();
+        for (int i = 0; i < legs; i++)
+        {
+            final RoutingAlgorithm algo = algos[i];
+            final int from = nodes[i];
+            final int to = nodes[i + 1];
+            futures.add(executor.submit(new Callable<Path>()
+            {
+                @Override
+                public Path call() throws Exception
+                {
+                    return algo.calcPath(from, to);
+                }
+            }));
+        }
+        try
+        {
+            for (Future<Path> future : futures)
+            {
+                paths.add(future.get());
+            }
+        } catch (InterruptedException ex)
+        {
+            cancel(algos);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Routing was interrupted for " + request, ex);
+        } catch (ExecutionException ex)
+        {
+            cancel(algos);
+            if (ex.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException("Cannot calculate route for " + request, ex.getCause());
+        }
+        return paths;
+    }
+
+    private void cancel( RoutingAlgorithm[] algos )
+    {
+        for (RoutingAlgorithm algo : algos)
+        {
+            algo.cancel();
+        }
+    }
+
+    private RoutingAlgorithm createAlgo( GHRequest request, AlgorithmPreparation tmpPrepare )
+    {
+        if (chUsage && request.getAlgorithm().equals("astarbi"))
+        {
+            return ((PrepareContractionHierarchies) tmpPrepare).createAStar();
+        }
+        return tmpPrepare.createAlgo();
+    }
+
+    private int getRoutingThreads()
+    {
+        if (routingThreads < 0)
+        {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return routingThreads;
+    }
+
+    private synchronized ExecutorService getRoutingExecutor()
+    {
+        if (routingExecutor == null)
+        {
+            routingExecutor = Executors.newFixedThreadPool(getRoutingThreads(), new ThreadFactory()
+            {
+                private int counter;
+
+                @Override
+                public synchronized Thread newThread( Runnable r )
+                {
+                    Thread t = new Thread(r, "GraphHopper Routing " + counter++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return routingExecutor;
+    }
+
+    private void initIndex()
+    {
+        Directory dir = graph.getDirectory();
+        if (preciseIndexResolution > 0)
+        {
+            Location2NodesNtree tmpIndex = createNtree(dir);
             tmpIndex.setResolution(preciseIndexResolution);
             tmpIndex.setEdgeCalcOnFind(edgeCalcOnSearch);
             tmpIndex.setSearchRegion(searchRegion);
+            tmpIndex.setCompactLeafs(indexCompactLeafs);
+            if (indexThreads < 0)
+            {
+                tmpIndex.setPrepareThreads(Runtime.getRuntime().availableProcessors());
+            } else
+            {
+                tmpIndex.setPrepareThreads(indexThreads);
+            }
             index = tmpIndex;
         } else
         {
             index = new Location2IDQuadtree(graph, dir);
             index.setResolution(Helper.calcIndexSize(graph.getBounds()));
         }
+        if (indexCacheSize > 0)
+        {
+            index = new CachedLocation2IDIndex(index, indexCacheSize, indexCachePrecision);
+        }
         if (!index.loadExisting())
         {
             index.prepareIndex();
         }
     }
 
+    private Location2NodesNtree createNtree( Directory dir )
+    {
+        if (graph instanceof LevelGraph)
+        {
+            return new Location2NodesNtreeLG((LevelGraph) graph, dir);
+        }
+        return new Location2NodesNtree(graph, dir);
+    }
+
     private void optimize()
     {
         logger.info("optimizing ... (" + Helper.getMemInfo() + ")");
@@ -701,19 +1406,65 @@ public class GraphHopper implements GraphHopperAPI
                 + " less nodes. Remaining subnetworks:" + remainingSubnetworks);
     }
 
+    /**
+     * Writes the graph and the location index into a compressed archive which can be loaded again
+     * via load without extracting it.
+     * <p/>
+     * @param archive e.g. the graph folder with the file ending .ghz
+     */
+    public void storeCompressed( String archive )
+    {
+        if (graph == null)
+        {
+            throw new IllegalStateException("Call load or importOrLoad before");
+        }
+        flush();
+        if (index != null)
+        {
+            index.flush();
+        }
+        try
+        {
+            GHZipArchive.store((GHDirectory) graph.getDirectory(), new File(archive));
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Couldn't store graph to " + archive, ex);
+        }
+    }
+
     private void flush()
     {
         logger.info("flushing graph " + graph.toString() + ", details:" + graph.toDetailsString() + ", "
                 + Helper.getMemInfo() + ")");
         graph.flush();
+        if (osmIdMapping != null)
+        {
+            osmIdMapping.flush();
+        }
     }
 
-    void close()
+    /**
+     * Releases the graph, the index and the routing threads. Requests must not use this instance
+     * afterwards.
+     */
+    public void close()
     {
+        synchronized (this)
+        {
+            if (routingExecutor != null)
+            {
+                routingExecutor.shutdown();
+                routingExecutor = null;
+            }
+        }
         if (graph != null)
         {
             graph.close();
         }
+        if (osmIdMapping != null)
+        {
+            osmIdMapping.close();
+        }
         if (index != null)
         {
             index.close();
@@ -0,0 +1,497 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+import gnu.trove.map.hash.TLongIntHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from OSM ids to int values for big imports which stores nearly nothing on the heap. The
+ * keys are kept in sorted runs within DataAccess objects, so they can be memory mapped. Every run
+ * consists of blocks of 32 keys where only the first key is stored as is and the others as vlong
+ * encoded deltas. The values are stored separately and can be updated in place.
+ * <p/>
+ * Keys bigger than all existing keys, which is the usual case for OSM files, are appended to the
+ * last run. Other new keys are collected in a small hash map on the heap which is written as a new
+ * run when it is full. Runs of similar size are merged, so there are only a few runs to search.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMIDDeltaMap implements LongIntMap
+{
+    private static final int BLOCK_ENTRIES = 32;
+    // first key and byte offset
+    private static final int BLOCK_BYTES = 16;
+    private final Directory dir;
+    private final String name;
+    private final int noEntryValue;
+    private final int maxOverflow;
+    // older runs come first, the tail is the run which accepts increasing keys
+    private final List<Run> runs = new ArrayList<Run>();
+    private Run tail;
+    private final TLongIntHashMap overflow;
+    private long maxKey = Long.MIN_VALUE;
+    private long size;
+    private int runCounter;
+    private final byte[] vlongBytes = new byte[10];
+
+    public OSMIDDeltaMap( Directory dir, String name, int noEntryValue )
+    {
+        this(dir, name, noEntryValue, 1 << 16);
+    }
+
+    /**
+     * @param maxOverflow the number of unordered keys which are collected before writing them as a
+     * new run
+     */
+    public OSMIDDeltaMap( Directory dir, String name, int noEntryValue, int maxOverflow )
+    {
+        this.dir = dir;
+        this.name = name;
+        this.noEntryValue = noEntryValue;
+        this.maxOverflow = maxOverflow;
+        overflow = new TLongIntHashMap(Math.min(maxOverflow, 1000), 0.5f, Long.MIN_VALUE, noEntryValue);
+        tail = new Run();
+    }
+
+    @Override
+    public int put( long key, int value )
+    {
+        if (key > maxKey)
+        {
+            tail.append(key, value);
+            maxKey = key;
+            size++;
+            return noEntryValue;
+        }
+
+        if (overflow.containsKey(key))
+        {
+            return overflow.put(key, value);
+        }
+        Run run = tail;
+        for (int i = runs.size(); i >= 0; i--)
+        {
+            long index = run.indexOf(key);
+            if (index >= 0)
+            {
+                int oldValue = run.getValue(index);
+                run.setValue(index, value);
+                return oldValue;
+            }
+            if (i > 0)
+            {
+                run = runs.get(i - 1);
+            }
+        }
+
+        overflow.put(key, value);
+        size++;
+        if (overflow.size() >= maxOverflow)
+        {
+            flushOverflow();
+        }
+        return noEntryValue;
+    }
+
+    @Override
+    public int get( long key )
+    {
+        if (key > maxKey)
+        {
+            return noEntryValue;
+        }
+        if (overflow.containsKey(key))
+        {
+            return overflow.get(key);
+        }
+        long index = tail.indexOf(key);
+        if (index >= 0)
+        {
+            return tail.getValue(index);
+        }
+        for (int i = runs.size() - 1; i >= 0; i--)
+        {
+            Run run = runs.get(i);
+            index = run.indexOf(key);
+            if (index >= 0)
+            {
+                return run.getValue(index);
+            }
+        }
+        return noEntryValue;
+    }
+
+    private void flushOverflow()
+    {
+        long[] keys = overflow.keys();
+        Arrays.sort(keys);
+        Run run = new Run();
+        for (long key : keys)
+        {
+            run.append(key, overflow.get(key));
+        }
+        overflow.clear();
+        runs.add(run);
+
+        // keep the run sizes decreasing by a factor of at least two
+        while (runs.size() >= 2)
+        {
+            Run last = runs.get(runs.size() - 1);
+            Run previous = runs.get(runs.size() - 2);
+            if (previous.size > 2 * last.size)
+            {
+                break;
+            }
+            runs.remove(runs.size() - 1);
+            runs.remove(runs.size() - 1);
+            runs.add(merge(Arrays.asList(previous, last)));
+        }
+    }
+
+    /**
+     * Merges all keys into one run which makes lookups faster. Call this after the unordered
+     * writes are done.
+     */
+    @Override
+    public void optimize()
+    {
+        if (!overflow.isEmpty())
+        {
+            flushOverflow();
+        }
+        if (runs.isEmpty())
+        {
+            return;
+        }
+        List<Run> all = new ArrayList<Run>(runs);
+        all.add(tail);
+        runs.clear();
+        tail = merge(all);
+    }
+
+    private Run merge( List<Run> toMerge )
+    {
+        RunIterator[] iters = new RunIterator[toMerge.size()];
+        int active = 0;
+        for (Run run : toMerge)
+        {
+            RunIterator iter = new RunIterator(run);
+            if (iter.next())
+            {
+                iters[active++] = iter;
+            }
+        }
+
+        Run merged = new Run();
+        while (active > 0)
+        {
+            int min = 0;
+            for (int i = 1; i < active; i++)
+            {
+                if (iters[i].key < iters[min].key)
+                {
+                    min = i;
+                }
+            }
+            RunIterator iter = iters[min];
+            merged.append(iter.key, iter.run.getValue(iter.index));
+            if (!iter.next())
+            {
+                iters[min] = iters[--active];
+            }
+        }
+
+        for (Run run : toMerge)
+        {
+            run.remove();
+        }
+        return merged;
+    }
+
+    /**
+     * Removes the underlying storage.
+     */
+    public void remove()
+    {
+        for (Run run : runs)
+        {
+            run.remove();
+        }
+        runs.clear();
+        tail.remove();
+        overflow.clear();
+        size = 0;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of sorted runs which are searched for a key
+     */
+    int getRuns()
+    {
+        return runs.size() + 1;
+    }
+
+    public long getCapacity()
+    {
+        long capacity = tail.getCapacity();
+        for (Run run : runs)
+        {
+            capacity += run.getCapacity();
+        }
+        // estimated size of the hash map: key, value and state per slot
+        return capacity + overflow.capacity() * 13L;
+    }
+
+    @Override
+    public int getMemoryUsage()
+    {
+        return Math.round(getCapacity() / Helper.MB);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "runs:" + getRuns() + ", overflow:" + overflow.size() + ", size:" + size;
+    }
+
+    static long getLong( DataAccess da, long pointer )
+    {
+        return (long) da.getInt(pointer) << 32 | da.getInt(pointer + 4) & 0xFFFFFFFFL;
+    }
+
+    static void setLong( DataAccess da, long pointer, long value )
+    {
+        da.setInt(pointer, (int) (value >>> 32));
+        da.setInt(pointer + 4, (int) value);
+    }
+
+    /**
+     * Sorted keys which are stored in blocks.
+     */
+    class Run
+    {
+        final DataAccess keys;
+        final DataAccess blocks;
+        final DataAccess values;
+        long size;
+        long keyBytes;
+        long lastKey;
+        private final byte[] blockBytes = new byte[BLOCK_ENTRIES * 10];
+
+        Run()
+        {
+            int id = runCounter++;
+            keys = dir.find(name + "Keys" + id).create(1 << 12);
+            blocks = dir.find(name + "Blocks" + id).create(1 << 10);
+            values = dir.find(name + "Values" + id).create(1 << 12);
+        }
+
+        void append( long key, int value )
+        {
+            if (size % BLOCK_ENTRIES == 0)
+            {
+                long blockPointer = size / BLOCK_ENTRIES * BLOCK_BYTES;
+                blocks.ensureCapacity(blockPointer + BLOCK_BYTES);
+                setLong(blocks, blockPointer, key);
+                setLong(blocks, blockPointer + 8, keyBytes);
+            } else
+            {
+                int length = writeVLong(vlongBytes, key - lastKey);
+                keys.ensureCapacity(keyBytes + length);
+                keys.setBytes(keyBytes, vlongBytes, length);
+                keyBytes += length;
+            }
+            values.ensureCapacity(size * 4 + 4);
+            values.setInt(size * 4, value);
+            lastKey = key;
+            size++;
+        }
+
+        /**
+         * @return the position of the key or -1 if not found
+         */
+        long indexOf( long key )
+        {
+            if (size == 0 || key > lastKey || key < getLong(blocks, 0))
+            {
+                return -1;
+            }
+
+            // find the last block which starts with a key smaller or equal to the specified one
+            long low = 0;
+            long high = (size - 1) / BLOCK_ENTRIES;
+            while (low < high)
+            {
+                long mid = (low + high + 1) >>> 1;
+                if (getLong(blocks, mid * BLOCK_BYTES) <= key)
+                {
+                    low = mid;
+                } else
+                {
+                    high = mid - 1;
+                }
+            }
+
+            long index = low * BLOCK_ENTRIES;
+            long current = getLong(blocks, low * BLOCK_BYTES);
+            if (current == key)
+            {
+                return index;
+            }
+            int length = readBlock(low, blockBytes);
+            int pos = 0;
+            while (pos < length)
+            {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do
+                {
+                    b = blockBytes[pos++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current += delta;
+                index++;
+                if (current >= key)
+                {
+                    return current == key ? index : -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the deltas of the specified block.
+         * <p/>
+         * @return the number of bytes
+         */
+        int readBlock( long block, byte[] bytes )
+        {
+            long start = getLong(blocks, block * BLOCK_BYTES + 8);
+            long end;
+            if ((block + 1) * BLOCK_ENTRIES < size)
+            {
+                end = getLong(blocks, (block + 1) * BLOCK_BYTES + 8);
+            } else
+            {
+                end = keyBytes;
+            }
+            int length = (int) (end - start);
+            keys.getBytes(start, bytes, length);
+            return length;
+        }
+
+        int getValue( long index )
+        {
+            return values.getInt(index * 4);
+        }
+
+        void setValue( long index, int value )
+        {
+            values.setInt(index * 4, value);
+        }
+
+        long getCapacity()
+        {
+            return keys.getCapacity() + blocks.getCapacity() + values.getCapacity();
+        }
+
+        void remove()
+        {
+            dir.remove(keys);
+            dir.remove(blocks);
+            dir.remove(values);
+        }
+    }
+
+    /**
+     * Iterates over the keys of a run in increasing order.
+     */
+    static class RunIterator
+    {
+        final Run run;
+        long index = -1;
+        long key;
+        private final byte[] blockBytes = new byte[BLOCK_ENTRIES * 10];
+        private int pos;
+
+        RunIterator( Run run )
+        {
+            this.run = run;
+        }
+
+        boolean next()
+        {
+            index++;
+            if (index >= run.size)
+            {
+                return false;
+            }
+            if (index % BLOCK_ENTRIES == 0)
+            {
+                long block = index / BLOCK_ENTRIES;
+                key = getLong(run.blocks, block * BLOCK_BYTES);
+                run.readBlock(block, blockBytes);
+                pos = 0;
+                return true;
+            }
+
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = blockBytes[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            key += delta;
+            return true;
+        }
+    }
+
+    /**
+     * Writes the value in the same format as VLongStorage.writeVLong.
+     * <p/>
+     * @return the number of written bytes
+     */
+    static int writeVLong( byte[] bytes, long value )
+    {
+        int length = 0;
+        while ((value & ~0x7FL) != 0L)
+        {
+            bytes[length++] = (byte) ((value & 0x7FL) | 0x80L);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+        return length;
+    }
+}
@@ -43,13 +43,60 @@ public class OSMIDMap implements LongIntMap
     }
 
     public OSMIDMap( Directory dir, int noNumber )
+    {
+        this(dir, "osmidMap", noNumber);
+        create(2000);
+    }
+
+    /**
+     * Creates a map which can be stored and loaded again. Call create or loadExisting before using
+     * it.
+     * <p/>
+     * @param name the prefix of the names of the underlying DataAccess objects
+     */
+    public OSMIDMap( Directory dir, String name, int noNumber )
     {
         this.dir = dir;
         this.noEntryValue = noNumber;
-        keys = dir.find("osmidMapKeys");
-        keys.create(2000);
-        values = dir.find("osmidMapValues");
-        values.create(1000);
+        keys = dir.find(name + "Keys");
+        values = dir.find(name + "Values");
+    }
+
+    public OSMIDMap create( long bytes )
+    {
+        keys.create(bytes);
+        values.create(bytes / 2);
+        return this;
+    }
+
+    public boolean loadExisting()
+    {
+        if (!keys.loadExisting() || !values.loadExisting())
+        {
+            return false;
+        }
+        size = (long) keys.getHeader(0) << 32 | keys.getHeader(4) & 0xFFFFFFFFL;
+        if (size > 0)
+        {
+            byte[] longBytes = new byte[8];
+            keys.getBytes(size * 2 - 8, longBytes, 8);
+            lastKey = BitUtil.toLong(longBytes);
+        }
+        return true;
+    }
+
+    public void flush()
+    {
+        keys.setHeader(0, (int) (size >>> 32));
+        keys.setHeader(4, (int) size);
+        keys.flush();
+        values.flush();
+    }
+
+    public void close()
+    {
+        keys.close();
+        values.close();
     }
 
     public void remove()
@@ -134,6 +181,14 @@ public class OSMIDMap implements LongIntMap
         }
     }
 
+    /**
+     * @return the biggest key. New keys have to be bigger than this one.
+     */
+    public long getLastKey()
+    {
+        return lastKey;
+    }
+
     @Override
     public long getSize()
     {
@@ -0,0 +1,704 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.index.Location2NodesNtree;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.iterator.TLongLongIterator;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies an OSM change file (.osc or .osc.gz) to a graph which was imported with
+ * OSMReader.setStoreOSMIds. Created and modified ways replace the edges of their previous
+ * version, deleted ways are removed and moved nodes update the coordinates of tower nodes and the
+ * geometry of edges. If a changed way crosses an existing edge at one of its pillar nodes the edge
+ * is split into two.
+ * <p/>
+ * Edges are not removed from the storage but their flags are set to 0 which makes them
+ * inaccessible for every vehicle. Barriers on changed ways are not handled. Prepared graphs, like
+ * the ones for contraction hierarchies, need to be prepared again and the location index has to
+ * be updated for the changed region, see getChangedBounds. The existing nodes of the changes are
+ * found via the location index, so only the area around them is read.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMChangeReader
+{
+    private static final int CREATE = 0;
+    private static final int MODIFY = 1;
+    private static final int DELETE = 2;
+    // coordinates closer than this in degrees are the same point
+    private static final double POINT_PRECISION = 1e-6;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final GraphStorage g;
+    private final OSMIDMapping mapping;
+    private final Location2NodesNtree locationIndex;
+    private final EncodingManager encodingManager;
+    private final DistanceCalc distCalc = new DistanceCalc();
+    private final DouglasPeucker dpAlgo = new DouglasPeucker();
+    private boolean enableInstructions = true;
+    // the content of the change file
+    private final Map<Long, OSMNode> changedNodes = new LinkedHashMap<Long, OSMNode>();
+    private final Map<Long, OSMWay> changedWays = new LinkedHashMap<Long, OSMWay>();
+    private final TLongSet deletedWays = new TLongHashSet();
+    // the OSM nodes of the changes which already exist in the graph
+    private final TLongIntHashMap towerNodes = new TLongIntHashMap(100, 0.5f, -1, -1);
+    private final TLongIntHashMap pillarEdges = new TLongIntHashMap(100, 0.5f, -1, -1);
+    private final TLongSet ambiguousNodes = new TLongHashSet();
+    // the number of changed ways using an OSM node
+    private final TLongIntHashMap nodeUses = new TLongIntHashMap(100, 0.5f, -1, 0);
+    // the affected parts of the graph
+    private final TIntSet changedEdges = new TIntHashSet();
+    private final TIntSet changedGraphNodes = new TIntHashSet();
+    private final BBox changedBounds = BBox.INVERSE.clone();
+
+    /**
+     * @param locationIndex the index of the graph before the changes, used to find the existing
+     * nodes of the changes
+     */
+    public OSMChangeReader( GraphStorage g, OSMIDMapping mapping, Location2NodesNtree locationIndex )
+    {
+        this.g = g;
+        this.mapping = mapping;
+        this.locationIndex = locationIndex;
+        this.encodingManager = g.getEncodingManager();
+    }
+
+    public OSMChangeReader setWayPointMaxDistance( double maxDist )
+    {
+        dpAlgo.setMaxDistance(maxDist);
+        return this;
+    }
+
+    public OSMChangeReader setEnableInstructions( boolean enableInstructions )
+    {
+        this.enableInstructions = enableInstructions;
+        return this;
+    }
+
+    /**
+     * @return the ids of all edges which were created or removed
+     */
+    public TIntSet getChangedEdges()
+    {
+        return changedEdges;
+    }
+
+    /**
+     * @return the nodes which were moved or where edges were created or removed
+     */
+    public TIntSet getChangedNodes()
+    {
+        return changedGraphNodes;
+    }
+
+    /**
+     * @return the OSM nodes of the changes which were not matched to the graph as other nodes
+     * share their coordinates
+     */
+    public TLongSet getAmbiguousNodes()
+    {
+        return ambiguousNodes;
+    }
+
+    /**
+     * @return the area containing all changes. Index tiles intersecting it need to be rebuilt.
+     */
+    public BBox getChangedBounds()
+    {
+        return changedBounds;
+    }
+
+    public OSMChangeReader applyChanges( File changeFile ) throws IOException
+    {
+        StopWatch sw = new StopWatch().start();
+        readChanges(changeFile);
+        countNodeUses();
+        findExistingNodes();
+        removeChangedWays();
+        moveNodes();
+        for (OSMWay way : changedWays.values())
+        {
+            addWay(way);
+        }
+        logger.info("applied " + changeFile + " in " + sw.stop().getSeconds() + "s, nodes:"
+                + changedNodes.size() + ", ways:" + changedWays.size() + ", deleted ways:" + deletedWays.size()
+                + ", changed edges:" + changedEdges.size() + ", bounds:" + changedBounds);
+        return this;
+    }
+
+    void readChanges( File changeFile ) throws IOException
+    {
+        InputStream is = new BufferedInputStream(new FileInputStream(changeFile), 50000);
+        try
+        {
+            if (changeFile.getName().endsWith(".gz"))
+            {
+                is = new GZIPInputStream(is, 50000);
+            }
+            XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(is, "UTF-8");
+            int action = -1;
+            int event = parser.next();
+            while (event != XMLStreamConstants.END_DOCUMENT)
+            {
+                if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    String name = parser.getLocalName();
+                    if ("create".equals(name))
+                    {
+                        action = CREATE;
+                    } else if ("modify".equals(name))
+                    {
+                        action = MODIFY;
+                    } else if ("delete".equals(name))
+                    {
+                        action = DELETE;
+                    } else if ("node".equals(name) || "way".equals(name))
+                    {
+                        if (action < 0)
+                        {
+                            throw new IllegalArgumentException("File is not a valid OSM change file, "
+                                    + name + " is not within create, modify or delete");
+                        }
+                        readElement(name, action, parser);
+                    }
+                }
+                event = parser.next();
+            }
+            parser.close();
+        } catch (XMLStreamException ex)
+        {
+            throw new IOException(ex);
+        } finally
+        {
+            is.close();
+        }
+    }
+
+    private void readElement( String name, int action, XMLStreamReader parser ) throws XMLStreamException
+    {
+        long id = Long.parseLong(parser.getAttributeValue(null, "id"));
+        if ("node".equals(name))
+        {
+            // deleted nodes are ignored as their ways are changed too
+            if (action != DELETE)
+            {
+                changedNodes.put(id, new OSMNode(id, parser));
+            }
+        } else if (action == DELETE)
+        {
+            changedWays.remove(id);
+            deletedWays.add(id);
+        } else
+        {
+            deletedWays.remove(id);
+            changedWays.put(id, new OSMWay(id, parser));
+        }
+    }
+
+    private void countNodeUses()
+    {
+        TLongSet wayNodes = new TLongHashSet();
+        for (OSMWay way : changedWays.values())
+        {
+            wayNodes.clear();
+            wayNodes.addAll(way.getNodes());
+            TLongIterator iter = wayNodes.iterator();
+            while (iter.hasNext())
+            {
+                nodeUses.adjustOrPutValue(iter.next(), 1, 1);
+            }
+        }
+    }
+
+    /**
+     * Finds the tower nodes and the edges containing the pillar nodes which are used by the
+     * changes. As node ids are not stable the nodes are identified by their stored coordinates and
+     * only the candidates of the location index around them are checked.
+     * <p/>
+     * A node is not matched if its coordinates are ambiguous, e.g. for stacked nodes of a bridge
+     * or several OSM nodes at the same location, as an edit could hit the wrong node. A new tower
+     * node is created for it instead.
+     */
+    private void findExistingNodes()
+    {
+        TLongLongHashMap coordsToOSMId = new TLongLongHashMap(100, 0.5f, Long.MIN_VALUE, Long.MIN_VALUE);
+        for (OSMWay way : changedWays.values())
+        {
+            TLongList osmIds = way.getNodes();
+            for (int i = 0; i < osmIds.size(); i++)
+            {
+                putStoredCoords(coordsToOSMId, osmIds.get(i));
+            }
+        }
+        for (long osmId : changedNodes.keySet())
+        {
+            putStoredCoords(coordsToOSMId, osmId);
+        }
+
+        TIntArrayList nodes = new TIntArrayList();
+        TIntArrayList edges = new TIntArrayList();
+        TLongLongIterator iter = coordsToOSMId.iterator();
+        while (iter.hasNext())
+        {
+            iter.advance();
+            long osmId = iter.value();
+            if (ambiguousNodes.contains(osmId))
+            {
+                continue;
+            }
+            int index = mapping.getNodeIndex(osmId);
+            double lat = mapping.getLatitude(index);
+            double lon = mapping.getLongitude(index);
+            BBox around = new BBox(lon - POINT_PRECISION, lon + POINT_PRECISION,
+                    lat - POINT_PRECISION, lat + POINT_PRECISION);
+            nodes.resetQuick();
+            locationIndex.findNodes(around, EdgeFilter.ALL_EDGES, nodes);
+            edges.resetQuick();
+            locationIndex.findEdges(around, EdgeFilter.ALL_EDGES, edges);
+            int pillarEdge = -1;
+            int candidates = nodes.size();
+            for (int i = 0; i < edges.size(); i++)
+            {
+                if (containsPillar(edges.get(i), lat, lon))
+                {
+                    pillarEdge = edges.get(i);
+                    candidates++;
+                }
+            }
+
+            if (candidates > 1)
+            {
+                ambiguousNodes.add(osmId);
+            } else if (nodes.size() == 1)
+            {
+                towerNodes.put(osmId, nodes.get(0));
+            } else if (pillarEdge >= 0)
+            {
+                pillarEdges.put(osmId, pillarEdge);
+            }
+        }
+        if (!ambiguousNodes.isEmpty())
+        {
+            logger.warn("Created new nodes for " + ambiguousNodes.size()
+                    + " OSM nodes as their coordinates are ambiguous, e.g. " + ambiguousNodes.iterator().next());
+        }
+    }
+
+    private boolean containsPillar( int edge, double lat, double lon )
+    {
+        EdgeIterator iter = g.getEdgeProps(edge, -1);
+        if (iter.getFlags() == 0 || isChangedWay(mapping.getWay(edge)))
+        {
+            return false;
+        }
+        PointList pillars = iter.getWayGeometry();
+        for (int i = 0; i < pillars.getSize(); i++)
+        {
+            if (isSamePoint(pillars.getLatitude(i), pillars.getLongitude(i), lat, lon))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Several OSM nodes of the changes can have the same coordinates, all of them are ambiguous.
+     */
+    private void putStoredCoords( TLongLongHashMap coordsToOSMId, long osmId )
+    {
+        int index = mapping.getNodeIndex(osmId);
+        if (index < 0)
+        {
+            return;
+        }
+        double lat = mapping.getLatitude(index);
+        double lon = mapping.getLongitude(index);
+        // coordinates which went through the integer storage more than once can differ slightly,
+        // so the neighbouring keys are checked too
+        for (int latOffset = -1; latOffset <= 1; latOffset++)
+        {
+            for (int lonOffset = -1; lonOffset <= 1; lonOffset++)
+            {
+                long other = coordsToOSMId.get(createCoordsKey(lat, lon, latOffset, lonOffset));
+                if (other != Long.MIN_VALUE && other != osmId)
+                {
+                    ambiguousNodes.add(other);
+                    ambiguousNodes.add(osmId);
+                }
+            }
+        }
+        coordsToOSMId.put(createCoordsKey(lat, lon, 0, 0), osmId);
+    }
+
+    private static long createCoordsKey( double lat, double lon, int latOffset, int lonOffset )
+    {
+        long latKey = Math.round(lat * 1e6) + latOffset;
+        long lonKey = Math.round(lon * 1e6) + lonOffset;
+        return latKey << 32 | lonKey & 0xFFFFFFFFL;
+    }
+
+    private static boolean isSamePoint( double lat1, double lon1, double lat2, double lon2 )
+    {
+        return Math.abs(lat1 - lat2) < POINT_PRECISION && Math.abs(lon1 - lon2) < POINT_PRECISION;
+    }
+
+    private boolean isChangedWay( long osmWayId )
+    {
+        return osmWayId != 0 && (deletedWays.contains(osmWayId) || changedWays.containsKey(osmWayId));
+    }
+
+    private void removeChangedWays()
+    {
+        AllEdgesIterator iter = g.getAllEdges();
+        while (iter.next())
+        {
+            if (iter.getFlags() != 0 && isChangedWay(mapping.getWay(iter.getEdge())))
+            {
+                removeEdge(iter.getEdge());
+            }
+        }
+    }
+
+    private void removeEdge( int edge )
+    {
+        EdgeIterator iter = g.getEdgeProps(edge, -1);
+        iter.setFlags(0);
+        markChanged(iter);
+    }
+
+    private void markChanged( EdgeIterator iter )
+    {
+        changedEdges.add(iter.getEdge());
+        markChanged(iter.getBaseNode());
+        markChanged(iter.getAdjNode());
+        PointList pillars = iter.getWayGeometry();
+        for (int i = 0; i < pillars.getSize(); i++)
+        {
+            extendBounds(pillars.getLatitude(i), pillars.getLongitude(i));
+        }
+    }
+
+    private void markChanged( int node )
+    {
+        changedGraphNodes.add(node);
+        extendBounds(g.getLatitude(node), g.getLongitude(node));
+    }
+
+    private void extendBounds( double lat, double lon )
+    {
+        changedBounds.minLat = Math.min(changedBounds.minLat, lat);
+        changedBounds.maxLat = Math.max(changedBounds.maxLat, lat);
+        changedBounds.minLon = Math.min(changedBounds.minLon, lon);
+        changedBounds.maxLon = Math.max(changedBounds.maxLon, lon);
+    }
+
+    private void moveNodes()
+    {
+        // new nodes can only be stored in increasing order
+        long[] osmIds = new long[changedNodes.size()];
+        int i = 0;
+        for (long osmId : changedNodes.keySet())
+        {
+            osmIds[i++] = osmId;
+        }
+        Arrays.sort(osmIds);
+        for (long osmId : osmIds)
+        {
+            OSMNode node = changedNodes.get(osmId);
+            int index = mapping.getNodeIndex(osmId);
+            if (index >= 0 && !isSamePoint(mapping.getLatitude(index), mapping.getLongitude(index),
+                    node.getLat(), node.getLon()))
+            {
+                moveNode(osmId, mapping.getLatitude(index), mapping.getLongitude(index),
+                        node.getLat(), node.getLon());
+            }
+            if (!mapping.setNode(osmId, node.getLat(), node.getLon()))
+            {
+                logger.warn("Cannot store new node " + osmId + " as its id is smaller than an existing one");
+            }
+        }
+    }
+
+    private void moveNode( long osmId, double oldLat, double oldLon, double lat, double lon )
+    {
+        int node = towerNodes.get(osmId);
+        if (node >= 0)
+        {
+            markChanged(node);
+            g.setNode(node, lat, lon);
+            markChanged(node);
+            EdgeIterator iter = g.getEdges(node);
+            while (iter.next())
+            {
+                if (iter.getFlags() != 0)
+                {
+                    iter.setDistance(calcDistance(iter.getBaseNode(), iter.getWayGeometry(), iter.getAdjNode()));
+                    markChanged(iter);
+                }
+            }
+            return;
+        }
+
+        int edge = pillarEdges.get(osmId);
+        if (edge >= 0)
+        {
+            EdgeIterator iter = g.getEdgeProps(edge, -1);
+            PointList pillars = iter.getWayGeometry();
+            for (int i = 0; i < pillars.getSize(); i++)
+            {
+                if (isSamePoint(pillars.getLatitude(i), pillars.getLongitude(i), oldLat, oldLon))
+                {
+                    markChanged(iter);
+                    pillars.set(i, lat, lon);
+                    iter.setWayGeometry(pillars);
+                    iter.setDistance(calcDistance(iter.getBaseNode(), pillars, iter.getAdjNode()));
+                    markChanged(iter);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void addWay( OSMWay way )
+    {
+        // the same filter as OSMReader.processWay
+        if (way.getNodes().size() < 2 || !way.hasTags())
+        {
+            return;
+        }
+        int includeWay = encodingManager.accept(way);
+        if (includeWay == 0)
+        {
+            return;
+        }
+        long flags = encodingManager.encodeTags(includeWay, way);
+        if (flags == 0)
+        {
+            return;
+        }
+
+        // skip nodes which are neither in the change file nor in the graph
+        TLongList wayNodes = way.getNodes();
+        int size = wayNodes.size();
+        long[] osmIds = new long[size];
+        double[] lats = new double[size];
+        double[] lons = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            long osmId = wayNodes.get(i);
+            OSMNode node = changedNodes.get(osmId);
+            int index = mapping.getNodeIndex(osmId);
+            if (node != null)
+            {
+                lats[count] = node.getLat();
+                lons[count] = node.getLon();
+            } else if (index >= 0)
+            {
+                lats[count] = mapping.getLatitude(index);
+                lons[count] = mapping.getLongitude(index);
+            } else
+            {
+                continue;
+            }
+            osmIds[count] = osmId;
+            count++;
+        }
+
+        String name = enableInstructions ? OSMReader.getWayName(way) : "";
+        PointList pillars = new PointList();
+        int fromNode = -1;
+        for (int i = 0; i < count; i++)
+        {
+            long osmId = osmIds[i];
+            boolean tower = i == 0 || i == count - 1 || towerNodes.containsKey(osmId)
+                    || pillarEdges.containsKey(osmId) || nodeUses.get(osmId) > 1;
+            if (!tower)
+            {
+                pillars.add(lats[i], lons[i]);
+                continue;
+            }
+
+            int node = getOrCreateTowerNode(osmId, lats[i], lons[i]);
+            if (fromNode >= 0)
+            {
+                EdgeIterator iter = addEdge(fromNode, node, pillars, flags, true);
+                iter.setName(name);
+                mapping.setWay(iter.getEdge(), way.getId());
+                pillars = new PointList();
+            }
+            fromNode = node;
+        }
+    }
+
+    private int getOrCreateTowerNode( long osmId, double lat, double lon )
+    {
+        int node = towerNodes.get(osmId);
+        if (node >= 0)
+        {
+            return node;
+        }
+        node = g.getNodes();
+        g.setNode(node, lat, lon);
+        towerNodes.put(osmId, node);
+        int edge = pillarEdges.remove(osmId);
+        if (edge >= 0)
+        {
+            splitEdge(edge, node);
+        }
+        return node;
+    }
+
+    /**
+     * Splits the edge at the pillar node with the coordinates of the specified tower node.
+     */
+    private void splitEdge( int edge, int node )
+    {
+        EdgeIterator iter = g.getEdgeProps(edge, -1);
+        PointList pillars = iter.getWayGeometry();
+        double lat = g.getLatitude(node);
+        double lon = g.getLongitude(node);
+        int splitIndex = -1;
+        for (int i = 0; i < pillars.getSize(); i++)
+        {
+            if (isSamePoint(pillars.getLatitude(i), pillars.getLongitude(i), lat, lon))
+            {
+                splitIndex = i;
+                break;
+            }
+        }
+        if (splitIndex < 0)
+        {
+            return;
+        }
+
+        PointList firstPillars = new PointList(splitIndex);
+        PointList secondPillars = new PointList(pillars.getSize() - splitIndex - 1);
+        for (int i = 0; i < pillars.getSize(); i++)
+        {
+            if (i < splitIndex)
+            {
+                firstPillars.add(pillars.getLatitude(i), pillars.getLongitude(i));
+            } else if (i > splitIndex)
+            {
+                secondPillars.add(pillars.getLatitude(i), pillars.getLongitude(i));
+            }
+        }
+
+        long flags = iter.getFlags();
+        String name = iter.getName();
+        long osmWayId = mapping.getWay(edge);
+        removeEdge(edge);
+        EdgeIterator first = addEdge(iter.getBaseNode(), node, firstPillars, flags, false);
+        EdgeIterator second = addEdge(node, iter.getAdjNode(), secondPillars, flags, false);
+        first.setName(name);
+        second.setName(name);
+        mapping.setWay(first.getEdge(), osmWayId);
+        mapping.setWay(second.getEdge(), osmWayId);
+
+        // the other pillar nodes of the removed edge are now part of one of the new edges
+        TLongIntIterator pillarIter = pillarEdges.iterator();
+        while (pillarIter.hasNext())
+        {
+            pillarIter.advance();
+            if (pillarIter.value() != edge)
+            {
+                continue;
+            }
+            int index = mapping.getNodeIndex(pillarIter.key());
+            boolean inFirst = false;
+            for (int i = 0; i < firstPillars.getSize(); i++)
+            {
+                if (isSamePoint(firstPillars.getLatitude(i), firstPillars.getLongitude(i),
+                        mapping.getLatitude(index), mapping.getLongitude(index)))
+                {
+                    inFirst = true;
+                    break;
+                }
+            }
+            pillarIter.setValue(inFirst ? first.getEdge() : second.getEdge());
+        }
+    }
+
+    private EdgeIterator addEdge( int fromNode, int toNode, PointList pillars, long flags, boolean simplify )
+    {
+        double distance = calcDistance(fromNode, pillars, toNode);
+        if (distance == 0)
+        {
+            // like in OSMReaderHelper.addEdge
+            distance = 0.0001;
+        }
+        EdgeIterator iter = g.edge(fromNode, toNode, distance, flags);
+        if (!pillars.isEmpty())
+        {
+            if (simplify)
+            {
+                dpAlgo.simplify(pillars);
+            }
+            iter.setWayGeometry(pillars);
+        }
+        markChanged(iter);
+        return iter;
+    }
+
+    private double calcDistance( int fromNode, PointList pillars, int toNode )
+    {
+        double prevLat = g.getLatitude(fromNode);
+        double prevLon = g.getLongitude(fromNode);
+        double distance = 0;
+        for (int i = 0; i < pillars.getSize(); i++)
+        {
+            distance += distCalc.calcDist(prevLat, prevLon, pillars.getLatitude(i), pillars.getLongitude(i));
+            prevLat = pillars.getLatitude(i);
+            prevLon = pillars.getLongitude(i);
+        }
+        return distance + distCalc.calcDist(prevLat, prevLon, g.getLatitude(toNode), g.getLongitude(toNode));
+    }
+}
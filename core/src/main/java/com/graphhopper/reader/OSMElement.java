@@ -143,6 +143,10 @@ public abstract class OSMElement
         if (tags == null)
         {
             tags = new HashMap<String, String>();
+        } else if (!(tags instanceof HashMap))
+        {
+            // e.g. the read only tags of the PBF reader
+            tags = new HashMap<String, String>(tags);
         }
 
         tags.put(name, value);
@@ -241,6 +245,10 @@ public abstract class OSMElement
         {
             return;
         }
+        if (!(tags instanceof HashMap))
+        {
+            tags = new HashMap<String, String>(tags);
+        }
 
         tags.remove(name);
     }
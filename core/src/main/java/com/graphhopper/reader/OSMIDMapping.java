@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.coll.OSMIDMap;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * Stores which OSM nodes and ways a graph was created from, so that OSM change files can be
+ * applied later. For every OSM node used by a way it stores the coordinates and for every edge the
+ * id of its OSM way. The graph nodes are not referenced directly as their ids change when removing
+ * subnetworks, instead they are found via their coordinates.
+ * <p/>
+ * The OSM node ids have to be added in increasing order which is the case for the usual OSM
+ * files.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMIDMapping
+{
+    private final OSMIDMap nodeIndex;
+    private final DataAccess nodeCoords;
+    private final DataAccess edgeWays;
+    private int nodes;
+
+    public OSMIDMapping( Directory dir )
+    {
+        nodeIndex = new OSMIDMap(dir, "osmNodes", -1);
+        nodeCoords = dir.find("osmNodeCoords");
+        edgeWays = dir.find("osmEdgeWays");
+    }
+
+    public OSMIDMapping create( long expectedNodes )
+    {
+        long bytes = Math.max(expectedNodes, 100) * 8;
+        nodeIndex.create(bytes);
+        nodeCoords.create(bytes);
+        edgeWays.create(bytes);
+        return this;
+    }
+
+    public boolean loadExisting()
+    {
+        if (!nodeIndex.loadExisting() || !nodeCoords.loadExisting() || !edgeWays.loadExisting())
+        {
+            return false;
+        }
+        nodes = (int) nodeIndex.getSize();
+        return true;
+    }
+
+    public void flush()
+    {
+        nodeIndex.flush();
+        nodeCoords.flush();
+        edgeWays.flush();
+    }
+
+    public void close()
+    {
+        nodeIndex.close();
+        nodeCoords.close();
+        edgeWays.close();
+    }
+
+    public long getCapacity()
+    {
+        return nodeIndex.getCapacity() + nodeCoords.getCapacity() + edgeWays.getCapacity();
+    }
+
+    /**
+     * Stores or updates the coordinates of the specified OSM node.
+     * <p/>
+     * @return false if the node is new but its id is not bigger than the ids of all existing nodes
+     */
+    public boolean setNode( long osmNodeId, double lat, double lon )
+    {
+        int index = nodeIndex.get(osmNodeId);
+        if (index < 0)
+        {
+            if (nodes > 0 && osmNodeId <= nodeIndex.getLastKey())
+            {
+                return false;
+            }
+            index = nodes++;
+            nodeIndex.put(osmNodeId, index);
+        }
+        long pointer = (long) index * 8;
+        nodeCoords.ensureCapacity(pointer + 8);
+        nodeCoords.setInt(pointer, Helper.degreeToInt(lat));
+        nodeCoords.setInt(pointer + 4, Helper.degreeToInt(lon));
+        return true;
+    }
+
+    /**
+     * @return the internal index of the OSM node or -1 if it is unknown
+     */
+    public int getNodeIndex( long osmNodeId )
+    {
+        return nodeIndex.get(osmNodeId);
+    }
+
+    public double getLatitude( int nodeIndex )
+    {
+        return Helper.intToDegree(nodeCoords.getInt((long) nodeIndex * 8));
+    }
+
+    public double getLongitude( int nodeIndex )
+    {
+        return Helper.intToDegree(nodeCoords.getInt((long) nodeIndex * 8 + 4));
+    }
+
+    public void setWay( int edge, long osmWayId )
+    {
+        long pointer = (long) edge * 8;
+        edgeWays.ensureCapacity(pointer + 8);
+        edgeWays.setInt(pointer, (int) (osmWayId >>> 32));
+        edgeWays.setInt(pointer + 4, (int) osmWayId);
+    }
+
+    /**
+     * @return the id of the OSM way the specified edge was created from or 0 if unknown
+     */
+    public long getWay( int edge )
+    {
+        long pointer = (long) edge * 8;
+        if (pointer + 8 > edgeWays.getCapacity())
+        {
+            return 0;
+        }
+        return (long) edgeWays.getInt(pointer) << 32 | edgeWays.getInt(pointer + 4) & 0xFFFFFFFFL;
+    }
+}
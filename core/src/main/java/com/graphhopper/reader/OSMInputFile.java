@@ -19,6 +19,9 @@ package com.graphhopper.reader;
 
 import com.graphhopper.reader.pbf.Sink;
 import com.graphhopper.reader.pbf.PbfReader;
+import com.graphhopper.util.ParallelBZip2InputStream;
+import com.graphhopper.util.ReadAheadInputStream;
+import com.graphhopper.util.shapes.Shape;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -40,26 +43,34 @@ import java.util.zip.ZipInputStream;
 public class OSMInputFile implements Sink, Closeable
 {
     private boolean eof;
+    private final File file;
     private InputStream bis;
     // for xml parsing
     private XMLStreamReader parser;
     // for pbf parsing
     private boolean binary = false;
+    // for pbf and parallel xml parsing
+    private boolean queued = false;
     private final BlockingQueue<OSMElement> itemQueue;
     private boolean hasIncomingData;
     private int workerThreads = -1;
+    private Shape clip;
 
     public OSMInputFile( File file ) throws IOException
     {
-        bis = decode(file);
+        this.file = file;
         itemQueue = new LinkedBlockingQueue<OSMElement>(50000);
     }
 
-    public OSMInputFile open() throws XMLStreamException
+    public OSMInputFile open() throws XMLStreamException, IOException
     {
+        bis = decode(file);
         if (binary)
         {
             openPBFReader(bis);
+        } else if (workerThreads > 1)
+        {
+            openParallelXMLReader(bis);
         } else
         {
             openXMLStream(bis);
@@ -68,7 +79,9 @@ public class OSMInputFile implements Sink, Closeable
     }
 
     /**
-     * Currently on for pbf format. Default is number of cores.
+     * The number of threads to decode the pbf format, default is 2. XML is only parsed in parallel
+     * if more than one thread is specified. Then also bzip2 is decompressed with this number of
+     * threads and gzip on a separate thread.
      */
     public OSMInputFile setWorkerThreads( int num )
     {
@@ -104,6 +117,10 @@ public class OSMInputFile implements Sink, Closeable
         if (header[0] == 31 && header[1] == -117)
         {
             ips.reset();
+            if (workerThreads > 1)
+            {
+                return new ReadAheadInputStream(new GZIPInputStream(ips, 50000));
+            }
             return new GZIPInputStream(ips, 50000);
         } else if (header[0] == 0 && header[1] == 0 && header[2] == 0
                 && header[3] == 13 && header[4] == 10 && header[5] == 9)
@@ -122,6 +139,10 @@ public class OSMInputFile implements Sink, Closeable
         {
             ips.reset();
             return ips;
+        } else if ((name.endsWith(".bz2") || name.endsWith(".bzip2")) && workerThreads > 1)
+        {
+            ips.reset();
+            return new ParallelBZip2InputStream(ips, workerThreads);
         } else if (name.endsWith(".bz2") || name.endsWith(".bzip2"))
         {
             String clName = "org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream";
@@ -162,8 +183,8 @@ public class OSMInputFile implements Sink, Closeable
             throw new IllegalStateException("EOF reached");
 
         OSMElement item;
-        if (binary)
-            item = getNextPBF();
+        if (queued)
+            item = getNextQueued();
         else
             item = getNextXML();
 
@@ -174,9 +195,50 @@ public class OSMInputFile implements Sink, Closeable
         return null;
     }
 
+    /**
+     * Skips all nodes outside of the specified shape. For PBF files the nodes are already skipped
+     * on the decoding threads. Ways and relations are not affected.
+     */
+    public OSMInputFile setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
     private OSMElement getNextXML() throws XMLStreamException
     {
+        OSMElement item;
+        do
+        {
+            item = readXMLElement(parser);
+        } while (isClipped(item, clip));
 
+        if (item == null)
+        {
+            parser.close();
+        }
+        return item;
+    }
+
+    /**
+     * @return true if the item is a node outside of the specified clip
+     */
+    static boolean isClipped( OSMElement item, Shape clip )
+    {
+        if (clip == null || item == null || !item.isType(OSMElement.NODE))
+            return false;
+
+        OSMNode node = (OSMNode) item;
+        return !clip.contains(node.getLat(), node.getLon());
+    }
+
+    /**
+     * Reads the next node, way or relation from the specified parser.
+     * <p/>
+     * @return null if the end of the document is reached
+     */
+    static OSMElement readXMLElement( XMLStreamReader parser ) throws XMLStreamException
+    {
         int event = parser.next();
         while (event != XMLStreamConstants.END_DOCUMENT)
         {
@@ -202,7 +264,6 @@ public class OSMInputFile implements Sink, Closeable
             }
             event = parser.next();
         }
-        parser.close();
         return null;
     }
 
@@ -216,7 +277,7 @@ public class OSMInputFile implements Sink, Closeable
     {
         try
         {
-            if (!binary)
+            if (parser != null)
                 parser.close();
         } catch (XMLStreamException ex)
         {
@@ -224,23 +285,34 @@ public class OSMInputFile implements Sink, Closeable
         } finally
         {
             eof = true;
-            bis.close();
-            // if exception happend on OSMInputFile-thread we need to shutdown the pbf handling
-            if (pbfReaderThread != null && pbfReaderThread.isAlive())
-                pbfReaderThread.interrupt();
+            if (bis != null)
+                bis.close();
+            // if exception happend on OSMInputFile-thread we need to shutdown the pbf or xml handling
+            if (readerThread != null && readerThread.isAlive())
+                readerThread.interrupt();
         }
     }
-    Thread pbfReaderThread;
+    Thread readerThread;
 
     private void openPBFReader( InputStream stream )
     {
         hasIncomingData = true;
+        queued = true;
         if (workerThreads <= 0)
             workerThreads = 2;
 
-        PbfReader reader = new PbfReader(stream, this, workerThreads);
-        pbfReaderThread = new Thread(reader, "PBF Reader");
-        pbfReaderThread.start();
+        PbfReader reader = new PbfReader(stream, this, workerThreads).setClip(clip);
+        readerThread = new Thread(reader, "PBF Reader");
+        readerThread.start();
+    }
+
+    private void openParallelXMLReader( InputStream stream )
+    {
+        hasIncomingData = true;
+        queued = true;
+        OSMXMLReader reader = new OSMXMLReader(stream, this, workerThreads).setClip(clip);
+        readerThread = new Thread(reader, "XML Reader");
+        readerThread.start();
     }
 
     @Override
@@ -265,7 +337,7 @@ public class OSMInputFile implements Sink, Closeable
         hasIncomingData = false;
     }
 
-    private OSMElement getNextPBF()
+    private OSMElement getNextQueued()
     {
         OSMElement next = null;
         while (next == null)
@@ -25,11 +25,13 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.Helper;
 import static com.graphhopper.util.Helper.*;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.Shape;
 import java.io.*;
 import javax.xml.stream.XMLStreamException;
 
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.set.hash.TLongHashSet;
 import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
@@ -52,6 +54,13 @@ public class OSMReader
     private int workerThreads = -1;
     private LongIntMap osmNodeIdToBarrierMap;
     private boolean enableInstructions = true;
+    private boolean storeOSMIds = false;
+    private OSMIDMapping osmIdMapping;
+    private Shape clip;
+    // statistics of the first pass to size the storage
+    private long preparedWays;
+    private long preparedWayNodes;
+    private long preparedNameBytes;
 
     public OSMReader( GraphStorage storage, long expectedCap )
     {
@@ -75,6 +84,10 @@ public class OSMReader
 
         StopWatch sw1 = new StopWatch().start();
         preProcess(osmFile);
+        if (storeOSMIds)
+        {
+            osmIdMapping = new OSMIDMapping(graphStorage.getDirectory()).create(helper.getFoundNodes());
+        }
 
         sw1.stop();
         StopWatch sw2 = new StopWatch().start();
@@ -87,31 +100,56 @@ public class OSMReader
 
     /**
      * Preprocessing of OSM file to select nodes which are used for highways. This allows a more
-     * compact graph data structure.
+     * compact graph data structure. If a clip is specified only ways with at least one node inside
+     * are selected, which requires that the nodes come before the ways like in every OSM extract.
      */
     public void preProcess( File osmFile )
     {
         OSMInputFile in = null;
         try
         {
-            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).setClip(clip).open();
 
             long tmpCounter = 1;
+            long clippedWays = 0;
+            String lastName = null;
+            // nodes outside of the clip are already skipped while reading
+            TLongHashSet insideNodes = clip == null ? null : new TLongHashSet();
 
             OSMElement item;
             while ((item = in.getNext()) != null)
             {
-                if (item.isType(OSMElement.WAY))
+                if (insideNodes != null && item.isType(OSMElement.NODE))
+                {
+                    insideNodes.add(item.getId());
+                } else if (item.isType(OSMElement.WAY))
                 {
                     final OSMWay way = (OSMWay) item;
                     boolean valid = filterWay(way);
+                    if (valid && insideNodes != null && !hasNodeInside(way, insideNodes))
+                    {
+                        clippedWays++;
+                        valid = false;
+                    }
                     if (valid)
                     {
                         TLongList wayNodes = way.getNodes();
                         int s = wayNodes.size();
                         for (int index = 0; index < s; index++)
                         {
-                            helper.prepareHighwayNode(wayNodes.get(index));
+                            helper.prepareHighwayNode(wayNodes.get(index), index == 0 || index == s - 1);
+                        }
+                        preparedWays++;
+                        preparedWayNodes += s;
+                        if (enableInstructions)
+                        {
+                            // the name index skips a name equal to the previous one
+                            String name = getWayName(way);
+                            if (!Helper.isEmpty(name) && !name.equals(lastName))
+                            {
+                                preparedNameBytes += 1 + name.getBytes("UTF-8").length;
+                            }
+                            lastName = name;
                         }
 
                         if (++tmpCounter % 500000 == 0)
@@ -123,6 +161,12 @@ public class OSMReader
                     }
                 }
             }
+            if (insideNodes != null)
+            {
+                logger.info("nodes inside of the clip: " + nf(insideNodes.size()) + ", skipped ways: " + nf(clippedWays));
+            }
+            // the second pass only updates existing entries
+            helper.getNodeMap().optimize();
         } catch (Exception ex)
         {
             throw new RuntimeException("Problem while parsing file", ex);
@@ -132,6 +176,20 @@ public class OSMReader
         }
     }
 
+    private static boolean hasNodeInside( OSMWay way, TLongHashSet insideNodes )
+    {
+        TLongList wayNodes = way.getNodes();
+        int s = wayNodes.size();
+        for (int index = 0; index < s; index++)
+        {
+            if (insideNodes.contains(wayNodes.get(index)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Filter ways but do not analyze properties wayNodes will be filled with participating node
      * ids.
@@ -160,10 +218,19 @@ public class OSMReader
      */
     private void writeOsm2Graph( File osmFile )
     {
-
-        int tmp = (int) Math.max(helper.getFoundNodes() / 50, 100);
-        logger.info("creating graph. Found nodes (pillar+tower):" + nf(helper.getFoundNodes()) + ", " + Helper.getMemInfo());
-        graphStorage.create(tmp);
+        // every way has one edge more than inner tower nodes. Barriers and missing nodes are ignored
+        long expectedTowers = helper.getExpectedTowerNodes();
+        long expectedPillars = helper.getExpectedPillarNodes();
+        long expectedEdges = Math.max(0, preparedWayNodes - expectedPillars - preparedWays);
+        // per edge the length and per pillar node latitude and longitude as integers
+        long expectedGeometry = 4 * (expectedEdges + 2 * expectedPillars);
+        logger.info("creating graph. Found nodes (pillar+tower):" + nf(helper.getFoundNodes())
+                + ", expected tower nodes:" + nf(expectedTowers) + ", edges:" + nf(expectedEdges)
+                + ", geometry:" + nf(expectedGeometry) + ", names:" + nf(preparedNameBytes) + ", " + Helper.getMemInfo());
+        graphStorage.create(100);
+        graphStorage.ensureCapacity((int) expectedTowers, (int) expectedEdges, expectedGeometry, preparedNameBytes);
+        helper.ensurePillarCapacity();
+        long reservedBytes = graphStorage.getCapacity();
         long wayStart = -1;
         long counter = 1;
         OSMInputFile in = null;
@@ -213,6 +280,9 @@ public class OSMReader
         {
             throw new IllegalStateException("osm must not be empty. read " + counter + " lines and " + locations + " locations");
         }
+        logger.info("estimation error of nodes:" + nf(graphStorage.getNodes() - expectedTowers)
+                + ", edges:" + nf(graphStorage.getAllEdges().getMaxId() - expectedEdges)
+                + ", storage growth after reservation:" + nf(graphStorage.getCapacity() - reservedBytes));
     }
 
     /**
@@ -236,7 +306,7 @@ public class OSMReader
             return;
         }
 
-        int flags = encodingManager.encodeTags(includeWay, way);
+        long flags = encodingManager.encodeTags(includeWay, way);
         if (flags == 0)
         {
             return;
@@ -250,9 +320,10 @@ public class OSMReader
         for (int i = 0; i < size; i++)
         {
             final long nodeId = osmNodeIds.get(i);
-            int barrierFlags = osmNodeIdToBarrierMap.get(nodeId);
+            int barrierEncoders = osmNodeIdToBarrierMap.get(nodeId);
+            long barrierFlags = barrierEncoders > 0 ? encodingManager.getBarrierFlags(barrierEncoders) : 0;
             // barrier was spotted and way is otherwise passable for that mode of travel
-            if (barrierFlags > 0 && (barrierFlags & flags) > 0)
+            if ((barrierFlags & flags) != 0)
             {
                 // remove barrier to avoid duplicates
                 osmNodeIdToBarrierMap.put(nodeId, 0);
@@ -302,29 +373,41 @@ public class OSMReader
             // no barriers - simply add the whole way
             createdEdges.addAll(helper.addOSMWay(way.getNodes(), flags));
         }
+        if (osmIdMapping != null)
+        {
+            for (EdgeIterator iter : createdEdges)
+            {
+                osmIdMapping.setWay(iter.getEdge(), way.getId());
+            }
+        }
         if (enableInstructions)
         {
             // String wayInfo = encodingManager.getWayInfo(way);
-            // http://wiki.openstreetmap.org/wiki/Key:name
-            String name = fixWayName(way.getTag("name"));
-            // http://wiki.openstreetmap.org/wiki/Key:ref
-            String refName = fixWayName(way.getTag("ref"));
-            if (!Helper.isEmpty(refName))
+            String name = getWayName(way);
+            for (EdgeIterator iter : createdEdges)
             {
-                if (Helper.isEmpty(name))
-                {
-                    name = refName;
-                } else
-                {
-                    name += ", " + refName;
-                }
+                iter.setName(name);
             }
+        }
+    }
 
-            for (EdgeIterator iter : createdEdges)
+    static String getWayName( OSMWay way )
+    {
+        // http://wiki.openstreetmap.org/wiki/Key:name
+        String name = fixWayName(way.getTag("name"));
+        // http://wiki.openstreetmap.org/wiki/Key:ref
+        String refName = fixWayName(way.getTag("ref"));
+        if (!Helper.isEmpty(refName))
+        {
+            if (Helper.isEmpty(name))
             {
-                iter.setName(name);
+                name = refName;
+            } else
+            {
+                name += ", " + refName;
             }
         }
+        return name;
     }
 
     static String fixWayName( String str )
@@ -341,15 +424,20 @@ public class OSMReader
 
         if (isInBounds(node))
         {
-            helper.addNode(node);
+            if (helper.addNode(node) && osmIdMapping != null
+                    && !osmIdMapping.setNode(node.getId(), node.getLat(), node.getLon()))
+            {
+                throw new IllegalStateException("Storing the OSM ids requires the nodes to be sorted by id. "
+                        + "Node " + node.getId() + " came after a node with a bigger id");
+            }
 
             // analyze node tags for barriers
             if (node.hasTags())
             {
-                final int barrierFlags = encodingManager.analyzeNode(node);
-                if (barrierFlags != 0)
+                final int barrierEncoders = encodingManager.analyzeNode(node);
+                if (barrierEncoders != 0)
                 {
-                    osmNodeIdToBarrierMap.put(node.getId(), barrierFlags);
+                    osmNodeIdToBarrierMap.put(node.getId(), barrierEncoders);
                 }
             }
 
@@ -398,4 +486,44 @@ public class OSMReader
         this.enableInstructions = enableInstructions;
         return this;
     }
+
+    /**
+     * Stores the temporary map of OSM node ids in DataAccess objects of the graph directory instead
+     * of the heap. Use this for big imports like the planet.
+     */
+    public OSMReader setCompactNodeMap( boolean compactNodeMap )
+    {
+        helper.setCompactNodeMap(compactNodeMap);
+        return this;
+    }
+
+    /**
+     * Imports only the ways with at least one node inside of the specified shape. The ways are not
+     * cut, so nodes outside of the shape are still imported if they belong to such a way. Ways
+     * outside are already skipped in the first pass, so the graph storage is sized for the clipped
+     * region only.
+     */
+    public OSMReader setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
+    /**
+     * Stores the ids of the OSM nodes and ways in the graph directory which makes it possible to
+     * apply OSM change files later. See OSMChangeReader.
+     */
+    public OSMReader setStoreOSMIds( boolean storeOSMIds )
+    {
+        this.storeOSMIds = storeOSMIds;
+        return this;
+    }
+
+    /**
+     * @return the stored OSM ids or null if setStoreOSMIds was not enabled
+     */
+    public OSMIDMapping getOSMIDMapping()
+    {
+        return osmIdMapping;
+    }
 }
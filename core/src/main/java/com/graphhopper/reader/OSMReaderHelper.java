@@ -18,6 +18,7 @@
 package com.graphhopper.reader;
 
 import com.graphhopper.coll.GHLongIntBTree;
+import com.graphhopper.coll.OSMIDDeltaMap;
 import com.graphhopper.coll.LongIntMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
@@ -42,6 +43,8 @@ public class OSMReaderHelper
     protected static final int EMPTY = -1;
     // pillar node is >= 3
     protected static final int PILLAR_NODE = 1;
+    // pillar node at the start or end of a way which will be converted into a tower node
+    protected static final int END_PILLAR_NODE = 2;
     // tower node is <= -3
     protected static final int TOWER_NODE = -2;
     protected final Logger logger = LoggerFactory.getLogger(getClass());
@@ -58,6 +61,8 @@ public class OSMReaderHelper
     //        nodeOsmIdToIndexMap = new BigLongIntMap(expectedNodes, EMPTY);
     // smaller memory overhead for bigger data sets because of avoiding a "rehash"
     // remember how many times a node was used to identify tower nodes
+    //
+    // for planet sized imports the heap can be avoided via sorted and delta encoded runs in DataAccess: new OSMIDDeltaMap
     private LongIntMap osmNodeIdToIndexMap;
     private final TLongList barrierNodeIDs = new TLongArrayList();
     protected DataAccess pillarLats;
@@ -69,6 +74,10 @@ public class OSMReaderHelper
     // negative but increasing to avoid clash with custom created OSM files
     private long newUniqueOSMId = -Long.MAX_VALUE;
     private boolean exitOnlyPillarNodeException = true;
+    // statistics of the first pass to size the storage
+    private long preparedPillarNodes;
+    private long preparedEndPillarNodes;
+    private long preparedTowerNodes;
 
     public OSMReaderHelper( GraphStorage g, long expectedCap )
     {
@@ -83,6 +92,22 @@ public class OSMReaderHelper
         pillarLons.create(Math.max(expectedCap, 100));
     }
 
+    /**
+     * Stores the mapping of OSM node ids in the graph directory instead of the heap. This makes
+     * imports possible which would otherwise need a lot of RAM. Call this before reading.
+     */
+    public OSMReaderHelper setCompactNodeMap( boolean compactNodeMap )
+    {
+        if (compactNodeMap)
+        {
+            osmNodeIdToIndexMap = new OSMIDDeltaMap(dir, "tmpNodeMap", EMPTY);
+        } else
+        {
+            osmNodeIdToIndexMap = new GHLongIntBTree(200);
+        }
+        return this;
+    }
+
     public OSMReaderHelper setWayPointMaxDistance( double maxDist )
     {
         dpAlgo.setMaxDistance(maxDist);
@@ -107,7 +132,7 @@ public class OSMReaderHelper
         if (nodeType == TOWER_NODE)
         {
             addTowerNode(node.getId(), lat, lon);
-        } else if (nodeType == PILLAR_NODE)
+        } else if (nodeType == PILLAR_NODE || nodeType == END_PILLAR_NODE)
         {
             int tmp = pillarId * 4;
             pillarLats.ensureCapacity(tmp + 4);
@@ -126,16 +151,31 @@ public class OSMReaderHelper
     }
 
     public void prepareHighwayNode( long osmId )
+    {
+        prepareHighwayNode(osmId, false);
+    }
+
+    /**
+     * @param endStanding true if the node is the first or last node of the way
+     */
+    public void prepareHighwayNode( long osmId, boolean endStanding )
     {
         int tmpIndex = osmNodeIdToIndexMap.get(osmId);
         if (tmpIndex == OSMReaderHelper.EMPTY)
         {
             // osmId is used exactly once
-            osmNodeIdToIndexMap.put(osmId, OSMReaderHelper.PILLAR_NODE);
+            osmNodeIdToIndexMap.put(osmId, endStanding ? END_PILLAR_NODE : PILLAR_NODE);
+            preparedPillarNodes++;
+            if (endStanding)
+                preparedEndPillarNodes++;
         } else if (tmpIndex > OSMReaderHelper.EMPTY)
         {
             // mark node as tower node as it occured at least twice times
             osmNodeIdToIndexMap.put(osmId, OSMReaderHelper.TOWER_NODE);
+            preparedPillarNodes--;
+            if (tmpIndex == END_PILLAR_NODE)
+                preparedEndPillarNodes--;
+            preparedTowerNodes++;
         } else
         {
             // tmpIndex is already negative (already tower node)
@@ -156,10 +196,36 @@ public class OSMReaderHelper
         return osmNodeIdToIndexMap.getSize();
     }
 
+    /**
+     * @return the number of tower nodes after the first pass, including pillar nodes at the start
+     * or end of a way as they are converted into tower nodes.
+     */
+    public long getExpectedTowerNodes()
+    {
+        return preparedTowerNodes + preparedEndPillarNodes;
+    }
+
+    /**
+     * @return the number of pillar nodes after the first pass which stay pillar nodes
+     */
+    public long getExpectedPillarNodes()
+    {
+        return preparedPillarNodes - preparedEndPillarNodes;
+    }
+
+    /**
+     * Reserves the temporary storage of all pillar nodes found in the first pass in one step.
+     */
+    void ensurePillarCapacity()
+    {
+        pillarLats.ensureCapacity(preparedPillarNodes * 4);
+        pillarLons.ensureCapacity(preparedPillarNodes * 4);
+    }
+
     /**
      * This method creates from an OSM way (via the osm ids) one or more edges in the graph.
      */
-    public Collection<EdgeIterator> addOSMWay( TLongList osmNodeIds, int flags )
+    public Collection<EdgeIterator> addOSMWay( TLongList osmNodeIds, long flags )
     {
         PointList pointList = new PointList(osmNodeIds.size());
         List<EdgeIterator> newEdges = new ArrayList<EdgeIterator>(5);
@@ -181,7 +247,7 @@ public class OSMReaderHelper
                 {
                     continue;
                 }
-                if (tmpNode == PILLAR_NODE)
+                if (tmpNode == PILLAR_NODE || tmpNode == END_PILLAR_NODE)
                 {
                     // In some cases no node information is saved for the specified osmId.
                     // ie. a way references a <node> which does not exist in the current file.
@@ -245,7 +311,7 @@ public class OSMReaderHelper
         return newEdges;
     }
 
-    EdgeIterator addEdge( int fromIndex, int toIndex, PointList pointList, int flags )
+    EdgeIterator addEdge( int fromIndex, int toIndex, PointList pointList, long flags )
     {
         if (fromIndex < 0 || toIndex < 0)
         {
@@ -339,6 +405,10 @@ public class OSMReaderHelper
         dir.remove(pillarLons);
         pillarLons = null;
         pillarLats = null;
+        if (osmNodeIdToIndexMap instanceof OSMIDDeltaMap)
+        {
+            ((OSMIDDeltaMap) osmNodeIdToIndexMap).remove();
+        }
         osmNodeIdToIndexMap = null;
     }
 
@@ -389,7 +459,7 @@ public class OSMReaderHelper
     /**
      * Add a zero length edge with reduced routing options to the graph.
      */
-    public Collection<EdgeIterator> addBarrierEdge( long fromId, long toId, int flags, int barrierFlags )
+    public Collection<EdgeIterator> addBarrierEdge( long fromId, long toId, long flags, long barrierFlags )
     {
         // clear barred directions from routing flags
         flags &= ~barrierFlags;
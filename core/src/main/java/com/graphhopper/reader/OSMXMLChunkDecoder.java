@@ -0,0 +1,103 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.reader.pbf.PbfBlobDecoderListener;
+import com.graphhopper.util.shapes.Shape;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses a chunk of top level OSM XML elements created from OSMXMLSplitter. Similar to
+ * PbfBlobDecoder this is executed on a worker thread.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMXMLChunkDecoder implements Runnable
+{
+    private static final byte[] START = "<osm>".getBytes();
+    private static final byte[] END = "</osm>".getBytes();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final XMLInputFactory factory;
+    private final byte[] chunk;
+    private final PbfBlobDecoderListener listener;
+    private Shape clip;
+
+    public OSMXMLChunkDecoder( XMLInputFactory factory, byte[] chunk, PbfBlobDecoderListener listener )
+    {
+        this.factory = factory;
+        this.chunk = chunk;
+        this.listener = listener;
+    }
+
+    /**
+     * Skips all nodes outside of the specified shape.
+     */
+    public OSMXMLChunkDecoder setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
+    List<OSMElement> decode() throws XMLStreamException
+    {
+        // the chunk contains only the children of the osm element
+        InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.<InputStream>asList(
+                new ByteArrayInputStream(START), new ByteArrayInputStream(chunk), new ByteArrayInputStream(END))));
+        XMLStreamReader parser = factory.createXMLStreamReader(in, "UTF-8");
+        try
+        {
+            // skip the osm element
+            parser.next();
+            List<OSMElement> elements = new ArrayList<OSMElement>();
+            OSMElement item;
+            while ((item = OSMInputFile.readXMLElement(parser)) != null)
+            {
+                if (!OSMInputFile.isClipped(item, clip))
+                    elements.add(item);
+            }
+            return elements;
+        } finally
+        {
+            parser.close();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            listener.complete(decode());
+        } catch (Exception ex)
+        {
+            logger.error("Unable to parse OSM XML chunk", ex);
+            listener.error();
+        }
+    }
+}
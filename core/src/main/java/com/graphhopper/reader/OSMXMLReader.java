@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.reader.pbf.PbfBlobDecoderListener;
+import com.graphhopper.reader.pbf.PbfDecoder;
+import com.graphhopper.reader.pbf.PbfRawBlob;
+import com.graphhopper.reader.pbf.Sink;
+import com.graphhopper.util.shapes.Shape;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.stream.XMLInputFactory;
+
+/**
+ * Reads an OSM XML stream with several threads. The stream is split into chunks of top level
+ * elements which are parsed on worker threads. The elements are passed to the sink in the order of
+ * the file, like it is done for PBF in PbfReader.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMXMLReader implements Runnable
+{
+    private final InputStream inputStream;
+    private final Sink sink;
+    private final int workers;
+    private Shape clip;
+
+    public OSMXMLReader( InputStream in, Sink sink, int workers )
+    {
+        this.inputStream = in;
+        this.sink = sink;
+        this.workers = workers;
+    }
+
+    /**
+     * Skips all nodes outside of the specified shape.
+     */
+    public OSMXMLReader setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
+    @Override
+    public void run()
+    {
+        ExecutorService executorService = Executors.newFixedThreadPool(workers);
+        try
+        {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            OSMXMLSplitter splitter = new OSMXMLSplitter(inputStream);
+            PbfDecoder decoder = new PbfDecoder(splitter, executorService, workers + 1, sink)
+            {
+                @Override
+                protected Runnable createBlobDecoder( PbfRawBlob rawBlob, PbfBlobDecoderListener listener )
+                {
+                    return new OSMXMLChunkDecoder(factory, rawBlob.getData(), listener).setClip(getClip());
+                }
+            };
+            decoder.setClip(clip);
+            decoder.run();
+        } catch (Exception e)
+        {
+            throw new RuntimeException("Unable to read OSM XML file.", e);
+        } finally
+        {
+            sink.complete();
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.reader.pbf.PbfRawBlob;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits an OSM XML stream into chunks of complete top level elements like nodes, ways and
+ * relations, which can then be parsed independently. The header including the osm element itself is
+ * skipped. Only the tags are scanned, so this is a lot faster than parsing.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMXMLSplitter implements Iterator<PbfRawBlob>
+{
+    static final String TYPE = "OSMXML";
+    private final InputStream in;
+    private final int chunkSize;
+    private final byte[] buffer = new byte[1 << 16];
+    private int bufferLength;
+    private int bufferPos;
+    private byte[] chunk;
+    private int chunkLength;
+    private int depth;
+    private boolean chunkHasElement;
+    // the character after the '<' of a top level element which belongs to the next chunk
+    private int pendingStart = -1;
+    private boolean finished;
+    private PbfRawBlob nextBlob;
+
+    public OSMXMLSplitter( InputStream in )
+    {
+        this(in, 1 << 20);
+    }
+
+    /**
+     * @param chunkSize the approximate number of bytes of every chunk
+     */
+    public OSMXMLSplitter( InputStream in, int chunkSize )
+    {
+        this.in = in;
+        this.chunkSize = chunkSize;
+        chunk = new byte[chunkSize + 1024];
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (nextBlob == null && !finished)
+        {
+            try
+            {
+                nextBlob = readChunk();
+            } catch (IOException ex)
+            {
+                throw new RuntimeException("Unable to read OSM XML stream", ex);
+            }
+        }
+        return nextBlob != null;
+    }
+
+    @Override
+    public PbfRawBlob next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        PbfRawBlob tmp = nextBlob;
+        nextBlob = null;
+        return tmp;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    private PbfRawBlob readChunk() throws IOException
+    {
+        chunkLength = 0;
+        chunkHasElement = false;
+        if (pendingStart >= 0)
+        {
+            int c = pendingStart;
+            pendingStart = -1;
+            readStartTag(c);
+        }
+
+        while (true)
+        {
+            int b = read();
+            if (b < 0)
+            {
+                finished = true;
+                break;
+            }
+            if (b != '<')
+            {
+                append(b);
+                continue;
+            }
+
+            int c = read();
+            if (c < 0)
+            {
+                finished = true;
+                break;
+            } else if (c == '/')
+            {
+                depth--;
+                if (depth <= 0)
+                {
+                    // the end of the osm element, ignore the rest
+                    finished = true;
+                    break;
+                }
+                append('<');
+                append(c);
+                copyTag();
+            } else if (c == '!' || c == '?')
+            {
+                append('<');
+                append(c);
+                copySpecial(c);
+            } else if (depth == 1 && chunkHasElement && chunkLength >= chunkSize)
+            {
+                pendingStart = c;
+                break;
+            } else
+            {
+                readStartTag(c);
+            }
+        }
+
+        if (!chunkHasElement)
+        {
+            return null;
+        }
+        return new PbfRawBlob(TYPE, Arrays.copyOf(chunk, chunkLength));
+    }
+
+    private void readStartTag( int c ) throws IOException
+    {
+        if (depth == 1)
+        {
+            chunkHasElement = true;
+        }
+        append('<');
+        append(c);
+        if (!copyTag())
+        {
+            depth++;
+            if (depth == 1)
+            {
+                // skip everything up to and including the osm start tag
+                chunkLength = 0;
+            }
+        }
+    }
+
+    /**
+     * Copies the rest of the tag up to and including the closing bracket.
+     * <p/>
+     * @return true if the tag is self closing
+     */
+    private boolean copyTag() throws IOException
+    {
+        int quote = -1;
+        int last = -1;
+        while (true)
+        {
+            int b = read();
+            if (b < 0)
+            {
+                return true;
+            }
+            append(b);
+            if (quote >= 0)
+            {
+                if (b == quote)
+                {
+                    quote = -1;
+                }
+            } else if (b == '"' || b == '\'')
+            {
+                quote = b;
+            } else if (b == '>')
+            {
+                return last == '/';
+            } else if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+            {
+                last = b;
+            }
+        }
+    }
+
+    /**
+     * Copies comments, processing instructions or declarations.
+     */
+    private void copySpecial( int c ) throws IOException
+    {
+        int b = -1;
+        int last = -1;
+        int beforeLast = -1;
+        boolean comment = false;
+        if (c == '!')
+        {
+            b = read();
+            append(b);
+            if (b == '-')
+            {
+                b = read();
+                append(b);
+                comment = b == '-';
+                b = -1;
+            }
+        }
+
+        while (b != '>' || comment && (last != '-' || beforeLast != '-'))
+        {
+            beforeLast = last;
+            last = b;
+            b = read();
+            if (b < 0)
+            {
+                return;
+            }
+            append(b);
+        }
+    }
+
+    private int read() throws IOException
+    {
+        if (bufferPos >= bufferLength)
+        {
+            bufferLength = in.read(buffer);
+            bufferPos = 0;
+            if (bufferLength <= 0)
+            {
+                bufferLength = 0;
+                return -1;
+            }
+        }
+        return buffer[bufferPos++] & 0xFF;
+    }
+
+    private void append( int b )
+    {
+        if (b < 0)
+        {
+            return;
+        }
+        if (chunkLength >= chunk.length)
+        {
+            chunk = Arrays.copyOf(chunk, chunk.length * 2);
+        }
+        chunk[chunkLength++] = (byte) b;
+    }
+}
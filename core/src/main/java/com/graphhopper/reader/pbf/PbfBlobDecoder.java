@@ -6,6 +6,8 @@ import com.graphhopper.reader.OSMElement;
 import com.graphhopper.reader.OSMNode;
 import com.graphhopper.reader.OSMRelation;
 import com.graphhopper.reader.OSMWay;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Shape;
 import org.openstreetmap.osmosis.osmbinary.Fileformat;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
 import gnu.trove.list.TLongList;
@@ -32,6 +34,7 @@ public class PbfBlobDecoder implements Runnable
     private byte[] rawBlob;
     private PbfBlobDecoderListener listener;
     private List<OSMElement> decodedEntities;
+    private Shape clip;
 
     /**
      * Creates a new instance.
@@ -47,6 +50,16 @@ public class PbfBlobDecoder implements Runnable
         this.listener = listener;
     }
 
+    /**
+     * Skips all nodes outside of the specified shape. A block of dense nodes is skipped as a whole
+     * if its bounds do not intersect the bounds of the shape.
+     */
+    public PbfBlobDecoder setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
     private byte[] readBlobContent() throws IOException
     {
         Fileformat.Blob blob = Fileformat.Blob.parseFrom(rawBlob);
@@ -106,6 +119,16 @@ public class PbfBlobDecoder implements Runnable
             throw new RuntimeException("PBF file contains unsupported features " + unsupportedFeatures);
         }
 
+        if (clip != null && header.hasBbox())
+        {
+            Osmformat.HeaderBBox hb = header.getBbox();
+            BBox fileBounds = new BBox(hb.getLeft() * 1e-9, hb.getRight() * 1e-9, hb.getBottom() * 1e-9, hb.getTop() * 1e-9);
+            if (!fileBounds.intersect(clip.getBounds()))
+            {
+                log.warn("The clip " + clip.getBounds() + " is outside of the file bounds " + fileBounds);
+            }
+        }
+
         // Build a new bound object which corresponds to the header.
 /*
          Bound bound;
@@ -136,30 +159,34 @@ public class PbfBlobDecoder implements Runnable
             }
         }
 
-        Iterator<Integer> keyIterator = keys.iterator();
-        Iterator<Integer> valueIterator = values.iterator();
-        if (keyIterator.hasNext())
+        int size = keys.size();
+        if (size == 0)
         {
-            Map<String, String> tags = new HashMap<String, String>();
-            while (keyIterator.hasNext())
-            {
-                String key = fieldDecoder.decodeString(keyIterator.next());
-                String value = fieldDecoder.decodeString(valueIterator.next());
-                tags.put(key, value);
-            }
-            return tags;
+            return null;
+        }
+        // avoid a HashMap per entity and keep the indices into the string table instead
+        int[] indices = new int[size * 2];
+        for (int i = 0; i < size; i++)
+        {
+            indices[2 * i] = keys.get(i);
+            indices[2 * i + 1] = values.get(i);
         }
-        return null;
+        return new PbfTags(fieldDecoder, indices, 0, indices.length);
     }
 
     private void processNodes( List<Osmformat.Node> nodes, PbfFieldDecoder fieldDecoder )
     {
         for (Osmformat.Node node : nodes)
         {
-            Map<String, String> tags = buildTags(node.getKeysList(), node.getValsList(), fieldDecoder);
+            double lat = fieldDecoder.decodeLatitude(node.getLat());
+            double lon = fieldDecoder.decodeLongitude(node.getLon());
+            if (clip != null && !clip.contains(lat, lon))
+            {
+                continue;
+            }
 
-            OSMNode osmNode = new OSMNode(node.getId(), tags, fieldDecoder.decodeLatitude(node
-                    .getLat()), fieldDecoder.decodeLatitude(node.getLon()));
+            Map<String, String> tags = buildTags(node.getKeysList(), node.getValsList(), fieldDecoder);
+            OSMNode osmNode = new OSMNode(node.getId(), tags, lat, lon);
 
             // Add the bound object to the results.
             decodedEntities.add(osmNode);
@@ -182,7 +209,19 @@ public class PbfBlobDecoder implements Runnable
             }
         }
 
-        Iterator<Integer> keysValuesIterator = nodes.getKeysValsList().iterator();
+        if (clip != null && !intersectsClip(latList, lonList))
+        {
+            return;
+        }
+
+        // all tags of the block share one array
+        List<Integer> keysValsList = nodes.getKeysValsList();
+        int[] keysVals = new int[keysValsList.size()];
+        for (int i = 0; i < keysVals.length; i++)
+        {
+            keysVals[i] = keysValsList.get(i);
+        }
+        int keysValsIndex = 0;
 
         /*
          Osmformat.DenseInfo denseInfo;
@@ -234,33 +273,34 @@ public class PbfBlobDecoder implements Runnable
             // Build the tags. The key and value string indexes are sequential
             // in the same PBF array. Each set of tags is delimited by an index
             // with a value of 0.
-            Map<String, String> tags = null;
-            while (keysValuesIterator.hasNext())
+            int tagsStart = keysValsIndex;
+            while (keysValsIndex + 1 < keysVals.length && keysVals[keysValsIndex] != 0)
             {
-                int keyIndex = keysValuesIterator.next();
-                if (keyIndex == 0)
-                {
-                    break;
-                }
-                if (checkData)
-                {
-                    if (!keysValuesIterator.hasNext())
-                    {
-                        throw new RuntimeException(
-                                "The PBF DenseInfo keys/values list contains a key with no corresponding value.");
-                    }
-                }
-                int valueIndex = keysValuesIterator.next();
-
-                if (tags == null)
+                keysValsIndex += 2;
+            }
+            if (checkData)
+            {
+                if (keysValsIndex < keysVals.length && keysVals[keysValsIndex] != 0)
                 {
-                    tags = new HashMap<String, String>();
+                    throw new RuntimeException(
+                            "The PBF DenseInfo keys/values list contains a key with no corresponding value.");
                 }
-
-                tags.put(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
             }
+            Map<String, String> tags = null;
+            if (keysValsIndex > tagsStart)
+            {
+                tags = new PbfTags(fieldDecoder, keysVals, tagsStart, keysValsIndex);
+            }
+            // skip the delimiter
+            keysValsIndex++;
 
-            OSMNode node = new OSMNode(nodeId, tags, ((double) latitude) / 10000000, ((double) longitude) / 10000000);
+            double lat = ((double) latitude) / 10000000;
+            double lon = ((double) longitude) / 10000000;
+            if (clip != null && !clip.contains(lat, lon))
+            {
+                continue;
+            }
+            OSMNode node = new OSMNode(nodeId, tags, lat, lon);
 
             // Add the bound object to the results.
             decodedEntities.add(node);
@@ -359,6 +399,35 @@ public class PbfBlobDecoder implements Runnable
         }
     }
 
+    /**
+     * Decodes only the coordinates of the dense nodes to check if their bounds intersect the clip.
+     */
+    private boolean intersectsClip( List<Long> latList, List<Long> lonList )
+    {
+        if (latList.isEmpty())
+        {
+            return false;
+        }
+
+        long latitude = 0;
+        long longitude = 0;
+        long minLat = Long.MAX_VALUE, maxLat = Long.MIN_VALUE;
+        long minLon = Long.MAX_VALUE, maxLon = Long.MIN_VALUE;
+        for (int i = 0; i < latList.size(); i++)
+        {
+            latitude += latList.get(i);
+            longitude += lonList.get(i);
+            minLat = Math.min(minLat, latitude);
+            maxLat = Math.max(maxLat, latitude);
+            minLon = Math.min(minLon, longitude);
+            maxLon = Math.max(maxLon, longitude);
+        }
+        // not BBox.intersect as the bounds of a single node have no area
+        BBox b = clip.getBounds();
+        return minLat / 1e7 <= b.maxLat && maxLat / 1e7 >= b.minLat
+                && minLon / 1e7 <= b.maxLon && maxLon / 1e7 >= b.minLon;
+    }
+
     private void processOsmPrimitives( byte[] data ) throws InvalidProtocolBufferException
     {
         Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.parseFrom(data);
@@ -2,8 +2,10 @@
 package com.graphhopper.reader.pbf;
 
 import com.graphhopper.reader.OSMElement;
+import com.graphhopper.util.shapes.Shape;
 import java.util.Date;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -20,23 +22,24 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class PbfDecoder implements Runnable
 {
-    private PbfStreamSplitter streamSplitter;
+    private Iterator<PbfRawBlob> streamSplitter;
     private ExecutorService executorService;
     private int maxPendingBlobs;
     private Sink sink;
     private Lock lock;
     private Condition dataWaitCondition;
     private Queue<PbfBlobResult> blobResults;
+    private Shape clip;
 
     /**
      * Creates a new instance.
      * <p/>
-     * @param streamSplitter The PBF stream splitter providing the source of blobs to be decoded.
+     * @param streamSplitter The stream splitter providing the source of blobs to be decoded.
      * @param executorService The executor service managing the thread pool.
      * @param maxPendingBlobs The maximum number of blobs to have in progress at any point in time.
      * @param sink The sink to send all decoded entities to.
      */
-    public PbfDecoder( PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
+    public PbfDecoder( Iterator<PbfRawBlob> streamSplitter, ExecutorService executorService, int maxPendingBlobs,
             Sink sink )
     {
         this.streamSplitter = streamSplitter;
@@ -52,6 +55,20 @@ public class PbfDecoder implements Runnable
         blobResults = new LinkedList<PbfBlobResult>();
     }
 
+    /**
+     * Skips the nodes outside of the specified shape already on the worker threads.
+     */
+    public PbfDecoder setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
+    protected Shape getClip()
+    {
+        return clip;
+    }
+
     /**
      * Any thread can call this method when they wish to wait until an update has been performed by
      * another thread.
@@ -162,8 +179,7 @@ public class PbfDecoder implements Runnable
             };
 
             // Create the blob decoder itself and execute it on a worker thread.
-            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
-            executorService.execute(blobDecoder);
+            executorService.execute(createBlobDecoder(rawBlob, decoderListener));
 
             // If the number of pending blobs has reached capacity we must begin
             // sending results to the sink. This method will block until blob
@@ -175,6 +191,15 @@ public class PbfDecoder implements Runnable
         sendResultsToSink(0);
     }
 
+    /**
+     * Creates the decoder which is executed on a worker thread and informs the listener about the
+     * decoded entities. Overwrite this to decode blobs of other formats like XML chunks.
+     */
+    protected Runnable createBlobDecoder( PbfRawBlob rawBlob, PbfBlobDecoderListener listener )
+    {
+        return new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), listener).setClip(clip);
+    }
+
     @Override
     public void run()
     {
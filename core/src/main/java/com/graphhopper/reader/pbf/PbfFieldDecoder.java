@@ -14,7 +14,9 @@ import org.openstreetmap.osmosis.osmbinary.Osmformat;
 public class PbfFieldDecoder
 {
     private static final double COORDINATE_SCALING_FACTOR = 0.000000001;
-    private String[] strings;
+    private final Osmformat.StringTable stringTable;
+    // decoded lazily as the table also contains strings we never read like user names
+    private final String[] strings;
     private int coordGranularity;
     private long coordLatitudeOffset;
     private long coordLongitudeOffset;
@@ -32,12 +34,8 @@ public class PbfFieldDecoder
         this.coordLongitudeOffset = primitiveBlock.getLonOffset();
         this.dateGranularity = primitiveBlock.getDateGranularity();
 
-        Osmformat.StringTable stringTable = primitiveBlock.getStringtable();
+        stringTable = primitiveBlock.getStringtable();
         strings = new String[stringTable.getSCount()];
-        for (int i = 0; i < strings.length; i++)
-        {
-            strings[i] = stringTable.getS(i).toStringUtf8();
-        }
     }
 
     /**
@@ -81,6 +79,12 @@ public class PbfFieldDecoder
      */
     public String decodeString( int rawString )
     {
-        return strings[rawString];
+        String str = strings[rawString];
+        if (str == null)
+        {
+            str = stringTable.getS(rawString).toStringUtf8();
+            strings[rawString] = str;
+        }
+        return str;
     }
 }
@@ -1,6 +1,7 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package com.graphhopper.reader.pbf;
 
+import com.graphhopper.util.shapes.Shape;
 import java.io.DataInputStream;
 import java.io.InputStream;
 import java.util.concurrent.ExecutorService;
@@ -16,6 +17,7 @@ public class PbfReader implements Runnable
     private InputStream inputStream;
     private Sink sink;
     private int workers;
+    private Shape clip;
 
     /**
      * Creates a new instance.
@@ -30,6 +32,15 @@ public class PbfReader implements Runnable
         this.workers = workers;
     }
 
+    /**
+     * Skips all nodes outside of the specified shape.
+     */
+    public PbfReader setClip( Shape clip )
+    {
+        this.clip = clip;
+        return this;
+    }
+
     @Override
     public void run()
     {        
@@ -46,6 +57,7 @@ public class PbfReader implements Runnable
             // The main thread is responsible for splitting blobs from the
             // request stream, and sending decoded entities to the sink.
             PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
+            pbfDecoder.setClip(clip);
             pbfDecoder.run();            
 
         } catch (Exception e)
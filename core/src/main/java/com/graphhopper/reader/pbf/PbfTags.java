@@ -0,0 +1,126 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package com.graphhopper.reader.pbf;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only tags of a PBF entity. Instead of creating a HashMap and its entries for every entity
+ * only the indices into the string table of the block are kept. The tags of an entity are few, so
+ * a linear search is faster than hashing.
+ * <p/>
+ * @author Peter Karich
+ */
+public class PbfTags extends AbstractMap<String, String>
+{
+    private final PbfFieldDecoder fieldDecoder;
+    // alternating key and value indices into the string table
+    private final int[] indices;
+    private final int start;
+    private final int end;
+
+    /**
+     * @param indices the key and value indices, maybe shared with other entities
+     * @param start the position of the first key
+     * @param end the position after the last value
+     */
+    public PbfTags( PbfFieldDecoder fieldDecoder, int[] indices, int start, int end )
+    {
+        this.fieldDecoder = fieldDecoder;
+        this.indices = indices;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int size()
+    {
+        return (end - start) / 2;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return end <= start;
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get( Object key )
+    {
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+        return fieldDecoder.decodeString(indices[index + 1]);
+    }
+
+    private int indexOf( Object key )
+    {
+        for (int i = start; i < end; i += 2)
+        {
+            if (fieldDecoder.decodeString(indices[i]).equals(key))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet()
+    {
+        return new AbstractSet<Entry<String, String>>()
+        {
+            @Override
+            public int size()
+            {
+                return PbfTags.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, String>> iterator()
+            {
+                return new Iterator<Entry<String, String>>()
+                {
+                    private int index = start;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return index < end;
+                    }
+
+                    @Override
+                    public Entry<String, String> next()
+                    {
+                        if (index >= end)
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, String> entry = new SimpleImmutableEntry<String, String>(
+                                fieldDecoder.decodeString(indices[index]),
+                                fieldDecoder.decodeString(indices[index + 1]));
+                        index += 2;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException("Not supported.");
+                    }
+                };
+            }
+        };
+    }
+}
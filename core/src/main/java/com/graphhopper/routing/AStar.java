@@ -85,6 +85,7 @@ public class AStar extends AbstractRoutingAlgorithm
             {
                 break;
             }
+            checkLimits(visitedCount, currEdge.weight);
 
             EdgeIterator iter = getNeighbors(currVertex);
             while (iter.next())
@@ -175,6 +175,8 @@ public class AStarBidirection extends AbstractRoutingAlgorithm
         int finish = 0;
         while (finish < 2)
         {
+            // the path found so far can be within the limit although the frontiers are already beyond it
+            checkLimits(getVisitedNodes(), Math.min(getCurrentWeight(), shortest.getWeight()));
             finish = 0;
             if (!fillEdgesFrom())
             {
@@ -206,6 +208,24 @@ public class AStarBidirection extends AbstractRoutingAlgorithm
         return currFrom.weightToCompare + currTo.weightToCompare >= tmp;
     }
 
+    /**
+     * @return a lower bound for the weight of every path found from now on. The heap weight of a
+     * frontier is the weight from its start plus the heuristic, which underestimates the rest.
+     */
+    private double getCurrentWeight()
+    {
+        double weight = 0;
+        if (currFrom != null)
+        {
+            weight = currFrom.weight;
+        }
+        if (currTo != null)
+        {
+            weight = Math.max(weight, currTo.weight);
+        }
+        return weight;
+    }
+
     public boolean fillEdgesFrom()
     {
         if (currFrom != null)
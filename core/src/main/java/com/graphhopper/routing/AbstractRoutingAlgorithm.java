@@ -37,6 +37,11 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
     protected final EdgeFilter outEdgeFilter;
     protected final EdgeFilter inEdgeFilter;
     protected final FlagEncoder flagEncoder;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private double maxWeight = Double.MAX_VALUE;
+    private long deadline = Long.MAX_VALUE;
+    private volatile boolean cancelled;
+    private int limitChecks;
 
     public AbstractRoutingAlgorithm( Graph graph, FlagEncoder encoder )
     {
@@ -71,6 +76,75 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         return this;
     }
 
+    @Override
+    public RoutingAlgorithm setMaxVisitedNodes( int nodes )
+    {
+        this.maxVisitedNodes = nodes;
+        return this;
+    }
+
+    @Override
+    public RoutingAlgorithm setMaxWeight( double weight )
+    {
+        this.maxWeight = weight;
+        return this;
+    }
+
+    @Override
+    public RoutingAlgorithm setDeadline( long timeInMillis )
+    {
+        this.deadline = timeInMillis;
+        return this;
+    }
+
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Throws a RoutingLimitException if one of the limits is exceeded. This is called once per
+     * visited node so the clock is only read for every 1024th call.
+     * <p/>
+     * @param weight the smallest weight a path found from now on can have
+     */
+    protected final void checkLimits( int visitedNodes, double weight )
+    {
+        checkLimits(visitedNodes, weight, (limitChecks++ & 0x3FF) == 0);
+    }
+
+    /**
+     * The same as checkLimits(int, double) for algorithms which search in several threads. Every
+     * thread has to count its calls itself as the counter of this class is not thread safe.
+     * <p/>
+     * @param checkDeadline true if the clock should be read to check the deadline
+     */
+    protected final void checkLimits( int visitedNodes, double weight, boolean checkDeadline )
+    {
+        if (visitedNodes > maxVisitedNodes)
+        {
+            throw new RoutingLimitException(RoutingLimitException.Limit.VISITED_NODES,
+                    "Maximum number of visited nodes exceeded: " + maxVisitedNodes);
+        }
+        if (weight > maxWeight)
+        {
+            throw new RoutingLimitException(RoutingLimitException.Limit.WEIGHT,
+                    "Maximum weight exceeded: " + maxWeight);
+        }
+        if (cancelled)
+        {
+            throw new RoutingLimitException(RoutingLimitException.Limit.CANCELLED,
+                    "Routing was cancelled after " + visitedNodes + " visited nodes");
+        }
+        if (checkDeadline && deadline != Long.MAX_VALUE
+                && System.currentTimeMillis() > deadline)
+        {
+            throw new RoutingLimitException(RoutingLimitException.Limit.TIMEOUT,
+                    "Routing timed out after " + visitedNodes + " visited nodes");
+        }
+    }
+
     protected void updateShortest( EdgeEntry shortestDE, int currLoc )
     {
     }
@@ -71,6 +71,7 @@ public class Dijkstra extends AbstractRoutingAlgorithm
             {
                 break;
             }
+            checkLimits(visitedNodes, currEdge.weight);
 
             int neighborNode = currEdge.endNode;
             EdgeIterator iter = getNeighbors(neighborNode);
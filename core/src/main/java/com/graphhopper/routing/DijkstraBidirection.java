@@ -107,6 +107,8 @@ public class DijkstraBidirection extends AbstractRoutingAlgorithm
         int finish = 0;
         while (finish < 2)
         {
+            // the path found so far can be within the limit although the frontiers are already beyond it
+            checkLimits(getVisitedNodes(), Math.min(currFromWeight + currToWeight, shortest.getWeight()));
             finish = 0;
             if (!fillEdgesFrom())
             {
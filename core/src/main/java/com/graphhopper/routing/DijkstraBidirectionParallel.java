@@ -0,0 +1,302 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bidirectional Dijkstra where the forward and the backward search run concurrently in two
+ * threads. Useful for long queries without contraction hierarchies when cores are idle.
+ * <p/>
+ * Each search only writes its own shortest path tree, which is an array over all nodes with
+ * volatile semantics. An entry is never changed after it was stored, an improvement creates a new
+ * entry and leaves the old one in the heap until it is polled and skipped. Both searches share the
+ * best meeting point found so far, which is replaced via compare-and-set. After a search has
+ * scanned a node completely it publishes the weight of the next node it will settle. If the sum of
+ * both published weights is not smaller than the weight of the best meeting point no shorter path
+ * exists: every edge between the nodes settled from both sides was seen by at least one search as
+ * the arrays are read and written in a linearizable order.
+ * <p/>
+ * The backward search runs in a shared pool of daemon threads. The pool creates a new thread only
+ * if all of its threads are busy, so a backward search never waits for another query. As both
+ * arrays are allocated for every query this only pays off for long queries on a machine with
+ * idle cores.
+ * <p/>
+ * @see DijkstraBidirectionRef for the single threaded version
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionParallel extends AbstractRoutingAlgorithm
+{
+    private static final ExecutorService backwardExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        private int counter;
+
+        @Override
+        public synchronized Thread newThread( Runnable r )
+        {
+            Thread t = new Thread(r, "GraphHopper backward search " + counter++);
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private final AtomicReference<Meeting> best = new AtomicReference<Meeting>(
+            new Meeting(Double.MAX_VALUE, null, null));
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    private volatile boolean finished;
+    private boolean alreadyRun;
+    private final Search forward;
+    private final Search backward;
+
+    public DijkstraBidirectionParallel( Graph graph, FlagEncoder encoder )
+    {
+        super(graph, encoder);
+        int capacity = Math.max(20, graph.getNodes() / 10);
+        forward = new Search(true, capacity, outEdgeFilter);
+        backward = new Search(false, capacity, inEdgeFilter);
+        forward.other = backward;
+        backward.other = forward;
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        if (alreadyRun)
+        {
+            throw new IllegalStateException("Create a new instance per call");
+        }
+        alreadyRun = true;
+        // the arrays of the searches only cover the existing nodes
+        if (from == to || from >= graph.getNodes() || to >= graph.getNodes())
+        {
+            return new Path(graph, flagEncoder);
+        }
+
+        forward.init(from);
+        backward.init(to);
+        Future<?> backwardFuture = backwardExecutor.submit(backward);
+        forward.run();
+        try
+        {
+            backwardFuture.get();
+        } catch (InterruptedException ex)
+        {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Routing was interrupted", ex);
+        } catch (ExecutionException ex)
+        {
+            // cannot happen as the search catches everything
+            error.compareAndSet(null, ex.getCause());
+        }
+
+        Throwable t = error.get();
+        if (t instanceof RuntimeException)
+        {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error)
+        {
+            throw (Error) t;
+        } else if (t != null)
+        {
+            throw new RuntimeException(t);
+        }
+        return extractPath();
+    }
+
+    Path extractPath()
+    {
+        Meeting m = best.get();
+        PathBidirRef path = new PathBidirRef(graph, flagEncoder);
+        path.setEdgeEntry(m.fromEntry);
+        path.setEdgeEntryTo(m.toEntry);
+        path.setWeight(m.weight);
+        return path.extract();
+    }
+
+    void updateBest( double weight, EdgeEntry fromEntry, EdgeEntry toEntry )
+    {
+        Meeting m = null;
+        while (true)
+        {
+            Meeting curr = best.get();
+            if (weight >= curr.weight)
+            {
+                return;
+            }
+            if (m == null)
+            {
+                m = new Meeting(weight, fromEntry, toEntry);
+            }
+            if (best.compareAndSet(curr, m))
+            {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return forward.visited + backward.visited;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstrabiParallel";
+    }
+
+    /**
+     * The shortest path tree of one direction. Only the owning thread writes to it.
+     */
+    private class Search implements Runnable
+    {
+        private final boolean isForward;
+        private final EdgeFilter filter;
+        private AtomicReferenceArray<EdgeEntry> entries;
+        private final PriorityQueue<EdgeEntry> heap;
+        private Search other;
+        // the weight of the next node to settle, all nodes with a smaller weight are scanned
+        private volatile double top;
+        private volatile int visited;
+        private int limitChecks;
+        private EdgeEntry curr;
+
+        Search( boolean isForward, int capacity, EdgeFilter filter )
+        {
+            this.isForward = isForward;
+            this.filter = filter;
+            heap = new PriorityQueue<EdgeEntry>(capacity);
+        }
+
+        void init( int node )
+        {
+            // submitting the backward search publishes both arrays to its thread
+            entries = new AtomicReferenceArray<EdgeEntry>(graph.getNodes());
+            curr = new EdgeEntry(EdgeIterator.NO_EDGE, node, 0);
+            entries.set(node, curr);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!finished)
+                {
+                    // the other search can already be beyond the best meeting point
+                    checkLimits(getVisitedNodes(), Math.min(top + other.top, best.get().weight),
+                            (limitChecks++ & 0x3FF) == 0);
+                    scan(curr);
+                    visited++;
+                    curr = poll();
+                    if (curr == null)
+                    {
+                        // all reachable nodes are scanned so the meeting point cannot improve
+                        top = Double.MAX_VALUE;
+                        finished = true;
+                        return;
+                    }
+                    top = curr.weight;
+                    if (top + other.top >= best.get().weight)
+                    {
+                        finished = true;
+                    }
+                }
+            } catch (Throwable t)
+            {
+                error.compareAndSet(null, t);
+                finished = true;
+            }
+        }
+
+        private EdgeEntry poll()
+        {
+            EdgeEntry e;
+            while ((e = heap.poll()) != null)
+            {
+                // skip entries which were replaced by a better one
+                if (entries.get(e.endNode) == e)
+                {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        private void scan( EdgeEntry entry )
+        {
+            EdgeIterator iter = graph.getEdges(entry.endNode, filter);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                {
+                    continue;
+                }
+                int adjNode = iter.getAdjNode();
+                double tmpWeight = weightCalc.getWeight(iter.getDistance(), iter.getFlags()) + entry.weight;
+                EdgeEntry de = entries.get(adjNode);
+                if (de == null || de.weight > tmpWeight)
+                {
+                    de = new EdgeEntry(iter.getEdge(), adjNode, tmpWeight);
+                    de.parent = entry;
+                    entries.set(adjNode, de);
+                    heap.add(de);
+                }
+
+                EdgeEntry otherEntry = other.entries.get(adjNode);
+                if (otherEntry != null)
+                {
+                    if (isForward)
+                    {
+                        updateBest(de.weight + otherEntry.weight, de, otherEntry);
+                    } else
+                    {
+                        updateBest(de.weight + otherEntry.weight, otherEntry, de);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Meeting
+    {
+        final double weight;
+        final EdgeEntry fromEntry;
+        final EdgeEntry toEntry;
+
+        Meeting( double weight, EdgeEntry fromEntry, EdgeEntry toEntry )
+        {
+            this.weight = weight;
+            this.fromEntry = fromEntry;
+            this.toEntry = toEntry;
+        }
+    }
+}
@@ -101,6 +101,8 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm
         int finish = 0;
         while (finish < 2)
         {
+            // the path found so far can be within the limit although the frontiers are already beyond it
+            checkLimits(getVisitedNodes(), Math.min(getCurrentWeight(), shortest.getWeight()));
             finish = 0;
             if (!fillEdgesFrom())
             {
@@ -137,6 +139,20 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm
         return currFrom.weight + currTo.weight >= shortest.getWeight();
     }
 
+    private double getCurrentWeight()
+    {
+        double weight = 0;
+        if (currFrom != null)
+        {
+            weight += currFrom.weight;
+        }
+        if (currTo != null)
+        {
+            weight += currTo.weight;
+        }
+        return weight;
+    }
+
     void fillEdges( EdgeEntry curr, PriorityQueue<EdgeEntry> prioQueue,
             TIntObjectMap<EdgeEntry> shortestWeightMap, EdgeFilter filter )
     {
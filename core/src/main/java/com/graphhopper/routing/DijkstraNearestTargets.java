@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHTBitSet;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the k nearest of many target nodes with a single dijkstra expansion from the start node.
+ * The search stops as soon as k targets are settled, so for nearby targets only a small part of
+ * the graph is explored.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraNearestTargets extends Dijkstra
+{
+    private GHBitSet targets;
+    private int maxTargets;
+    private List<EdgeEntry> found;
+
+    public DijkstraNearestTargets( Graph graph, FlagEncoder encoder )
+    {
+        super(graph, encoder);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        GHBitSet bs = new GHTBitSet(1);
+        bs.add(to);
+        List<Path> paths = calcPaths(from, bs, 1);
+        if (paths.isEmpty())
+        {
+            return new Path(graph, flagEncoder);
+        }
+        return paths.get(0);
+    }
+
+    /**
+     * @param targets the nodes to search for
+     * @param k the maximum number of targets to find
+     * @return the paths to at most k targets, ordered by increasing weight. Unreachable targets are
+     * not included.
+     */
+    public List<Path> calcPaths( int from, GHBitSet targets, int k )
+    {
+        if (alreadyRun)
+        {
+            throw new IllegalStateException("Create a new instance per call");
+        }
+        alreadyRun = true;
+        this.targets = targets;
+        this.maxTargets = Math.min(k, targets.getCardinality());
+        this.found = new ArrayList<EdgeEntry>(maxTargets);
+        if (maxTargets > 0)
+        {
+            EdgeEntry fromEdge = new EdgeEntry(EdgeIterator.NO_EDGE, from, 0d);
+            map.put(from, fromEdge);
+            calcEdgeEntry(fromEdge, -1);
+        }
+
+        List<Path> paths = new ArrayList<Path>(found.size());
+        for (EdgeEntry ee : found)
+        {
+            Path p = extractPath(ee);
+            p.setWeight(ee.weight);
+            paths.add(p);
+        }
+        return paths;
+    }
+
+    @Override
+    protected boolean finished( EdgeEntry currEdge, int to )
+    {
+        // every node is polled only once from the heap and then its weight is final
+        if (targets.contains(currEdge.endNode))
+        {
+            found.add(currEdge);
+        }
+        return found.size() >= maxTargets;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstraNearestTargets";
+    }
+}
@@ -136,6 +136,7 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         while (true)
         {
             visitedNodes++;
+            checkLimits(visitedNodes, weights[currNode]);
             EdgeIterator iter = graph.getEdges(currNode, outEdgeFilter);
             while (iter.next())
             {
@@ -112,6 +112,14 @@ public class Path
         return fromNode;
     }
 
+    /**
+     * @return the last node of this Path or -1 if not extracted
+     */
+    public int getEndNode()
+    {
+        return endNode;
+    }
+
     public boolean isFound()
     {
         return found;
@@ -205,7 +213,7 @@ public class Path
     /**
      * Calculates the time in minutes for the specified distance and speed (via flags)
      */
-    protected long calcTime( double distance, int flags )
+    protected long calcTime( double distance, long flags )
     {
         return (long) (distance * 3.6 / encoder.getSpeed(flags));
     }
@@ -40,6 +40,30 @@ public interface RoutingAlgorithm
      */
     RoutingAlgorithm setType( WeightCalculation calc );
 
+    /**
+     * Stops the search with a RoutingLimitException if more than the specified number of nodes
+     * were visited. Default is no limit.
+     */
+    RoutingAlgorithm setMaxVisitedNodes( int nodes );
+
+    /**
+     * Stops the search with a RoutingLimitException if the path would be heavier than the
+     * specified weight. Default is no limit.
+     */
+    RoutingAlgorithm setMaxWeight( double weight );
+
+    /**
+     * Stops the search with a RoutingLimitException if it is still running at the specified time
+     * in milliseconds (see System.currentTimeMillis). Default is no limit.
+     */
+    RoutingAlgorithm setDeadline( long timeInMillis );
+
+    /**
+     * Stops a running or future search with a RoutingLimitException. In contrast to the other
+     * methods this one can be called from a different thread.
+     */
+    void cancel();
+
     /**
      * @return name of this algorithm
      */
@@ -31,7 +31,8 @@ public class RoutingAlgorithmFactory
 
     /**
      * @param algo possible values are astar (A* algorithm), astarbi (bidirectional A*) dijkstra
-     * (Dijkstra), dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra).
+     * (Dijkstra), dijkstrabi, dijkstraNative (a bit faster bidirectional Dijkstra) and
+     * dijkstrabiParallel (bidirectional Dijkstra with one thread per direction).
      */
     public RoutingAlgorithmFactory( String algo, boolean approx )
     {
@@ -44,6 +45,9 @@ public class RoutingAlgorithmFactory
         if ("dijkstrabi".equalsIgnoreCase(algoStr))
         {
             return new DijkstraBidirectionRef(g, encoder);
+        } else if ("dijkstrabiParallel".equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraBidirectionParallel(g, encoder);
         } else if ("dijkstraNative".equalsIgnoreCase(algoStr))
         {
             return new DijkstraBidirection(g, encoder);
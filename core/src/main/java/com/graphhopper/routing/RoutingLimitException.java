@@ -0,0 +1,48 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+/**
+ * Thrown from calcPath if the search of a routing algorithm exceeds one of its limits or if it was
+ * cancelled.
+ * <p/>
+ * @see RoutingAlgorithm#setMaxVisitedNodes(int)
+ * @author Peter Karich
+ */
+public class RoutingLimitException extends RuntimeException
+{
+    public enum Limit
+    {
+        VISITED_NODES, WEIGHT, TIMEOUT, CANCELLED
+    }
+    private final Limit limit;
+
+    public RoutingLimitException( Limit limit, String message )
+    {
+        super(message);
+        this.limit = limit;
+    }
+
+    /**
+     * @return the limit which stopped the search.
+     */
+    public Limit getLimit()
+    {
+        return limit;
+    }
+}
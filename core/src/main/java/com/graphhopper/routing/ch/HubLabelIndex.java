@@ -0,0 +1,421 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.storage.VLongStorage;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import gnu.trove.map.hash.TIntLongHashMap;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A distance oracle which answers point to point queries without a path via hub labels. The labels
+ * are derived from the node order of a graph prepared with PrepareContractionHierarchies: the
+ * forward label of a node contains every node reachable via upward edges (its hubs) together with
+ * the weight to it, the backward label the same for the reverse direction. Entries which are not
+ * the shortest weight to their hub are pruned. A query is then a merge-join of the forward label
+ * of the start and the backward label of the end.
+ * <p/>
+ * Every label is sorted by hub and stored as delta compressed VLongs. The bytes are packed into
+ * integers so that reads only need getInt which is thread safe for all DataAccess implementations.
+ * <p/>
+ * @author Peter Karich
+ */
+public class HubLabelIndex implements Storable<HubLabelIndex>
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private static final int MAGIC_INT = Integer.MAX_VALUE / 12637;
+    // weights are stored as integers with the same precision as distances in GraphStorage
+    private static final double WEIGHT_FACTOR = 1000;
+    private final LevelGraph graph;
+    private final FlagEncoder encoder;
+    // two integers per node pointing to the forward and backward label (in units of 4 bytes)
+    private final DataAccess pointers;
+    private final DataAccess labels;
+    private int labelInts;
+    private boolean initialized = false;
+
+    /**
+     * @param g the graph which needs to be prepared with contraction hierarchies
+     */
+    public HubLabelIndex( LevelGraph g, FlagEncoder encoder, Directory dir )
+    {
+        this.graph = g;
+        this.encoder = encoder;
+        pointers = dir.find("hubLabelPointers");
+        labels = dir.find("hubLabels");
+    }
+
+    /**
+     * @return the weight of the shortest path or Double.MAX_VALUE if 'to' is not reachable from
+     * 'from'. The weight is the one calculated via the WeightCalculation of the CH preparation.
+     */
+    public double calcWeight( int from, int to )
+    {
+        long weight = merge(new LabelIterator(pointers.getInt((long) from * 8)),
+                new LabelIterator(pointers.getInt((long) to * 8 + 4)));
+        if (weight == Long.MAX_VALUE)
+        {
+            return Double.MAX_VALUE;
+        }
+        return weight / WEIGHT_FACTOR;
+    }
+
+    static long merge( LabelIterator fromLabel, LabelIterator toLabel )
+    {
+        long best = Long.MAX_VALUE;
+        if (!fromLabel.next() || !toLabel.next())
+        {
+            return best;
+        }
+        while (true)
+        {
+            if (fromLabel.hub == toLabel.hub)
+            {
+                best = Math.min(best, fromLabel.weight + toLabel.weight);
+                if (!fromLabel.next() || !toLabel.next())
+                {
+                    return best;
+                }
+            } else if (fromLabel.hub < toLabel.hub)
+            {
+                if (!fromLabel.next())
+                {
+                    return best;
+                }
+            } else if (!toLabel.next())
+            {
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Creates the labels. The graph has to be prepared with contraction hierarchies before.
+     */
+    public HubLabelIndex prepare()
+    {
+        if (initialized)
+        {
+            throw new IllegalStateException("Call prepare only once");
+        }
+
+        StopWatch sw = new StopWatch().start();
+        int nodes = graph.getNodes();
+        // process the highest level first as a label is created from the labels of higher nodes
+        long[] order = new long[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            order[node] = ((long) graph.getLevel(node) << 32) | node;
+        }
+        Arrays.sort(order);
+
+        pointers.create((long) nodes * 8);
+        labels.create(64 * 1024);
+        labelInts = 0;
+        LabelCreator creator = new LabelCreator();
+        EdgeFilter outFilter = new DefaultEdgeFilter(encoder, false, true);
+        EdgeFilter inFilter = new DefaultEdgeFilter(encoder, true, false);
+        for (int i = nodes - 1; i >= 0; i--)
+        {
+            int node = (int) order[i];
+            pointers.setInt((long) node * 8, creator.create(node, outFilter, 0));
+            pointers.setInt((long) node * 8 + 4, creator.create(node, inFilter, 4));
+        }
+        flush();
+        initialized = true;
+        logger.info("hub labels created in " + sw.stop().getSeconds() + "s, nodes:" + Helper.nf(nodes)
+                + ", entries:" + Helper.nf(creator.entries)
+                + ", entriesPerLabel:" + (float) creator.entries / Math.max(1, 2 * nodes)
+                + ", size:" + Helper.nf(getCapacity()));
+        return this;
+    }
+
+    boolean isHigher( int node, int other )
+    {
+        int level = graph.getLevel(node);
+        int otherLevel = graph.getLevel(other);
+        return level > otherLevel || level == otherLevel && node > other;
+    }
+
+    private class LabelCreator
+    {
+        private final TIntLongHashMap candidates = new TIntLongHashMap();
+        private final VLongStorage buffer = new VLongStorage(1024);
+        private int[] hubs = new int[16];
+        private long[] weights = new long[16];
+        private int[] keptHubs = new int[16];
+        private long[] keptWeights = new long[16];
+        long entries;
+
+        /**
+         * @param offset 0 for the forward label and 4 for the backward label
+         * @return the pointer to the stored label
+         */
+        int create( int node, EdgeFilter filter, int offset )
+        {
+            candidates.clear();
+            candidates.put(node, 0);
+            EdgeIterator iter = graph.getEdges(node, filter);
+            while (iter.next())
+            {
+                int adjNode = iter.getAdjNode();
+                if (!isHigher(adjNode, node))
+                {
+                    continue;
+                }
+
+                // after the preparation the distance is the weight
+                long edgeWeight = Math.round(iter.getDistance() * WEIGHT_FACTOR);
+                LabelIterator label = new LabelIterator(pointers.getInt((long) adjNode * 8 + offset));
+                while (label.next())
+                {
+                    long weight = edgeWeight + label.weight;
+                    if (!candidates.containsKey(label.hub) || candidates.get(label.hub) > weight)
+                    {
+                        candidates.put(label.hub, weight);
+                    }
+                }
+            }
+
+            int size = candidates.size();
+            if (hubs.length < size)
+            {
+                int cap = Math.max(size, hubs.length * 2);
+                hubs = new int[cap];
+                weights = new long[cap];
+                keptHubs = new int[cap];
+                keptWeights = new long[cap];
+            }
+            candidates.keys(hubs);
+            Arrays.sort(hubs, 0, size);
+            for (int i = 0; i < size; i++)
+            {
+                weights[i] = candidates.get(hubs[i]);
+            }
+
+            // prune an entry if the labels already contain a shorter path to its hub
+            int kept = 0;
+            for (int i = 0; i < size; i++)
+            {
+                int hub = hubs[i];
+                if (hub != node)
+                {
+                    LabelIterator hubLabel = new LabelIterator(pointers.getInt((long) hub * 8 + 4 - offset));
+                    if (merge(new ArrayLabelIterator(hubs, weights, size), hubLabel) < weights[i])
+                    {
+                        continue;
+                    }
+                }
+                keptHubs[kept] = hub;
+                keptWeights[kept] = weights[i];
+                kept++;
+            }
+            entries += kept;
+            return store(keptHubs, keptWeights, kept);
+        }
+
+        private int store( int[] hubs, long[] weights, int size )
+        {
+            buffer.seek(0);
+            buffer.writeVLong(size);
+            int prevHub = 0;
+            for (int i = 0; i < size; i++)
+            {
+                buffer.writeVLong(hubs[i] - prevHub);
+                buffer.writeVLong(weights[i]);
+                prevHub = hubs[i];
+            }
+
+            int length = (int) buffer.getPosition();
+            byte[] bytes = buffer.getBytes();
+            int ints = (length + 3) / 4;
+            int pointer = labelInts;
+            labels.ensureCapacity(((long) pointer + ints) * 4);
+            for (int i = 0; i < ints; i++)
+            {
+                int value = 0;
+                for (int b = 0; b < 4 && i * 4 + b < length; b++)
+                {
+                    value |= (bytes[i * 4 + b] & 0xFF) << (b * 8);
+                }
+                labels.setInt(((long) pointer + i) * 4, value);
+            }
+            labelInts += ints;
+            return pointer;
+        }
+    }
+
+    /**
+     * Decodes a stored label entry by entry, hubs are in increasing order.
+     */
+    class LabelIterator
+    {
+        private long bytePos;
+        private long intPos = -1;
+        private int intValue;
+        private int remaining;
+        int hub;
+        long weight;
+
+        LabelIterator()
+        {
+        }
+
+        LabelIterator( int pointer )
+        {
+            bytePos = (long) pointer * 4;
+            remaining = (int) readVLong();
+        }
+
+        boolean next()
+        {
+            if (remaining == 0)
+            {
+                return false;
+            }
+            remaining--;
+            hub += (int) readVLong();
+            weight = readVLong();
+            return true;
+        }
+
+        private long readVLong()
+        {
+            long value = 0;
+            for (int shift = 0;; shift += 7)
+            {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+        }
+
+        private int readByte()
+        {
+            long tmpIntPos = bytePos & ~3L;
+            if (tmpIntPos != intPos)
+            {
+                intPos = tmpIntPos;
+                intValue = labels.getInt(intPos);
+            }
+            int b = (intValue >>> ((bytePos & 3) * 8)) & 0xFF;
+            bytePos++;
+            return b;
+        }
+    }
+
+    /**
+     * A label which is not yet stored.
+     */
+    class ArrayLabelIterator extends LabelIterator
+    {
+        private final int[] hubs;
+        private final long[] weights;
+        private final int size;
+        private int index = -1;
+
+        ArrayLabelIterator( int[] hubs, long[] weights, int size )
+        {
+            this.hubs = hubs;
+            this.weights = weights;
+            this.size = size;
+        }
+
+        @Override
+        boolean next()
+        {
+            index++;
+            if (index >= size)
+            {
+                return false;
+            }
+            hub = hubs[index];
+            weight = weights[index];
+            return true;
+        }
+    }
+
+    @Override
+    public HubLabelIndex create( long bytes )
+    {
+        throw new UnsupportedOperationException("Not supported. Use prepare instead.");
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (initialized)
+        {
+            throw new IllegalStateException("Call loadExisting only once");
+        }
+
+        if (!pointers.loadExisting() || !labels.loadExisting())
+        {
+            return false;
+        }
+
+        if (labels.getHeader(0) != MAGIC_INT)
+        {
+            throw new IllegalStateException("incorrect hub label version, expected:" + MAGIC_INT);
+        }
+        if (labels.getHeader(1 * 4) != graph.getNodes())
+        {
+            throw new IllegalStateException("hub labels were created for a different graph");
+        }
+        labelInts = labels.getHeader(2 * 4);
+        initialized = true;
+        return true;
+    }
+
+    @Override
+    public void flush()
+    {
+        labels.setHeader(0, MAGIC_INT);
+        labels.setHeader(1 * 4, graph.getNodes());
+        labels.setHeader(2 * 4, labelInts);
+        pointers.flush();
+        labels.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        pointers.close();
+        labels.close();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return pointers.getCapacity() + labels.getCapacity();
+    }
+}
@@ -75,8 +75,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     private PriorityNode refs[];
     private DataAccess originalEdges;
     // shortcut is one direction, speed is only involved while recalculating the endNode weights - see prepareEdges
-    private int scOneDir;
-    private int scBothDir;
+    private long scOneDir;
+    private long scBothDir;
     private Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
     private LevelEdgeFilterCH levelEdgeFilter;
     private DijkstraOneToMany algo;
@@ -106,12 +106,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return this;
     }
 
-    int getScBothDir()
+    long getScBothDir()
     {
         return scBothDir;
     }
 
-    int getScOneDir()
+    long getScOneDir()
     {
         return scOneDir;
     }
@@ -852,13 +852,13 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             }
 
             @Override
-            public double getWeight( double distance, int flags )
+            public double getWeight( double distance, long flags )
             {
                 return distance;
             }
 
             @Override
-            public double revertWeight( double weight, int flags )
+            public double revertWeight( double weight, long flags )
             {
                 return prepareWeightCalc.revertWeight(weight, flags);
             }
@@ -897,7 +897,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         int skippedEdge2;
         double distance;
         int originalEdges;
-        int flags = scOneDir;
+        long flags = scOneDir;
 
         public Shortcut( int from, int to, double dist )
         {
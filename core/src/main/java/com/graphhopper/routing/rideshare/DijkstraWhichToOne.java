@@ -126,9 +126,11 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm
             // => when scanning an arc (v, w) in the forward search and w is scanned in the reverse 
             //    search, update shortest = μ if df (v) + (v, w) + dr (w) < μ            
 
+            checkLimits(getVisitedNodes(), currFrom.weight + currTo.weight);
             finish = 0;
             shortestDistMapOther = shortestDistMapTo;
             fillEdges(shortest, currFrom, prioQueueFrom, shortestDistMapFrom, outEdgeFilter);
+            visitedFromCount++;
             if (!prioQueueFrom.isEmpty())
             {
                 currFrom = prioQueueFrom.poll();
@@ -139,6 +141,7 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm
 
             shortestDistMapOther = shortestDistMapFrom;
             fillEdges(shortest, currTo, prioQueueTo, shortestDistMapTo, inEdgeFilter);
+            visitedToCount++;
             if (!prioQueueTo.isEmpty())
             {
                 currTo = prioQueueTo.poll();
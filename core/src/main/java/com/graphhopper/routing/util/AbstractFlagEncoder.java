@@ -35,9 +35,9 @@ import java.util.HashSet;
  */
 public abstract class AbstractFlagEncoder implements FlagEncoder
 {
-    protected int forwardBit = 0;
-    protected int backwardBit = 0;
-    protected int directionBitMask = 0;
+    protected long forwardBit = 0;
+    protected long backwardBit = 0;
+    protected long directionBitMask = 0;
     protected EncodedValue speedEncoder = null;
     // bit to signal that way is accepted
     protected int acceptBit = 0;
@@ -124,9 +124,9 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
     public int defineBits( int index, int shift )
     {
         // define the first 2 bits in flags for routing
-        forwardBit = 1 << shift;
-        backwardBit = 2 << shift;
-        directionBitMask = 3 << shift;
+        forwardBit = 1L << shift;
+        backwardBit = 2L << shift;
+        directionBitMask = 3L << shift;
 
         // define internal flags for parsing
         index *= 2;
@@ -149,15 +149,15 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
      * <p/>
      * @param allowed
      */
-    public abstract int handleWayTags( int allowed, OSMWay way );
+    public abstract long handleWayTags( int allowed, OSMWay way );
 
     /**
      * Parse tags on nodes, looking for barriers.
      * <p/>
      * @param node
-     * @return
+     * @return the blocked direction bits or 0 if the node is not a barrier
      */
-    public abstract int analyzeNodeTags( OSMNode node );
+    public abstract long analyzeNodeTags( OSMNode node );
 
     public boolean hasAccepted( int acceptedValue )
     {
@@ -165,31 +165,31 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
     }
 
     @Override
-    public boolean isForward( int flags )
+    public boolean isForward( long flags )
     {
         return (flags & forwardBit) != 0;
     }
 
     @Override
-    public boolean isBackward( int flags )
+    public boolean isBackward( long flags )
     {
         return (flags & backwardBit) != 0;
     }
 
-    public boolean isBoth( int flags )
+    public boolean isBoth( long flags )
     {
         return (flags & directionBitMask) == directionBitMask;
     }
 
     @Override
-    public boolean canBeOverwritten( int flags1, int flags2 )
+    public boolean canBeOverwritten( long flags1, long flags2 )
     {
         return isBoth(flags2) || (flags1 & directionBitMask) == (flags2 & directionBitMask);
     }
 
-    public int swapDirection( int flags )
+    public long swapDirection( long flags )
     {
-        int dir = flags & directionBitMask;
+        long dir = flags & directionBitMask;
         if (dir == directionBitMask || dir == 0)
         {
             return flags;
@@ -198,7 +198,7 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
     }
 
     @Override
-    public int getSpeed( int flags )
+    public int getSpeed( long flags )
     {
         return speedEncoder.getValue(flags);
     }
@@ -207,9 +207,9 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
      * @param bothDirections
      * @return
      */
-    public int flagsDefault( boolean bothDirections )
+    public long flagsDefault( boolean bothDirections )
     {
-        int flags = speedEncoder.setDefaultValue(0);
+        long flags = speedEncoder.setDefaultValue(0);
         return flags | (bothDirections ? directionBitMask : forwardBit);
     }
 
@@ -219,9 +219,9 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
      * @return
      */
     @Override
-    public int flags( int speed, boolean bothDirections )
+    public long flags( int speed, boolean bothDirections )
     {
-        int flags = speedEncoder.setValue(0, speed);
+        long flags = speedEncoder.setValue(0, speed);
         return flags | (bothDirections ? directionBitMask : forwardBit);
     }
 
@@ -235,7 +235,7 @@ public abstract class AbstractFlagEncoder implements FlagEncoder
     public int hashCode()
     {
         int hash = 7;
-        hash = 61 * hash + this.directionBitMask;
+        hash = 61 * hash + (int) (this.directionBitMask ^ (this.directionBitMask >>> 32));
         hash = 61 * hash + this.toString().hashCode();
         return hash;
     }
@@ -33,7 +33,7 @@ import java.util.Set;
  */
 public class BikeFlagEncoder extends AbstractFlagEncoder
 {
-    private int safeWayBit = 0;
+    private long safeWayBit = 0;
     private HashSet<String> intended = new HashSet<String>();
     private HashSet<String> oppositeLanes = new HashSet<String>();
 
@@ -80,7 +80,7 @@ public class BikeFlagEncoder extends AbstractFlagEncoder
         speedEncoder = new EncodedValue("Speed", shift, 4, 2, HIGHWAY_SPEED.get("cycleway"), HIGHWAY_SPEED.get("primary"));
         shift += 4;
 
-        safeWayBit = 1 << shift++;
+        safeWayBit = 1L << shift++;
 
         return shift;
     }
@@ -141,12 +141,12 @@ public class BikeFlagEncoder extends AbstractFlagEncoder
     }
 
     @Override
-    public int handleWayTags( int allowed, OSMWay way )
+    public long handleWayTags( int allowed, OSMWay way )
     {
         if ((allowed & acceptBit) == 0)
             return 0;
 
-        int encoded;
+        long encoded;
         if ((allowed & ferryBit) == 0)
         {
             // set speed
@@ -187,7 +187,7 @@ public class BikeFlagEncoder extends AbstractFlagEncoder
     }
 
     @Override
-    public int analyzeNodeTags( OSMNode node )
+    public long analyzeNodeTags( OSMNode node )
     {
 
         // absolute barriers always block
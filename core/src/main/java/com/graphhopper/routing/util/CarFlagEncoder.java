@@ -131,14 +131,14 @@ public class CarFlagEncoder extends AbstractFlagEncoder
     }
 
     @Override
-    public int handleWayTags( int allowed, OSMWay way )
+    public long handleWayTags( int allowed, OSMWay way )
     {
         if ((allowed & acceptBit) == 0)
         {
             return 0;
         }
 
-        int encoded;
+        long encoded;
         if ((allowed & ferryBit) == 0)
         {
             String highwayValue = way.getTag("highway");
@@ -186,7 +186,7 @@ public class CarFlagEncoder extends AbstractFlagEncoder
     }
 
     @Override
-    public int analyzeNodeTags( OSMNode node )
+    public long analyzeNodeTags( OSMNode node )
     {
 
         // absolute barriers always block
@@ -47,10 +47,36 @@ public class DefaultEdgeFilter implements EdgeFilter
     @Override
     public boolean accept( EdgeIterator iter )
     {
-        int flags = iter.getFlags();
+        long flags = iter.getFlags();
         return out && encoder.isForward(flags) || in && encoder.isBackward(flags);
     }
 
+    @Override
+    public int hashCode()
+    {
+        int hash = 7;
+        hash = 29 * hash + (this.in ? 1 : 0);
+        hash = 29 * hash + (this.out ? 1 : 0);
+        hash = 29 * hash + (this.encoder != null ? this.encoder.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+        final DefaultEdgeFilter other = (DefaultEdgeFilter) obj;
+        if (this.in != other.in || this.out != other.out)
+        {
+            return false;
+        }
+        return this.encoder == other.encoder
+                || this.encoder != null && this.encoder.equals(other.encoder);
+    }
+
     @Override
     public String toString()
     {
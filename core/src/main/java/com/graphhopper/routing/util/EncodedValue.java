@@ -27,7 +27,7 @@ public class EncodedValue
 {
     private String name;
     private int shift;
-    private int mask;
+    private long mask;
     private int factor;
     private int maxValue;
     private int defaultValue;
@@ -51,8 +51,8 @@ public class EncodedValue
         this.defaultValue = defaultValue;
         this.defaultMax = defaultMax;
 
-        mask = (1 << (bits)) - 1;
-        maxValue = mask * factor;
+        mask = (1L << bits) - 1;
+        maxValue = (int) (mask * factor);
 
         mask <<= shift;
 
@@ -60,7 +60,7 @@ public class EncodedValue
         setValue(0, defaultMax);
     }
 
-    public int setValue( int flags, int value )
+    public long setValue( long flags, int value )
     {
         if (value > maxValue)
         {
@@ -68,25 +68,25 @@ public class EncodedValue
         }
 
         // scale down value
-        value /= factor;
-        value <<= shift;
+        long longValue = value / factor;
+        longValue <<= shift;
 
         // clear value bits
         flags &= ~mask;
 
         // set value
-        return flags | value;
+        return flags | longValue;
     }
 
-    public int getValue( int flags )
+    public int getValue( long flags )
     {
         // find value
         flags &= mask;
-        flags >>= shift;
-        return flags * factor;
+        flags >>>= shift;
+        return (int) flags * factor;
     }
 
-    public int setDefaultValue( int flags )
+    public long setDefaultValue( long flags )
     {
         return setValue(flags, defaultValue);
     }
@@ -44,13 +44,34 @@ public class EncodingManager
         defaultEncoders.put(BIKE, BikeFlagEncoder.class.getName());
         defaultEncoders.put(FOOT, FootFlagEncoder.class.getName());
     }
-    public static final int MAX_BITS = 32;
+    // the accept and ferry bits of every encoder are stored in an integer while parsing
+    private static final int MAX_ENCODERS = 16;
     private ArrayList<AbstractFlagEncoder> encoders = new ArrayList<AbstractFlagEncoder>();
     private int encoderCount = 0;
     private int nextBit = 0;
+    private final int bytesForFlags;
 
     public EncodingManager()
     {
+        this(4);
+    }
+
+    /**
+     * @param bytesForFlags the number of bytes for the flags of every edge, 4 or 8. More bytes
+     * allow more encoders in one graph.
+     */
+    public EncodingManager( int bytesForFlags )
+    {
+        if (bytesForFlags != 4 && bytesForFlags != 8)
+        {
+            throw new IllegalArgumentException("For the flags of an edge 4 or 8 bytes are supported but was " + bytesForFlags);
+        }
+        this.bytesForFlags = bytesForFlags;
+    }
+
+    public EncodingManager( String encoderList )
+    {
+        this(encoderList, 4);
     }
 
     /**
@@ -59,10 +80,12 @@ public class EncodingManager
      * "CAR:com.graphhopper.myproject.MyCarEncoder"
      * <p/>
      * @param encoderList comma delimited list of encoders. The order does not matter.
+     * @param bytesForFlags the number of bytes for the flags of every edge, 4 or 8
      */
     @SuppressWarnings("unchecked")
-    public EncodingManager( String encoderList )
+    public EncodingManager( String encoderList, int bytesForFlags )
     {
+        this(bytesForFlags);
         String[] entries = encoderList.split(",");
         Arrays.sort(entries);
 
@@ -114,12 +137,17 @@ public class EncodingManager
 
     public void register( AbstractFlagEncoder encoder )
     {
+        if (encoderCount >= MAX_ENCODERS)
+        {
+            throw new IllegalArgumentException("Cannot register more than " + MAX_ENCODERS + " encoders");
+        }
         encoders.add(encoder);
 
         int usedBits = encoder.defineBits(encoderCount, nextBit);
-        if (usedBits >= MAX_BITS)
+        if (usedBits >= bytesForFlags * 8)
         {
-            throw new IllegalArgumentException("Encoders are requesting more than 32 bits of flags");
+            throw new IllegalArgumentException("Encoders are requesting more than " + bytesForFlags * 8
+                    + " bits of flags. Use 8 bytes for the flags or less encoders");
         }
 
         nextBit = usedBits;
@@ -161,13 +189,13 @@ public class EncodingManager
 
     /**
      * Processes way properties of different kind to determine speed and direction. Properties are
-     * directly encoded in 4-Byte flags.
+     * directly encoded in the flags of 4 or 8 bytes.
      * <p/>
      * @return the encoded flags
      */
-    public int encodeTags( int includeWay, OSMWay way )
+    public long encodeTags( int includeWay, OSMWay way )
     {
-        int flags = 0;
+        long flags = 0;
         for (int i = 0; i < encoderCount; i++)
         {
             flags |= encoders.get(i).handleWayTags(includeWay, way);
@@ -181,6 +209,14 @@ public class EncodingManager
         return encoderCount;
     }
 
+    /**
+     * @return the number of bytes for the flags of every edge, 4 or 8
+     */
+    public int getBytesForFlags()
+    {
+        return bytesForFlags;
+    }
+
     @Override
     public String toString()
     {
@@ -232,9 +268,9 @@ public class EncodingManager
         return encoders.get(0);
     }
 
-    public int flagsDefault( boolean bothDirections )
+    public long flagsDefault( boolean bothDirections )
     {
-        int flags = 0;
+        long flags = 0;
         for (int i = 0; i < encoderCount; i++)
         {
             flags |= encoders.get(i).flagsDefault(bothDirections);
@@ -245,7 +281,7 @@ public class EncodingManager
     /**
      * Swap direction for all encoders
      */
-    public int swapDirection( int flags )
+    public long swapDirection( long flags )
     {
         for (int i = 0; i < encoderCount; i++)
         {
@@ -259,6 +295,7 @@ public class EncodingManager
     {
         int hash = 5;
         hash = 53 * hash + (this.encoders != null ? this.encoders.hashCode() : 0);
+        hash = 53 * hash + this.bytesForFlags;
         return hash;
     }
 
@@ -274,6 +311,10 @@ public class EncodingManager
             return false;
         }
         final EncodingManager other = (EncodingManager) obj;
+        if (this.bytesForFlags != other.bytesForFlags)
+        {
+            return false;
+        }
         if (this.encoders != other.encoders && (this.encoders == null || !this.encoders.equals(other.encoders)))
         {
             return false;
@@ -284,16 +325,37 @@ public class EncodingManager
     /**
      * Analyze tags on osm node
      * <p/>
-     * @param node
+     * @return a bit for every encoder for which the node is a barrier, bit i for the i-th encoder.
+     * An integer is smaller to store for the barrier nodes than the flags.
      */
     public int analyzeNode( OSMNode node )
     {
-        int flags = 0;
+        int barrierEncoders = 0;
         for (int i = 0; i < encoderCount; i++)
         {
-            flags |= encoders.get(i).analyzeNodeTags(node);
+            if (encoders.get(i).analyzeNodeTags(node) != 0)
+            {
+                barrierEncoders |= 1 << i;
+            }
         }
 
+        return barrierEncoders;
+    }
+
+    /**
+     * @param barrierEncoders the result of analyzeNode
+     * @return the flags which are blocked by the barrier
+     */
+    public long getBarrierFlags( int barrierEncoders )
+    {
+        long flags = 0;
+        for (int i = 0; i < encoderCount; i++)
+        {
+            if ((barrierEncoders & (1 << i)) != 0)
+            {
+                flags |= encoders.get(i).directionBitMask;
+            }
+        }
         return flags;
     }
 
@@ -40,13 +40,13 @@ public class FastestCalc implements WeightCalculation
     }
 
     @Override
-    public double getWeight( double distance, int flags )
+    public double getWeight( double distance, long flags )
     {
         return distance / encoder.getSpeed(flags);
     }
 
     @Override
-    public double revertWeight( double weight, int flags )
+    public double revertWeight( double weight, long flags )
     {
         return weight * encoder.getSpeed(flags);
     }
@@ -20,7 +20,7 @@ package com.graphhopper.routing.util;
 
 /**
  * This class provides methods to define how a value (like speed or direction) converts to a flag
- * (currently an integer value), which is stored in an edge .
+ * (a long value), which is stored in an edge.
  * <p/>
  * @author Peter Karich
  */
@@ -29,16 +29,16 @@ public interface FlagEncoder
     /**
      * @deprecated @param speed the speed in km/h
      */
-    int flags( int speed, boolean bothDir );
+    long flags( int speed, boolean bothDir );
 
     /**
      * @return the speed in km/h
      */
-    int getSpeed( int flags );
+    int getSpeed( long flags );
 
-    boolean isForward( int flags );
+    boolean isForward( long flags );
 
-    boolean isBackward( int flags );
+    boolean isBackward( long flags );
 
     /**
      * @return the maximum speed in km/h
@@ -54,5 +54,5 @@ public interface FlagEncoder
     // ->         t | f  | t
     // <-         f | t  | t
     // <->        f | f  | t
-    boolean canBeOverwritten( int flags1, int flags2 );
+    boolean canBeOverwritten( long flags1, long flags2 );
 }
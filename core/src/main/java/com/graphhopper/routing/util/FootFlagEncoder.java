@@ -32,7 +32,7 @@ import java.util.Set;
  */
 public class FootFlagEncoder extends AbstractFlagEncoder
 {
-    private int safeWayBit = 0;
+    private long safeWayBit = 0;
     protected HashSet<String> intended = new HashSet<String>();
     protected HashSet<String> sidewalks = new HashSet<String>();
 
@@ -86,7 +86,7 @@ public class FootFlagEncoder extends AbstractFlagEncoder
         speedEncoder = new EncodedValue("Speed", shift, 4, 1, SPEED.get("mean"), SPEED.get("max"));
         shift += 4;
 
-        safeWayBit = 1 << shift++;
+        safeWayBit = 1L << shift++;
 
         return shift;
     }
@@ -158,14 +158,14 @@ public class FootFlagEncoder extends AbstractFlagEncoder
     }
 
     @Override
-    public int handleWayTags( int allowed, OSMWay way )
+    public long handleWayTags( int allowed, OSMWay way )
     {
         if ((allowed & acceptBit) == 0)
         {
             return 0;
         }
 
-        int encoded;
+        long encoded;
         if ((allowed & ferryBit) == 0)
         {
             encoded = speedEncoder.setDefaultValue(0);
@@ -189,7 +189,7 @@ public class FootFlagEncoder extends AbstractFlagEncoder
     }
 
     @Override
-    public int analyzeNodeTags( OSMNode node )
+    public long analyzeNodeTags( OSMNode node )
     {
 
         // movable barriers block if they are not marked as passable
@@ -34,7 +34,8 @@ public abstract class NoOpAlgorithmPreparation extends AbstractAlgoPreparation<N
      * Creates a preparation wrapper for the specified algorithm. Warning/TODO: set the _graph for
      * the instance otherwise you'll get NPE when calling createAlgo. Possible values for
      * algorithmStr: astar (A* algorithm), astarbi (bidirectional A*) dijkstra (Dijkstra),
-     * dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra).
+     * dijkstrabi, dijkstraNative (a bit faster bidirectional Dijkstra) and dijkstrabiParallel
+     * (bidirectional Dijkstra with one thread per direction).
      */
     public static AlgorithmPreparation createAlgoPrepare( Graph g, final String algorithmStr,
             FlagEncoder encoder, WeightCalculation weightCalc )
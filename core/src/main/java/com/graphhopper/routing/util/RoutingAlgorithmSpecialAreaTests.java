@@ -102,6 +102,7 @@ public class RoutingAlgorithmSpecialAreaTests
                 createAlgoPrepare(g, "astarbi", encoder, weightCalc),
                 createAlgoPrepare(g, "dijkstraNative", encoder, weightCalc),
                 createAlgoPrepare(g, "dijkstrabi", encoder, weightCalc),
+                createAlgoPrepare(g, "dijkstrabiParallel", encoder, weightCalc),
                 createAlgoPrepare(g, "dijkstra", encoder, weightCalc)));
         if (withCh)
         {
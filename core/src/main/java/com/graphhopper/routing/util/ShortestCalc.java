@@ -36,13 +36,13 @@ public class ShortestCalc implements WeightCalculation
     }
 
     @Override
-    public double getWeight( double distance, int flags )
+    public double getWeight( double distance, long flags )
     {
         return distance;
     }
 
     @Override
-    public double revertWeight( double weight, int flags )
+    public double revertWeight( double weight, long flags )
     {
         return weight;
     }
@@ -32,10 +32,10 @@ public interface WeightCalculation
     /**
      * @return the calculated weight with the specified velocity
      */
-    double getWeight( double distance, int flags );
+    double getWeight( double distance, long flags );
 
     /**
      * @return distance from specified weight
      */
-    double revertWeight( double weight, int flags );
+    double revertWeight( double weight, long flags );
 }
@@ -21,23 +21,31 @@ package com.graphhopper.search;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Storable;
+import gnu.trove.map.hash.TLongLongHashMap;
 import java.io.UnsupportedEncodingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Stores every distinct name only once. A name is referenced via its byte position, where the
+ * length of its UTF-8 bytes is stored as variable length integer before the bytes.
+ * <p/>
  * @author Ottavio Campana
  * @author Peter Karich
  */
 public class NameIndex implements Storable<NameIndex>
 {
     private static Logger logger = LoggerFactory.getLogger(NameIndex.class);
-    private static final int START_POINTER = 1;
-    private int bytePointer = START_POINTER;
+    private static final long START_POINTER = 1;
+    private static final int MAX_NAME_BYTES = 1024;
+    private long bytePointer = START_POINTER;
     private DataAccess names;
     // minor optimization for the previous stored name
     private String lastName;
-    private int lastIndex;
+    private long lastIndex;
+    // hash of the bytes to the pointer of the stored names, only kept while adding names
+    private TLongLongHashMap pointers;
+    private final byte[] lengthBytes = new byte[5];
 
     public NameIndex( Directory dir )
     {
@@ -56,7 +64,7 @@ public class NameIndex implements Storable<NameIndex>
     {
         if (names.loadExisting())
         {
-            bytePointer = names.getHeader(0);
+            bytePointer = ((long) names.getHeader(4) << 32) | (names.getHeader(0) & 0xFFFFFFFFL);
             return true;
         }
 
@@ -64,9 +72,17 @@ public class NameIndex implements Storable<NameIndex>
     }
 
     /**
-     * @return the integer reference
+     * Reserves the space for names with the specified number of bytes in total.
      */
-    public int put( String name )
+    public void ensureCapacity( long bytes )
+    {
+        names.ensureCapacity(START_POINTER + bytes);
+    }
+
+    /**
+     * @return the reference of the name, the same for equal names
+     */
+    public long put( String name )
     {
         if (name == null || name.isEmpty())
         {
@@ -77,37 +93,44 @@ public class NameIndex implements Storable<NameIndex>
             return lastIndex;
         }
         byte[] bytes = getBytes(name);
-        int oldPointer = bytePointer;
-        names.ensureCapacity(bytePointer + 1 + bytes.length);
-        byte[] sizeBytes = new byte[]
+        if (pointers == null)
         {
-            (byte) bytes.length
-        };
-        names.setBytes(bytePointer, sizeBytes, sizeBytes.length);
-        bytePointer++;
-        names.setBytes(bytePointer, bytes, bytes.length);
-        bytePointer += bytes.length;
-        if (bytePointer < 0)
+            pointers = new TLongLongHashMap();
+        }
+        long hash = hash(bytes);
+        long pointer = pointers.get(hash);
+        if (pointer == 0 || !equals(pointer, bytes))
         {
-            throw new IllegalStateException("Way index is too large. Cannot contain more than 2GB");
+            pointer = bytePointer;
+            int lengthCount = writeLength(bytes.length);
+            names.ensureCapacity(bytePointer + lengthCount + bytes.length);
+            names.setBytes(bytePointer, lengthBytes, lengthCount);
+            bytePointer += lengthCount;
+            names.setBytes(bytePointer, bytes, bytes.length);
+            bytePointer += bytes.length;
+            // on a hash collision the first name stays deduplicated
+            if (!pointers.containsKey(hash))
+            {
+                pointers.put(hash, pointer);
+            }
         }
         lastName = name;
-        lastIndex = oldPointer;
-        return oldPointer;
+        lastIndex = pointer;
+        return pointer;
     }
 
     private byte[] getBytes( String name )
     {
+        int maxBytes = Math.min(MAX_NAME_BYTES, names.getSegmentSize());
         byte[] bytes = null;
         for (int i = 0; i < 2; i++)
         {
             try
             {
                 bytes = name.getBytes("UTF-8");
-                // we have to store the size of the array into *one* byte
-                if (bytes.length > 255)
+                if (bytes.length > maxBytes)
                 {
-                    String newName = name.substring(0, 256 / 4);
+                    String newName = name.substring(0, maxBytes / 4);
                     logger.info("Way name is too long: " + name + " truncated to " + newName);
                     name = newName;
                     continue;
@@ -118,7 +141,7 @@ public class NameIndex implements Storable<NameIndex>
                 throw new RuntimeException("Encoding not supported", ex);
             }
         }
-        if (bytes.length > 255)
+        if (bytes.length > maxBytes)
         {
             // really make sure no such problem exists
             throw new IllegalStateException("Way name is too long: " + name);
@@ -126,7 +149,82 @@ public class NameIndex implements Storable<NameIndex>
         return bytes;
     }
 
-    public String get( int pointer )
+    /**
+     * FNV-1a hash of the specified bytes
+     */
+    static long hash( byte[] bytes )
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes)
+        {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private boolean equals( long pointer, byte[] bytes )
+    {
+        int length = readLength(pointer);
+        if (length != bytes.length)
+        {
+            return false;
+        }
+        byte[] stored = new byte[length];
+        names.getBytes(pointer + lengthCount(length), stored, length);
+        for (int i = 0; i < length; i++)
+        {
+            if (stored[i] != bytes[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the length as variable length integer with 7 bits per byte into lengthBytes.
+     * <p/>
+     * @return the number of used bytes
+     */
+    private int writeLength( int length )
+    {
+        int count = 0;
+        while ((length & ~0x7F) != 0)
+        {
+            lengthBytes[count++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        lengthBytes[count++] = (byte) length;
+        return count;
+    }
+
+    private int readLength( long pointer )
+    {
+        int length = 0;
+        for (int shift = 0;; shift += 7)
+        {
+            names.getBytes(pointer++, lengthBytes, 1);
+            length |= (lengthBytes[0] & 0x7F) << shift;
+            if ((lengthBytes[0] & 0x80) == 0)
+            {
+                return length;
+            }
+        }
+    }
+
+    private static int lengthCount( int length )
+    {
+        int count = 1;
+        while ((length & ~0x7F) != 0)
+        {
+            length >>>= 7;
+            count++;
+        }
+        return count;
+    }
+
+    public String get( long pointer )
     {
         if (pointer < 0)
         {
@@ -136,11 +234,9 @@ public class NameIndex implements Storable<NameIndex>
         {
             return "";
         }
-        byte[] sizeBytes = new byte[1];
-        names.getBytes(pointer, sizeBytes, 1);
-        int size = sizeBytes[0];
+        int size = readLength(pointer);
         byte[] bytes = new byte[size];
-        names.getBytes(pointer + sizeBytes.length, bytes, size);
+        names.getBytes(pointer + lengthCount(size), bytes, size);
         try
         {
             return new String(bytes, "UTF-8");
@@ -150,17 +246,29 @@ public class NameIndex implements Storable<NameIndex>
         }
     }
 
+    /**
+     * @return the number of bytes used for the names
+     */
+    public long getSize()
+    {
+        return bytePointer;
+    }
+
     @Override
     public void flush()
     {
-        names.setHeader(0, bytePointer);
+        names.setHeader(0, (int) bytePointer);
+        names.setHeader(4, (int) (bytePointer >>> 32));
         names.flush();
+        // the hashes are only necessary while adding names e.g. during the import
+        pointers = null;
     }
 
     @Override
     public void close()
     {
         names.close();
+        pointers = null;
     }
 
     public void setSegmentSize( int segments )
@@ -177,5 +285,6 @@ public class NameIndex implements Storable<NameIndex>
     public void copyTo( NameIndex nameIndex )
     {
         names.copyTo(nameIndex.names);
+        nameIndex.bytePointer = bytePointer;
     }
 }
@@ -19,9 +19,26 @@ package com.graphhopper.storage;
 
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Helper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Peter Karich
@@ -33,6 +50,8 @@ public abstract class AbstractDataAccess implements DataAccess
     // reserve some space for downstream usage (in classes using/exting this)
     protected static final int HEADER_OFFSET = 20 * 4 + 20;
     protected static final byte[] EMPTY = new byte[1024];
+    // number of segments read by one task when loading concurrently
+    private static final int SEGMENTS_PER_TASK = 16;
     protected int header[] = new int[(HEADER_OFFSET - 20) / 4];
     private final String location;
     protected String name;
@@ -86,12 +105,17 @@ public abstract class AbstractDataAccess implements DataAccess
     protected void writeHeader( RandomAccessFile file, long length, int segmentSize ) throws IOException
     {
         file.seek(0);
-        file.writeUTF("GH");
-        file.writeLong(length);
-        file.writeInt(segmentSize);
+        writeHeader((DataOutput) file, length, segmentSize);
+    }
+
+    private void writeHeader( DataOutput out, long length, int segmentSize ) throws IOException
+    {
+        out.writeUTF("GH");
+        out.writeLong(length);
+        out.writeInt(segmentSize);
         for (int i = 0; i < header.length; i++)
         {
-            file.writeInt(header[i]);
+            out.writeInt(header[i]);
         }
     }
 
@@ -102,20 +126,247 @@ public abstract class AbstractDataAccess implements DataAccess
         {
             return -1;
         }
-        String versionHint = raFile.readUTF();
+        return readHeader((DataInput) raFile);
+    }
+
+    private long readHeader( DataInput in ) throws IOException
+    {
+        String versionHint = in.readUTF();
         if (!"GH".equals(versionHint))
         {
             throw new IllegalArgumentException("Not a GraphHopper file! Expected 'GH' as file marker but was " + versionHint);
         }
-        long bytes = raFile.readLong();
-        setSegmentSize(raFile.readInt());
+        long bytes = in.readLong();
+        setSegmentSize(in.readInt());
         for (int i = 0; i < header.length; i++)
         {
-            header[i] = raFile.readInt();
+            header[i] = in.readInt();
         }
         return bytes;
     }
 
+    /**
+     * Reads the header from a stream of the same format as the file written via flush, the data
+     * starts at HEADER_OFFSET.
+     * <p/>
+     * @return the length from the header or -1 if the stream is empty
+     */
+    protected long readHeader( InputStream in ) throws IOException
+    {
+        byte[] bytes = new byte[HEADER_OFFSET];
+        int read = readFully(in, bytes);
+        if (read == 0)
+        {
+            return -1;
+        }
+        if (read < bytes.length)
+        {
+            throw new IOException("Header of " + getName() + " is incomplete");
+        }
+        return readHeader((DataInput) new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * @return the number of read bytes which is only smaller than the array at the end of the
+     * stream
+     */
+    protected static int readFully( InputStream in, byte[] bytes ) throws IOException
+    {
+        int offset = 0;
+        while (offset < bytes.length)
+        {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read < 0)
+            {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    /**
+     * Loads the stored file with positional reads of its segments from a FileChannel. If an
+     * executor is specified the segments are read concurrently in chunks and the method returns
+     * before they are read, then this object must not be used until the returned futures are
+     * done.
+     * <p/>
+     * @return the pending reads, empty if no executor was specified, or null if nothing is stored
+     */
+    List<Future<Object>> loadSegments( ExecutorService service ) throws IOException
+    {
+        File file = new File(getFullName());
+        if (!file.exists() || file.length() == 0)
+        {
+            return null;
+        }
+        final RandomAccessFile raFile = new RandomAccessFile(file, "r");
+        boolean closeFile = true;
+        try
+        {
+            long byteCount = readHeader(raFile) - HEADER_OFFSET;
+            if (byteCount < 0)
+            {
+                return null;
+            }
+            int segmentCount = (int) (byteCount / segmentSizeInBytes);
+            if (byteCount % segmentSizeInBytes != 0)
+            {
+                segmentCount++;
+            }
+            initSegments(segmentCount);
+            final FileChannel channel = raFile.getChannel();
+            if (service == null || segmentCount <= 1)
+            {
+                readSegments(channel, 0, segmentCount);
+                return Collections.emptyList();
+            }
+
+            int tasks = (segmentCount + SEGMENTS_PER_TASK - 1) / SEGMENTS_PER_TASK;
+            // the last finished task closes the file
+            final AtomicInteger remaining = new AtomicInteger(tasks);
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(tasks);
+            for (int task = 0; task < tasks; task++)
+            {
+                final int from = task * SEGMENTS_PER_TASK;
+                final int to = Math.min(segmentCount, from + SEGMENTS_PER_TASK);
+                futures.add(service.submit(new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws IOException
+                    {
+                        try
+                        {
+                            readSegments(channel, from, to);
+                        } finally
+                        {
+                            if (remaining.decrementAndGet() == 0)
+                            {
+                                raFile.close();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            closeFile = false;
+            return futures;
+        } finally
+        {
+            if (closeFile)
+            {
+                raFile.close();
+            }
+        }
+    }
+
+    private void readSegments( FileChannel channel, int from, int to ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(segmentSizeInBytes);
+        for (int s = from; s < to; s++)
+        {
+            buffer.clear();
+            int read = readFully(channel, buffer, HEADER_OFFSET + (long) s * segmentSizeInBytes);
+            if (read <= 0)
+            {
+                throw new IllegalStateException("segment " + s + " is empty? " + toString());
+            }
+            buffer.flip();
+            setSegment(s, buffer);
+        }
+    }
+
+    /**
+     * @return the number of read bytes which is only smaller than the remaining space of the
+     * buffer at the end of the file
+     */
+    protected static int readFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        int offset = 0;
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position + offset);
+            if (read < 0)
+            {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer at the specified position of the file.
+     */
+    protected static void writeFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Creates the array for the specified number of segments before they are loaded via
+     * setSegment. Only supported for in-memory objects.
+     */
+    void initSegments( int count )
+    {
+        throw new UnsupportedOperationException("Cannot load segments of " + getClass().getSimpleName());
+    }
+
+    /**
+     * Copies the bytes of the buffer into the specified segment. Called concurrently for different
+     * segments.
+     */
+    void setSegment( int segment, ByteBuffer buffer )
+    {
+        throw new UnsupportedOperationException("Cannot load segments of " + getClass().getSimpleName());
+    }
+
+    /**
+     * Loads the content of a file written via flush from the specified stream, e.g. an entry of a
+     * compressed archive. Only supported for in-memory objects.
+     */
+    boolean loadExisting( InputStream in ) throws IOException
+    {
+        throw new UnsupportedOperationException("Cannot load " + getClass().getSimpleName() + " from a stream");
+    }
+
+    /**
+     * Writes the header and the data in the same format as flush into the specified stream. Call
+     * flush before to update the header.
+     */
+    void writeTo( OutputStream out ) throws IOException
+    {
+        long cap = getCapacity();
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(HEADER_OFFSET);
+        writeHeader((DataOutput) new DataOutputStream(headerBytes), HEADER_OFFSET + cap, getSegmentSize());
+        // the data starts at HEADER_OFFSET
+        while (headerBytes.size() < HEADER_OFFSET)
+        {
+            headerBytes.write(0);
+        }
+        headerBytes.writeTo(out);
+
+        int segSize = getSegmentSize();
+        byte[] bytes = new byte[segSize];
+        for (long bytePos = 0; bytePos < cap; bytePos += segSize)
+        {
+            if (isIntBased())
+            {
+                for (int offset = 0; offset < segSize; offset += 4)
+                {
+                    BitUtil.fromInt(bytes, getInt(bytePos + offset), offset);
+                }
+            } else
+            {
+                getBytes(bytePos, bytes, segSize);
+            }
+            out.write(bytes);
+        }
+    }
+
     @Override
     public DataAccess copyTo( DataAccess da )
     {
@@ -19,9 +19,16 @@ package com.graphhopper.storage;
 
 import com.graphhopper.util.Helper;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Implements some common methods for the subclasses.
@@ -121,6 +128,86 @@ public class GHDirectory implements Directory
         return da;
     }
 
+    /**
+     * Loads the stored in-memory objects of the specified names concurrently, where the segments
+     * of every object are read in chunks from a FileChannel. A later loadExisting of such an
+     * object returns immediately. Does nothing for memory mapped or not stored directories.
+     * <p/>
+     * @param threads the number of threads reading the files
+     */
+    public void preload( int threads, String... names )
+    {
+        if (!isStoring() || defaultType == DAType.MMAP || threads <= 1)
+        {
+            return;
+        }
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (String name : names)
+            {
+                if (!new File(location + name).exists())
+                {
+                    continue;
+                }
+                DataAccess da = find(name);
+                if (!(da instanceof RAMDataAccess) && !(da instanceof RAMIntDataAccess)
+                        || da.getCapacity() > 0)
+                {
+                    continue;
+                }
+                List<Future<Object>> pending = ((AbstractDataAccess) da).loadSegments(service);
+                if (pending != null)
+                {
+                    futures.addAll(pending);
+                }
+            }
+            for (Future<Object> future : futures)
+            {
+                future.get();
+            }
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Problem while loading " + location, ex);
+        } catch (ExecutionException ex)
+        {
+            throw new RuntimeException("Problem while loading " + location, ex.getCause());
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading " + location, ex);
+        } finally
+        {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Reads the already loaded memory mapped objects of the specified names into the page cache,
+     * in the specified order until the budget is reached. Does nothing for in-memory objects.
+     * <p/>
+     * @param maxBytes the budget in bytes, use a negative value to read all objects completely
+     * @return the number of bytes which were read
+     */
+    public long warmUp( long maxBytes, String... names )
+    {
+        if (maxBytes < 0)
+        {
+            maxBytes = Long.MAX_VALUE;
+        }
+        long bytes = 0;
+        for (String name : names)
+        {
+            DataAccess da = map.get(name);
+            if (da instanceof MMapDataAccess && bytes < maxBytes)
+            {
+                bytes += ((MMapDataAccess) da).warmUp(maxBytes - bytes);
+            }
+        }
+        return bytes;
+    }
+
     @Override
     public DataAccess rename( DataAccess da, String newName )
     {
@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reads and writes the DataAccess objects of a directory as one zip archive (.ghz) without
+ * extracting the files to disc. Every file of the graph folder is one entry of the archive, so the
+ * archive can still be created by zipping the folder and extracted via Helper.unzip.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GHZipArchive
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Loads every entry of the archive into the DataAccess object of the same name. The entries
+     * are decompressed in parallel. Only in-memory DataAccess objects are supported, their
+     * loadExisting method then returns true without reading the graph folder.
+     */
+    public static void load( File archive, GHDirectory dir, int threads ) throws IOException
+    {
+        final ZipFile zip = new ZipFile(archive);
+        ExecutorService service = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory())
+                {
+                    continue;
+                }
+                // the directory is not thread safe
+                final AbstractDataAccess da = (AbstractDataAccess) dir.find(entry.getName());
+                futures.add(service.submit(new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws IOException
+                    {
+                        InputStream in = new BufferedInputStream(zip.getInputStream(entry), BUFFER_SIZE);
+                        try
+                        {
+                            if (!da.loadExisting(in))
+                            {
+                                throw new IllegalStateException("Entry " + entry.getName() + " is empty");
+                            }
+                        } finally
+                        {
+                            in.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Object> future : futures)
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof IOException)
+            {
+                throw (IOException) ex.getCause();
+            }
+            throw new RuntimeException("Couldn't load " + archive, ex.getCause());
+        } finally
+        {
+            service.shutdownNow();
+            zip.close();
+        }
+    }
+
+    /**
+     * Writes all DataAccess objects of the directory into the archive. Call flush of the graph and
+     * the index before, so that the headers are up to date.
+     */
+    public static void store( GHDirectory dir, File archive ) throws IOException
+    {
+        List<DataAccess> list = new ArrayList<DataAccess>(dir.getAll());
+        // a stable order makes archives of the same graph comparable
+        Collections.sort(list, new Comparator<DataAccess>()
+        {
+            @Override
+            public int compare( DataAccess o1, DataAccess o2 )
+            {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), BUFFER_SIZE));
+        try
+        {
+            for (DataAccess da : list)
+            {
+                zos.putNextEntry(new ZipEntry(da.getName()));
+                ((AbstractDataAccess) da).writeTo(zos);
+                zos.closeEntry();
+            }
+        } finally
+        {
+            zos.close();
+        }
+    }
+}
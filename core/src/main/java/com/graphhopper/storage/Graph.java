@@ -63,7 +63,7 @@ public interface Graph
      * @param flags see EdgeFlags - involves velocity and direction
      * @return the created edge
      */
-    EdgeIterator edge( int a, int b, double distance, int flags );
+    EdgeIterator edge( int a, int b, double distance, long flags );
 
     EdgeIterator edge( int a, int b, double distance, boolean bothDirections );
 
@@ -88,6 +88,15 @@ public interface Graph
      */
     EdgeIterator getEdges( int index, EdgeFilter filter );
 
+    /**
+     * Same as getEdges(index, filter) but reuses the specified iterator if possible to avoid
+     * garbage when the edges of many nodes are traversed one after another.
+     * <p/>
+     * @param reuse null or an iterator returned from this method of the same graph. It must not be
+     * used anymore except via the returned iterator.
+     */
+    EdgeIterator getEdges( int index, EdgeFilter filter, EdgeIterator reuse );
+
     /**
      * Returns all the edges reachable from the specified index. Same behaviour as
      * graph.getEdges(index, new AllEdgesFilter());
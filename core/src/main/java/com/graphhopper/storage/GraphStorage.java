@@ -53,6 +53,8 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
     private Directory dir;
     // edge memory layout: nodeA,nodeB,linkA,linkB,dist,flags,geometryRef,streetNameRef
     protected final int E_NODEA, E_NODEB, E_LINKA, E_LINKB, E_DIST, E_FLAGS, E_GEO, E_NAME;
+    // the upper 4 bytes of the flags are appended to the edge entry, only if 8 bytes are used
+    private int E_FLAGS_HIGH = -1;
     protected int edgeEntryBytes;
     protected DataAccess edges;
     /**
@@ -139,6 +141,15 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         edgeEntryBytes = edgeEntryIndex + 4;
     }
 
+    private void initFlagsEntry()
+    {
+        if (encodingManager.getBytesForFlags() == 8)
+        {
+            E_FLAGS_HIGH = nextEdgeEntryIndex();
+            initNodeAndEdgeEntrySize();
+        }
+    }
+
     /**
      * @return the directory where this graph is stored.
      */
@@ -168,6 +179,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         {
             throw new IllegalStateException("EncodingManager can only be null if you call loadExisting");
         }
+        initFlagsEntry();
         long initSize = Math.max(byteCount, 100);
         nodes.create(initSize);
         initNodeRefs(0, nodes.getCapacity());
@@ -177,6 +189,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         nameIndex.create(1000);                
         properties.create(100);
         properties.put("osmreader.acceptWay", encodingManager.encoderList());
+        properties.put("graph.bytesForFlags", encodingManager.getBytesForFlags());
         properties.putCurrentVersions();        
         initialized = true;
         return this;
@@ -270,7 +283,6 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
             return;
         }
 
-        long oldNodes = nodeCount;
         nodeCount = nodeIndex + 1;
         long deltaCap = (long) nodeCount * nodeEntryBytes - nodes.getCapacity();
         if (deltaCap <= 0)
@@ -278,14 +290,41 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
             return;
         }
 
+        incNodeCapacity(deltaCap);
+    }
+
+    private void incNodeCapacity( long deltaCap )
+    {
+        // the nodes up to the old capacity are already initialized
+        long oldBytesCapacity = nodes.getCapacity() / nodeEntryBytes * nodeEntryBytes;
         long newBytesCapacity = incCapacity(nodes, deltaCap);
-        initNodeRefs(oldNodes * nodeEntryBytes, newBytesCapacity);
+        initNodeRefs(oldBytesCapacity, newBytesCapacity);
         if (removedNodes != null)
         {
             getRemovedNodes().ensureCapacity((int) (newBytesCapacity / nodeEntryBytes));
         }
     }
 
+    /**
+     * Reserves the space for the specified number of nodes, edges, way geometry and names in one
+     * step instead of growing segment by segment while adding them. Call this after create.
+     */
+    public GraphStorage ensureCapacity( int nodeCount, int edgeCount, long geometryBytes, long nameBytes )
+    {
+        long deltaCap = (long) nodeCount * nodeEntryBytes - nodes.getCapacity();
+        if (deltaCap > 0)
+        {
+            incNodeCapacity(deltaCap);
+        }
+        if (edgeCount > 0)
+        {
+            ensureEdgeIndex(edgeCount - 1);
+        }
+        ensureGeometry(geometryBytes, 0);
+        nameIndex.ensureCapacity(nameBytes);
+        return this;
+    }
+
     /**
      * Initializes the node area with the empty edge value.
      */
@@ -326,7 +365,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
     }
 
     @Override
-    public EdgeIterator edge( int a, int b, double distance, int flags )
+    public EdgeIterator edge( int a, int b, double distance, long flags )
     {
         ensureNodeIndex(Math.max(a, b));
         int edge = internalEdgeAdd(a, b, distance, flags);
@@ -346,7 +385,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
     /**
      * @return edgeIdPointer which is edgeId * edgeEntrySize
      */
-    int internalEdgeAdd( int fromNodeId, int toNodeId, double dist, int flags )
+    int internalEdgeAdd( int fromNodeId, int toNodeId, double dist, long flags )
     {
         int newOrExistingEdge = nextEdge();
         connectNewEdge(fromNodeId, newOrExistingEdge);
@@ -392,7 +431,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
     }
 
     private long writeEdge( int edge, int nodeThis, int nodeOther, int nextEdge, int nextEdgeOther,
-            double distance, int flags )
+            double distance, long flags )
     {
         if (nodeThis > nodeOther)
         {
@@ -413,10 +452,35 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         edges.setInt(edgePointer + E_LINKA, nextEdge);
         edges.setInt(edgePointer + E_LINKB, nextEdgeOther);
         edges.setInt(edgePointer + E_DIST, distToInt(distance));
-        edges.setInt(edgePointer + E_FLAGS, flags);
+        setEdgeFlags(edgePointer, flags);
         return edgePointer;
     }
 
+    private void setEdgeFlags( long edgePointer, long flags )
+    {
+        edges.setInt(edgePointer + E_FLAGS, (int) flags);
+        if (E_FLAGS_HIGH >= 0)
+        {
+            edges.setInt(edgePointer + E_FLAGS_HIGH, (int) (flags >>> 32));
+        } else if (flags >>> 32 != 0)
+        {
+            throw new IllegalArgumentException("Flags need more than 4 bytes: " + flags);
+        }
+    }
+
+    /**
+     * @return the flags of the edge in the direction from the lower to the higher node
+     */
+    private long getEdgeFlags( long edgePointer )
+    {
+        long flags = edges.getInt(edgePointer + E_FLAGS) & 0xFFFFFFFFL;
+        if (E_FLAGS_HIGH >= 0)
+        {
+            flags |= (long) edges.getInt(edgePointer + E_FLAGS_HIGH) << 32;
+        }
+        return flags;
+    }
+
     protected final long getLinkPosInEdgeArea( int nodeThis, int nodeOther, long edgePointer )
     {
         return nodeThis <= nodeOther ? edgePointer + E_LINKA : edgePointer + E_LINKB;
@@ -579,13 +643,13 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         }
 
         @Override
-        public int getFlags()
+        public long getFlags()
         {
-            return edges.getInt(edgePointer + E_FLAGS);
+            return getEdgeFlags(edgePointer);
         }
 
         @Override
-        public void setFlags( int flags )
+        public void setFlags( long flags )
         {
             throw new UnsupportedOperationException("Not supported yet.");
         }
@@ -611,20 +675,24 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         @Override
         public PointList getWayGeometry()
         {
-            return GraphStorage.this.getWayGeometry(edgePointer, getBaseNode() > getAdjNode());
+            return GraphStorage.this.getWayGeometry(edgePointer, getBaseNode() > getAdjNode(), null);
+        }
+
+        @Override
+        public PointList getWayGeometry( PointList list )
+        {
+            return GraphStorage.this.getWayGeometry(edgePointer, getBaseNode() > getAdjNode(), list);
         }
 
         @Override
         public String getName() 
         {
-            int nameIndexRef = edges.getInt(edgePointer + E_NAME);
-            return nameIndex.get(nameIndexRef);
+            return GraphStorage.this.getName(edgePointer);
         }
 
         @Override
         public void setName(String name) {
-            int nameIndexRef = nameIndex.put(name);
-            edges.setInt(edgePointer + E_NAME, nameIndexRef);
+            GraphStorage.this.setName(edgePointer, name);
         }
         
         @Override
@@ -685,9 +753,9 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         }
 
         @Override
-        public int getFlags()
+        public long getFlags()
         {
-            int flags = edges.getInt(edgePointer + E_FLAGS);
+            long flags = getEdgeFlags(edgePointer);
             if (switchFlags)
             {
                 return encodingManager.swapDirection(flags);
@@ -708,6 +776,19 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         return createEdgeIterable(node, allEdgesFilter);
     }
 
+    @Override
+    public EdgeIterator getEdges( int node, EdgeFilter filter, EdgeIterator reuse )
+    {
+        // single edges cannot be reused as they are not positioned before the first edge of a node
+        if (reuse instanceof EdgeIterable && !(reuse instanceof SingleEdge)
+                && ((EdgeIterable) reuse).getGraph() == this)
+        {
+            ((EdgeIterable) reuse).reset(node, filter);
+            return reuse;
+        }
+        return createEdgeIterable(node, filter);
+    }
+
     protected EdgeIterator createEdgeIterable( int baseNode, EdgeFilter filter )
     {
         int edge = nodes.getInt((long) baseNode * nodeEntryBytes + N_EDGE_REF);
@@ -716,8 +797,8 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
 
     protected class EdgeIterable implements EdgeIterator
     {
-        final EdgeFilter filter;
-        final int baseNode;
+        EdgeFilter filter;
+        int baseNode;
         // edge properties
         int node;
         int edgeId;
@@ -733,6 +814,22 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
             this.filter = filter;
         }
 
+        /**
+         * Moves this iterator to the edges of the specified node.
+         */
+        final void reset( int baseNode, EdgeFilter filter )
+        {
+            this.nextEdge = this.edgeId = nodes.getInt((long) baseNode * nodeEntryBytes + N_EDGE_REF);
+            this.edgePointer = (long) nextEdge * edgeEntryBytes;
+            this.baseNode = baseNode;
+            this.filter = filter;
+        }
+
+        final GraphStorage getGraph()
+        {
+            return GraphStorage.this;
+        }
+
         @Override
         public final boolean next()
         {
@@ -793,9 +890,9 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         }
 
         @Override
-        public int getFlags()
+        public long getFlags()
         {
-            int flags = edges.getInt(edgePointer + E_FLAGS);
+            long flags = getEdgeFlags(edgePointer);
 
             // switch direction flags if necessary
             if (baseNode > node)
@@ -806,7 +903,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         }
 
         @Override
-        public final void setFlags( int fl )
+        public final void setFlags( long fl )
         {
             int nep = edges.getInt(getLinkPosInEdgeArea(baseNode, node, edgePointer));
             int neop = edges.getInt(getLinkPosInEdgeArea(node, baseNode, edgePointer));
@@ -828,7 +925,13 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         @Override
         public final PointList getWayGeometry()
         {
-            return GraphStorage.this.getWayGeometry(edgePointer, baseNode > node);
+            return GraphStorage.this.getWayGeometry(edgePointer, baseNode > node, null);
+        }
+
+        @Override
+        public final PointList getWayGeometry( PointList list )
+        {
+            return GraphStorage.this.getWayGeometry(edgePointer, baseNode > node, list);
         }
 
         @Override
@@ -839,14 +942,12 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         
         @Override
         public String getName() {
-            int nameIndexRef = edges.getInt(edgePointer + E_NAME);
-            return nameIndex.get(nameIndexRef);
+            return GraphStorage.this.getName(edgePointer);
         }
 
         @Override
         public void setName(String name) {
-            int nameIndexRef = nameIndex.put(name);
-            edges.setInt(edgePointer + E_NAME, nameIndexRef);
+            GraphStorage.this.setName(edgePointer, name);
         }
         
         @Override
@@ -862,6 +963,22 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         }
     }
 
+    private String getName( long edgePointer )
+    {
+        // the reference of the name is stored as unsigned integer
+        return nameIndex.get(edges.getInt(edgePointer + E_NAME) & 0xFFFFFFFFL);
+    }
+
+    private void setName( long edgePointer, String name )
+    {
+        long nameIndexRef = nameIndex.put(name);
+        if (nameIndexRef > 0xFFFFFFFFL)
+        {
+            throw new IllegalStateException("Names cannot be referenced beyond 4GB " + nameIndexRef);
+        }
+        edges.setInt(edgePointer + E_NAME, (int) nameIndexRef);
+    }
+
     private void setWayGeometry( PointList pillarNodes, long edgePointer, boolean reverse )
     {
         if (pillarNodes != null && !pillarNodes.isEmpty())
@@ -894,21 +1011,42 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         }
     }
 
-    private PointList getWayGeometry( long edgePointer, boolean reverse )
+    /**
+     * @param pillarNodes the list to fill or null to create a new one
+     */
+    private PointList getWayGeometry( long edgePointer, boolean reverse, PointList pillarNodes )
     {
         long geoRef = edges.getInt(edgePointer + E_GEO);
         if (geoRef == EdgeIterator.NO_EDGE)
         {
-            return PointList.EMPTY;
+            if (pillarNodes == null)
+            {
+                return PointList.EMPTY;
+            }
+            pillarNodes.clear();
+            return pillarNodes;
         }
 
         geoRef *= 4;
         int count = wayGeometry.getInt(geoRef);
 
         geoRef += 4;
+        if (pillarNodes != null)
+        {
+            // read the coordinates directly instead of creating a temporary byte array
+            pillarNodes.clear();
+            for (int i = 0; i < count; i++)
+            {
+                long pointer = geoRef + (long) (reverse ? count - 1 - i : i) * 8;
+                pillarNodes.add(Helper.intToDegree(wayGeometry.getInt(pointer)),
+                        Helper.intToDegree(wayGeometry.getInt(pointer + 4)));
+            }
+            return pillarNodes;
+        }
+
         byte[] bytes = new byte[count * 2 * 4];
         wayGeometry.getBytes(geoRef, bytes, bytes.length);
-        PointList pillarNodes = new PointList(count);
+        pillarNodes = new PointList(count);
         if (reverse)
         {
             int index = bytes.length;
@@ -1204,7 +1342,7 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
 
             int linkA = edges.getInt(getLinkPosInEdgeArea(nodeA, nodeB, edgePointer));
             int linkB = edges.getInt(getLinkPosInEdgeArea(nodeB, nodeA, edgePointer));
-            int flags = edges.getInt(edgePointer + E_FLAGS);
+            long flags = getEdgeFlags(edgePointer);
             double distance = getDist(edgePointer);
             writeEdge(edge, updatedA, updatedB, linkA, linkB, distance, flags);
         }
@@ -1212,6 +1350,15 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
         // we do not remove the invalid edges => edgeCount stays the same!
         nodeCount -= removeNodeCount;
 
+        // the moved nodes left their old entries behind, new nodes need them without edges
+        long freedStart = (long) nodeCount * nodeEntryBytes;
+        long freedEnd = freedStart + (long) removeNodeCount * nodeEntryBytes;
+        for (long pointer = freedStart; pointer < freedEnd; pointer += 4)
+        {
+            nodes.setInt(pointer, 0);
+        }
+        initNodeRefs(freedStart, freedEnd);
+
         // health check         
         if (isTestingEnabled())
         {
@@ -1281,11 +1428,17 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
                 throw new IllegalStateException("cannot load name index. corrupt file or directory? " + dir);
             }
             String acceptStr = "";
+            int bytesForFlags = 4;
             if (properties.loadExisting())
             {
                 properties.checkVersions(false);
                 // check encoding for compatiblity
                 acceptStr = properties.get("osmreader.acceptWay");
+                String bytesStr = properties.get("graph.bytesForFlags");
+                if (!bytesStr.isEmpty())
+                {
+                    bytesForFlags = Integer.parseInt(bytesStr);
+                }
             } else
             {
                 throw new IllegalStateException("cannot load properties. corrupt file or directory? " + dir);
@@ -1297,11 +1450,15 @@ public class GraphStorage implements Graph, Storable<GraphStorage>
                 {
                     throw new IllegalStateException("No EncodingManager was configured. And no one was found in the graph: " + dir.getLocation());
                 }
-                encodingManager = new EncodingManager(acceptStr);
+                encodingManager = new EncodingManager(acceptStr, bytesForFlags);
             } else if (!acceptStr.isEmpty() && !encodingManager.encoderList().equals(acceptStr))
             {
                 throw new IllegalStateException("Encoding does not match:\nGraphhopper config: " + encodingManager.encoderList() + "\nGraph: " + acceptStr);
+            } else if (encodingManager.getBytesForFlags() != bytesForFlags)
+            {
+                throw new IllegalStateException("Bytes for flags do not match:\nGraphhopper config: " + encodingManager.getBytesForFlags() + "\nGraph: " + bytesForFlags);
             }
+            initFlagsEntry();
 
             // nodes
             int hash = nodes.getHeader(0);
@@ -19,6 +19,7 @@ package com.graphhopper.storage;
 
 import com.graphhopper.routing.util.AllEdgesSkipIterator;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipIterator;
 
 /**
@@ -33,7 +34,7 @@ public interface LevelGraph extends Graph
     int getLevel( int index );
 
     @Override
-    EdgeSkipIterator edge( int a, int b, double distance, int flags );
+    EdgeSkipIterator edge( int a, int b, double distance, long flags );
 
     @Override
     EdgeSkipIterator edge( int a, int b, double distance, boolean bothDirections );
@@ -47,6 +48,9 @@ public interface LevelGraph extends Graph
     @Override
     EdgeSkipIterator getEdges( int nodeId, EdgeFilter filter );
 
+    @Override
+    EdgeSkipIterator getEdges( int nodeId, EdgeFilter filter, EdgeIterator reuse );
+
     @Override
     AllEdgesSkipIterator getAllEdges();
 }
@@ -66,7 +66,7 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph
     }
 
     @Override
-    public EdgeSkipIterator edge( int a, int b, double distance, int flags )
+    public EdgeSkipIterator edge( int a, int b, double distance, long flags )
     {
         ensureNodeIndex(Math.max(a, b));
         int edgeId = internalEdgeAdd(a, b, distance, flags);
@@ -88,6 +88,13 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph
         return createEdgeIterable(node, filter);
     }
 
+    @Override
+    public EdgeSkipIterator getEdges( int node, EdgeFilter filter, EdgeIterator reuse )
+    {
+        // a reused iterator was created via createEdgeIterable too
+        return (EdgeSkipIterator) super.getEdges(node, filter, reuse);
+    }
+
     @Override
     public LevelGraphStorage create( long nodeCount )
     {
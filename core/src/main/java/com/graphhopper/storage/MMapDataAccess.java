@@ -274,6 +274,31 @@ public class MMapDataAccess extends AbstractDataAccess
         }
     }
 
+    /**
+     * Reads the mapped segments from the beginning into the page cache of the operating system to
+     * avoid page faults for the first accesses e.g. after a restart. The budget is rounded up to
+     * whole segments.
+     * <p/>
+     * @return the number of bytes which were read
+     */
+    public long warmUp( long maxBytes )
+    {
+        long bytes = 0;
+        for (ByteBuffer bb : segments)
+        {
+            if (bytes >= maxBytes)
+            {
+                break;
+            }
+            if (bb instanceof MappedByteBuffer)
+            {
+                ((MappedByteBuffer) bb).load();
+            }
+            bytes += bb.capacity();
+        }
+        return bytes;
+    }
+
     @Override
     public void flush()
     {
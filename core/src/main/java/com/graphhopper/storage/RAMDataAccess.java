@@ -20,7 +20,10 @@ package com.graphhopper.storage;
 import com.graphhopper.util.BitUtil;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +37,7 @@ public class RAMDataAccess extends AbstractDataAccess
     private byte[][] segments = new byte[0][];
     private boolean closed = false;
     private boolean store;
+    private boolean loaded;
 
     RAMDataAccess()
     {
@@ -143,55 +147,71 @@ public class RAMDataAccess extends AbstractDataAccess
     {
         if (segments.length > 0)
         {
+            if (loaded)
+            {
+                // already loaded e.g. concurrently via GHDirectory.preload
+                return true;
+            }
             throw new IllegalStateException("already initialized");
         }
         if (!store || closed)
         {
             return false;
         }
-        File file = new File(getFullName());
-        if (!file.exists() || file.length() == 0)
+        try
+        {
+            return loadSegments(null) != null;
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    boolean loadExisting( InputStream in ) throws IOException
+    {
+        if (segments.length > 0)
+        {
+            throw new IllegalStateException("already initialized");
+        }
+        long byteCount = readHeader(in) - HEADER_OFFSET;
+        if (byteCount < 0)
         {
             return false;
         }
-        try
+        int segmentCount = (int) (byteCount / segmentSizeInBytes);
+        if (byteCount % segmentSizeInBytes != 0)
         {
-            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r");
-            try
-            {
-                long byteCount = readHeader(raFile) - HEADER_OFFSET;
-                if (byteCount < 0)
-                {
-                    return false;
-                }
-
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow                
-                int segmentCount = (int) (byteCount / segmentSizeInBytes);
-                if (byteCount % segmentSizeInBytes != 0)
-                {
-                    segmentCount++;
-                }
-                segments = new byte[segmentCount][];
-                for (int s = 0; s < segmentCount; s++)
-                {
-                    byte[] bytes = new byte[segmentSizeInBytes];
-                    int read = raFile.read(bytes);
-                    if (read <= 0)
-                    {
-                        throw new IllegalStateException("segment " + s + " is empty? " + toString());
-                    }
-                    segments[s] = bytes;
-                }
-                return true;
-            } finally
+            segmentCount++;
+        }
+        byte[][] tmpSegments = new byte[segmentCount][];
+        for (int s = 0; s < segmentCount; s++)
+        {
+            byte[] bytes = new byte[segmentSizeInBytes];
+            if (readFully(in, bytes) <= 0)
             {
-                raFile.close();
+                throw new IllegalStateException("segment " + s + " is empty? " + toString());
             }
-        } catch (IOException ex)
-        {
-            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+            tmpSegments[s] = bytes;
         }
+        segments = tmpSegments;
+        loaded = true;
+        return true;
+    }
+
+    @Override
+    void initSegments( int count )
+    {
+        segments = new byte[count][];
+        loaded = true;
+    }
+
+    @Override
+    void setSegment( int segment, ByteBuffer buffer )
+    {
+        byte[] bytes = new byte[segmentSizeInBytes];
+        buffer.get(bytes, 0, buffer.remaining());
+        segments[segment] = bytes;
     }
 
     @Override
@@ -212,12 +232,11 @@ public class RAMDataAccess extends AbstractDataAccess
             {
                 long len = getCapacity();
                 writeHeader(raFile, len, segmentSizeInBytes);
-                raFile.seek(HEADER_OFFSET);
-                // raFile.writeInt() <- too slow, so copy into byte array
+                // positional writes of the whole segments without copying them
+                FileChannel channel = raFile.getChannel();
                 for (int s = 0; s < segments.length; s++)
                 {
-                    byte area[] = segments[s];
-                    raFile.write(area);
+                    writeFully(channel, ByteBuffer.wrap(segments[s]), HEADER_OFFSET + (long) s * segmentSizeInBytes);
                 }
             } finally
             {
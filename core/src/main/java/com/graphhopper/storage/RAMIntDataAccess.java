@@ -20,7 +20,10 @@ package com.graphhopper.storage;
 import com.graphhopper.util.BitUtil;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -34,6 +37,7 @@ public class RAMIntDataAccess extends AbstractDataAccess
     private int[][] segments = new int[0][];
     private boolean closed = false;
     private boolean store;
+    private boolean loaded;
     private transient int segmentSizeIntsPower;
 
     RAMIntDataAccess()
@@ -144,56 +148,78 @@ public class RAMIntDataAccess extends AbstractDataAccess
     {
         if (segments.length > 0)
         {
+            if (loaded)
+            {
+                // already loaded e.g. concurrently via GHDirectory.preload
+                return true;
+            }
             throw new IllegalStateException("already initialized");
         }
         if (!store || closed)
         {
             return false;
         }
-        File file = new File(getFullName());
-        if (!file.exists() || file.length() == 0)
+        try
+        {
+            return loadSegments(null) != null;
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    boolean loadExisting( InputStream in ) throws IOException
+    {
+        if (segments.length > 0)
+        {
+            throw new IllegalStateException("already initialized");
+        }
+        long byteCount = readHeader(in) - HEADER_OFFSET;
+        if (byteCount < 0)
         {
             return false;
         }
-        try
+        int segmentCount = (int) (byteCount / segmentSizeInBytes);
+        if (byteCount % segmentSizeInBytes != 0)
         {
-            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r");
-            try
+            segmentCount++;
+        }
+        byte[] bytes = new byte[segmentSizeInBytes];
+        int[][] tmpSegments = new int[segmentCount][];
+        for (int s = 0; s < segmentCount; s++)
+        {
+            int read = readFully(in, bytes) / 4;
+            if (read <= 0)
             {
-                long byteCount = readHeader(raFile) - HEADER_OFFSET;
-                if (byteCount < 0)
-                {
-                    return false;
-                }
-                byte[] bytes = new byte[segmentSizeInBytes];
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow                
-                int segmentCount = (int) (byteCount / segmentSizeInBytes);
-                if (byteCount % segmentSizeInBytes != 0)
-                {
-                    segmentCount++;
-                }
-                segments = new int[segmentCount][];
-                for (int s = 0; s < segmentCount; s++)
-                {
-                    int read = raFile.read(bytes) / 4;
-                    int area[] = new int[read];
-                    for (int j = 0; j < read; j++)
-                    {
-                        // TODO different system have different default byte order!
-                        area[j] = BitUtil.toInt(bytes, j * 4);
-                    }
-                    segments[s] = area;
-                }
-                return true;
-            } finally
+                throw new IllegalStateException("segment " + s + " is empty? " + toString());
+            }
+            int area[] = new int[read];
+            for (int j = 0; j < read; j++)
             {
-                raFile.close();
+                area[j] = BitUtil.toInt(bytes, j * 4);
             }
-        } catch (IOException ex)
-        {
-            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+            tmpSegments[s] = area;
         }
+        segments = tmpSegments;
+        loaded = true;
+        return true;
+    }
+
+    @Override
+    void initSegments( int count )
+    {
+        segments = new int[count][];
+        loaded = true;
+    }
+
+    @Override
+    void setSegment( int segment, ByteBuffer buffer )
+    {
+        // the byte order of the buffer is big endian like BitUtil
+        int area[] = new int[buffer.remaining() / 4];
+        buffer.asIntBuffer().get(area);
+        segments[segment] = area;
     }
 
     @Override
@@ -214,19 +240,16 @@ public class RAMIntDataAccess extends AbstractDataAccess
             {
                 long len = getCapacity();
                 writeHeader(raFile, len, segmentSizeInBytes);
-                raFile.seek(HEADER_OFFSET);
-                // raFile.writeInt() <- too slow, so copy into byte array
+                // raFile.writeInt() <- too slow, so copy into a buffer
+                FileChannel channel = raFile.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(segmentSizeInBytes);
                 for (int s = 0; s < segments.length; s++)
                 {
                     int area[] = segments[s];
-                    int intLen = area.length;
-                    byte[] byteArea = new byte[intLen * 4];
-                    for (int i = 0; i < intLen; i++)
-                    {
-                        // TODO different system have different default byte order!
-                        BitUtil.fromInt(byteArea, area[i], i * 4);
-                    }
-                    raFile.write(byteArea);
+                    buffer.clear();
+                    buffer.asIntBuffer().put(area);
+                    buffer.limit(area.length * 4);
+                    writeFully(channel, buffer, HEADER_OFFSET + (long) s * segmentSizeInBytes);
                 }
             } finally
             {
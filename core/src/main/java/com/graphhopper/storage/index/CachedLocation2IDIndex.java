@@ -0,0 +1,320 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor license
+ *  agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License. You may obtain a copy of the
+ *  License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.geohash.SpatialKeyAlgo;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.shapes.BBox;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of findClosest for recurring coordinates, e.g. the same pickup locations
+ * requested all day. The coordinates are rounded to the specified precision, so all queries within
+ * roughly that distance share one result. The edge filter is part of the key, so it should
+ * implement equals and hashCode like DefaultEdgeFilter does - other filters only hit the cache if
+ * the same instance is used.
+ * <p/>
+ * The cache is split into segments with their own lock and least recently used eviction, so
+ * concurrent lookups rarely wait for each other. It is cleared when the underlying index is
+ * prepared or loaded again.
+ * <p/>
+ * @author Peter Karich
+ */
+public class CachedLocation2IDIndex implements Location2IDIndex
+{
+    private static final int SEGMENTS = 16;
+    private final Location2IDIndex index;
+    private final SpatialKeyAlgo keyAlgo;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum number of cached results
+     * @param precisionInMeter queries closer than this are likely to get the same result
+     */
+    public CachedLocation2IDIndex( Location2IDIndex index, int maxSize, double precisionInMeter )
+    {
+        if (maxSize <= 0)
+        {
+            throw new IllegalArgumentException("Cache size has to be positive but was " + maxSize);
+        }
+        if (precisionInMeter <= 0)
+        {
+            throw new IllegalArgumentException("Precision has to be positive but was " + precisionInMeter);
+        }
+        this.index = index;
+        int bitsPerAxis = (int) Math.ceil(Math.log(DistanceCalc.C / precisionInMeter) / Math.log(2));
+        bitsPerAxis = Math.max(1, Math.min(31, bitsPerAxis));
+        keyAlgo = new SpatialKeyAlgo(2 * bitsPerAxis).bounds(new BBox(-180, 180, -90, 90));
+        segments = new Segment[SEGMENTS];
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public Location2IDIndex getIndex()
+    {
+        return index;
+    }
+
+    @Override
+    public LocationIDResult findClosest( double lat, double lon, EdgeFilter edgeFilter )
+    {
+        return findClosest(lat, lon, edgeFilter, new LocationIDResult());
+    }
+
+    @Override
+    public LocationIDResult findClosest( double lat, double lon, EdgeFilter edgeFilter,
+            LocationIDResult res )
+    {
+        CacheKey key = new CacheKey(keyAlgo.encode(lat, lon), edgeFilter);
+        Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        LocationIDResult cached;
+        synchronized (segment)
+        {
+            cached = segment.get(key);
+        }
+        if (cached != null)
+        {
+            hits.incrementAndGet();
+            return res.set(cached);
+        }
+
+        misses.incrementAndGet();
+        index.findClosest(lat, lon, edgeFilter, res);
+        synchronized (segment)
+        {
+            segment.put(key, new LocationIDResult(res));
+        }
+        return res;
+    }
+
+    /**
+     * Takes the cached results and looks up the misses in one batch of the underlying index. The
+     * misses are not cached as the batch only returns their nodes.
+     */
+    @Override
+    public int[] findClosest( double[] lats, double[] lons, EdgeFilter edgeFilter )
+    {
+        int[] nodes = new int[lats.length];
+        int[] missIndices = new int[lats.length];
+        double[] missLats = new double[lats.length];
+        double[] missLons = new double[lats.length];
+        int missCount = 0;
+        for (int i = 0; i < lats.length; i++)
+        {
+            CacheKey key = new CacheKey(keyAlgo.encode(lats[i], lons[i]), edgeFilter);
+            Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+            LocationIDResult cached;
+            synchronized (segment)
+            {
+                cached = segment.get(key);
+            }
+            if (cached != null)
+            {
+                hits.incrementAndGet();
+                nodes[i] = cached.getClosestNode();
+                continue;
+            }
+            misses.incrementAndGet();
+            missIndices[missCount] = i;
+            missLats[missCount] = lats[i];
+            missLons[missCount] = lons[i];
+            missCount++;
+        }
+        if (missCount > 0)
+        {
+            int[] missNodes = index.findClosest(Arrays.copyOf(missLats, missCount),
+                    Arrays.copyOf(missLons, missCount), edgeFilter);
+            for (int i = 0; i < missCount; i++)
+            {
+                nodes[missIndices[i]] = missNodes[i];
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public int findID( double lat, double lon )
+    {
+        return index.findID(lat, lon);
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public int getSize()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all cached results. Necessary if the underlying index changes.
+     */
+    public void clear()
+    {
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public Location2IDIndex setResolution( int resolution )
+    {
+        index.setResolution(resolution);
+        return this;
+    }
+
+    @Override
+    public Location2IDIndex prepareIndex()
+    {
+        clear();
+        index.prepareIndex();
+        return this;
+    }
+
+    @Override
+    public Location2IDIndex setApproximation( boolean approxDist )
+    {
+        clear();
+        index.setApproximation(approxDist);
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        clear();
+        return index.loadExisting();
+    }
+
+    @Override
+    public Location2IDIndex create( long byteCount )
+    {
+        clear();
+        index.create(byteCount);
+        return this;
+    }
+
+    @Override
+    public void flush()
+    {
+        index.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        clear();
+        index.close();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return index.getCapacity();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "cache size:" + getSize() + ", hits:" + getHits() + ", misses:" + getMisses()
+                + ", " + index;
+    }
+
+    static class CacheKey
+    {
+        private final long key;
+        private final EdgeFilter filter;
+
+        public CacheKey( long key, EdgeFilter filter )
+        {
+            this.key = key;
+            this.filter = filter;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 7;
+            hash = 89 * hash + (int) (this.key ^ (this.key >>> 32));
+            hash = 89 * hash + (this.filter != null ? this.filter.hashCode() : 0);
+            return hash;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if (obj == null || getClass() != obj.getClass())
+            {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            if (this.key != other.key)
+            {
+                return false;
+            }
+            return this.filter == other.filter
+                    || this.filter != null && this.filter.equals(other.filter);
+        }
+    }
+
+    static class Segment extends LinkedHashMap<CacheKey, LocationIDResult>
+    {
+        private final int maxSize;
+
+        public Segment( int maxSize )
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<CacheKey, LocationIDResult> eldest )
+        {
+            return size() > maxSize;
+        }
+    }
+}
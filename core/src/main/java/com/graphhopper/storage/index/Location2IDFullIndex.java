@@ -70,6 +70,25 @@ public class Location2IDFullIndex implements Location2IDIndex
         return this;
     }
 
+    @Override
+    public LocationIDResult findClosest( double lat, double lon, EdgeFilter edgeFilter,
+            LocationIDResult res )
+    {
+        return res.set(findClosest(lat, lon, edgeFilter));
+    }
+
+    @Override
+    public int[] findClosest( double[] lats, double[] lons, EdgeFilter edgeFilter )
+    {
+        int[] nodes = new int[lats.length];
+        LocationIDResult res = new LocationIDResult();
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i] = findClosest(lats[i], lons[i], edgeFilter, res).getClosestNode();
+        }
+        return nodes;
+    }
+
     @Override
     public LocationIDResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter )
     {
@@ -56,6 +56,22 @@ public interface Location2IDIndex extends Storable<Location2IDIndex>
      */
     LocationIDResult findClosest( double lat, double lon, EdgeFilter edgeFilter );
 
+    /**
+     * Same as findClosest(lat, lon, edgeFilter) but fills the specified result, e.g. to reuse one
+     * result object for many lookups.
+     * <p/>
+     * @return the specified result
+     */
+    LocationIDResult findClosest( double lat, double lon, EdgeFilter edgeFilter, LocationIDResult res );
+
+    /**
+     * Looks up many locations at once. Indices without a specialized batch lookup do one lookup
+     * per location.
+     * <p/>
+     * @return the closest node for every location or -1 if none was found
+     */
+    int[] findClosest( double[] lats, double[] lons, EdgeFilter edgeFilter );
+
     /**
      * @param approx if false this makes initialization and querying faster but less precise.
      */
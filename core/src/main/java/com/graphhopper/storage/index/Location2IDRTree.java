@@ -0,0 +1,668 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor license
+ *  agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License. You may obtain a copy of the
+ *  License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Shape;
+import gnu.trove.TIntCollection;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A static R-tree over all edge segments which is bulk loaded with the Sort-Tile-Recursive
+ * algorithm. It finds the exact closest segment instead of a close node like the other indices
+ * and supports range queries. The segments and tree nodes are stored in flat DataAccess objects,
+ * so it can be memory mapped and loaded again.
+ * <p/>
+ * Every segment stores its coordinates, edge, base node, adjacent node and index within the way
+ * geometry. Every tree node stores its bounding box and the range of its children. A negative
+ * child count marks a leaf whose children are segments.
+ * <p/>
+ * @author Peter Karich
+ */
+public class Location2IDRTree implements Location2IDIndex
+{
+    private final static int MAGIC_INT = Integer.MAX_VALUE / 14306;
+    private static final int SEGMENT_INTS = 8;
+    private static final int S_LAT1 = 0, S_LON1 = 4, S_LAT2 = 8, S_LON2 = 12, S_EDGE = 16,
+            S_BASE = 20, S_ADJ = 24, S_WAY_INDEX = 28;
+    private static final int NODE_INTS = 6;
+    private static final int N_MIN_LAT = 0, N_MAX_LAT = 4, N_MIN_LON = 8, N_MAX_LON = 12,
+            N_FIRST = 16, N_COUNT = 20;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Graph graph;
+    private final DataAccess segments;
+    private final DataAccess nodes;
+    private DistanceCalc distCalc = new DistancePlaneProjection();
+    private int nodeCapacity = 16;
+    private int segmentCount;
+    private int nodeCount;
+    private int root;
+
+    public Location2IDRTree( Graph g, Directory dir )
+    {
+        this.graph = g;
+        segments = dir.find("rtreeSegments");
+        nodes = dir.find("rtreeNodes");
+    }
+
+    /**
+     * The maximum number of children of a tree node.
+     */
+    public Location2IDRTree setNodeCapacity( int nodeCapacity )
+    {
+        if (nodeCapacity < 2)
+        {
+            throw new IllegalArgumentException("node capacity has to be at least 2 but was " + nodeCapacity);
+        }
+        this.nodeCapacity = nodeCapacity;
+        return this;
+    }
+
+    /**
+     * Not used as the tree adapts to the graph.
+     */
+    @Override
+    public Location2IDIndex setResolution( int resolution )
+    {
+        return this;
+    }
+
+    @Override
+    public Location2IDIndex setApproximation( boolean approx )
+    {
+        if (approx)
+        {
+            distCalc = new DistancePlaneProjection();
+        } else
+        {
+            distCalc = new DistanceCalc();
+        }
+        return this;
+    }
+
+    @Override
+    public Location2IDIndex prepareIndex()
+    {
+        StopWatch sw = new StopWatch().start();
+        TIntArrayList records = collectSegments();
+        segmentCount = records.size() / SEGMENT_INTS;
+        if (segmentCount == 0)
+        {
+            segments.create(4);
+            nodes.create(4);
+            nodeCount = 0;
+            root = -1;
+            flush();
+            return this;
+        }
+
+        Level level = new Level(segmentCount);
+        for (int i = 0; i < segmentCount; i++)
+        {
+            int offset = i * SEGMENT_INTS;
+            level.set(i, records.get(offset), records.get(offset + 1),
+                    records.get(offset + 2), records.get(offset + 3));
+        }
+        int[] order = level.sortTileRecursive();
+        segments.create((long) segmentCount * SEGMENT_INTS * 4);
+        for (int i = 0; i < segmentCount; i++)
+        {
+            long pointer = (long) i * SEGMENT_INTS * 4;
+            int offset = order[i] * SEGMENT_INTS;
+            for (int j = 0; j < SEGMENT_INTS; j++)
+            {
+                segments.setInt(pointer + j * 4, records.get(offset + j));
+            }
+        }
+        records = null;
+
+        // build the tree bottom up, every level is ordered before its parents are created
+        Level parents = level.createParents(order, 0, true);
+        nodes.create(64 * 1024);
+        nodeCount = 0;
+        while (true)
+        {
+            if (parents.size == 1)
+            {
+                writeNode(nodeCount, parents, 0);
+                nodeCount++;
+                break;
+            }
+            order = parents.sortTileRecursive();
+            int base = nodeCount;
+            for (int i = 0; i < parents.size; i++)
+            {
+                writeNode(base + i, parents, order[i]);
+            }
+            nodeCount += parents.size;
+            parents = parents.createParents(order, base, false);
+        }
+        root = nodeCount - 1;
+        flush();
+        logger.info("rtree created in " + sw.stop().getSeconds() + "s, segments:" + Helper.nf(segmentCount)
+                + ", nodes:" + Helper.nf(nodeCount) + ", nodeCapacity:" + nodeCapacity
+                + ", size:" + getCapacity() / Helper.MB + "MB");
+        return this;
+    }
+
+    /**
+     * @return the segments of all edges, one after another, as: lat1, lon1, lat2, lon2, edge, base
+     * node, adjacent node and the index of the first point within the way geometry
+     */
+    private TIntArrayList collectSegments()
+    {
+        TIntArrayList records = new TIntArrayList(graph.getNodes() * SEGMENT_INTS);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+        {
+            // shortcuts of a LevelGraph have no geometry on their own
+            if (iter instanceof EdgeSkipIterator && ((EdgeSkipIterator) iter).isShortcut())
+            {
+                continue;
+            }
+            int baseNode = iter.getBaseNode();
+            int adjNode = iter.getAdjNode();
+            int lat1 = Helper.degreeToInt(graph.getLatitude(baseNode));
+            int lon1 = Helper.degreeToInt(graph.getLongitude(baseNode));
+            PointList points = iter.getWayGeometry();
+            int len = points.getSize();
+            for (int i = 0; i <= len; i++)
+            {
+                int lat2;
+                int lon2;
+                if (i < len)
+                {
+                    lat2 = Helper.degreeToInt(points.getLatitude(i));
+                    lon2 = Helper.degreeToInt(points.getLongitude(i));
+                } else
+                {
+                    lat2 = Helper.degreeToInt(graph.getLatitude(adjNode));
+                    lon2 = Helper.degreeToInt(graph.getLongitude(adjNode));
+                }
+                records.add(lat1);
+                records.add(lon1);
+                records.add(lat2);
+                records.add(lon2);
+                records.add(iter.getEdge());
+                records.add(baseNode);
+                records.add(adjNode);
+                records.add(i);
+                lat1 = lat2;
+                lon1 = lon2;
+            }
+        }
+        return records;
+    }
+
+    private void writeNode( int node, Level level, int index )
+    {
+        long pointer = (long) node * NODE_INTS * 4;
+        nodes.ensureCapacity(pointer + NODE_INTS * 4);
+        nodes.setInt(pointer + N_MIN_LAT, level.minLat[index]);
+        nodes.setInt(pointer + N_MAX_LAT, level.maxLat[index]);
+        nodes.setInt(pointer + N_MIN_LON, level.minLon[index]);
+        nodes.setInt(pointer + N_MAX_LON, level.maxLon[index]);
+        nodes.setInt(pointer + N_FIRST, level.first[index]);
+        nodes.setInt(pointer + N_COUNT, level.count[index]);
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!segments.loadExisting() || !nodes.loadExisting())
+        {
+            return false;
+        }
+        if (segments.getHeader(0) != MAGIC_INT)
+        {
+            throw new IllegalStateException("incorrect rtree index version, expected:" + MAGIC_INT);
+        }
+        if (segments.getHeader(1 * 4) != graph.getNodes())
+        {
+            throw new IllegalStateException("rtree index was opened with incorrect graph");
+        }
+        segmentCount = segments.getHeader(2 * 4);
+        nodeCount = segments.getHeader(3 * 4);
+        nodeCapacity = segments.getHeader(4 * 4);
+        root = nodeCount - 1;
+        return true;
+    }
+
+    @Override
+    public void flush()
+    {
+        segments.setHeader(0, MAGIC_INT);
+        segments.setHeader(1 * 4, graph.getNodes());
+        segments.setHeader(2 * 4, segmentCount);
+        segments.setHeader(3 * 4, nodeCount);
+        segments.setHeader(4 * 4, nodeCapacity);
+        segments.flush();
+        nodes.flush();
+    }
+
+    @Override
+    public int findID( double lat, double lon )
+    {
+        return findClosest(lat, lon, EdgeFilter.ALL_EDGES).getClosestNode();
+    }
+
+    @Override
+    public LocationIDResult findClosest( double lat, double lon, EdgeFilter edgeFilter,
+            LocationIDResult res )
+    {
+        return res.set(findClosest(lat, lon, edgeFilter));
+    }
+
+    @Override
+    public int[] findClosest( double[] lats, double[] lons, EdgeFilter edgeFilter )
+    {
+        int[] nodes = new int[lats.length];
+        LocationIDResult res = new LocationIDResult();
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i] = findClosest(lats[i], lons[i], edgeFilter, res).getClosestNode();
+        }
+        return nodes;
+    }
+
+    /**
+     * Searches the closest segment accepted by the edge filter with a best first search: tree
+     * nodes are visited in the order of the distance to their bounding box, so the first segment
+     * taken from the queue is the closest one.
+     * <p/>
+     * @return the base or adjacent node of the closest edge, whichever is closer to the query
+     */
+    @Override
+    public LocationIDResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter )
+    {
+        LocationIDResult res = new LocationIDResult();
+        if (root < 0)
+        {
+            return res;
+        }
+        IntDoubleBinHeap heap = new IntDoubleBinHeap(64);
+        // tree nodes are stored as is and segments as -segment - 1
+        heap.insert_(0, root);
+        double bestDist = Double.MAX_VALUE;
+        int bestSegment = -1;
+        // the heap keys are floats, so compare with the exact distance of the best segment
+        while (!heap.isEmpty() && heap.peek_key() <= bestDist)
+        {
+            int element = heap.poll_element();
+            if (element < 0)
+            {
+                int segment = -element - 1;
+                double dist = calcSegmentDist(queryLat, queryLon, segment);
+                if (dist < bestDist && accept(segment, edgeFilter))
+                {
+                    bestDist = dist;
+                    bestSegment = segment;
+                }
+                continue;
+            }
+
+            long pointer = (long) element * NODE_INTS * 4;
+            int first = nodes.getInt(pointer + N_FIRST);
+            int count = nodes.getInt(pointer + N_COUNT);
+            if (count < 0)
+            {
+                for (int segment = first; segment < first - count; segment++)
+                {
+                    heap.insert_(calcSegmentDist(queryLat, queryLon, segment), -segment - 1);
+                }
+            } else
+            {
+                for (int child = first; child < first + count; child++)
+                {
+                    heap.insert_(calcBoxDist(queryLat, queryLon, child), child);
+                }
+            }
+        }
+
+        if (bestSegment >= 0)
+        {
+            long pointer = (long) bestSegment * SEGMENT_INTS * 4;
+            int baseNode = segments.getInt(pointer + S_BASE);
+            int adjNode = segments.getInt(pointer + S_ADJ);
+            double baseDist = distCalc.calcNormalizedDist(queryLat, queryLon,
+                    graph.getLatitude(baseNode), graph.getLongitude(baseNode));
+            double adjDist = distCalc.calcNormalizedDist(queryLat, queryLon,
+                    graph.getLatitude(adjNode), graph.getLongitude(adjNode));
+            res.setClosestNode(baseDist <= adjDist ? baseNode : adjNode);
+            res.setWeight(bestDist);
+            res.setWayIndex(segments.getInt(pointer + S_WAY_INDEX));
+        }
+        return res;
+    }
+
+    private boolean accept( int segment, EdgeFilter edgeFilter )
+    {
+        if (edgeFilter == EdgeFilter.ALL_EDGES)
+        {
+            return true;
+        }
+        long pointer = (long) segment * SEGMENT_INTS * 4;
+        EdgeIterator edge = graph.getEdgeProps(segments.getInt(pointer + S_EDGE),
+                segments.getInt(pointer + S_ADJ));
+        return edgeFilter.accept(edge);
+    }
+
+    private double calcSegmentDist( double queryLat, double queryLon, int segment )
+    {
+        long pointer = (long) segment * SEGMENT_INTS * 4;
+        double lat1 = Helper.intToDegree(segments.getInt(pointer + S_LAT1));
+        double lon1 = Helper.intToDegree(segments.getInt(pointer + S_LON1));
+        double lat2 = Helper.intToDegree(segments.getInt(pointer + S_LAT2));
+        double lon2 = Helper.intToDegree(segments.getInt(pointer + S_LON2));
+        if (distCalc.validEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2))
+        {
+            return distCalc.calcNormalizedEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2);
+        }
+        return Math.min(distCalc.calcNormalizedDist(queryLat, queryLon, lat1, lon1),
+                distCalc.calcNormalizedDist(queryLat, queryLon, lat2, lon2));
+    }
+
+    private double calcBoxDist( double queryLat, double queryLon, int node )
+    {
+        long pointer = (long) node * NODE_INTS * 4;
+        double lat = clamp(queryLat, nodes.getInt(pointer + N_MIN_LAT), nodes.getInt(pointer + N_MAX_LAT));
+        double lon = clamp(queryLon, nodes.getInt(pointer + N_MIN_LON), nodes.getInt(pointer + N_MAX_LON));
+        if (lat == queryLat && lon == queryLon)
+        {
+            return 0;
+        }
+        return distCalc.calcNormalizedDist(queryLat, queryLon, lat, lon);
+    }
+
+    private static double clamp( double value, int min, int max )
+    {
+        return Math.max(Helper.intToDegree(min), Math.min(Helper.intToDegree(max), value));
+    }
+
+    /**
+     * Collects all edges accepted by the edge filter where the way geometry intersects the
+     * specified shape.
+     * <p/>
+     * @param edges receives every found edge id once
+     */
+    public void findEdges( Shape shape, EdgeFilter edgeFilter, TIntCollection edges )
+    {
+        TIntHashSet found = new TIntHashSet();
+        TIntArrayList candidates = findSegments(shape);
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            int segment = candidates.get(i);
+            long pointer = (long) segment * SEGMENT_INTS * 4;
+            int edge = segments.getInt(pointer + S_EDGE);
+            if (found.contains(edge) || !intersects(shape, segment) || !accept(segment, edgeFilter))
+            {
+                continue;
+            }
+            found.add(edge);
+            edges.add(edge);
+        }
+    }
+
+    /**
+     * Collects all nodes inside the specified shape which have at least one edge accepted by the
+     * edge filter.
+     * <p/>
+     * @param nodes receives every found node once
+     */
+    public void findNodes( Shape shape, EdgeFilter edgeFilter, TIntCollection nodes )
+    {
+        TIntHashSet found = new TIntHashSet();
+        TIntArrayList candidates = findSegments(shape);
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            int segment = candidates.get(i);
+            long pointer = (long) segment * SEGMENT_INTS * 4;
+            int baseNode = segments.getInt(pointer + S_BASE);
+            int adjNode = segments.getInt(pointer + S_ADJ);
+            // every node with an edge is the corner of a segment, so checking both is sufficient
+            if (found.contains(baseNode) && found.contains(adjNode) || !accept(segment, edgeFilter))
+            {
+                continue;
+            }
+            if (!found.contains(baseNode)
+                    && shape.contains(graph.getLatitude(baseNode), graph.getLongitude(baseNode)))
+            {
+                found.add(baseNode);
+                nodes.add(baseNode);
+            }
+            if (!found.contains(adjNode)
+                    && shape.contains(graph.getLatitude(adjNode), graph.getLongitude(adjNode)))
+            {
+                found.add(adjNode);
+                nodes.add(adjNode);
+            }
+        }
+    }
+
+    /**
+     * @return all segments where the bounding box intersects the shape
+     */
+    TIntArrayList findSegments( Shape shape )
+    {
+        TIntArrayList result = new TIntArrayList();
+        TIntArrayList stack = new TIntArrayList();
+        if (root >= 0)
+        {
+            stack.add(root);
+        }
+        BBox box = new BBox(0, 0, 0, 0);
+        while (!stack.isEmpty())
+        {
+            int node = stack.removeAt(stack.size() - 1);
+            long pointer = (long) node * NODE_INTS * 4;
+            box.minLat = Helper.intToDegree(nodes.getInt(pointer + N_MIN_LAT));
+            box.maxLat = Helper.intToDegree(nodes.getInt(pointer + N_MAX_LAT));
+            box.minLon = Helper.intToDegree(nodes.getInt(pointer + N_MIN_LON));
+            box.maxLon = Helper.intToDegree(nodes.getInt(pointer + N_MAX_LON));
+            if (!intersectsClosed(shape, box))
+            {
+                continue;
+            }
+            int first = nodes.getInt(pointer + N_FIRST);
+            int count = nodes.getInt(pointer + N_COUNT);
+            if (count < 0)
+            {
+                for (int segment = first; segment < first - count; segment++)
+                {
+                    result.add(segment);
+                }
+            } else
+            {
+                for (int child = first; child < first + count; child++)
+                {
+                    stack.add(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    // BBox.intersect excludes the border which would miss horizontal or vertical segments
+    private static boolean intersectsClosed( Shape shape, BBox box )
+    {
+        BBox bounds = shape.getBounds();
+        if (box.maxLat < bounds.minLat || box.minLat > bounds.maxLat
+                || box.maxLon < bounds.minLon || box.minLon > bounds.maxLon)
+        {
+            return false;
+        }
+        if (box.minLat == box.maxLat || box.minLon == box.maxLon)
+        {
+            return true;
+        }
+        return shape.intersect(box);
+    }
+
+    private boolean intersects( Shape shape, int segment )
+    {
+        long pointer = (long) segment * SEGMENT_INTS * 4;
+        return Location2NodesNtree.intersects(distCalc, shape,
+                Helper.intToDegree(segments.getInt(pointer + S_LAT1)),
+                Helper.intToDegree(segments.getInt(pointer + S_LON1)),
+                Helper.intToDegree(segments.getInt(pointer + S_LAT2)),
+                Helper.intToDegree(segments.getInt(pointer + S_LON2)));
+    }
+
+    @Override
+    public Location2IDIndex create( long size )
+    {
+        throw new UnsupportedOperationException("Not supported. Use prepareIndex instead.");
+    }
+
+    @Override
+    public void close()
+    {
+        segments.close();
+        nodes.close();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return segments.getCapacity() + nodes.getCapacity();
+    }
+
+    /**
+     * The bounding boxes of one level of the tree while it is built.
+     */
+    class Level
+    {
+        final int size;
+        final int[] minLat;
+        final int[] maxLat;
+        final int[] minLon;
+        final int[] maxLon;
+        final int[] first;
+        final int[] count;
+
+        public Level( int size )
+        {
+            this.size = size;
+            minLat = new int[size];
+            maxLat = new int[size];
+            minLon = new int[size];
+            maxLon = new int[size];
+            first = new int[size];
+            count = new int[size];
+        }
+
+        void set( int index, int lat1, int lon1, int lat2, int lon2 )
+        {
+            minLat[index] = Math.min(lat1, lat2);
+            maxLat[index] = Math.max(lat1, lat2);
+            minLon[index] = Math.min(lon1, lon2);
+            maxLon[index] = Math.max(lon1, lon2);
+        }
+
+        /**
+         * Sorts by the center longitude, cuts the result into vertical slices of sqrt(nodes)
+         * nodes and sorts every slice by the center latitude.
+         * <p/>
+         * @return the indices in tree order
+         */
+        int[] sortTileRecursive()
+        {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+            {
+                keys[i] = (long) center(minLon[i], maxLon[i]) << 32 | i;
+            }
+            Arrays.sort(keys);
+            int parents = (size + nodeCapacity - 1) / nodeCapacity;
+            int sliceSize = (int) Math.ceil(Math.sqrt(parents)) * nodeCapacity;
+            int[] order = new int[size];
+            for (int start = 0; start < size; start += sliceSize)
+            {
+                int end = Math.min(size, start + sliceSize);
+                long[] sliceKeys = new long[end - start];
+                for (int i = start; i < end; i++)
+                {
+                    int index = (int) keys[i];
+                    sliceKeys[i - start] = (long) center(minLat[index], maxLat[index]) << 32 | index;
+                }
+                Arrays.sort(sliceKeys);
+                for (int i = 0; i < sliceKeys.length; i++)
+                {
+                    order[start + i] = (int) sliceKeys[i];
+                }
+            }
+            return order;
+        }
+
+        /**
+         * Groups nodeCapacity consecutive entries of the specified order into one parent.
+         * <p/>
+         * @param base the position of the first entry in the storage
+         * @param leafs true if the entries are segments
+         */
+        Level createParents( int[] order, int base, boolean leafs )
+        {
+            Level parents = new Level((size + nodeCapacity - 1) / nodeCapacity);
+            for (int p = 0; p < parents.size; p++)
+            {
+                int start = p * nodeCapacity;
+                int end = Math.min(size, start + nodeCapacity);
+                int tmpMinLat = Integer.MAX_VALUE, tmpMaxLat = Integer.MIN_VALUE;
+                int tmpMinLon = Integer.MAX_VALUE, tmpMaxLon = Integer.MIN_VALUE;
+                for (int i = start; i < end; i++)
+                {
+                    int index = order[i];
+                    tmpMinLat = Math.min(tmpMinLat, minLat[index]);
+                    tmpMaxLat = Math.max(tmpMaxLat, maxLat[index]);
+                    tmpMinLon = Math.min(tmpMinLon, minLon[index]);
+                    tmpMaxLon = Math.max(tmpMaxLon, maxLon[index]);
+                }
+                parents.minLat[p] = tmpMinLat;
+                parents.maxLat[p] = tmpMaxLat;
+                parents.minLon[p] = tmpMinLon;
+                parents.maxLon[p] = tmpMaxLon;
+                parents.first[p] = base + start;
+                parents.count[p] = leafs ? -(end - start) : end - start;
+            }
+            return parents;
+        }
+
+        private int center( int min, int max )
+        {
+            return (int) (((long) min + max) / 2);
+        }
+    }
+}
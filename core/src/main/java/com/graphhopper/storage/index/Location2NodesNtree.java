@@ -18,14 +18,13 @@
  */
 package com.graphhopper.storage.index;
 
-import com.graphhopper.coll.GHBitSet;
-import com.graphhopper.coll.GHTBitSet;
 import com.graphhopper.geohash.SpatialKeyAlgo;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.VLongStorage;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistancePlaneProjection;
@@ -34,16 +33,21 @@ import com.graphhopper.util.Helper;
 import com.graphhopper.util.NumHelper;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
-import com.graphhopper.util.XFirstSearch;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Circle;
+import com.graphhopper.util.shapes.Shape;
+import gnu.trove.TIntCollection;
+import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.procedure.TIntProcedure;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +84,22 @@ public class Location2NodesNtree implements Location2IDIndex
     static final int START_POINTER = 1;
     private boolean edgeDistCalcOnSearch = true;
     private boolean regionSearch = true;
+    // stored in the header, older indices without it use raw ints
+    private static final int LEAF_FORMAT_INTS = 0;
+    private static final int LEAF_FORMAT_DELTA_VLONG = 1;
+    private boolean compactLeafs = false;
+    private int prepareThreads = 1;
+    private final ThreadLocal<LookupBuffers> lookupBuffers = new ThreadLocal<LookupBuffers>()
+    {
+        @Override
+        protected LookupBuffers initialValue()
+        {
+            return new LookupBuffers(false);
+        }
+    };
+    // the batch lookup forgets the node ids of its tiles after this many different tiles
+    private static final int MAX_CACHED_TILES = 1024;
+    private static final int MIN_BATCH_SIZE_PER_THREAD = 256;
 
     public Location2NodesNtree( Graph g, Directory dir )
     {
@@ -122,6 +142,32 @@ public class Location2NodesNtree implements Location2IDIndex
         return this;
     }
 
+    /**
+     * Stores the node ids of a leaf delta encoded with variable length instead of as raw ints to
+     * reduce the size of the index. Lookups are slightly slower. Only used when the index is
+     * created, loadExisting uses the format of the stored index.
+     */
+    public Location2NodesNtree setCompactLeafs( boolean compactLeafs )
+    {
+        this.compactLeafs = compactLeafs;
+        return this;
+    }
+
+    public boolean isCompactLeafs()
+    {
+        return compactLeafs;
+    }
+
+    /**
+     * The number of threads used to create the index in prepareIndex. The created index is the
+     * same for every number of threads.
+     */
+    public Location2NodesNtree setPrepareThreads( int threads )
+    {
+        this.prepareThreads = threads;
+        return this;
+    }
+
     void prepareAlgo()
     {
         // now calculate the necessary maxDepth d for our current bounds
@@ -265,6 +311,12 @@ public class Location2NodesNtree implements Location2IDIndex
             throw new IllegalStateException("location2id index was opened with incorrect graph");
         }
         setMinResolutionInMeter(dataAccess.getHeader(2 * 4));
+        int leafFormat = dataAccess.getHeader(3 * 4);
+        if (leafFormat != LEAF_FORMAT_INTS && leafFormat != LEAF_FORMAT_DELTA_VLONG)
+        {
+            throw new IllegalStateException("unknown leaf format " + leafFormat + " of location2id index");
+        }
+        compactLeafs = leafFormat == LEAF_FORMAT_DELTA_VLONG;
         prepareAlgo();
         initialized = true;
         return true;
@@ -307,6 +359,7 @@ public class Location2NodesNtree implements Location2IDIndex
         dataAccess.setHeader(0, MAGIC_INT);
         dataAccess.setHeader(1 * 4, calcChecksum());
         dataAccess.setHeader(2 * 4, minResolutionInMeter);
+        dataAccess.setHeader(3 * 4, compactLeafs ? LEAF_FORMAT_DELTA_VLONG : LEAF_FORMAT_INTS);
 
         // saving space not necessary: dataAccess.trimTo((lastPointer + 1) * 4);
         dataAccess.flush();
@@ -323,17 +376,20 @@ public class Location2NodesNtree implements Location2IDIndex
         StopWatch sw = new StopWatch().start();
         prepareAlgo();
         // in-memory preparation
-        InMemConstructionIndex inMem = getPrepareInMemIndex();
+        BulkConstructionIndex bulk = new BulkConstructionIndex(prepareThreads);
+        bulk.prepare();
 
         // compact & store to dataAccess
         dataAccess.create(64 * 1024);
-        int lastPointer = inMem.store(inMem.root, START_POINTER);
+        bulk.store(START_POINTER);
         flush();
-        float entriesPerLeaf = (float) inMem.size / inMem.leafs;
+        float entriesPerLeaf = (float) bulk.size / bulk.leafs;
         initialized = true;
         logger.info("location index created in " + sw.stop().getSeconds()
-                + "s, size:" + Helper.nf(inMem.size)
-                + ", leafs:" + Helper.nf(inMem.leafs)
+                + "s, size:" + Helper.nf(bulk.size)
+                + ", leafs:" + Helper.nf(bulk.leafs)
+                + ", threads:" + prepareThreads
+                + ", compactLeafs:" + compactLeafs
                 + ", precision:" + minResolutionInMeter
                 + ", depth:" + entries.length
                 + ", entries:" + Arrays.toString(entries)
@@ -538,6 +594,14 @@ public class Location2NodesNtree implements Location2IDIndex
                 {
                     // less disc space for single entries
                     dataAccess.setInt(refPointer, -entries.get(0) - 1);
+                } else if (compactLeafs)
+                {
+                    int[] packed = encodeLeaf(entries.toArray(), 0, len);
+                    for (int index = 0; index < packed.length; index++, intIndex++)
+                    {
+                        dataAccess.setInt((long) intIndex * 4, packed[index]);
+                    }
+                    dataAccess.setInt(refPointer, intIndex);
                 } else
                 {
                     for (int index = 0; index < len; index++, intIndex++)
@@ -574,13 +638,497 @@ public class Location2NodesNtree implements Location2IDIndex
         }
     }
 
+    /**
+     * Creates the same layout as InMemConstructionIndex.store but without an object per tree entry
+     * and leaf. The workers collect the (tile, node) pairs into primitive arrays per top level
+     * tile. Then every top level subtree is sorted and serialized independently, which can be done
+     * in parallel as well.
+     */
+    class BulkConstructionIndex
+    {
+        private final int threads;
+        // a tile path is the concatenation of the tree indices below the top level
+        private final int[] shiftsBelow;
+        private final Object geometryLock = new Object();
+        private PairBuffer[][] workerPairs;
+        private PairBuffer[] tilePairs;
+        private int[] tileSizes;
+        int size;
+        int leafs;
+
+        public BulkConstructionIndex( int threads )
+        {
+            this.threads = Math.max(1, threads);
+            shiftsBelow = new int[entries.length];
+            for (int depth = entries.length - 2; depth >= 0; depth--)
+            {
+                shiftsBelow[depth] = shiftsBelow[depth + 1] + shifts[depth + 1];
+            }
+        }
+
+        void prepare()
+        {
+            workerPairs = new PairBuffer[threads][];
+            runInParallel("collect", threads, new Job()
+            {
+                @Override
+                void run( int worker )
+                {
+                    workerPairs[worker] = collect(worker);
+                }
+            });
+
+            final int tiles = entries[0];
+            tilePairs = new PairBuffer[tiles];
+            tileSizes = new int[tiles];
+            runInParallel("sort", tiles, new Job()
+            {
+                @Override
+                void run( int tile )
+                {
+                    PairBuffer pairs = mergeAndSort(tile);
+                    tilePairs[tile] = pairs;
+                    if (pairs.size > 0)
+                    {
+                        tileSizes[tile] = serialize(pairs, 0, pairs.size, 1, 0, null, 0);
+                    }
+                }
+            });
+            workerPairs = null;
+            for (int tile = 0; tile < tiles; tile++)
+            {
+                size += tilePairs[tile].size;
+                leafs += tilePairs[tile].leafs;
+            }
+        }
+
+        /**
+         * Every worker reads all edges but only rasterizes every threads-th of them.
+         */
+        PairBuffer[] collect( int worker )
+        {
+            final PairBuffer[] buckets = new PairBuffer[entries[0]];
+            for (int tile = 0; tile < buckets.length; tile++)
+            {
+                buckets[tile] = new PairBuffer();
+            }
+            TileCollector collector = new TileCollector(buckets);
+            BBox bounds = graph.getBounds();
+            AllEdgesIterator allIter = getAllEdges();
+            int counter = 0;
+            while (allIter.next())
+            {
+                if (counter++ % threads != worker)
+                {
+                    continue;
+                }
+                int nodeA = allIter.getBaseNode();
+                int nodeB = allIter.getAdjNode();
+                collector.node = pickBestNode(nodeA, nodeB);
+                double lat1 = graph.getLatitude(nodeA);
+                double lon1 = graph.getLongitude(nodeA);
+                double lat2;
+                double lon2;
+                PointList points;
+                // reading bytes is not thread safe for every DataAccess
+                synchronized (geometryLock)
+                {
+                    points = allIter.getWayGeometry();
+                }
+                int len = points.getSize();
+                for (int i = 0; i < len; i++)
+                {
+                    lat2 = points.getLatitude(i);
+                    lon2 = points.getLongitude(i);
+                    BresenhamLine.calcPoints(lat1, lon1, lat2, lon2, collector,
+                            bounds.minLat, bounds.minLon, deltaLat, deltaLon);
+                    lat1 = lat2;
+                    lon1 = lon2;
+                }
+                lat2 = graph.getLatitude(nodeB);
+                lon2 = graph.getLongitude(nodeB);
+                BresenhamLine.calcPoints(lat1, lon1, lat2, lon2, collector,
+                        bounds.minLat, bounds.minLon, deltaLat, deltaLon);
+            }
+            return buckets;
+        }
+
+        PairBuffer mergeAndSort( int tile )
+        {
+            int count = 0;
+            for (PairBuffer[] buckets : workerPairs)
+            {
+                count += buckets[tile].size;
+            }
+            PairBuffer pairs = new PairBuffer(count);
+            for (PairBuffer[] buckets : workerPairs)
+            {
+                pairs.addAll(buckets[tile]);
+                // release memory as early as possible
+                buckets[tile] = null;
+            }
+            pairs.sortAndRemoveDuplicates();
+            return pairs;
+        }
+
+        int store( int intIndex )
+        {
+            int len = entries[0];
+            long refPointer = (long) intIndex * 4;
+            intIndex += len;
+            for (int tile = 0; tile < len; tile++, refPointer += 4)
+            {
+                if (tileSizes[tile] == 0)
+                {
+                    continue;
+                }
+                PairBuffer pairs = tilePairs[tile];
+                int[] out = new int[tileSizes[tile]];
+                serialize(pairs, 0, pairs.size, 1, intIndex, out, intIndex);
+                tilePairs[tile] = null;
+                dataAccess.ensureCapacity((long) (intIndex + out.length + 1) * 4);
+                dataAccess.setInt(refPointer, intIndex);
+                for (int i = 0; i < out.length; i++, intIndex++)
+                {
+                    dataAccess.setInt((long) intIndex * 4, out[i]);
+                }
+            }
+            return intIndex;
+        }
+
+        /**
+         * Writes the entry for the sorted pairs in [from, to) like InMemConstructionIndex.store
+         * would do it.
+         * <p/>
+         * @param out the entry is written to out[intIndex - offset], if null only the size is
+         * calculated
+         * @return the int index after the entry
+         */
+        int serialize( PairBuffer pairs, int from, int to, int depth, int intIndex, int[] out,
+                int offset )
+        {
+            if (depth == entries.length)
+            {
+                int len = to - from;
+                if (len == 1)
+                {
+                    // less disc space for single entries
+                    if (out != null)
+                    {
+                        out[intIndex - offset] = -pairs.values[from] - 1;
+                    }
+                    return intIndex + 1;
+                }
+                int ref = intIndex - offset;
+                intIndex++;
+                if (compactLeafs)
+                {
+                    int[] packed = encodeLeaf(pairs.values, from, to);
+                    if (out != null)
+                    {
+                        System.arraycopy(packed, 0, out, intIndex - offset, packed.length);
+                    }
+                    intIndex += packed.length;
+                } else
+                {
+                    for (int i = from; i < to; i++, intIndex++)
+                    {
+                        if (out != null)
+                        {
+                            out[intIndex - offset] = pairs.values[i];
+                        }
+                    }
+                }
+                if (out != null)
+                {
+                    out[ref] = intIndex;
+                }
+                return intIndex;
+            }
+
+            int ref = intIndex - offset;
+            intIndex += entries[depth];
+            int shift = shiftsBelow[depth];
+            long bitmask = bitmasks[depth];
+            long[] paths = pairs.keys;
+            int start = from;
+            while (start < to)
+            {
+                int index = (int) ((paths[start] >>> shift) & bitmask);
+                int end = start + 1;
+                while (end < to && (int) ((paths[end] >>> shift) & bitmask) == index)
+                {
+                    end++;
+                }
+                if (out != null)
+                {
+                    out[ref + index] = intIndex;
+                }
+                intIndex = serialize(pairs, start, end, depth + 1, intIndex, out, offset);
+                start = end;
+            }
+            return intIndex;
+        }
+
+        private void runInParallel( String name, int jobs, final Job job )
+        {
+            int workers = Math.min(threads, jobs);
+            if (workers <= 1)
+            {
+                for (int i = 0; i < jobs; i++)
+                {
+                    job.run(i);
+                }
+                return;
+            }
+
+            final AtomicInteger nextJob = new AtomicInteger();
+            final int jobCount = jobs;
+            final Throwable[] errors = new Throwable[workers];
+            Thread[] threadArr = new Thread[workers];
+            for (int i = 0; i < workers; i++)
+            {
+                final int index = i;
+                threadArr[i] = new Thread("GraphHopper location index " + name + " " + i)
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            int jobIndex;
+                            while ((jobIndex = nextJob.getAndIncrement()) < jobCount)
+                            {
+                                job.run(jobIndex);
+                            }
+                        } catch (Throwable ex)
+                        {
+                            errors[index] = ex;
+                        }
+                    }
+                };
+                threadArr[i].start();
+            }
+            try
+            {
+                for (Thread thread : threadArr)
+                {
+                    thread.join();
+                }
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Creating the location index was interrupted", ex);
+            }
+            for (Throwable error : errors)
+            {
+                if (error != null)
+                {
+                    throw new RuntimeException("Creating the location index failed", error);
+                }
+            }
+        }
+
+        class TileCollector implements PointEmitter
+        {
+            final PairBuffer[] buckets;
+            int node;
+            private int lastNode = -1;
+            private long lastKeyPart;
+
+            public TileCollector( PairBuffer[] buckets )
+            {
+                this.buckets = buckets;
+            }
+
+            @Override
+            public void set( double lat, double lon )
+            {
+                long keyPart = createReverseKey(keyAlgo.encode(lat, lon));
+                // neighbouring points of a line often hit the same tile
+                if (node == lastNode && keyPart == lastKeyPart)
+                {
+                    return;
+                }
+                lastNode = node;
+                lastKeyPart = keyPart;
+                int tile = (int) (bitmasks[0] & keyPart);
+                keyPart = keyPart >>> shifts[0];
+                long path = 0;
+                for (int depth = 1; depth < entries.length; depth++)
+                {
+                    path = (path << shifts[depth]) | (bitmasks[depth] & keyPart);
+                    keyPart = keyPart >>> shifts[depth];
+                }
+                buckets[tile].add(path, node);
+            }
+        }
+    }
+
+    static abstract class Job
+    {
+        abstract void run( int index );
+    }
+
+    /**
+     * A growable list of (long, int) pairs which avoids boxing.
+     */
+    static class PairBuffer
+    {
+        long[] keys;
+        int[] values;
+        int size;
+        // the number of different keys after sortAndRemoveDuplicates
+        int leafs;
+
+        public PairBuffer()
+        {
+            this(16);
+        }
+
+        public PairBuffer( int capacity )
+        {
+            keys = new long[capacity];
+            values = new int[capacity];
+        }
+
+        void add( long key, int value )
+        {
+            if (size == keys.length)
+            {
+                int newCap = Math.max(16, size + (size >> 1));
+                keys = Arrays.copyOf(keys, newCap);
+                values = Arrays.copyOf(values, newCap);
+            }
+            keys[size] = key;
+            values[size] = value;
+            size++;
+        }
+
+        void addAll( PairBuffer other )
+        {
+            System.arraycopy(other.keys, 0, keys, size, other.size);
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void sortAndRemoveDuplicates()
+        {
+            sort(0, size);
+            int newSize = 0;
+            leafs = 0;
+            for (int i = 0; i < size; i++)
+            {
+                if (newSize > 0 && keys[newSize - 1] == keys[i])
+                {
+                    if (values[newSize - 1] == values[i])
+                    {
+                        continue;
+                    }
+                } else
+                {
+                    leafs++;
+                }
+                keys[newSize] = keys[i];
+                values[newSize] = values[i];
+                newSize++;
+            }
+            size = newSize;
+        }
+
+        // quicksort with three way partitioning as we have lots of duplicates
+        private void sort( int from, int to )
+        {
+            while (to - from > 16)
+            {
+                int pivot = medianOfThree(from, (from + to) >>> 1, to - 1);
+                long pivotKey = keys[pivot];
+                int pivotValue = values[pivot];
+                int lt = from;
+                int gt = to - 1;
+                int i = from;
+                while (i <= gt)
+                {
+                    int cmp = compare(i, pivotKey, pivotValue);
+                    if (cmp < 0)
+                    {
+                        swap(lt++, i++);
+                    } else if (cmp > 0)
+                    {
+                        swap(i, gt--);
+                    } else
+                    {
+                        i++;
+                    }
+                }
+                // recurse into the smaller part to limit the stack depth
+                if (lt - from < to - gt)
+                {
+                    sort(from, lt);
+                    from = gt + 1;
+                } else
+                {
+                    sort(gt + 1, to);
+                    to = lt;
+                }
+            }
+            for (int i = from + 1; i < to; i++)
+            {
+                for (int j = i; j > from && compare(j, keys[j - 1], values[j - 1]) < 0; j--)
+                {
+                    swap(j, j - 1);
+                }
+            }
+        }
+
+        private int medianOfThree( int a, int b, int c )
+        {
+            if (compare(a, keys[b], values[b]) < 0)
+            {
+                if (compare(b, keys[c], values[c]) < 0)
+                {
+                    return b;
+                }
+                return compare(a, keys[c], values[c]) < 0 ? c : a;
+            }
+            if (compare(a, keys[c], values[c]) < 0)
+            {
+                return a;
+            }
+            return compare(b, keys[c], values[c]) < 0 ? c : b;
+        }
+
+        private int compare( int index, long key, int value )
+        {
+            if (keys[index] != key)
+            {
+                return keys[index] < key ? -1 : 1;
+            }
+            if (values[index] != value)
+            {
+                return values[index] < value ? -1 : 1;
+            }
+            return 0;
+        }
+
+        private void swap( int i, int j )
+        {
+            long tmpKey = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmpKey;
+            int tmpValue = values[i];
+            values[i] = values[j];
+            values[j] = tmpValue;
+        }
+    }
+
     TIntArrayList getEntries()
     {
         return new TIntArrayList(entries);
     }
 
     // fillIDs according to how they are stored    
-    void fillIDs( long keyPart, int intIndex, TIntHashSet set, int depth )
+    void fillIDs( long keyPart, int intIndex, TIntCollection set, int depth )
     {
         long pointer = (long) intIndex << 2;
         if (depth == entries.length)
@@ -590,6 +1138,9 @@ public class Location2NodesNtree implements Location2IDIndex
             // single data entries (less disc space)            
             {
                 set.add(-(value + 1));
+            } else if (compactLeafs)
+            {
+                fillCompactLeaf(pointer + 4, set);
             } else
             {
                 long max = (long) value * 4;
@@ -610,6 +1161,68 @@ public class Location2NodesNtree implements Location2IDIndex
         }
     }
 
+    /**
+     * Delta encodes the sorted node ids as VLongs, prefixed with their count, and packs the bytes
+     * into ints.
+     */
+    static int[] encodeLeaf( int[] nodes, int from, int to )
+    {
+        VLongStorage storage = new VLongStorage(2 * (to - from) + 5);
+        storage.writeVLong(to - from);
+        int prev = 0;
+        for (int i = from; i < to; i++)
+        {
+            storage.writeVLong(nodes[i] - prev);
+            prev = nodes[i];
+        }
+        int ints = (int) (storage.getPosition() + 3) / 4;
+        byte[] bytes = Arrays.copyOf(storage.getBytes(), ints * 4);
+        int[] packed = new int[ints];
+        for (int i = 0; i < ints; i++)
+        {
+            packed[i] = BitUtil.toInt(bytes, i * 4);
+        }
+        return packed;
+    }
+
+    // decodes the leaf written by encodeLeaf without creating objects
+    private void fillCompactLeaf( long pointer, TIntCollection set )
+    {
+        int count = -1;
+        int value = 0;
+        int shift = 0;
+        int node = 0;
+        while (true)
+        {
+            int packed = dataAccess.getInt(pointer);
+            pointer += 4;
+            for (int byteShift = 24; byteShift >= 0; byteShift -= 8)
+            {
+                int b = (packed >>> byteShift) & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) != 0)
+                {
+                    shift += 7;
+                    continue;
+                }
+                if (count < 0)
+                {
+                    count = value;
+                } else
+                {
+                    node += value;
+                    set.add(node);
+                    if (--count == 0)
+                    {
+                        return;
+                    }
+                }
+                value = 0;
+                shift = 0;
+            }
+        }
+    }
+
     // this method returns the spatial key in reverse order for easier right-shifting
     final long createReverseKey( double lat, double lon )
     {
@@ -646,138 +1259,504 @@ public class Location2NodesNtree implements Location2IDIndex
         return storedNetworkEntryIds;
     }
 
+    /**
+     * Collects all nodes inside the specified shape which have at least one edge accepted by the
+     * edge filter. Only the tiles intersecting the shape are searched.
+     * <p/>
+     * @param nodes receives every found node once
+     */
+    public void findNodes( Shape shape, EdgeFilter edgeFilter, TIntCollection nodes )
+    {
+        TIntHashSet checked = new TIntHashSet();
+        TIntIterator iter = findTileEntries(shape).iterator();
+        while (iter.hasNext())
+        {
+            EdgeIterator edge = getEdges(iter.next(), null);
+            while (edge.next())
+            {
+                if (!edgeFilter.accept(edge))
+                {
+                    continue;
+                }
+                int node = edge.getBaseNode();
+                if (checked.add(node) && shape.contains(graph.getLatitude(node), graph.getLongitude(node)))
+                {
+                    nodes.add(node);
+                }
+                node = edge.getAdjNode();
+                if (checked.add(node) && shape.contains(graph.getLatitude(node), graph.getLongitude(node)))
+                {
+                    nodes.add(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects all edges accepted by the edge filter where the way geometry intersects the
+     * specified shape, e.g. all roads within 200m of a point if the shape is a Circle. Only the
+     * tiles intersecting the shape are searched.
+     * <p/>
+     * @param edges receives every found edge id once
+     */
+    public void findEdges( Shape shape, EdgeFilter edgeFilter, TIntCollection edges )
+    {
+        TIntHashSet checked = new TIntHashSet();
+        TIntIterator iter = findTileEntries(shape).iterator();
+        while (iter.hasNext())
+        {
+            EdgeIterator edge = getEdges(iter.next(), null);
+            while (edge.next())
+            {
+                if (edgeFilter.accept(edge) && checked.add(edge.getEdge()) && intersects(shape, edge))
+                {
+                    edges.add(edge.getEdge());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the entry nodes of all tiles intersecting the specified shape. The line raster does
+     * not necessarily cover a tile an edge only touches at its corner, so the neighbouring tiles
+     * are included.
+     */
+    TIntHashSet findTileEntries( Shape shape )
+    {
+        TIntHashSet set = new TIntHashSet();
+        BBox bounds = graph.getBounds();
+        BBox shapeBounds = shape.getBounds();
+        int parts = (int) Math.round((bounds.maxLat - bounds.minLat) / deltaLat);
+        int minLatIndex = Math.max(0, (int) Math.floor((shapeBounds.minLat - bounds.minLat) / deltaLat) - 1);
+        int maxLatIndex = Math.min(parts - 1, (int) Math.floor((shapeBounds.maxLat - bounds.minLat) / deltaLat) + 1);
+        int minLonIndex = Math.max(0, (int) Math.floor((shapeBounds.minLon - bounds.minLon) / deltaLon) - 1);
+        int maxLonIndex = Math.min(parts - 1, (int) Math.floor((shapeBounds.maxLon - bounds.minLon) / deltaLon) + 1);
+        BBox region = new BBox(0, 0, 0, 0);
+        for (int latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++)
+        {
+            double tileLat = bounds.minLat + latIndex * deltaLat;
+            region.minLat = tileLat - deltaLat;
+            region.maxLat = tileLat + 2 * deltaLat;
+            for (int lonIndex = minLonIndex; lonIndex <= maxLonIndex; lonIndex++)
+            {
+                double tileLon = bounds.minLon + lonIndex * deltaLon;
+                region.minLon = tileLon - deltaLon;
+                region.maxLon = tileLon + 2 * deltaLon;
+                // skip tiles which are not even close to the shape e.g. in the corners of a circle
+                if (!shape.intersect(region))
+                {
+                    continue;
+                }
+                long keyPart = createReverseKey(tileLat + deltaLat / 2, tileLon + deltaLon / 2);
+                fillIDs(keyPart, START_POINTER, set, 0);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * @return true if the way geometry of the specified edge intersects the shape. Exact for
+     * Circle and BBox, other shapes only check the points of the geometry.
+     */
+    public boolean intersects( Shape shape, EdgeIterator edge )
+    {
+        int baseNode = edge.getBaseNode();
+        double lat1 = graph.getLatitude(baseNode);
+        double lon1 = graph.getLongitude(baseNode);
+        double lat2;
+        double lon2;
+        PointList points = edge.getWayGeometry();
+        int len = points.getSize();
+        for (int i = 0; i < len; i++)
+        {
+            lat2 = points.getLatitude(i);
+            lon2 = points.getLongitude(i);
+            if (intersects(distCalc, shape, lat1, lon1, lat2, lon2))
+            {
+                return true;
+            }
+            lat1 = lat2;
+            lon1 = lon2;
+        }
+        int adjNode = edge.getAdjNode();
+        return intersects(distCalc, shape, lat1, lon1, graph.getLatitude(adjNode), graph.getLongitude(adjNode));
+    }
+
+    static boolean intersects( DistanceCalc distCalc, Shape shape,
+            double lat1, double lon1, double lat2, double lon2 )
+    {
+        if (shape.contains(lat1, lon1) || shape.contains(lat2, lon2))
+        {
+            return true;
+        }
+        if (shape instanceof Circle)
+        {
+            Circle circle = (Circle) shape;
+            if (!distCalc.validEdgeDistance(circle.getLat(), circle.getLon(), lat1, lon1, lat2, lon2))
+            {
+                return false;
+            }
+            double dist = distCalc.calcNormalizedEdgeDistance(circle.getLat(), circle.getLon(),
+                    lat1, lon1, lat2, lon2);
+            return dist <= distCalc.calcNormalizedDist(circle.getRadius());
+        }
+        if (shape instanceof BBox)
+        {
+            return intersects((BBox) shape, lat1, lon1, lat2, lon2);
+        }
+        return false;
+    }
+
+    // Liang-Barsky clipping of the line segment against the box
+    private static boolean intersects( BBox box, double lat1, double lon1, double lat2, double lon2 )
+    {
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        double[] range = new double[]
+        {
+            0, 1
+        };
+        return clip(-dLon, lon1 - box.minLon, range)
+                && clip(dLon, box.maxLon - lon1, range)
+                && clip(-dLat, lat1 - box.minLat, range)
+                && clip(dLat, box.maxLat - lat1, range);
+    }
+
+    private static boolean clip( double p, double q, double[] range )
+    {
+        if (p == 0)
+        {
+            // parallel to this border
+            return q >= 0;
+        }
+        double r = q / p;
+        if (p < 0)
+        {
+            if (r > range[1])
+            {
+                return false;
+            }
+            range[0] = Math.max(range[0], r);
+        } else
+        {
+            if (r < range[0])
+            {
+                return false;
+            }
+            range[1] = Math.min(range[1], r);
+        }
+        return true;
+    }
+
     @Override
     public LocationIDResult findClosest( final double queryLat, final double queryLon,
             final EdgeFilter edgeFilter )
     {
-        final TIntHashSet storedNetworkEntryIds = findNetworkEntries(queryLat, queryLon);
-        final LocationIDResult closestNode = new LocationIDResult();
-        if (storedNetworkEntryIds.isEmpty())
+        return findClosest(queryLat, queryLon, edgeFilter, new LocationIDResult());
+    }
+
+    /**
+     * Same as findClosest but fills the specified result instead of creating a new one. The
+     * buffers needed for the lookup are kept per thread, so calling this repeatedly with the same
+     * result object creates hardly any garbage.
+     * <p/>
+     * @param res will be reset before the lookup
+     */
+    @Override
+    public LocationIDResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter,
+            LocationIDResult res )
+    {
+        return findClosest(queryLat, queryLon, edgeFilter, res, lookupBuffers.get());
+    }
+
+    /**
+     * Looks up many locations at once, e.g. for a matrix request. The queries are sorted by their
+     * spatial key so that neighbouring queries can share the tree lookups of their tiles.
+     * <p/>
+     * @return the closest node for every location or -1 if none was found
+     */
+    @Override
+    public int[] findClosest( double[] lats, double[] lons, EdgeFilter edgeFilter )
+    {
+        return findClosest(lats, lons, edgeFilter, 1);
+    }
+
+    /**
+     * @param threads the number of threads the sorted batch is split into
+     * @see #findClosest(double[], double[], com.graphhopper.routing.util.EdgeFilter)
+     */
+    public int[] findClosest( final double[] lats, final double[] lons, final EdgeFilter edgeFilter,
+            int threads )
+    {
+        if (lats.length != lons.length)
         {
-            return closestNode;
+            throw new IllegalArgumentException("lats and lons need to have the same length "
+                    + lats.length + " vs. " + lons.length);
+        }
+        final int[] nodes = new int[lats.length];
+        final int[] order = sortBySpatialKey(lats, lons);
+        threads = Math.max(1, Math.min(threads, lats.length / MIN_BATCH_SIZE_PER_THREAD));
+        if (threads == 1)
+        {
+            findAll(order, 0, order.length, lats, lons, edgeFilter, nodes);
+            return nodes;
         }
 
-        // clone storedIds to avoid interference with forEach
-        final GHBitSet checkBitset = new GHTBitSet(new TIntHashSet(storedNetworkEntryIds));
-        // find nodes from the network entries which are close to 'point'
-        storedNetworkEntryIds.forEach(new TIntProcedure()
+        final Throwable[] errors = new Throwable[threads];
+        Thread[] workers = new Thread[threads];
+        int chunk = (order.length + threads - 1) / threads;
+        for (int i = 0; i < threads; i++)
         {
-            @Override
-            public boolean execute( final int networkEntryNodeId )
+            final int index = i;
+            final int from = i * chunk;
+            final int to = Math.min(order.length, from + chunk);
+            workers[i] = new Thread("GraphHopper location lookup " + i)
             {
-                new XFirstSearch()
+                @Override
+                public void run()
                 {
-                    boolean goFurther = true;
-                    double currDist;
-                    double currLat;
-                    double currLon;
-                    int currNode;
-
-                    @Override
-                    protected GHBitSet createBitSet( int size )
+                    try
                     {
-                        return checkBitset;
-                    }
-
-                    @Override
-                    protected EdgeIterator getEdges( Graph g, int current )
+                        findAll(order, from, to, lats, lons, edgeFilter, nodes);
+                    } catch (Throwable ex)
                     {
-                        return Location2NodesNtree.this.getEdges(current);
+                        errors[index] = ex;
                     }
+                }
+            };
+            workers[i].start();
+        }
+        try
+        {
+            for (Thread worker : workers)
+            {
+                worker.join();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Location lookup was interrupted", ex);
+        }
+        for (Throwable error : errors)
+        {
+            if (error != null)
+            {
+                throw new RuntimeException("Location lookup failed", error);
+            }
+        }
+        return nodes;
+    }
 
-                    @Override
-                    protected boolean goFurther( int baseNode )
-                    {
-                        currNode = baseNode;
-                        currLat = graph.getLatitude(baseNode);
-                        currLon = graph.getLongitude(baseNode);
-                        currDist = distCalc.calcNormalizedDist(queryLat, queryLon, currLat, currLon);
-                        return goFurther;
-                    }
+    private int[] sortBySpatialKey( double[] lats, double[] lons )
+    {
+        final long[] keys = new long[lats.length];
+        Integer[] tmpOrder = new Integer[lats.length];
+        for (int i = 0; i < lats.length; i++)
+        {
+            keys[i] = keyAlgo.encode(lats[i], lons[i]);
+            tmpOrder[i] = i;
+        }
+        Arrays.sort(tmpOrder, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer o1, Integer o2 )
+            {
+                long k1 = keys[o1];
+                long k2 = keys[o2];
+                return k1 < k2 ? -1 : (k1 == k2 ? 0 : 1);
+            }
+        });
+        int[] order = new int[tmpOrder.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = tmpOrder[i];
+        }
+        return order;
+    }
 
-                    @Override
-                    protected boolean checkAdjacent( EdgeIterator currEdge )
-                    {
-                        goFurther = false;
-                        if (!edgeFilter.accept(currEdge))
-                        {
-                            // only limit the adjNode to a certain radius as currNode could be the wrong side of a valid edge
-                            // goFurther = currDist < minResolution2InMeterNormed;
-                            return true;
-                        }
+    /**
+     * Buffers which are reused from one lookup to the next. They do not reference the index so that
+     * the thread local copies do not keep a closed index in memory. Only the edge iterator references
+     * the graph, whose storage is released when it is closed.
+     */
+    static class LookupBuffers
+    {
+        final TIntHashSet networkEntries = new TIntHashSet();
+        // caches the node ids of recently used tiles, only used for batch lookups
+        final TLongObjectHashMap<int[]> tileCache;
+        final TIntArrayList tmpIds = new TIntArrayList();
+        int[] entryBuffer = new int[16];
+        // moved from node to node instead of creating an iterator per node
+        EdgeIterator edgeIter;
+        final PointList pillarNodes = new PointList();
+
+        LookupBuffers( boolean cacheTiles )
+        {
+            tileCache = cacheTiles ? new TLongObjectHashMap<int[]>() : null;
+        }
+    }
+
+    private void findAll( int[] order, int from, int to, double[] lats, double[] lons,
+            EdgeFilter edgeFilter, int[] nodes )
+    {
+        LookupBuffers buffers = new LookupBuffers(true);
+        LocationIDResult res = new LocationIDResult();
+        for (int i = from; i < to; i++)
+        {
+            int index = order[i];
+            nodes[index] = findClosest(lats[index], lons[index], edgeFilter, res, buffers).getClosestNode();
+        }
+    }
+
+    private LocationIDResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter,
+            LocationIDResult res, LookupBuffers buffers )
+    {
+        res.setClosestNode(-1);
+        res.setWeight(Double.MAX_VALUE);
+        res.setWayIndex(-3);
+        TIntHashSet networkEntries = buffers.networkEntries;
+        networkEntries.clear();
+        if (regionSearch)
+        {
+            // search all rasters around minResolutionInMeter as we did not fill empty entries
+            double maxLat = queryLat + deltaLat;
+            double maxLon = queryLon + deltaLon;
+            for (double tmpLat = queryLat - deltaLat; tmpLat <= maxLat; tmpLat += deltaLat)
+            {
+                for (double tmpLon = queryLon - deltaLon; tmpLon <= maxLon; tmpLon += deltaLon)
+                {
+                    fillTileIDs(createReverseKey(tmpLat, tmpLon), buffers);
+                }
+            }
+        } else
+        {
+            fillTileIDs(createReverseKey(queryLat, queryLon), buffers);
+        }
 
-                        int tmpNode = currNode;
-                        double tmpLat = currLat;
-                        double tmpLon = currLon;
-                        int adjNode = currEdge.getAdjNode();
-                        double adjLat = graph.getLatitude(adjNode);
-                        double adjLon = graph.getLongitude(adjNode);
+        int size = networkEntries.size();
+        if (size == 0)
+        {
+            return res;
+        }
+        if (buffers.entryBuffer.length < size)
+        {
+            buffers.entryBuffer = new int[Math.max(size, buffers.entryBuffer.length * 2)];
+        }
+        int[] entries = buffers.entryBuffer;
+        networkEntries.toArray(entries);
+        for (int i = 0; i < size; i++)
+        {
+            checkNetworkEntry(queryLat, queryLon, entries[i], edgeFilter, res, buffers);
+        }
+        return res;
+    }
 
-                        check(tmpNode, currDist, -adjNode - 2);
+    private void fillTileIDs( long keyPart, LookupBuffers buffers )
+    {
+        if (buffers.tileCache == null)
+        {
+            fillIDs(keyPart, START_POINTER, buffers.networkEntries, 0);
+            return;
+        }
 
-                        double tmpDist;
-                        double adjDist = distCalc.calcNormalizedDist(adjLat, adjLon, queryLat, queryLon);
-                        // if there are wayPoints this is only an approximation
-                        if (edgeDistCalcOnSearch && adjDist < currDist)
-                        {
-                            tmpNode = adjNode;
-                        }
+        int[] ids = buffers.tileCache.get(keyPart);
+        if (ids == null)
+        {
+            if (buffers.tileCache.size() >= MAX_CACHED_TILES)
+            {
+                buffers.tileCache.clear();
+            }
+            buffers.tmpIds.resetQuick();
+            fillIDs(keyPart, START_POINTER, buffers.tmpIds, 0);
+            ids = buffers.tmpIds.toArray();
+            buffers.tileCache.put(keyPart, ids);
+        }
+        buffers.networkEntries.addAll(ids);
+    }
 
-                        PointList pointList = currEdge.getWayGeometry();
-                        int len = pointList.getSize();
-                        for (int pointIndex = 0; pointIndex < len; pointIndex++)
-                        {
-                            double wayLat = pointList.getLatitude(pointIndex);
-                            double wayLon = pointList.getLongitude(pointIndex);
-                            if (NumHelper.equalsEps(queryLat, wayLat, 1e-6)
-                                    && NumHelper.equalsEps(queryLon, wayLon, 1e-6))
-                            {
-                                // equal point found
-                                check(tmpNode, 0d, pointIndex);
-                                break;
-                            } else if (edgeDistCalcOnSearch
-                                    && distCalc.validEdgeDistance(queryLat, queryLon,
-                                    tmpLat, tmpLon, wayLat, wayLon))
-                            {
-                                tmpDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon,
-                                        tmpLat, tmpLon, wayLat, wayLon);
-                                check(tmpNode, tmpDist, pointIndex);
-                            }
+    /**
+     * Checks the edges of the specified node which is close to the query location.
+     */
+    private void checkNetworkEntry( double queryLat, double queryLon, int currNode,
+            EdgeFilter edgeFilter, LocationIDResult closestNode, LookupBuffers buffers )
+    {
+        double currLat = graph.getLatitude(currNode);
+        double currLon = graph.getLongitude(currNode);
+        double currDist = distCalc.calcNormalizedDist(queryLat, queryLon, currLat, currLon);
+        EdgeIterator currEdge = getEdges(currNode, buffers.edgeIter);
+        buffers.edgeIter = currEdge;
+        while (currEdge.next())
+        {
+            if (!edgeFilter.accept(currEdge))
+            {
+                continue;
+            }
 
-                            tmpLat = wayLat;
-                            tmpLon = wayLon;
-                        }
+            int tmpNode = currNode;
+            double tmpLat = currLat;
+            double tmpLon = currLon;
+            int adjNode = currEdge.getAdjNode();
+            double adjLat = graph.getLatitude(adjNode);
+            double adjLon = graph.getLongitude(adjNode);
 
-                        if (edgeDistCalcOnSearch
-                                && distCalc.validEdgeDistance(queryLat, queryLon,
-                                tmpLat, tmpLon, adjLat, adjLon))
-                        {
-                            tmpDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon,
-                                    tmpLat, tmpLon, adjLat, adjLon);
-                        } else
-                        {
-                            tmpDist = adjDist;
-                        }
+            check(closestNode, tmpNode, currDist, -adjNode - 2);
 
-                        check(tmpNode, tmpDist, -currNode - 2);
-                        return closestNode.getWeight() >= 0;
-                    }
+            double tmpDist;
+            double adjDist = distCalc.calcNormalizedDist(adjLat, adjLon, queryLat, queryLon);
+            // if there are wayPoints this is only an approximation
+            if (edgeDistCalcOnSearch && adjDist < currDist)
+            {
+                tmpNode = adjNode;
+            }
 
-                    void check( int node, double dist, int wayIndex )
-                    {
-                        if (dist < closestNode.getWeight())
-                        {
-                            closestNode.setWeight(dist);
-                            closestNode.setClosestNode(node);
-                            closestNode.setWayIndex(wayIndex);
-                        }
-                    }
-                }.start(graph, networkEntryNodeId, false);
-                return true;
+            PointList pointList = currEdge.getWayGeometry(buffers.pillarNodes);
+            int len = pointList.getSize();
+            for (int pointIndex = 0; pointIndex < len; pointIndex++)
+            {
+                double wayLat = pointList.getLatitude(pointIndex);
+                double wayLon = pointList.getLongitude(pointIndex);
+                if (NumHelper.equalsEps(queryLat, wayLat, 1e-6)
+                        && NumHelper.equalsEps(queryLon, wayLon, 1e-6))
+                {
+                    // equal point found
+                    check(closestNode, tmpNode, 0d, pointIndex);
+                    break;
+                } else if (edgeDistCalcOnSearch
+                        && distCalc.validEdgeDistance(queryLat, queryLon,
+                        tmpLat, tmpLon, wayLat, wayLon))
+                {
+                    tmpDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon,
+                            tmpLat, tmpLon, wayLat, wayLon);
+                    check(closestNode, tmpNode, tmpDist, pointIndex);
+                }
+
+                tmpLat = wayLat;
+                tmpLon = wayLon;
+            }
+
+            if (edgeDistCalcOnSearch
+                    && distCalc.validEdgeDistance(queryLat, queryLon,
+                    tmpLat, tmpLon, adjLat, adjLon))
+            {
+                tmpDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon,
+                        tmpLat, tmpLon, adjLat, adjLon);
+            } else
+            {
+                tmpDist = adjDist;
             }
-        });
 
-        return closestNode;
+            check(closestNode, tmpNode, tmpDist, -currNode - 2);
+        }
+    }
+
+    private static void check( LocationIDResult closestNode, int node, double dist, int wayIndex )
+    {
+        if (dist < closestNode.getWeight())
+        {
+            closestNode.setWeight(dist);
+            closestNode.setClosestNode(node);
+            closestNode.setWayIndex(wayIndex);
+        }
     }
 
     protected int pickBestNode( int nodeA, int nodeB )
@@ -787,9 +1766,12 @@ public class Location2NodesNtree implements Location2IDIndex
         return nodeA;
     }
 
-    protected EdgeIterator getEdges( int node )
+    /**
+     * @param reuse null or an iterator returned from this method which is not used anymore
+     */
+    protected EdgeIterator getEdges( int node, EdgeIterator reuse )
     {
-        return graph.getEdges(node);
+        return graph.getEdges(node, EdgeFilter.ALL_EDGES, reuse);
     }
 
     protected AllEdgesIterator getAllEdges()
@@ -140,6 +140,12 @@ public class Location2NodesNtreeLG extends Location2NodesNtree
                 return tmpIter.getWayGeometry();
             }
 
+            @Override
+            public PointList getWayGeometry( PointList list )
+            {
+                return tmpIter.getWayGeometry(list);
+            }
+
             @Override
             public void setWayGeometry( PointList list )
             {
@@ -159,13 +165,13 @@ public class Location2NodesNtreeLG extends Location2NodesNtree
             }
 
             @Override
-            public int getFlags()
+            public long getFlags()
             {
                 return tmpIter.getFlags();
             }
 
             @Override
-            public void setFlags( int flags )
+            public void setFlags( long flags )
             {
                 tmpIter.setFlags(flags);
             }
@@ -189,8 +195,8 @@ public class Location2NodesNtreeLG extends Location2NodesNtree
     }
 
     @Override
-    protected EdgeIterator getEdges( int node )
+    protected EdgeIterator getEdges( int node, EdgeIterator reuse )
     {
-        return lg.getEdges(node, NO_SHORTCUT);
+        return lg.getEdges(node, NO_SHORTCUT, reuse);
     }
 }
@@ -33,6 +33,24 @@ public class LocationIDResult
     {
     }
 
+    public LocationIDResult( LocationIDResult res )
+    {
+        weight = res.weight;
+        wayIndex = res.wayIndex;
+        closestNode = res.closestNode;
+    }
+
+    /**
+     * Copies the specified result into this one.
+     */
+    public LocationIDResult set( LocationIDResult res )
+    {
+        weight = res.weight;
+        wayIndex = res.wayIndex;
+        closestNode = res.closestNode;
+        return this;
+    }
+
     void setClosestNode( int node )
     {
         closestNode = node;
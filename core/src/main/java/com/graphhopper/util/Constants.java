@@ -54,7 +54,7 @@ public class Constants
     public static final int VERSION_EDGE = 2;
     public static final int VERSION_GEOMETRY = 1;
     public static final int VERSION_LOCATION_IDX = 1;
-    public static final int VERSION_NAME_IDX = 1;
+    public static final int VERSION_NAME_IDX = 2;
     /**
      * The version without the snapshot string
      */
@@ -73,6 +73,15 @@ public interface EdgeIterator
      */
     PointList getWayGeometry();
 
+    /**
+     * Same as getWayGeometry but fills the specified list instead of creating a new one, e.g. to
+     * avoid garbage if the geometry of many edges is only read.
+     * <p/>
+     * @param list will be cleared before the pillar nodes are added
+     * @return the specified list
+     */
+    PointList getWayGeometry( PointList list );
+
     /**
      * @param list is a sorted collection of nodes between the baseNode and the current adjacent
      * node
@@ -86,9 +95,9 @@ public interface EdgeIterator
 
     void setDistance( double dist );
 
-    int getFlags();
+    long getFlags();
 
-    void setFlags( int flags );
+    void setFlags( long flags );
 
     String getName();
 
@@ -351,7 +351,7 @@ public class GHUtility
         }
 
         @Override
-        public void setFlags( int flags )
+        public void setFlags( long flags )
         {
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
@@ -387,7 +387,7 @@ public class GHUtility
         }
 
         @Override
-        public int getFlags()
+        public long getFlags()
         {
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
@@ -398,6 +398,12 @@ public class GHUtility
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
 
+        @Override
+        public PointList getWayGeometry( PointList list )
+        {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
         @Override
         public void setWayGeometry( PointList list )
         {
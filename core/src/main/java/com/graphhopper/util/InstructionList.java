@@ -68,6 +68,16 @@ public class InstructionList
         distances.add(dist);
     }
 
+    /**
+     * Appends all instructions of the specified list.
+     */
+    public void add( InstructionList list )
+    {
+        indications.addAll(list.indications);
+        names.addAll(list.names);
+        distances.addAll(list.distances);
+    }
+
     public int size()
     {
         return indications.size();
@@ -19,10 +19,14 @@
 package com.graphhopper.util;
 
 import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.DijkstraBidirectionParallel;
+import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.AllEdgesSkipIterator;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
@@ -32,12 +36,19 @@ import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.Location2IDIndex;
+import com.graphhopper.storage.index.Location2IDQuadtree;
+import com.graphhopper.storage.index.Location2IDRTree;
 import com.graphhopper.storage.index.Location2NodesNtreeLG;
+import com.graphhopper.storage.index.LocationIDResult;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Circle;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
@@ -101,6 +112,7 @@ public class Measurement
         try
         {
             printGraphDetails(g);
+            printBidirectionalComparison(g, vehicle, count, rand);
             AlgorithmPreparation prepare;
             if (doPrepare)
             {
@@ -121,6 +133,7 @@ public class Measurement
             }
 
             TIntList list = printLocation2IDQuery(g, dir, count, rand);
+            printLocationIndexComparison(g, count, rand);
             lookupCount = list.size();
             printTimeOfRouteQuery(prepare, list);
             logger.info("store into " + propLocation);
@@ -157,6 +170,41 @@ public class Measurement
         put("graph.sizeInMB", g.getCapacity() / Helper.MB);
     }
 
+    private void printBidirectionalComparison( final Graph g, final FlagEncoder vehicle, int count, Random rand )
+    {
+        // time(route query) of the sequential and the parallel bidirectional Dijkstra, both are
+        // measured on the same node pairs and before the shortcuts are added
+        count = Math.max(1, count / 10);
+        final int[] pairs = new int[2 * count];
+        for (int i = 0; i < pairs.length; i++)
+        {
+            pairs[i] = rand.nextInt(g.getNodes());
+        }
+        MiniPerfTest sequentialPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                return new DijkstraBidirectionRef(g, vehicle).calcPath(pairs[2 * run], pairs[2 * run + 1]).
+                        calcPoints().getSize();
+            }
+        }.count(count).start();
+        print("routing.dijkstrabi", sequentialPerf);
+
+        MiniPerfTest parallelPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                return new DijkstraBidirectionParallel(g, vehicle).calcPath(pairs[2 * run], pairs[2 * run + 1]).
+                        calcPoints().getSize();
+            }
+        }.count(count).start();
+        print("routing.dijkstrabiParallel", parallelPerf);
+        put("routing.dijkstrabiParallel.speedup", sequentialPerf.getMean() / parallelPerf.getMean());
+        put("routing.availableProcessors", Runtime.getRuntime().availableProcessors());
+    }
+
     private void printPreparationDetails( Graph g, PrepareContractionHierarchies prepare )
     {
         // time(preparation) + shortcuts number
@@ -166,7 +214,7 @@ public class Measurement
         put("prepare.shortcuts", prepare.getShortcuts());
     }
 
-    private TIntList printLocation2IDQuery( LevelGraph g, Directory dir, int count, final Random rand )
+    private TIntList printLocation2IDQuery( final LevelGraph g, Directory dir, int count, final Random rand )
     {
         // time(location2id)
         count *= 2;
@@ -197,9 +245,125 @@ public class Measurement
         }.count(count).start();
 
         print("location2id", miniPerf);
+
+        // the same lookups with a reused result should not create garbage
+        final LocationIDResult res = new LocationIDResult();
+        MiniPerfTest reusedPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                double lat = rand.nextDouble() * latDelta + bbox.minLat;
+                double lon = rand.nextDouble() * lonDelta + bbox.minLon;
+                return idx.findClosest(lat, lon, EdgeFilter.ALL_EDGES, res).getClosestNode();
+            }
+        }.count(count).start();
+        print("location2idReused", reusedPerf);
+        long allocated = getAllocatedBytes();
+        for (int i = 0; i < count; i++)
+        {
+            idx.findClosest(rand.nextDouble() * latDelta + bbox.minLat,
+                    rand.nextDouble() * lonDelta + bbox.minLon, EdgeFilter.ALL_EDGES, res);
+        }
+        if (allocated >= 0)
+        {
+            put("location2idReused.allocatedBytesPerLookup", (float) (getAllocatedBytes() - allocated) / count);
+        }
+
+        // the same kind of lookups in batches which are sorted by their spatial key
+        final int batchSize = 1000;
+        final double[] lats = new double[batchSize];
+        final double[] lons = new double[batchSize];
+        MiniPerfTest batchPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                for (int i = 0; i < batchSize; i++)
+                {
+                    lats[i] = rand.nextDouble() * latDelta + bbox.minLat;
+                    lons[i] = rand.nextDouble() * lonDelta + bbox.minLon;
+                }
+                return idx.findClosest(lats, lons, EdgeFilter.ALL_EDGES)[0];
+            }
+        }.count(Math.max(1, count / batchSize)).start();
+        print("location2idBatch", batchPerf);
+        put("location2idBatch.meanPerLookup", batchPerf.getMean() / batchSize);
+
+        // all edges within 200m, via the index and via scanning all edges
+        final double radius = 200;
+        MiniPerfTest radiusPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                Circle circle = new Circle(rand.nextDouble() * latDelta + bbox.minLat,
+                        rand.nextDouble() * lonDelta + bbox.minLon, radius);
+                TIntArrayList edges = new TIntArrayList();
+                idx.findEdges(circle, EdgeFilter.ALL_EDGES, edges);
+                return edges.size();
+            }
+        }.count(count).start();
+        print("location2idRadius", radiusPerf);
+
+        MiniPerfTest fullScanPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                Circle circle = new Circle(rand.nextDouble() * latDelta + bbox.minLat,
+                        rand.nextDouble() * lonDelta + bbox.minLon, radius);
+                int found = 0;
+                AllEdgesSkipIterator iter = g.getAllEdges();
+                while (iter.next())
+                {
+                    if (!iter.isShortcut() && idx.intersects(circle, iter))
+                    {
+                        found++;
+                    }
+                }
+                return found;
+            }
+        }.count(Math.max(1, count / 100)).start();
+        print("location2idRadiusFullScan", fullScanPerf);
         return list;
     }
 
+    private void printLocationIndexComparison( LevelGraph g, int count, Random rand )
+    {
+        // build time, size and lookup time of the alternative location indices
+        printLocationIndex("location2idNtree", new Location2NodesNtreeLG(g, new RAMDirectory()).
+                setResolution(500), g, count, rand);
+        printLocationIndex("location2idRTree", new Location2IDRTree(g, new RAMDirectory()), g, count, rand);
+        printLocationIndex("location2idQuadtree", new Location2IDQuadtree(g, new RAMDirectory()).
+                setResolution(Helper.calcIndexSize(g.getBounds())), g, count, rand);
+    }
+
+    private void printLocationIndex( String prefix, final Location2IDIndex idx, Graph g, int count,
+            final Random rand )
+    {
+        StopWatch sw = new StopWatch().start();
+        idx.prepareIndex();
+        put(prefix + ".prepareTime", sw.stop().getTime());
+        put(prefix + ".sizeInMB", (float) idx.getCapacity() / Helper.MB);
+
+        final BBox bbox = g.getBounds();
+        final double latDelta = bbox.maxLat - bbox.minLat;
+        final double lonDelta = bbox.maxLon - bbox.minLon;
+        MiniPerfTest miniPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                double lat = rand.nextDouble() * latDelta + bbox.minLat;
+                double lon = rand.nextDouble() * lonDelta + bbox.minLon;
+                return idx.findClosest(lat, lon, EdgeFilter.ALL_EDGES).getClosestNode();
+            }
+        }.count(count).start();
+        print(prefix, miniPerf);
+        idx.close();
+    }
+
     private void printTimeOfRouteQuery( final AlgorithmPreparation prepare, final TIntList list )
     {
         // time(route query)
@@ -240,6 +404,19 @@ public class Measurement
         print("routing", miniPerf);
     }
 
+    /**
+     * @return the bytes allocated by the current thread so far or -1 if the JVM cannot tell
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
     void print( String prefix, MiniPerfTest perf )
     {
         logger.info(perf.report());
@@ -0,0 +1,529 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decompresses bzip2 data with several threads. The blocks of a bzip2 stream are independent and
+ * start with a 48 bit magic number, which is not byte aligned. A separate thread searches these
+ * numbers, wraps every block into a bzip2 stream of its own and lets the workers decompress them.
+ * The decompressed blocks are returned in the original order. Also concatenated streams like from
+ * pbzip2 are supported.
+ * <p/>
+ * The magic number can also occur inside the compressed data. The block is then decompressed
+ * together with the next one, as the CRC check fails.
+ * <p/>
+ * The decompression itself is done by the BZip2CompressorInputStream of commons-compress, which
+ * needs to be in the classpath.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ParallelBZip2InputStream extends InputStream
+{
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long EOS_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+    private static final ChunkTask END = new ChunkTask(null, null);
+    private final InputStream in;
+    private final Constructor<InputStream> bzip2Constructor;
+    private final ExecutorService executor;
+    private final BlockingQueue<ChunkTask> tasks;
+    private final Thread splitter;
+    private volatile Exception error;
+    private byte[] current;
+    private int pos;
+    private boolean eof;
+    // state of the splitter
+    private byte[] buffer = new byte[1 << 20];
+    private int bufferLength;
+    private long bufferStartByte;
+    private long chunkStart = -1;
+    private long eosBit = -1;
+    private int level;
+
+    public ParallelBZip2InputStream( InputStream in )
+    {
+        this(in, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelBZip2InputStream( InputStream in, int threads )
+    {
+        this.in = in;
+        bzip2Constructor = getBZip2Constructor();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread(r, "BZip2 Decoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        tasks = new ArrayBlockingQueue<ChunkTask>(Math.max(1, threads) * 2);
+        splitter = new Thread("BZip2 Splitter")
+        {
+            @Override
+            public void run()
+            {
+                split();
+            }
+        };
+        splitter.setDaemon(true);
+        splitter.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Constructor<InputStream> getBZip2Constructor()
+    {
+        String clName = "org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream";
+        try
+        {
+            Class clazz = Class.forName(clName);
+            return clazz.getConstructor(InputStream.class, boolean.class);
+        } catch (Exception e)
+        {
+            throw new IllegalArgumentException("Cannot instantiate " + clName, e);
+        }
+    }
+
+    private void split()
+    {
+        try
+        {
+            long window = 0;
+            long bytes = 0;
+            while (true)
+            {
+                if (bufferLength == buffer.length)
+                {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int n = in.read(buffer, bufferLength, buffer.length - bufferLength);
+                if (n < 0)
+                {
+                    break;
+                }
+                int end = bufferLength + n;
+                for (int i = bufferLength; i < end; i++)
+                {
+                    window = window << 8 | (buffer[i] & 0xFF);
+                    bytes++;
+                    if (bytes == 4)
+                    {
+                        level = readHeader(i - 3);
+                        if (level < 0)
+                        {
+                            throw new IOException("Not a bzip2 stream");
+                        }
+                    }
+                    if (bytes < 6)
+                    {
+                        continue;
+                    }
+                    for (int shift = 7; shift >= 0; shift--)
+                    {
+                        long value = (window >>> shift) & MAGIC_MASK;
+                        if (value == BLOCK_MAGIC)
+                        {
+                            foundBlock(bytes * 8 - shift - 48);
+                        } else if (value == EOS_MAGIC && chunkStart >= 0)
+                        {
+                            // use the last one in case the magic also occurs inside the block
+                            eosBit = bytes * 8 - shift - 48;
+                        }
+                    }
+                }
+                bufferLength = end;
+
+                // keep only the bytes of the current block
+                if (chunkStart >= 0)
+                {
+                    int keep = (int) (chunkStart / 8 - bufferStartByte);
+                    if (keep > 0)
+                    {
+                        System.arraycopy(buffer, keep, buffer, 0, bufferLength - keep);
+                        bufferLength -= keep;
+                        bufferStartByte += keep;
+                    }
+                }
+            }
+
+            if (chunkStart >= 0)
+            {
+                submit(eosBit >= 0 ? eosBit : (bufferStartByte + bufferLength) * 8);
+            }
+        } catch (Exception ex)
+        {
+            error = ex;
+        } finally
+        {
+            try
+            {
+                tasks.put(END);
+            } catch (InterruptedException ex)
+            {
+                // closed
+            }
+        }
+    }
+
+    /**
+     * @return the block size level of the header at the specified position or -1 if there is no
+     * header
+     */
+    private int readHeader( int index )
+    {
+        if (index < 0 || buffer[index] != 'B' || buffer[index + 1] != 'Z' || buffer[index + 2] != 'h'
+                || buffer[index + 3] < '1' || buffer[index + 3] > '9')
+        {
+            return -1;
+        }
+        return buffer[index + 3] - '0';
+    }
+
+    private void foundBlock( long magicBit ) throws InterruptedException
+    {
+        if (chunkStart >= 0)
+        {
+            int newLevel = -1;
+            if (eosBit >= 0 && magicBit % 8 == 0)
+            {
+                // a concatenated stream starts byte aligned with a header
+                newLevel = readHeader((int) (magicBit / 8 - bufferStartByte) - 4);
+            }
+            submit(newLevel > 0 ? eosBit : magicBit);
+            if (newLevel > 0)
+            {
+                level = newLevel;
+            }
+        }
+        chunkStart = magicBit;
+        eosBit = -1;
+    }
+
+    private void submit( long endBit ) throws InterruptedException
+    {
+        int from = (int) (chunkStart / 8 - bufferStartByte);
+        int to = (int) ((endBit + 7) / 8 - bufferStartByte);
+        Chunk chunk = new Chunk(Arrays.copyOfRange(buffer, from, to), (int) (chunkStart % 8),
+                endBit - chunkStart, level);
+        ChunkTask task = new ChunkTask(chunk, bzip2Constructor);
+        executor.execute(task);
+        tasks.put(task);
+    }
+
+    private boolean fill() throws IOException
+    {
+        while (current == null || pos >= current.length)
+        {
+            if (eof)
+            {
+                return false;
+            }
+            ChunkTask task = take();
+            if (task == END)
+            {
+                eof = true;
+                if (error != null)
+                {
+                    throw new IOException("Cannot read bzip2 stream", error);
+                }
+                return false;
+            }
+
+            try
+            {
+                current = task.get();
+            } catch (ExecutionException ex)
+            {
+                current = decodeMerged(task.chunk, ex);
+            } catch (InterruptedException ex)
+            {
+                throw new IOException(ex);
+            }
+            pos = 0;
+        }
+        return true;
+    }
+
+    private ChunkTask take() throws IOException
+    {
+        try
+        {
+            return tasks.take();
+        } catch (InterruptedException ex)
+        {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * The block was split at a magic number inside the compressed data, so merge it with the next
+     * chunks until it can be decompressed.
+     */
+    private byte[] decodeMerged( Chunk chunk, ExecutionException firstError ) throws IOException
+    {
+        while (true)
+        {
+            ChunkTask next = take();
+            if (next == END)
+            {
+                eof = true;
+                throw new IOException("Cannot decompress bzip2 block", firstError.getCause());
+            }
+            next.cancel(false);
+            chunk = chunk.merge(next.chunk);
+            try
+            {
+                return chunk.decode(bzip2Constructor);
+            } catch (IOException ex)
+            {
+                // try again with the next chunk
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        return current[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] bytes, int off, int len ) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!fill())
+        {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, bytes, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        eof = true;
+        splitter.interrupt();
+        executor.shutdownNow();
+        in.close();
+    }
+
+    static class ChunkTask extends FutureTask<byte[]>
+    {
+        final Chunk chunk;
+
+        ChunkTask( final Chunk chunk, final Constructor<InputStream> bzip2Constructor )
+        {
+            super(new Callable<byte[]>()
+            {
+                @Override
+                public byte[] call() throws Exception
+                {
+                    return chunk.decode(bzip2Constructor);
+                }
+            });
+            this.chunk = chunk;
+        }
+    }
+
+    /**
+     * The compressed bits of one block.
+     */
+    static class Chunk
+    {
+        final byte[] bytes;
+        final int startBit;
+        final long bitLength;
+        final int level;
+
+        Chunk( byte[] bytes, int startBit, long bitLength, int level )
+        {
+            this.bytes = bytes;
+            this.startBit = startBit;
+            this.bitLength = bitLength;
+            this.level = level;
+        }
+
+        Chunk merge( Chunk next )
+        {
+            BitWriter writer = new BitWriter((int) ((bitLength + next.bitLength) / 8 + 2));
+            writer.copyBits(bytes, startBit, bitLength);
+            writer.copyBits(next.bytes, next.startBit, next.bitLength);
+            return new Chunk(writer.toByteArray(), 0, bitLength + next.bitLength, level);
+        }
+
+        byte[] decode( Constructor<InputStream> bzip2Constructor ) throws IOException
+        {
+            // a stream with only this block: header, block, end of stream and the combined CRC,
+            // which is the CRC of the block stored after its magic number
+            BitWriter writer = new BitWriter((int) (bitLength / 8 + 20));
+            writer.writeBits(32, 'B' << 24 | 'Z' << 16 | 'h' << 8 | '0' + level);
+            writer.copyBits(bytes, startBit, bitLength);
+            writer.writeBits(48, EOS_MAGIC);
+            writer.copyBits(bytes, startBit + 48, 32);
+
+            InputStream bzip2In;
+            try
+            {
+                bzip2In = bzip2Constructor.newInstance(new ByteArrayInputStream(writer.toByteArray()), false);
+            } catch (Exception ex)
+            {
+                throw new IOException(ex);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(level * 100000 + 1000);
+            byte[] tmp = new byte[1 << 16];
+            int n;
+            while ((n = bzip2In.read(tmp)) >= 0)
+            {
+                out.write(tmp, 0, n);
+            }
+            bzip2In.close();
+            return out.toByteArray();
+        }
+    }
+
+    static class BitWriter
+    {
+        private byte[] bytes;
+        private int length;
+        private long bits;
+        private int bitCount;
+
+        BitWriter( int capacity )
+        {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeBits( int count, long value )
+        {
+            for (int i = count - 8; i > -8; i -= 8)
+            {
+                int n = Math.min(8, i + 8);
+                int tmp = (int) (i >= 0 ? value >>> i : value) & ((1 << n) - 1);
+                bits = bits << n | tmp;
+                bitCount += n;
+                if (bitCount >= 8)
+                {
+                    bitCount -= 8;
+                    writeByte((int) (bits >>> bitCount));
+                }
+            }
+        }
+
+        private void writeByte( int value )
+        {
+            if (length >= bytes.length)
+            {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Appends the specified bits of the source, starting with the most significant bit.
+         */
+        void copyBits( byte[] src, long startBit, long count )
+        {
+            long bit = startBit;
+            long end = startBit + count;
+            if (bitCount == 0 && bit + 8 <= end)
+            {
+                // fast path if the writer is byte aligned
+                int byteCount = (int) ((end - bit) / 8);
+                if (length + byteCount > bytes.length)
+                {
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + byteCount + 16));
+                }
+                int index = (int) (bit >>> 3);
+                int offset = (int) (bit & 7);
+                if (offset == 0)
+                {
+                    System.arraycopy(src, index, bytes, length, byteCount);
+                } else
+                {
+                    for (int i = 0; i < byteCount; i++, index++)
+                    {
+                        bytes[length + i] = (byte) ((src[index] & 0xFF) << offset | (src[index + 1] & 0xFF) >>> (8 - offset));
+                    }
+                }
+                length += byteCount;
+                bit += byteCount * 8L;
+            }
+            for (; bit + 8 <= end; bit += 8)
+            {
+                int index = (int) (bit >>> 3);
+                int offset = (int) (bit & 7);
+                int value = (src[index] & 0xFF) << 8;
+                if (offset > 0)
+                {
+                    value |= src[index + 1] & 0xFF;
+                }
+                writeBits(8, value >>> (8 - offset));
+            }
+            if (bit < end)
+            {
+                int rest = (int) (end - bit);
+                int index = (int) (bit >>> 3);
+                int offset = (int) (bit & 7);
+                int value = (src[index] & 0xFF) << 8;
+                if (offset + rest > 8)
+                {
+                    value |= src[index + 1] & 0xFF;
+                }
+                writeBits(rest, value >>> (16 - offset - rest));
+            }
+        }
+
+        byte[] toByteArray()
+        {
+            if (bitCount > 0)
+            {
+                // pad the last byte with zeros
+                writeByte((int) (bits << (8 - bitCount)));
+                bitCount = 0;
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -74,6 +74,31 @@ public class PointList
         size = newSize;
     }
 
+    /**
+     * Appends all points of the specified list. If skipFirst is true the first point of the
+     * specified list is not added, e.g. when merging the legs of a route via several points.
+     */
+    public void add( PointList points, boolean skipFirst )
+    {
+        int start = skipFirst ? 1 : 0;
+        int newSize = size + points.getSize() - start;
+        if (newSize <= size)
+        {
+            return;
+        }
+        if (newSize >= latitudes.length)
+        {
+            int cap = (int) (newSize * 1.7);
+            latitudes = Arrays.copyOf(latitudes, cap);
+            longitudes = Arrays.copyOf(longitudes, cap);
+        }
+
+        int len = points.getSize() - start;
+        System.arraycopy(points.latitudes, start, latitudes, size, len);
+        System.arraycopy(points.longitudes, start, longitudes, size, len);
+        size = newSize;
+    }
+
     public int getSize()
     {
         return size;
@@ -253,6 +278,12 @@ public class PointList
             throw new RuntimeException("cannot change EMPTY PointList");
         }
 
+        @Override
+        public void add( PointList points, boolean skipFirst )
+        {
+            throw new RuntimeException("cannot change EMPTY PointList");
+        }
+
         @Override
         public double getLatitude( int index )
         {
@@ -0,0 +1,194 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the underlying stream on a separate thread into two buffers, so that e.g. the inflation of
+ * a GZIPInputStream happens while the consumer processes the previous buffer.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ReadAheadInputStream extends InputStream
+{
+    private final InputStream in;
+    private final BlockingQueue<Buffer> filled;
+    private final BlockingQueue<Buffer> empty;
+    private final Thread thread;
+    private volatile IOException error;
+    private Buffer current;
+    private int pos;
+    private boolean eof;
+
+    public ReadAheadInputStream( InputStream in )
+    {
+        this(in, 1 << 20);
+    }
+
+    public ReadAheadInputStream( InputStream in, int bufferSize )
+    {
+        this.in = in;
+        filled = new ArrayBlockingQueue<Buffer>(2);
+        empty = new ArrayBlockingQueue<Buffer>(2);
+        empty.add(new Buffer(bufferSize));
+        empty.add(new Buffer(bufferSize));
+        thread = new Thread("Read Ahead")
+        {
+            @Override
+            public void run()
+            {
+                readAhead();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readAhead()
+    {
+        try
+        {
+            while (true)
+            {
+                Buffer buffer = empty.take();
+                try
+                {
+                    buffer.length = readFully(buffer.bytes);
+                } catch (IOException ex)
+                {
+                    error = ex;
+                    buffer.length = -1;
+                }
+                filled.put(buffer);
+                if (buffer.length < 0)
+                {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex)
+        {
+            // closed
+        }
+    }
+
+    private int readFully( byte[] bytes ) throws IOException
+    {
+        int length = 0;
+        while (length < bytes.length)
+        {
+            int n = in.read(bytes, length, bytes.length - length);
+            if (n < 0)
+            {
+                break;
+            }
+            length += n;
+        }
+        return length == 0 ? -1 : length;
+    }
+
+    private boolean fill() throws IOException
+    {
+        if (eof)
+        {
+            return false;
+        }
+        if (current != null && pos < current.length)
+        {
+            return true;
+        }
+
+        try
+        {
+            if (current != null)
+            {
+                empty.put(current);
+            }
+            current = filled.take();
+        } catch (InterruptedException ex)
+        {
+            throw new IOException(ex);
+        }
+        pos = 0;
+        if (current.length < 0)
+        {
+            eof = true;
+            if (error != null)
+            {
+                throw error;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        return current.bytes[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] bytes, int off, int len ) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!fill())
+        {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current.bytes, pos, bytes, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return current == null || eof ? 0 : current.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        eof = true;
+        thread.interrupt();
+        in.close();
+    }
+
+    private static class Buffer
+    {
+        final byte[] bytes;
+        int length;
+
+        Buffer( int size )
+        {
+            bytes = new byte[size];
+        }
+    }
+}
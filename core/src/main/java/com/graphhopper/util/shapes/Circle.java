@@ -57,6 +57,14 @@ public class Circle implements Shape
         return lon;
     }
 
+    /**
+     * @return the radius in meter
+     */
+    public double getRadius()
+    {
+        return radiusInKm;
+    }
+
     @Override
     public boolean contains( double lat1, double lon1 )
     {
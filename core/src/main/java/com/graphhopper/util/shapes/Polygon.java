@@ -0,0 +1,194 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util.shapes;
+
+/**
+ * A simple polygon without holes. The points are connected in the specified order and the last
+ * point is connected with the first one. Intersection and containment of other shapes are
+ * calculated with their bounding box.
+ * <p/>
+ * @author Peter Karich
+ */
+public class Polygon implements Shape
+{
+    private final double[] lats;
+    private final double[] lons;
+    private final BBox bbox;
+
+    public Polygon( double[] lats, double[] lons )
+    {
+        if (lats.length != lons.length)
+        {
+            throw new IllegalArgumentException("Points must have the same number of latitudes and longitudes");
+        }
+        if (lats.length < 3)
+        {
+            throw new IllegalArgumentException("A polygon needs at least 3 points but was " + lats.length);
+        }
+
+        this.lats = lats;
+        this.lons = lons;
+        bbox = BBox.INVERSE.clone();
+        for (int i = 0; i < lats.length; i++)
+        {
+            bbox.minLat = Math.min(bbox.minLat, lats[i]);
+            bbox.maxLat = Math.max(bbox.maxLat, lats[i]);
+            bbox.minLon = Math.min(bbox.minLon, lons[i]);
+            bbox.maxLon = Math.max(bbox.maxLon, lons[i]);
+        }
+    }
+
+    /**
+     * @param str the comma separated coordinates lat1,lon1,lat2,lon2,...
+     */
+    public static Polygon parse( String str )
+    {
+        String[] values = str.split(",");
+        if (values.length % 2 != 0)
+        {
+            throw new IllegalArgumentException("Polygon needs pairs of latitude and longitude but was " + str);
+        }
+        double[] lats = new double[values.length / 2];
+        double[] lons = new double[values.length / 2];
+        for (int i = 0; i < lats.length; i++)
+        {
+            lats[i] = Double.parseDouble(values[2 * i].trim());
+            lons[i] = Double.parseDouble(values[2 * i + 1].trim());
+        }
+        return new Polygon(lats, lons);
+    }
+
+    public int size()
+    {
+        return lats.length;
+    }
+
+    @Override
+    public boolean contains( double lat, double lon )
+    {
+        // BBox.contains excludes the maximum values
+        if (lat < bbox.minLat || lat > bbox.maxLat || lon < bbox.minLon || lon > bbox.maxLon)
+        {
+            return false;
+        }
+
+        // count the edges a ray from the point to the east crosses
+        boolean inside = false;
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++)
+        {
+            if (lats[i] > lat != lats[j] > lat
+                    && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i])
+            {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    @Override
+    public boolean intersect( Shape o )
+    {
+        BBox b = o.getBounds();
+        if (!bbox.intersect(b))
+        {
+            return false;
+        }
+        for (int i = 0; i < lats.length; i++)
+        {
+            if (b.contains(lats[i], lons[i]))
+            {
+                return true;
+            }
+        }
+        if (contains(b.minLat, b.minLon) || contains(b.minLat, b.maxLon)
+                || contains(b.maxLat, b.minLon) || contains(b.maxLat, b.maxLon))
+        {
+            return true;
+        }
+
+        // no point is inside of the other shape, but edges can still cross
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++)
+        {
+            if (crosses(lats[j], lons[j], lats[i], lons[i], b.minLat, b.minLon, b.maxLat, b.maxLon)
+                    || crosses(lats[j], lons[j], lats[i], lons[i], b.minLat, b.maxLon, b.maxLat, b.minLon))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the segment 1-2 crosses the segment 3-4
+     */
+    static boolean crosses( double lat1, double lon1, double lat2, double lon2,
+            double lat3, double lon3, double lat4, double lon4 )
+    {
+        double d1 = orientation(lat3, lon3, lat4, lon4, lat1, lon1);
+        double d2 = orientation(lat3, lon3, lat4, lon4, lat2, lon2);
+        double d3 = orientation(lat1, lon1, lat2, lon2, lat3, lon3);
+        double d4 = orientation(lat1, lon1, lat2, lon2, lat4, lon4);
+        return (d1 > 0) != (d2 > 0) && (d3 > 0) != (d4 > 0);
+    }
+
+    private static double orientation( double lat1, double lon1, double lat2, double lon2, double lat, double lon )
+    {
+        return (lon2 - lon1) * (lat - lat1) - (lat2 - lat1) * (lon - lon1);
+    }
+
+    @Override
+    public boolean contains( Shape s )
+    {
+        BBox b = s.getBounds();
+        if (!contains(b.minLat, b.minLon) || !contains(b.minLat, b.maxLon)
+                || !contains(b.maxLat, b.minLon) || !contains(b.maxLat, b.maxLon))
+        {
+            return false;
+        }
+        // a concave polygon can still have a point inside of the box
+        for (int i = 0; i < lats.length; i++)
+        {
+            if (b.contains(lats[i], lons[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public BBox getBounds()
+    {
+        return bbox;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lats.length; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(",");
+            }
+            sb.append(lats[i]).append(",").append(lons[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -18,11 +18,18 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.routing.RoutingLimitException;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.ShortestCalc;
+import com.graphhopper.storage.Graph;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPlace;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -70,6 +77,203 @@ public class GraphHopperTest
         assertEquals(3, ph.getPoints().getSize());
     }
 
+    @Test
+    public void testLoadCompressed() throws IOException
+    {
+        instance = new GraphHopper().setInMemory(true, false).setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+        instance.importOrLoad();
+        instance.storeCompressed(ghLoc + ".ghz");
+        instance.close();
+
+        try
+        {
+            instance = new GraphHopper().setInMemory(true, false);
+            assertTrue(instance.load(ghLoc));
+            GHResponse ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+            assertTrue(ph.isFound());
+            assertEquals(3, ph.getPoints().getSize());
+            // nothing was extracted
+            assertFalse(new File(ghLoc).exists());
+            assertTrue(new File(ghLoc + ".ghz").exists());
+        } finally
+        {
+            Helper.removeDir(new File(ghLoc + ".ghz"));
+        }
+    }
+
+    @Test
+    public void testWarmUp()
+    {
+        instance = new GraphHopper().setMemoryMapped().setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+        instance.importOrLoad();
+        instance.close();
+
+        instance = new GraphHopper().setMemoryMapped();
+        assertTrue(instance.load(ghLoc));
+        assertEquals(0, instance.getWarmedUpBytes());
+        assertEquals(0, instance.getWarmUpRoutes());
+        instance.close();
+
+        instance = new GraphHopper().setMemoryMapped().setWarmUp(-1, 10);
+        assertTrue(instance.load(ghLoc));
+        // the location index is read first, followed by the graph files
+        assertTrue(instance.getWarmedUpBytes() > instance.getIndex().getCapacity());
+        assertTrue(instance.getWarmUpRoutes() > 0);
+        GHResponse ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.isFound());
+        assertEquals(3, ph.getPoints().getSize());
+    }
+
+    @Test
+    public void testApplyOSMChanges() throws IOException
+    {
+        instance = new GraphHopper().setInMemory(true, true).setEncodingManager(new EncodingManager("CAR")).
+                setStoreOSMIds(true).setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertTrue(instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4)).isFound());
+        instance.close();
+
+        instance = new GraphHopper().setInMemory(true, true);
+        assertTrue(instance.load(ghLoc));
+        instance.applyOSMChanges("./src/test/resources/com/graphhopper/reader/test-osm-change.osc");
+        // the deleted way 10 was the only connection
+        assertFalse(instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4)).isFound());
+        GHResponse rsp = instance.route(new GHRequest(51.3, 9.5, 49, 10));
+        assertTrue(rsp.isFound());
+        assertEquals(3, rsp.getPoints().getSize());
+
+        // the recreated index contains the moved node 40 and the new node 60
+        Graph graph = instance.getGraph();
+        int node = instance.getIndex().findClosest(51.2601, 9.4401, EdgeFilter.ALL_EDGES).getClosestNode();
+        assertEquals(51.26, graph.getLatitude(node), 1e-6);
+        assertEquals(9.44, graph.getLongitude(node), 1e-6);
+        node = instance.getIndex().findClosest(51.2999, 9.4999, EdgeFilter.ALL_EDGES).getClosestNode();
+        assertEquals(51.3, graph.getLatitude(node), 1e-6);
+        assertEquals(9.5, graph.getLongitude(node), 1e-6);
+    }
+
+    @Test
+    public void testViaPoints() throws IOException
+    {
+        instance = new GraphHopper().setInMemory(true, false).setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+        instance.importOrLoad();
+        GHResponse leg1 = instance.route(new GHRequest(51.2492152, 9.4317166, 49, 10).
+                putHint("simplifyRequest", false));
+        GHResponse leg2 = instance.route(new GHRequest(49, 10, 51.2, 9.4).
+                putHint("simplifyRequest", false));
+        assertTrue(leg1.isFound());
+        assertTrue(leg2.isFound());
+
+        List<GHPlace> places = Arrays.asList(new GHPlace(51.2492152, 9.4317166),
+                new GHPlace(49, 10), new GHPlace(51.2, 9.4));
+        for (int threads : new int[]
+        {
+            1, 3
+        })
+        {
+            instance.setRoutingThreads(threads);
+            GHResponse rsp = instance.route(new GHRequest(places).putHint("simplifyRequest", false));
+            assertTrue(rsp.isFound());
+            assertEquals(leg1.getDistance() + leg2.getDistance(), rsp.getDistance(), 1e-3);
+            assertEquals(leg1.getTime() + leg2.getTime(), rsp.getTime());
+            assertEquals(leg1.getPoints().getSize() + leg2.getPoints().getSize() - 1, rsp.getPoints().getSize());
+            assertEquals(49, rsp.getPoints().getLatitude(leg1.getPoints().getSize() - 1), 1e-3);
+            assertEquals(leg1.getInstructions().size() + leg2.getInstructions().size(),
+                    rsp.getInstructions().size());
+        }
+
+        // equal consecutive points
+        places = Arrays.asList(new GHPlace(51.2492152, 9.4317166),
+                new GHPlace(49, 10), new GHPlace(49, 10), new GHPlace(51.2, 9.4));
+        GHResponse rsp = instance.route(new GHRequest(places));
+        assertTrue(rsp.hasError());
+        assertEquals("Point 2 is equal to point 3", rsp.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testRouteNearest() throws IOException
+    {
+        instance = new GraphHopper().setInMemory(true, false).setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+        instance.importOrLoad();
+        List<GHPlace> places = Arrays.asList(new GHPlace(51.2492152, 9.4317166),
+                new GHPlace(49, 10), new GHPlace(51.2, 9.4), new GHPlace(49, 10));
+        double[] distances = new double[places.size()];
+        for (int i = 1; i < places.size(); i++)
+        {
+            GHResponse rsp = instance.route(new GHRequest(places.get(0), places.get(i)).
+                    setType(new ShortestCalc()));
+            assertTrue(rsp.isFound());
+            distances[i] = rsp.getDistance();
+        }
+        assertTrue(distances[2] < distances[1]);
+
+        List<GHResponse> list = instance.routeNearest(new GHRequest(places).setType(new ShortestCalc()), 1);
+        assertEquals(1, list.size());
+        assertEquals(2, list.get(0).getPointIndex());
+        assertEquals(distances[2], list.get(0).getDistance(), 1e-3);
+        assertTrue(list.get(0).isFound());
+
+        list = instance.routeNearest(new GHRequest(places).setType(new ShortestCalc()).
+                putHint("calcPoints", false), 5);
+        assertEquals(3, list.size());
+        assertEquals(2, list.get(0).getPointIndex());
+        assertEquals(1, list.get(1).getPointIndex());
+        assertEquals(3, list.get(2).getPointIndex());
+        assertEquals(distances[1], list.get(1).getDistance(), 1e-3);
+        assertEquals(distances[3], list.get(2).getDistance(), 1e-3);
+        assertEquals(0, list.get(1).getPoints().getSize());
+    }
+
+    @Test
+    public void testRouteNearestIncludesStart() throws IOException
+    {
+        List<GHPlace> places = Arrays.asList(new GHPlace(51.2492152, 9.4317166),
+                new GHPlace(51.2, 9.4), new GHPlace(51.2492152, 9.4317166));
+        for (boolean ch : new boolean[]
+        {
+            false, true
+        })
+        {
+            Helper.removeDir(new File(ghLoc));
+            instance = new GraphHopper().setInMemory(true, false).setEncodingManager(new EncodingManager("CAR")).
+                    setCHShortcuts(ch, true).setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+            instance.importOrLoad();
+            List<GHResponse> list = instance.routeNearest(new GHRequest(places).setAlgorithm("dijkstrabi"), 5);
+            assertEquals("ch:" + ch, 2, list.size());
+            assertEquals("ch:" + ch, 2, list.get(0).getPointIndex());
+            assertEquals(0, list.get(0).getDistance(), 1e-3);
+            assertEquals(1, list.get(1).getPointIndex());
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testRoutingLimits() throws IOException
+    {
+        instance = new GraphHopper().setInMemory(true, false).setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).setOSMFile(testOsm);
+        instance.importOrLoad();
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 49, 10).
+                setAlgorithm("dijkstra").putHint("routing.maxVisitedNodes", 1));
+        assertTrue(rsp.hasError());
+        assertFalse(rsp.isFound());
+        assertEquals(RoutingLimitException.Limit.VISITED_NODES,
+                ((RoutingLimitException) rsp.getErrors().get(0)).getLimit());
+
+        // global limit is used for all requests, but the request can still overwrite it
+        instance.setMaxVisitedNodes(1);
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 49, 10).setAlgorithm("dijkstra"));
+        assertTrue(rsp.hasError());
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 49, 10).setAlgorithm("dijkstra").
+                putHint("routing.maxVisitedNodes", 100));
+        assertFalse(rsp.hasError());
+        assertTrue(rsp.isFound());
+    }
+
     @Test
     public void testPrepare() throws IOException
     {
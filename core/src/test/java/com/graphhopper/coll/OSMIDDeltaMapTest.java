@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.MMapDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import gnu.trove.map.hash.TLongIntHashMap;
+import java.io.File;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class OSMIDDeltaMapTest
+{
+    @Test
+    public void testGet()
+    {
+        OSMIDDeltaMap map = new OSMIDDeltaMap(new RAMDirectory(), "test", -1, 3);
+        map.put(9, 0);
+        map.put(10, -50);
+        map.put(1L << 40, 2);
+        map.put(12, 3);
+        map.put(11, 6);
+        map.put(20, 5);
+        map.put(8, 7);
+
+        assertEquals(7, map.getSize());
+        assertEquals(2, map.getRuns());
+        assertEquals(-1, map.get(7));
+        assertEquals(7, map.get(8));
+        assertEquals(0, map.get(9));
+        assertEquals(-50, map.get(10));
+        assertEquals(6, map.get(11));
+        assertEquals(3, map.get(12));
+        assertEquals(-1, map.get(13));
+        assertEquals(5, map.get(20));
+        assertEquals(2, map.get(1L << 40));
+        assertEquals(-1, map.get((1L << 40) + 1));
+
+        // update
+        assertEquals(3, map.put(12, 4));
+        assertEquals(0, map.put(9, 1));
+        assertEquals(7, map.getSize());
+        assertEquals(4, map.get(12));
+        assertEquals(1, map.get(9));
+
+        map.optimize();
+        assertEquals(1, map.getRuns());
+        assertEquals(7, map.getSize());
+        assertEquals(7, map.get(8));
+        assertEquals(4, map.get(12));
+        map.remove();
+    }
+
+    @Test
+    public void testRandom()
+    {
+        Random rand = new Random(0);
+        OSMIDDeltaMap map = new OSMIDDeltaMap(new RAMDirectory(), "test", -1, 100);
+        TLongIntHashMap expected = new TLongIntHashMap(1000, 0.5f, -1, -1);
+        long key = 0;
+        for (int i = 0; i < 20000; i++)
+        {
+            int value = rand.nextInt(1000);
+            if (rand.nextInt(4) > 0)
+            {
+                // mostly increasing ids like in OSM files
+                key += 1 + rand.nextInt(rand.nextBoolean() ? 10 : 100000);
+                assertEquals(expected.put(key, value), map.put(key, value));
+            } else
+            {
+                long tmpKey = (long) (rand.nextDouble() * key);
+                assertEquals(expected.put(tmpKey, value), map.put(tmpKey, value));
+            }
+        }
+
+        assertEquals(expected.size(), map.getSize());
+        assertTrue(map.getRuns() < 12);
+        for (long tmpKey : expected.keys())
+        {
+            assertEquals(expected.get(tmpKey), map.get(tmpKey));
+            assertEquals(-1, map.get(tmpKey + (1L << 50)));
+        }
+        map.optimize();
+        assertEquals(expected.size(), map.getSize());
+        for (long tmpKey : expected.keys())
+        {
+            assertEquals(expected.get(tmpKey), map.get(tmpKey));
+        }
+        map.remove();
+    }
+
+    @Test
+    public void testRemove()
+    {
+        String location = "./target/tmp/osmiddeltamap";
+        Helper.removeDir(new File(location));
+        OSMIDDeltaMap map = new OSMIDDeltaMap(new MMapDirectory(location), "test", -1, 2);
+        for (int i = 0; i < 10; i++)
+        {
+            map.put(10 - i, i);
+        }
+        assertEquals(4, map.get(6));
+        assertTrue(new File(location).list().length > 0);
+        map.remove();
+        assertEquals(0, new File(location).list().length);
+    }
+}
@@ -19,6 +19,8 @@ package com.graphhopper.coll;
 
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -60,6 +62,28 @@ public class OSMIDMapTest
         assertEquals(57, map.getSize());
     }
 
+    @Test
+    public void testLoadExisting()
+    {
+        String location = "./target/tmp/osmidmap";
+        Helper.removeDir(new File(location));
+        OSMIDMap map = new OSMIDMap(new RAMDirectory(location, true), "test", -1).create(100);
+        map.put(5, 1);
+        map.put(1L << 40, 2);
+        map.flush();
+        map.close();
+
+        map = new OSMIDMap(new RAMDirectory(location, true), "test", -1);
+        assertTrue(map.loadExisting());
+        assertEquals(2, map.getSize());
+        assertEquals(1L << 40, map.getLastKey());
+        assertEquals(1, map.get(5));
+        assertEquals(2, map.get(1L << 40));
+        map.put(1L << 41, 3);
+        assertEquals(3, map.get(1L << 41));
+        Helper.removeDir(new File(location));
+    }
+
     @Test
     public void testBinSearch()
     {
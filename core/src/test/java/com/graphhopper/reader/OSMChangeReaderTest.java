@@ -0,0 +1,198 @@
+package com.graphhopper.reader;
+
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.PrepareRoutingSubnetworks;
+import com.graphhopper.storage.AbstractGraphTester;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.Location2NodesNtree;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMChangeReaderTest
+{
+    private String dir = "./target/tmp/test-change-db";
+    private EncodingManager encodingManager;
+    private EdgeFilter carOutFilter;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(dir));
+        new File(dir).mkdirs();
+        encodingManager = new EncodingManager("CAR");
+        carOutFilter = new DefaultEdgeFilter((CarFlagEncoder) encodingManager.getEncoder("CAR"), false, true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(dir));
+    }
+
+    GraphStorage importGraph() throws Exception
+    {
+        return importGraph("test-osm.xml");
+    }
+
+    GraphStorage importGraph( String osmFile ) throws Exception
+    {
+        GraphStorage graph = new GraphStorage(new RAMDirectory(dir, true), encodingManager);
+        OSMReader reader = new OSMReader(graph, 1000).setEncodingManager(encodingManager).setStoreOSMIds(true);
+        reader.doOSM2Graph(new File(getClass().getResource(osmFile).toURI()));
+        graph.flush();
+        reader.getOSMIDMapping().flush();
+        return graph;
+    }
+
+    @Test
+    public void testStoreOSMIds() throws Exception
+    {
+        GraphStorage graph = importGraph();
+        OSMIDMapping mapping = new OSMIDMapping(new RAMDirectory(dir, true));
+        assertTrue(mapping.loadExisting());
+        int index = mapping.getNodeIndex(40);
+        assertEquals(51.25, mapping.getLatitude(index), 1e-6);
+        assertEquals(9.43, mapping.getLongitude(index), 1e-6);
+        // unused nodes are not stored
+        assertEquals(-1, mapping.getNodeIndex(35));
+
+        int n10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int n50 = AbstractGraphTester.getIdOf(graph, 49);
+        assertEquals(10, mapping.getWay(firstEdge(graph, n10)));
+        assertEquals(11, mapping.getWay(firstEdge(graph, n50)));
+    }
+
+    Location2NodesNtree createIndex( GraphStorage graph )
+    {
+        Location2NodesNtree index = new Location2NodesNtree(graph, new RAMDirectory());
+        index.prepareIndex();
+        return index;
+    }
+
+    int firstEdge( GraphStorage graph, int node )
+    {
+        EdgeIterator iter = graph.getEdges(node);
+        assertTrue(iter.next());
+        return iter.getEdge();
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception
+    {
+        GraphStorage graph = importGraph();
+        int n10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int n20 = AbstractGraphTester.getIdOf(graph, 52);
+        int n30 = AbstractGraphTester.getIdOf(graph, 51.2);
+        int n50 = AbstractGraphTester.getIdOf(graph, 49);
+        assertEquals(4, graph.getNodes());
+
+        OSMIDMapping mapping = new OSMIDMapping(new RAMDirectory(dir, true));
+        assertTrue(mapping.loadExisting());
+        OSMChangeReader reader = new OSMChangeReader(graph, mapping, createIndex(graph));
+        reader.applyChanges(new File(getClass().getResource("test-osm-change.osc").toURI()));
+
+        // way 10 is deleted
+        assertEquals(0, GHUtility.count(graph.getEdges(n10, carOutFilter)));
+        assertEquals(0, GHUtility.count(graph.getEdges(n30, carOutFilter)));
+
+        // the pillar node 40 was moved and is now the junction of way 11 and the new way 12
+        assertEquals(6, graph.getNodes());
+        int n40 = AbstractGraphTester.getIdOf(graph, 51.26);
+        int n60 = AbstractGraphTester.getIdOf(graph, 51.3);
+        assertEquals(9.44, graph.getLongitude(n40), 1e-6);
+        assertEquals(Arrays.asList(n40), GHUtility.getNeighbors(graph.getEdges(n20, carOutFilter)));
+        assertEquals(Arrays.asList(n40), GHUtility.getNeighbors(graph.getEdges(n50, carOutFilter)));
+        assertEquals(3, GHUtility.count(graph.getEdges(n40, carOutFilter)));
+
+        EdgeIterator iter = graph.getEdges(n60, carOutFilter);
+        assertTrue(iter.next());
+        assertEquals(n40, iter.getAdjNode());
+        assertEquals("new street", iter.getName());
+        assertEquals(12, mapping.getWay(iter.getEdge()));
+        assertEquals(6099, iter.getDistance(), 1);
+        iter = graph.getEdges(n20, carOutFilter);
+        assertTrue(iter.next());
+        assertEquals(11, mapping.getWay(iter.getEdge()));
+        assertEquals("street 123, B 122", iter.getName());
+
+        assertTrue(reader.getChangedNodes().containsAll(new int[]
+        {
+            n10, n20, n30, n40, n50, n60
+        }));
+        assertEquals(49, reader.getChangedBounds().minLat, 1e-6);
+        assertEquals(52, reader.getChangedBounds().maxLat, 1e-6);
+    }
+
+    @Test
+    public void testApplyChangesAfterSubnetworkRemoval() throws Exception
+    {
+        GraphStorage graph = importGraph("test-osm-subnetwork.xml");
+        assertEquals(6, graph.getNodes());
+        // like the import, the nodes of the subnetwork are replaced by the last nodes
+        new PrepareRoutingSubnetworks(graph).setMinNetworkSize(3).doWork();
+        assertEquals(4, graph.getNodes());
+        int n10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int n20 = AbstractGraphTester.getIdOf(graph, 52);
+        int n50 = AbstractGraphTester.getIdOf(graph, 49);
+
+        OSMIDMapping mapping = new OSMIDMapping(new RAMDirectory(dir, true));
+        assertTrue(mapping.loadExisting());
+        new OSMChangeReader(graph, mapping, createIndex(graph)).applyChanges(
+                new File(getClass().getResource("test-osm-change.osc").toURI()));
+
+        // the new nodes are created in the entries of the moved nodes
+        assertEquals(6, graph.getNodes());
+        int n40 = AbstractGraphTester.getIdOf(graph, 51.26);
+        int n60 = AbstractGraphTester.getIdOf(graph, 51.3);
+        assertEquals(0, GHUtility.count(graph.getEdges(n10, carOutFilter)));
+        assertEquals(Arrays.asList(n40), GHUtility.getNeighbors(graph.getEdges(n20, carOutFilter)));
+        assertEquals(Arrays.asList(n40), GHUtility.getNeighbors(graph.getEdges(n50, carOutFilter)));
+        assertEquals(Arrays.asList(n40), GHUtility.getNeighbors(graph.getEdges(n60, carOutFilter)));
+        assertEquals(3, GHUtility.count(graph.getEdges(n40, carOutFilter)));
+    }
+
+    @Test
+    public void testStackedNodesAreNotMatched() throws Exception
+    {
+        GraphStorage graph = importGraph("test-osm-stacked.xml");
+        // node 20 is a pillar of way 10, node 21 at the same location is a tower node of way 11
+        assertEquals(4, graph.getNodes());
+        int n10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int n21 = AbstractGraphTester.getIdOf(graph, 52);
+        int n30 = AbstractGraphTester.getIdOf(graph, 51.2);
+        int n50 = AbstractGraphTester.getIdOf(graph, 49);
+        OSMIDMapping mapping = new OSMIDMapping(new RAMDirectory(dir, true));
+        assertTrue(mapping.loadExisting());
+        OSMChangeReader reader = new OSMChangeReader(graph, mapping, createIndex(graph));
+        reader.applyChanges(new File(getClass().getResource("test-osm-stacked-change.osc").toURI()));
+
+        // node 20 cannot be distinguished from node 21 so the new way gets its own node
+        assertTrue(reader.getAmbiguousNodes().contains(20));
+        assertEquals(6, graph.getNodes());
+        int n60 = AbstractGraphTester.getIdOf(graph, 51.3);
+        EdgeIterator iter = graph.getEdges(n60, carOutFilter);
+        assertTrue(iter.next());
+        int newN20 = iter.getAdjNode();
+        assertTrue(newN20 != n21);
+        assertEquals(52, graph.getLatitude(newN20), 1e-6);
+        assertEquals(Arrays.asList(n60), GHUtility.getNeighbors(graph.getEdges(newN20, carOutFilter)));
+
+        // neither the bridge nor way 10 were changed
+        assertEquals(Arrays.asList(n50), GHUtility.getNeighbors(graph.getEdges(n21, carOutFilter)));
+        assertEquals(Arrays.asList(n30), GHUtility.getNeighbors(graph.getEdges(n10, carOutFilter)));
+    }
+}
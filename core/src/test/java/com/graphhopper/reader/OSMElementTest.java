@@ -18,7 +18,11 @@
  */
 package com.graphhopper.reader;
 
+import com.google.protobuf.ByteString;
+import com.graphhopper.reader.pbf.PbfFieldDecoder;
+import com.graphhopper.reader.pbf.PbfTags;
 import org.junit.Test;
+import org.openstreetmap.osmosis.osmbinary.Osmformat;
 import static org.junit.Assert.*;
 
 /**
@@ -35,4 +39,34 @@ public class OSMElementTest
         assertTrue(instance.hasTag("surface", "now", "something"));
         assertFalse(instance.hasTag("surface", "now", "not"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPbfTags()
+    {
+        Osmformat.StringTable.Builder table = Osmformat.StringTable.newBuilder();
+        for (String str : new String[]
+        {
+            "", "highway", "primary", "name", "main street", "surface"
+        })
+        {
+            table.addS(ByteString.copyFromUtf8(str));
+        }
+        PbfFieldDecoder decoder = new PbfFieldDecoder(Osmformat.PrimitiveBlock.newBuilder().
+                setStringtable(table).build());
+        // the indices of other entities surround the tags
+        OSMElement instance = new OSMWay(1, new PbfTags(decoder, new int[]
+        {
+            5, 2, 1, 2, 3, 4, 0
+        }, 2, 6));
+        assertEquals(2, instance.getTags().size());
+        assertTrue(instance.hasTag("highway", "secondary", "primary"));
+        assertEquals("main street", instance.getTag("name"));
+        assertNull(instance.getTag("surface"));
+
+        instance.setTag("surface", "paved");
+        instance.removeTag("name");
+        assertEquals("paved", instance.getTag("surface"));
+        assertNull(instance.getTag("name"));
+        assertEquals(2, instance.getTags().size());
+    }
+}
@@ -27,6 +27,9 @@ import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Polygon;
+import com.graphhopper.util.shapes.Shape;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -171,6 +174,113 @@ public class OSMReaderTest
         assertEquals(51.249, graph.getLatitude(hopper.getIndex().findID(51.2492152, 9.4317166)), 1e-3);
     }
 
+    @Test
+    public void testCompactNodeMap()
+    {
+        GraphHopper hopper = new GraphHopperTest(file1)
+        {
+            @Override
+            protected OSMReader importOSM( String ignore ) throws IOException
+            {
+                OSMReader osmReader = new OSMReader(buildGraph(dir, getEncodingManager()), 1000);
+                osmReader.setEncodingManager(getEncodingManager()).setCompactNodeMap(true);
+                try
+                {
+                    osmReader.doOSM2Graph(new File(getClass().getResource(testFile).toURI()));
+                } catch (URISyntaxException e)
+                {
+                    throw new RuntimeException(e);
+                }
+                return osmReader;
+            }
+        };
+        hopper.importOrLoad();
+
+        Graph graph = hopper.getGraph();
+        assertEquals(4, graph.getNodes());
+        int n10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int n20 = AbstractGraphTester.getIdOf(graph, 52);
+        int n50 = AbstractGraphTester.getIdOf(graph, 49);
+        assertEquals(Arrays.asList(n20), GHUtility.getNeighbors(graph.getEdges(n10, carOutFilter)));
+        assertEquals(3, GHUtility.count(graph.getEdges(n20, carOutFilter)));
+
+        EdgeIterator iter = graph.getEdges(n50, carOutFilter);
+        assertTrue(iter.next());
+        assertEquals(n20, iter.getAdjNode());
+        AbstractGraphTester.assertPList(Helper.createPointList(51.25, 9.43), iter.getWayGeometry());
+    }
+
+    @Test
+    public void testExpectedCounts() throws Exception
+    {
+        EncodingManager manager = new EncodingManager("CAR");
+        GraphStorage graph = buildGraph(dir, manager);
+        OSMReader osmReader = new OSMReader(graph, 1000).setEncodingManager(manager);
+        osmReader.doOSM2Graph(new File(getClass().getResource(file1).toURI()));
+
+        // node 20 is a tower node and the nodes at the end of the ways are converted into tower nodes
+        assertEquals(4, osmReader.getHelper().getExpectedTowerNodes());
+        assertEquals(1, osmReader.getHelper().getExpectedPillarNodes());
+        assertEquals(graph.getNodes(), osmReader.getHelper().getExpectedTowerNodes());
+    }
+
+    private Graph importWithClip( final Shape clip, final int workerThreads )
+    {
+        GraphHopper hopper = new GraphHopperTest(file1)
+        {
+            @Override
+            protected OSMReader importOSM( String ignore ) throws IOException
+            {
+                OSMReader osmReader = new OSMReader(buildGraph(dir, getEncodingManager()), 1000);
+                osmReader.setEncodingManager(getEncodingManager()).setWorkerThreads(workerThreads).setClip(clip);
+                try
+                {
+                    osmReader.doOSM2Graph(new File(getClass().getResource(testFile).toURI()));
+                } catch (URISyntaxException e)
+                {
+                    throw new RuntimeException(e);
+                }
+                return osmReader;
+            }
+        };
+        hopper.importOrLoad();
+        return hopper.getGraph();
+    }
+
+    @Test
+    public void testClip()
+    {
+        // only node 50 is inside, so way 11 is imported completely and way 10 is skipped
+        Graph graph = importWithClip(new BBox(9.5, 10.5, 48.5, 49.5), -1);
+        assertEquals(2, graph.getNodes());
+        int n20 = AbstractGraphTester.getIdOf(graph, 52);
+        int n50 = AbstractGraphTester.getIdOf(graph, 49);
+        EdgeIterator iter = graph.getEdges(n50, carOutFilter);
+        assertTrue(iter.next());
+        assertEquals(n20, iter.getAdjNode());
+        AbstractGraphTester.assertPList(Helper.createPointList(51.25, 9.43), iter.getWayGeometry());
+        assertFalse(iter.next());
+        Helper.removeDir(new File(dir));
+
+        // only node 30 is inside, node 20 is now a pillar node of way 10
+        Polygon triangle = new Polygon(new double[]
+        {
+            51.19, 51.21, 51.2
+        }, new double[]
+        {
+            9.39, 9.39, 9.41
+        });
+        graph = importWithClip(triangle, 2);
+        assertEquals(2, graph.getNodes());
+        int n10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int n30 = AbstractGraphTester.getIdOf(graph, 51.2);
+        iter = graph.getEdges(n30, carOutFilter);
+        assertTrue(iter.next());
+        assertEquals(n10, iter.getAdjNode());
+        AbstractGraphTester.assertPList(Helper.createPointList(52, 9), iter.getWayGeometry());
+        assertFalse(iter.next());
+    }
+
     @Test
     public void testWithBounds()
     {
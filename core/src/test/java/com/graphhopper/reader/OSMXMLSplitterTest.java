@@ -0,0 +1,124 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license
+ *  agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  Peter Karich licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License. You may obtain a copy of the
+ *  License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.reader.pbf.PbfRawBlob;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class OSMXMLSplitterTest
+{
+    String xml = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version=\"0.6\">\n"
+            + "  <bounds minlat=\"1\" minlon=\"2\" maxlat=\"3\" maxlon=\"4\"/>\n"
+            + "  <!-- <node id=\"99\"> -->\n"
+            + "  <node id=\"1\" lat=\"1.5\" lon=\"2.5\"/>\n"
+            + "  <node id=\"2\" lat=\"1.6\" lon=\"2.6\">\n"
+            + "    <tag k=\"name\" v=\"a > b &amp; c\"/>\n"
+            + "  </node>\n"
+            + "  <way id='3'>\n"
+            + "    <nd ref=\"1\"/><nd ref=\"2\"/>\n"
+            + "    <tag k=\"highway\" v='primary'/>\n"
+            + "  </way>\n"
+            + "  <relation id=\"4\">\n"
+            + "    <member type=\"way\" ref=\"3\" role=\"outer\"/>\n"
+            + "    <tag k=\"type\" v=\"route\"/>\n"
+            + "  </relation>\n"
+            + "</osm>\n";
+
+    List<OSMElement> decode( OSMXMLSplitter splitter ) throws Exception
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        List<OSMElement> list = new ArrayList<OSMElement>();
+        while (splitter.hasNext())
+        {
+            PbfRawBlob blob = splitter.next();
+            list.addAll(new OSMXMLChunkDecoder(factory, blob.getData(), null).decode());
+        }
+        return list;
+    }
+
+    @Test
+    public void testSplit() throws Exception
+    {
+        // every top level element gets its own chunk
+        OSMXMLSplitter splitter = new OSMXMLSplitter(new ByteArrayInputStream(xml.getBytes("UTF-8")), 1);
+        int chunks = 0;
+        while (splitter.hasNext())
+        {
+            String str = new String(splitter.next().getData(), "UTF-8").trim();
+            assertTrue(str, str.startsWith("<"));
+            assertFalse(str, str.contains("<osm"));
+            assertFalse(str, str.contains("</osm"));
+            chunks++;
+        }
+        // bounds, node, node, way, relation
+        assertEquals(5, chunks);
+
+        List<OSMElement> list = decode(new OSMXMLSplitter(new ByteArrayInputStream(xml.getBytes("UTF-8")), 1));
+        assertEquals(4, list.size());
+        assertEquals(1, list.get(0).getId());
+        assertEquals(2.5, ((OSMNode) list.get(0)).getLon(), 1e-6);
+        assertEquals("a > b & c", list.get(1).getTag("name"));
+        OSMWay way = (OSMWay) list.get(2);
+        assertEquals(2, way.getNodes().size());
+        assertEquals("primary", way.getTag("highway"));
+        assertEquals(OSMElement.RELATION, list.get(3).getType());
+        assertEquals(1, ((OSMRelation) list.get(3)).getMembers().size());
+
+        // one chunk
+        list = decode(new OSMXMLSplitter(new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+        assertEquals(4, list.size());
+    }
+
+    @Test
+    public void testSameOrderAsSequential() throws Exception
+    {
+        File file = new File(getClass().getResource("test-osm.xml").toURI());
+        List<OSMElement> expected = new ArrayList<OSMElement>();
+        OSMInputFile in = new OSMInputFile(file).open();
+        OSMElement item;
+        while ((item = in.getNext()) != null)
+        {
+            expected.add(item);
+        }
+        in.close();
+
+        in = new OSMInputFile(file).setWorkerThreads(3).open();
+        int index = 0;
+        while ((item = in.getNext()) != null)
+        {
+            OSMElement exp = expected.get(index++);
+            assertEquals(exp.getType(), item.getType());
+            assertEquals(exp.getId(), item.getId());
+            assertEquals(exp.getTags(), item.getTags());
+        }
+        in.close();
+        assertEquals(expected.size(), index);
+    }
+}
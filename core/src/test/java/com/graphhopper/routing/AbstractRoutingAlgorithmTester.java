@@ -304,6 +304,55 @@ public abstract class AbstractRoutingAlgorithmTester
         assertEquals(66f, p.getDistance(), 1e-3);
     }
 
+    @Test
+    public void testLimits()
+    {
+        RoutingAlgorithm algo = prepareGraph(getMatrixGraph()).createAlgo().setMaxVisitedNodes(1);
+        assertLimitExceeded(algo, RoutingLimitException.Limit.VISITED_NODES);
+
+        algo = prepareGraph(getMatrixGraph()).createAlgo().setMaxWeight(1);
+        assertLimitExceeded(algo, RoutingLimitException.Limit.WEIGHT);
+
+        algo = prepareGraph(getMatrixGraph()).createAlgo().setDeadline(System.currentTimeMillis() - 1);
+        assertLimitExceeded(algo, RoutingLimitException.Limit.TIMEOUT);
+
+        algo = prepareGraph(getMatrixGraph()).createAlgo();
+        algo.cancel();
+        assertLimitExceeded(algo, RoutingLimitException.Limit.CANCELLED);
+
+        // limits which are not reached do not change the result
+        Path p = prepareGraph(getMatrixGraph()).createAlgo().setMaxVisitedNodes(1000).
+                setMaxWeight(1000).setDeadline(System.currentTimeMillis() + 60000).calcPath(45, 72);
+        assertEquals(38f, p.getDistance(), 1e-3);
+    }
+
+    @Test
+    public void testMaxWeightAbovePathWeight()
+    {
+        // one search direction finishes earlier and the other continues beyond the found path
+        Graph graph = createGraph();
+        graph.edge(0, 1, 1, true);
+        graph.edge(1, 8, 1.5, true);
+        graph.edge(3, 1, 3, true);
+        graph.edge(3, 7, 0.2, true);
+
+        Path p = prepareGraph(graph).createAlgo().setMaxWeight(4.5).calcPath(0, 3);
+        assertTrue(p.isFound());
+        assertEquals(4, p.getDistance(), 1e-4);
+    }
+
+    void assertLimitExceeded( RoutingAlgorithm algo, RoutingLimitException.Limit limit )
+    {
+        try
+        {
+            algo.calcPath(45, 72);
+            assertTrue("limit " + limit + " not exceeded", false);
+        } catch (RoutingLimitException ex)
+        {
+            assertEquals(limit, ex.getLimit());
+        }
+    }
+
     @Test
     public void testBug1()
     {
@@ -0,0 +1,74 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.ShortestCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionParallelTest extends AbstractRoutingAlgorithmTester
+{
+    @Override
+    public AlgorithmPreparation prepareGraph( Graph g, final WeightCalculation calc, final FlagEncoder encoder )
+    {
+        return new NoOpAlgorithmPreparation()
+        {
+            @Override
+            public RoutingAlgorithm createAlgo()
+            {
+                return new DijkstraBidirectionParallel(_graph, encoder).setType(calc);
+            }
+        }.setGraph(g);
+    }
+
+    @Test
+    public void testCannotCalculateSP2()
+    {
+        Graph g = createGraph();
+        DijkstraBidirectionParallel db = new DijkstraBidirectionParallel(g, carEncoder);
+        Path p = db.calcPath(0, 2);
+        assertFalse(p.isFound());
+    }
+
+    @Test
+    public void testSameAsSequentialSearch()
+    {
+        Graph g = getMatrixGraph();
+        Random rand = new Random(1);
+        for (int i = 0; i < 200; i++)
+        {
+            int from = rand.nextInt(g.getNodes());
+            int to = rand.nextInt(g.getNodes());
+            Path expected = new DijkstraBidirectionRef(g, carEncoder).setType(new ShortestCalc()).calcPath(from, to);
+            Path p = new DijkstraBidirectionParallel(g, carEncoder).setType(new ShortestCalc()).calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), p.isFound());
+            assertEquals(from + "->" + to, expected.getWeight(), p.getWeight(), 1e-4);
+            assertEquals(from + "->" + to, expected.getDistance(), p.getDistance(), 1e-4);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHTBitSet;
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.ShortestCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class DijkstraNearestTargetsTest extends AbstractRoutingAlgorithmTester
+{
+    @Override
+    public AlgorithmPreparation prepareGraph( Graph g, final WeightCalculation calc, final FlagEncoder encoder )
+    {
+        return new NoOpAlgorithmPreparation()
+        {
+            @Override
+            public RoutingAlgorithm createAlgo()
+            {
+                return new DijkstraNearestTargets(_graph, encoder).setType(calc);
+            }
+        }.setGraph(g);
+    }
+
+    @Test
+    public void testNearestTargets()
+    {
+        Graph g = getMatrixGraph();
+        int from = 45;
+        int[] targets = new int[]
+        {
+            3, 17, 36, 72, 91, 120, 144
+        };
+        double[] weights = new double[targets.length];
+        GHBitSet bs = new GHTBitSet(targets.length);
+        for (int i = 0; i < targets.length; i++)
+        {
+            bs.add(targets[i]);
+            weights[i] = new Dijkstra(g, carEncoder).setType(new ShortestCalc()).
+                    calcPath(from, targets[i]).getDistance();
+        }
+        Arrays.sort(weights);
+
+        DijkstraNearestTargets algo = new DijkstraNearestTargets(g, carEncoder);
+        algo.setType(new ShortestCalc());
+        List<Path> paths = algo.calcPaths(from, bs, 3);
+        assertEquals(3, paths.size());
+        for (int i = 0; i < paths.size(); i++)
+        {
+            Path p = paths.get(i);
+            assertTrue(p.isFound());
+            assertTrue(bs.contains(p.getEndNode()));
+            assertEquals(weights[i], p.getDistance(), 1e-4);
+            assertEquals(weights[i], p.getWeight(), 1e-4);
+        }
+
+        algo = new DijkstraNearestTargets(g, carEncoder);
+        algo.setType(new ShortestCalc());
+        paths = algo.calcPaths(from, bs, 20);
+        assertEquals(targets.length, paths.size());
+        assertEquals(weights[targets.length - 1], paths.get(targets.length - 1).getDistance(), 1e-4);
+    }
+
+    @Test
+    public void testUnreachableTargets()
+    {
+        Graph g = createGraph();
+        g.edge(0, 1, 1, true);
+        g.edge(1, 2, 1, true);
+        g.edge(3, 4, 1, true);
+        GHBitSet bs = new GHTBitSet();
+        bs.add(2);
+        bs.add(4);
+        List<Path> paths = new DijkstraNearestTargets(g, carEncoder).calcPaths(0, bs, 2);
+        assertEquals(1, paths.size());
+        assertEquals(2, paths.get(0).getEndNode());
+        assertEquals(2, paths.get(0).getDistance(), 1e-4);
+    }
+}
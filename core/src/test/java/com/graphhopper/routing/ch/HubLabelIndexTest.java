@@ -0,0 +1,130 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.ShortestCalc;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class HubLabelIndexTest
+{
+    private final String location = "./target/tmp/hub-labels";
+    private EncodingManager encodingManager = new EncodingManager("CAR,FOOT");
+    private CarFlagEncoder carEncoder = (CarFlagEncoder) encodingManager.getEncoder("CAR");
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    LevelGraph createPreparedGraph( Graph g )
+    {
+        LevelGraph lg = new GraphBuilder(encodingManager).levelGraphCreate();
+        g.copyTo(lg);
+        new PrepareContractionHierarchies().setGraph(lg).setType(new ShortestCalc()).
+                setVehicle(carEncoder).doWork();
+        return lg;
+    }
+
+    void assertSameWeights( Graph g, HubLabelIndex index )
+    {
+        for (int from = 0; from < g.getNodes(); from++)
+        {
+            assertEquals(0, index.calcWeight(from, from), 1e-6);
+            for (int to = 0; to < g.getNodes(); to++)
+            {
+                if (from == to)
+                {
+                    continue;
+                }
+                Path p = new DijkstraBidirectionRef(g, carEncoder).setType(new ShortestCalc()).calcPath(from, to);
+                double expected = p.isFound() ? p.getWeight() : Double.MAX_VALUE;
+                assertEquals(from + "->" + to, expected, index.calcWeight(from, to), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testMatrixGraph()
+    {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        HubLabelIndex index = new HubLabelIndex(createPreparedGraph(g), carEncoder, new RAMDirectory()).prepare();
+        assertSameWeights(g, index);
+    }
+
+    @Test
+    public void testDirectedGraph()
+    {
+        Graph g = new GraphBuilder(encodingManager).create();
+        PrepareContractionHierarchiesTest.initDirected2(g);
+        HubLabelIndex index = new HubLabelIndex(createPreparedGraph(g), carEncoder, new RAMDirectory()).prepare();
+        assertSameWeights(g, index);
+        assertEquals(3, index.calcWeight(11, 9), 1e-3);
+        assertEquals(2, index.calcWeight(9, 11), 1e-3);
+
+        g = new GraphBuilder(encodingManager).create();
+        PrepareContractionHierarchiesTest.initDirected1(g);
+        index = new HubLabelIndex(createPreparedGraph(g), carEncoder, new RAMDirectory()).prepare();
+        assertSameWeights(g, index);
+        assertEquals(Double.MAX_VALUE, index.calcWeight(7, 0), 1e-3);
+    }
+
+    @Test
+    public void testLoadExisting()
+    {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph lg = createPreparedGraph(g);
+        HubLabelIndex index = new HubLabelIndex(lg, carEncoder, new RAMDirectory(location, true)).prepare();
+        double weight = index.calcWeight(45, 72);
+        index.flush();
+        index.close();
+
+        index = new HubLabelIndex(lg, carEncoder, new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals(weight, index.calcWeight(45, 72), 1e-6);
+        assertSameWeights(g, index);
+        index.close();
+
+        Graph other = new GraphBuilder(encodingManager).create();
+        PrepareContractionHierarchiesTest.initDirected2(other);
+        index = new HubLabelIndex(createPreparedGraph(other), carEncoder, new RAMDirectory(location, true));
+        try
+        {
+            index.loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+}
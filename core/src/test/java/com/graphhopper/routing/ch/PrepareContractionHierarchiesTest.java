@@ -284,7 +284,7 @@ public class PrepareContractionHierarchiesTest
 
         PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().setVehicle(carEncoder).setGraph(g);
         g.edge(1, 4, 2, prepare.getScBothDir()).setSkippedEdges(iter1_1.getEdge(), iter1_2.getEdge());
-        int f = prepare.getScOneDir();
+        long f = prepare.getScOneDir();
         g.edge(4, 6, 2, f).setSkippedEdges(iter2_1.getEdge(), iter2_2.getEdge());
         g.edge(6, 4, 3, f).setSkippedEdges(iter3_1.getEdge(), iter3_2.getEdge());
 
@@ -297,7 +297,7 @@ public class PrepareContractionHierarchiesTest
     void initUnpackingGraph( LevelGraphStorage g, WeightCalculation w )
     {
         double dist = 1;
-        int flags = carEncoder.flags(30, false);
+        long flags = carEncoder.flags(30, false);
         g.edge(10, 0, w.getWeight(dist, flags), flags);
         EdgeSkipIterator iter1 = g.edge(0, 1, w.getWeight(dist, flags), flags);
         EdgeSkipIterator iter2 = g.edge(1, 2, w.getWeight(dist, flags), flags);
@@ -305,7 +305,7 @@ public class PrepareContractionHierarchiesTest
         EdgeSkipIterator iter4 = g.edge(3, 4, w.getWeight(dist, flags), flags);
         EdgeSkipIterator iter5 = g.edge(4, 5, w.getWeight(dist, flags), flags);
         EdgeSkipIterator iter6 = g.edge(5, 6, w.getWeight(dist, flags), flags);
-        int oneDirFlags = new PrepareContractionHierarchies().getScOneDir();
+        long oneDirFlags = new PrepareContractionHierarchies().getScOneDir();
 
         int tmp = iter1.getEdge();
         iter1 = g.edge(0, 2, 2, oneDirFlags);
@@ -37,7 +37,7 @@ public class BikeFlagEncoderTest
     @Test
     public void testGetSpeed()
     {
-        int result = encoder.flags(10, true);
+        long result = encoder.flags(10, true);
         assertEquals(10, encoder.getSpeed(result));
         OSMWay way = new OSMWay(1);
         way.setTag("highway", "primary");
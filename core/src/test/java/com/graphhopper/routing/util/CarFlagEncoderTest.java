@@ -66,7 +66,7 @@ public class CarFlagEncoderTest
         map.put("highway", "trunk");
         map.put("maxspeed", "500");
         int allowed = encoder.isAllowed(way);
-        int encoded = encoder.handleWayTags(allowed, way);
+        long encoded = encoder.handleWayTags(allowed, way);
         assertEquals(100, encoder.getSpeed(encoded));
     }
 
@@ -78,7 +78,7 @@ public class CarFlagEncoderTest
         map.put("highway", "trunk");
         map.put("maxspeed", "110");
         int allowed = encoder.isAllowed(way);
-        int encoded = encoder.handleWayTags(allowed, way);
+        long encoded = encoder.handleWayTags(allowed, way);
         assertEquals(95, encoder.getSpeed(encoded));
     }
 
@@ -112,9 +112,9 @@ public class CarFlagEncoderTest
     @Test
     public void testOverwrite()
     {
-        int forward = encoder.flags(10, false);
-        int backward = encoder.swapDirection(forward);
-        int both = encoder.flags(20, true);
+        long forward = encoder.flags(10, false);
+        long backward = encoder.swapDirection(forward);
+        long both = encoder.flags(20, true);
         assertTrue(encoder.canBeOverwritten(forward, forward));
         assertTrue(encoder.canBeOverwritten(backward, backward));
         assertTrue(encoder.canBeOverwritten(forward, both));
@@ -130,7 +130,7 @@ public class CarFlagEncoderTest
     @Test
     public void testSwapDir()
     {
-        int swappedFlags = encoder.swapDirection(encoder.flagsDefault(true));
+        long swappedFlags = encoder.swapDirection(encoder.flagsDefault(true));
         assertTrue(encoder.isForward(swappedFlags));
         assertTrue(encoder.isBackward(swappedFlags));
 
@@ -77,4 +77,47 @@ public class EncodingManagerTest
         {
         }
     }
+
+    @Test
+    public void testEightBytesForFlags()
+    {
+        // 9 encoders with 7 bits each need 63 bits
+        EncodingManager manager = new EncodingManager(8);
+        FootFlagEncoder foot = null;
+        for (int i = 0; i < 9; i++)
+        {
+            foot = new FootFlagEncoder()
+            {
+            };
+            manager.register(foot);
+        }
+
+        long flags = foot.flags(5, false);
+        assertTrue(flags >>> 32 != 0);
+        assertEquals(5, foot.getSpeed(flags));
+        assertTrue(foot.isForward(flags));
+        assertFalse(foot.isBackward(flags));
+        long swapped = manager.swapDirection(flags);
+        assertFalse(foot.isForward(swapped));
+        assertTrue(foot.isBackward(swapped));
+        assertEquals(5, foot.getSpeed(swapped));
+
+        try
+        {
+            manager.register(new FootFlagEncoder()
+            {
+            });
+            assertTrue(false);
+        } catch (Exception ex)
+        {
+        }
+
+        try
+        {
+            new EncodingManager(6);
+            assertTrue(false);
+        } catch (Exception ex)
+        {
+        }
+    }
 }
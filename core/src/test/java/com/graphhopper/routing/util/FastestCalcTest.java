@@ -32,7 +32,7 @@ public class FastestCalcTest
     public void testMinWeightHasSameUnitAs_getWeight()
     {
         FastestCalc instance = new FastestCalc(encoder);
-        int flags = encoder.flags(encoder.getMaxSpeed(), true);
+        long flags = encoder.flags(encoder.getMaxSpeed(), true);
         assertEquals(instance.getMinWeight(10), instance.getWeight(10, flags), 1e-8);
     }
 
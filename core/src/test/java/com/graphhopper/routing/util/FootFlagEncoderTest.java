@@ -40,18 +40,18 @@ public class FootFlagEncoderTest
     @Test
     public void testGetSpeed()
     {
-        int fl = footEncoder.flags(10, true);
+        long fl = footEncoder.flags(10, true);
         assertEquals(10, footEncoder.getSpeed(fl));
     }
 
     @Test
     public void testBasics()
     {
-        int fl = footEncoder.flagsDefault(true);
+        long fl = footEncoder.flagsDefault(true);
         assertEquals(footEncoder.getSpeed("mean").intValue(), footEncoder.getSpeed(fl));
 
-        int fl1 = footEncoder.flagsDefault(false);
-        int fl2 = footEncoder.swapDirection(fl1);
+        long fl1 = footEncoder.flagsDefault(false);
+        long fl2 = footEncoder.swapDirection(fl1);
         assertEquals(footEncoder.getSpeed(fl2), footEncoder.getSpeed(fl1));
     }
 
@@ -59,7 +59,7 @@ public class FootFlagEncoderTest
     public void testCombined()
     {
         FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
-        int fl = footEncoder.flags(10, true) | carEncoder.flags(100, false);
+        long fl = footEncoder.flags(10, true) | carEncoder.flags(100, false);
         assertEquals(10, footEncoder.getSpeed(fl));
         assertTrue(footEncoder.isForward(fl));
         assertTrue(footEncoder.isBackward(fl));
@@ -150,7 +150,7 @@ public class FootFlagEncoderTest
         OSMWay way = new OSMWay(1, map);
 
         map.put("highway", "motorway");
-        int flags = footEncoder.handleWayTags(footEncoder.isAllowed(way), way);
+        long flags = footEncoder.handleWayTags(footEncoder.isAllowed(way), way);
         assertEquals(0, flags);
 
         map.put("sidewalk", "yes");
@@ -19,6 +19,8 @@
 package com.graphhopper.search;
 
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -31,10 +33,10 @@ public class NameIndexTest {
     @Test
     public void testPut() {
         NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
-        int result = index.put("Something Streetä");
+        long result = index.put("Something Streetä");
         assertEquals("Something Streetä", index.get(result));
 
-        int existing = index.put("Something Streetä");
+        long existing = index.put("Something Streetä");
         assertEquals(result, existing);
 
         result = index.put("testing");
@@ -51,10 +53,10 @@ public class NameIndexTest {
     {
         NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
         String str1 = "nice";
-        int pointer1 = index.put(str1);
+        long pointer1 = index.put(str1);
 
         String str2 = "nice work äöß";
-        int pointer2 = index.put(str2);
+        long pointer2 = index.put(str2);
 
         assertEquals(str2, index.get(pointer2));
         assertEquals(str1, index.get(pointer1));
@@ -74,4 +76,74 @@ public class NameIndexTest {
         index.put(str);
         index.close();
     }
+
+    @Test
+    public void testDeduplication()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
+        long main = index.put("Main Street");
+        long a1 = index.put("A1");
+        long size = index.getSize();
+        assertEquals(main, index.put("Main Street"));
+        assertEquals(a1, index.put("A1"));
+        assertEquals(main, index.put("Main Street"));
+        assertEquals(size, index.getSize());
+        assertEquals("A1", index.get(a1));
+
+        long other = index.put("Main Streets");
+        assertNotEquals(main, other);
+        assertEquals("Main Streets", index.get(other));
+        index.close();
+    }
+
+    @Test
+    public void testLongNames()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
+        // lengths which need one or two bytes
+        String str127 = "";
+        for (int i = 0; i < 127; i++)
+        {
+            str127 += "a";
+        }
+        String str300 = "";
+        for (int i = 0; i < 150; i++)
+        {
+            str300 += "ä";
+        }
+        long pointer1 = index.put(str127);
+        long pointer2 = index.put(str300);
+        long pointer3 = index.put("x");
+        assertEquals(pointer1 + 1 + 127, pointer2);
+        assertEquals(pointer2 + 2 + 300, pointer3);
+        assertEquals(str127, index.get(pointer1));
+        assertEquals(str300, index.get(pointer2));
+        assertEquals("x", index.get(pointer3));
+        index.close();
+    }
+
+    @Test
+    public void testFlushAndLoad()
+    {
+        String location = "./target/tmp/nameindex";
+        Helper.removeDir(new File(location));
+        NameIndex index = new NameIndex(new RAMDirectory(location, true)).create(1000);
+        long pointer1 = index.put("Main Street");
+        long pointer2 = index.put("A1");
+        index.flush();
+        long size = index.getSize();
+        index.close();
+
+        index = new NameIndex(new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals(size, index.getSize());
+        assertEquals("Main Street", index.get(pointer1));
+        assertEquals("A1", index.get(pointer2));
+        // new names are appended
+        long pointer3 = index.put("B2");
+        assertEquals(size, pointer3);
+        assertEquals("B2", index.get(pointer3));
+        index.close();
+        Helper.removeDir(new File(location));
+    }
 }
@@ -802,6 +802,41 @@ public abstract class AbstractGraphTester
         assertFalse(iter.next());
     }
 
+    @Test
+    public void testReuseIteratorAndPillarNodes()
+    {
+        graph = createGraph();
+        graph.edge(0, 4, 100, carEncoder.flags(10, false)).setWayGeometry(Helper.createPointList(1, 1, 1, 2, 1, 3));
+        graph.edge(4, 10, 100, carEncoder.flags(10, false)).setWayGeometry(Helper.createPointList(1, 5, 1, 6));
+        graph.edge(10, 11, 100, carEncoder.flags(10, false));
+
+        PointList pillars = new PointList();
+        EdgeIterator iter = graph.getEdges(0, carOutFilter, null);
+        assertTrue(iter.next());
+        assertEquals(4, iter.getAdjNode());
+        assertSame(pillars, iter.getWayGeometry(pillars));
+        assertPList(Helper.createPointList(1, 1, 1, 2, 1, 3), pillars);
+        assertFalse(iter.next());
+
+        EdgeIterator reused = graph.getEdges(10, carInFilter, iter);
+        assertSame(iter, reused);
+        assertEquals(10, reused.getBaseNode());
+        assertTrue(reused.next());
+        assertEquals(4, reused.getAdjNode());
+        assertPList(Helper.createPointList(1, 6, 1, 5), reused.getWayGeometry(pillars));
+        assertFalse(reused.next());
+
+        reused = graph.getEdges(11, carInFilter, reused);
+        assertTrue(reused.next());
+        assertEquals(10, reused.getAdjNode());
+        assertEquals(0, reused.getWayGeometry(pillars).getSize());
+        assertFalse(reused.next());
+
+        // an iterator of a single edge is not reused
+        EdgeIterator single = graph.getEdgeProps(iter.getEdge(), 10);
+        assertNotSame(single, graph.getEdges(0, carOutFilter, single));
+    }
+
     @Test
     public void testFootMix()
     {
@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Directory.DAType;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class GHDirectoryTest
+{
+    private final String location = "./target/tmp/ghdir";
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown()
+    {
+        setUp();
+    }
+
+    private void createGraph( DAType type )
+    {
+        GraphStorage g = new GraphStorage(new GHDirectory(location, type), new EncodingManager("CAR"));
+        // small segments so that every file is read in several chunks
+        g.setSegmentSize(128).create(100);
+        for (int i = 0; i < 100; i++)
+        {
+            g.setNode(i, i / 10.0, i / 20.0);
+        }
+        for (int i = 1; i < 100; i++)
+        {
+            EdgeIterator iter = g.edge(i - 1, i, i, true);
+            iter.setWayGeometry(Helper.createPointList(i, i));
+            iter.setName("street " + i);
+        }
+        g.flush();
+        g.close();
+    }
+
+    private void assertPreload( DAType type )
+    {
+        createGraph(type);
+        GHDirectory dir = new GHDirectory(location, type);
+        GraphStorage g = new GraphStorage(dir, new EncodingManager("CAR"));
+        dir.preload(3, "nodes", "edges", "geometry", "names", "notExisting");
+        assertTrue(dir.find("edges").getSegments() > 16);
+        assertTrue(g.loadExisting());
+        assertEquals(100, g.getNodes());
+        assertEquals(99, g.getAllEdges().getMaxId());
+        assertEquals(9.9, g.getLatitude(99), 1e-6);
+        assertEquals(Arrays.asList(97, 99), GHUtility.getNeighbors(g.getEdges(98)));
+        EdgeIterator iter = g.getEdges(99);
+        assertTrue(iter.next());
+        assertEquals(99, iter.getDistance(), 1e-6);
+        assertEquals(Helper.createPointList(99, 99), iter.getWayGeometry());
+        assertEquals("street 99", iter.getName());
+        g.close();
+    }
+
+    @Test
+    public void testPreload()
+    {
+        // nodes and edges are int based, geometry and names byte based
+        assertPreload(DAType.RAM_STORE);
+    }
+
+    @Test
+    public void testPreloadIgnoresMMap()
+    {
+        createGraph(DAType.MMAP);
+        GHDirectory dir = new GHDirectory(location, DAType.MMAP);
+        GraphStorage g = new GraphStorage(dir, new EncodingManager("CAR"));
+        dir.preload(3, "nodes", "edges");
+        assertEquals(0, dir.find("edges").getSegments());
+        assertTrue(g.loadExisting());
+        assertEquals(100, g.getNodes());
+        g.close();
+    }
+}
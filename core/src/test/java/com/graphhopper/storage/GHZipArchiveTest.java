@@ -0,0 +1,123 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Directory.DAType;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class GHZipArchiveTest
+{
+    private final String location = "./target/tmp/ghzip";
+    private final File archive = new File(location + ".ghz");
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+        Helper.removeDir(archive);
+    }
+
+    @After
+    public void tearDown()
+    {
+        setUp();
+    }
+
+    private void createArchive( DAType type ) throws IOException
+    {
+        GHDirectory dir = new GHDirectory(location + "/source", type);
+        GraphStorage g = new GraphStorage(dir, new EncodingManager("CAR"));
+        g.setSegmentSize(128).create(100);
+        for (int i = 0; i < 100; i++)
+        {
+            g.setNode(i, i / 10.0, i / 20.0);
+        }
+        for (int i = 1; i < 100; i++)
+        {
+            EdgeIterator iter = g.edge(i - 1, i, i, true);
+            iter.setWayGeometry(Helper.createPointList(i, i));
+            iter.setName("street " + i);
+        }
+        g.flush();
+        GHZipArchive.store(dir, archive);
+        g.close();
+    }
+
+    private void assertGraph( GraphStorage g )
+    {
+        assertTrue(g.loadExisting());
+        assertEquals(100, g.getNodes());
+        assertEquals(99, g.getAllEdges().getMaxId());
+        assertEquals(9.9, g.getLatitude(99), 1e-6);
+        assertEquals(Arrays.asList(97, 99), GHUtility.getNeighbors(g.getEdges(98)));
+        EdgeIterator iter = g.getEdges(99);
+        assertTrue(iter.next());
+        assertEquals(99, iter.getDistance(), 1e-6);
+        assertEquals("street 99", iter.getName());
+        assertEquals(Helper.createPointList(99, 99), iter.getWayGeometry());
+        g.close();
+    }
+
+    @Test
+    public void testLoadWithoutExtracting() throws IOException
+    {
+        createArchive(DAType.RAM_STORE);
+        GHDirectory dir = new GHDirectory(location + "/target", DAType.RAM);
+        GHZipArchive.load(archive, dir, 2);
+        assertGraph(new GraphStorage(dir, null));
+        assertFalse(new File(location + "/target").exists());
+    }
+
+    @Test
+    public void testExtractedArchive() throws IOException
+    {
+        // the entries have the same format as the flushed files
+        createArchive(DAType.RAM);
+        Helper.unzip(archive.getPath(), location + "/ram", false);
+        assertGraph(new GraphStorage(new GHDirectory(location + "/ram", DAType.RAM_STORE), null));
+
+        Helper.unzip(archive.getPath(), location + "/mmap", false);
+        assertGraph(new GraphStorage(new MMapDirectory(location + "/mmap"), null));
+    }
+
+    @Test
+    public void testMMapIsNotSupported() throws IOException
+    {
+        createArchive(DAType.MMAP);
+        try
+        {
+            GHZipArchive.load(archive, new MMapDirectory(location + "/target"), 1);
+            assertTrue(false);
+        } catch (RuntimeException ex)
+        {
+        }
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FootFlagEncoder;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
@@ -169,6 +171,27 @@ public class GraphStorageTest extends AbstractGraphTester
         gs.optimize();
     }
     
+    @Test
+    public void testEnsureCapacity()
+    {
+        Directory dir = new RAMDirectory();
+        gs = new GraphStorage(dir, encodingManager).create(defaultSize);
+        int segmentSize = dir.find("nodes").getSegmentSize();
+        gs.ensureCapacity(segmentSize, segmentSize, 3 * segmentSize, 10);
+        assertTrue(dir.find("nodes").getCapacity() >= (long) segmentSize * gs.nodeEntryBytes);
+        assertTrue(dir.find("edges").getCapacity() >= (long) segmentSize * gs.edgeEntryBytes);
+        assertTrue(dir.find("geometry").getCapacity() >= 3L * segmentSize);
+        assertEquals(0, gs.getNodes());
+        assertEquals(0, gs.getAllEdges().getMaxId());
+
+        // the reserved nodes are initialized without edges
+        gs.setNode(segmentSize - 1, 10, 10);
+        assertEquals(segmentSize, gs.getNodes());
+        assertEquals(0, GHUtility.count(gs.getEdges(segmentSize - 2)));
+        gs.edge(0, segmentSize - 1, 10, true);
+        assertEquals(1, GHUtility.count(gs.getEdges(segmentSize - 1)));
+    }
+
     @Test
     public void testBigDataEdge() {
         Directory dir = new RAMDirectory();
@@ -176,4 +199,84 @@ public class GraphStorageTest extends AbstractGraphTester
         gs.setEdgeCount(Integer.MAX_VALUE / 2);
         assertTrue(gs.getAllEdges().next());
     }
+
+    @Test
+    public void testEightBytesForFlags()
+    {
+        EncodingManager manager = new EncodingManager(8);
+        FootFlagEncoder foot = null;
+        for (int i = 0; i < 6; i++)
+        {
+            foot = new FootFlagEncoder()
+            {
+            };
+            manager.register(foot);
+        }
+        long flags = foot.flags(5, false);
+        assertTrue(flags >>> 32 != 0);
+
+        gs = new GraphStorage(new RAMDirectory(defaultGraph, true), manager).create(defaultSize);
+        gs.edge(0, 1, 10, flags);
+        gs.edge(2, 1, 10, flags);
+        checkFlags(gs, foot, flags);
+        gs.flush();
+        gs.close();
+
+        gs = new GraphStorage(new RAMDirectory(defaultGraph, true), manager);
+        assertTrue(gs.loadExisting());
+        checkFlags(gs, foot, flags);
+        gs.close();
+    }
+
+    void checkFlags( Graph g, FootFlagEncoder foot, long flags )
+    {
+        EdgeIterator iter = g.getEdges(0);
+        assertTrue(iter.next());
+        assertEquals(flags, iter.getFlags());
+
+        iter = g.getEdges(1);
+        assertTrue(iter.next());
+        assertEquals(0, iter.getAdjNode());
+        assertTrue(foot.isBackward(iter.getFlags()));
+        assertFalse(foot.isForward(iter.getFlags()));
+        assertEquals(5, foot.getSpeed(iter.getFlags()));
+        assertTrue(iter.next());
+        assertEquals(2, iter.getAdjNode());
+        assertEquals(foot.swapDirection(flags), iter.getFlags());
+    }
+
+    @Test
+    public void testFourBytesForFlags()
+    {
+        FootFlagEncoder foot = new FootFlagEncoder()
+        {
+        };
+        EncodingManager manager = new EncodingManager(8);
+        for (int i = 0; i < 6; i++)
+        {
+            manager.register(i == 5 ? foot : new FootFlagEncoder()
+            {
+            });
+        }
+
+        Graph g = createGraph();
+        try
+        {
+            g.edge(0, 1, 10, foot.flags(5, false));
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+
+        gs = new GraphStorage(new RAMDirectory(defaultGraph, true), new EncodingManager("CAR", 8)).create(defaultSize);
+        gs.flush();
+        gs.close();
+        try
+        {
+            new GraphStorage(new RAMDirectory(defaultGraph, true), new EncodingManager("CAR")).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
 }
@@ -62,4 +62,24 @@ public class MMapDataAccessTest extends DataAccessTest
         assertEquals(123, da.getInt(7 * 4));
         da.close();
     }
+
+    @Test
+    public void testWarmUp()
+    {
+        DataAccess da = createDataAccess(name);
+        da.create(1000);
+        da.setInt(900, 123);
+        da.flush();
+        da.close();
+
+        MMapDataAccess mmap = (MMapDataAccess) createDataAccess(name);
+        assertTrue(mmap.loadExisting());
+        assertEquals(8, mmap.getSegments());
+        assertEquals(0, mmap.warmUp(0));
+        // rounded up to whole segments
+        assertEquals(256, mmap.warmUp(200));
+        assertEquals(1024, mmap.warmUp(Long.MAX_VALUE));
+        assertEquals(123, mmap.getInt(900));
+        mmap.close();
+    }
 }
@@ -20,6 +20,7 @@ package com.graphhopper.storage.index;
 
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FootFlagEncoder;
 import com.graphhopper.storage.Directory;
@@ -194,6 +195,28 @@ public abstract class AbstractLocation2IDIndexTester
         }
     }
 
+    @Test
+    public void testBatchLookup()
+    {
+        Graph g = createSampleGraph(new EncodingManager("CAR"));
+        Location2IDIndex idx = createIndex(g, 120);
+        Random rand = new Random(12);
+        double[] lats = new double[50];
+        double[] lons = new double[50];
+        for (int i = 0; i < lats.length; i++)
+        {
+            lats[i] = rand.nextDouble() * 5;
+            lons[i] = rand.nextDouble() * 5;
+        }
+        int[] nodes = idx.findClosest(lats, lons, EdgeFilter.ALL_EDGES);
+        assertEquals(lats.length, nodes.length);
+        for (int i = 0; i < lats.length; i++)
+        {
+            assertEquals(i + " " + lats[i] + "," + lons[i],
+                    idx.findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES).getClosestNode(), nodes[i]);
+        }
+    }
+
     // our simple index has only one node per tile => problems if multiple subnetworks
     boolean testGridIgnore( int i )
     {
@@ -259,6 +282,30 @@ public abstract class AbstractLocation2IDIndexTester
         return new GraphStorage(dir, encodingManager).create(100);
     }
 
+    Graph createRandomGraph( EncodingManager encodingManager, Random rand, int nodes )
+    {
+        Graph g = createGraph(encodingManager);
+        for (int i = 0; i < nodes; i++)
+        {
+            g.setNode(i, 50 + rand.nextDouble() * 0.2, 10 + rand.nextDouble() * 0.3);
+        }
+        for (int i = 0; i < nodes; i++)
+        {
+            int other = rand.nextInt(nodes);
+            if (other == i)
+            {
+                continue;
+            }
+            EdgeIterator edge = g.edge(i, other, 1000, true);
+            if (rand.nextBoolean())
+            {
+                edge.setWayGeometry(Helper.createPointList(
+                        50 + rand.nextDouble() * 0.2, 10 + rand.nextDouble() * 0.3));
+            }
+        }
+        return g;
+    }
+
     public Graph createSampleGraph( EncodingManager encodingManager )
     {
         Graph graph = createGraph(encodingManager);
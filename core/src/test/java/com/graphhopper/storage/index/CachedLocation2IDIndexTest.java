@@ -0,0 +1,126 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor license
+ *  agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License. You may obtain a copy of the
+ *  License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class CachedLocation2IDIndexTest extends AbstractLocation2IDIndexTester
+{
+    @Override
+    public Location2IDIndex createIndex( Graph g, int resolution )
+    {
+        Location2NodesNtree idx = new Location2NodesNtree(g, new RAMDirectory(location));
+        idx.setResolution(500000);
+        return new CachedLocation2IDIndex(idx, 100, 0.01).prepareIndex();
+    }
+
+    @Override
+    public boolean hasEdgeSupport()
+    {
+        return true;
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        EncodingManager encodingManager = new EncodingManager("CAR,FOOT");
+        Graph g = createSampleGraph(encodingManager);
+        CachedLocation2IDIndex idx = (CachedLocation2IDIndex) createIndex(g, 0);
+        FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+        LocationIDResult res = idx.findClosest(3.649, 1.375, new DefaultEdgeFilter(carEncoder));
+        assertEquals(10, res.getClosestNode());
+        assertEquals(0, idx.getHits());
+        assertEquals(1, idx.getMisses());
+
+        // equal filter and a coordinate within the precision
+        LocationIDResult cached = idx.findClosest(3.649, 1.3750000001, new DefaultEdgeFilter(carEncoder));
+        assertEquals(10, cached.getClosestNode());
+        assertEquals(res.getWeight(), cached.getWeight(), 1e-9);
+        assertEquals(1, idx.getHits());
+
+        // a different filter is a different entry
+        idx.findClosest(3.649, 1.375, new DefaultEdgeFilter(encodingManager.getEncoder("FOOT")));
+        idx.findClosest(3.649, 1.375, new DefaultEdgeFilter(carEncoder, false, true));
+        idx.findClosest(3.3, 2.2, EdgeFilter.ALL_EDGES);
+        assertEquals(1, idx.getHits());
+        assertEquals(4, idx.getMisses());
+        assertEquals(4, idx.getSize());
+
+        // the cached result is not affected by callers
+        cached.setWeight(-1);
+        assertEquals(res.getWeight(), idx.findClosest(3.649, 1.375, new DefaultEdgeFilter(carEncoder)).getWeight(), 1e-9);
+    }
+
+    @Test
+    public void testBatchUsesCachedResults()
+    {
+        Graph g = createSampleGraph(new EncodingManager("CAR"));
+        CachedLocation2IDIndex idx = (CachedLocation2IDIndex) createIndex(g, 0);
+        assertEquals(10, idx.findClosest(3.649, 1.375, EdgeFilter.ALL_EDGES).getClosestNode());
+
+        int[] nodes = idx.findClosest(new double[]
+        {
+            3.3, 3.649
+        }, new double[]
+        {
+            2.2, 1.375
+        }, EdgeFilter.ALL_EDGES);
+        assertArrayEquals(new int[]
+        {
+            9, 10
+        }, nodes);
+        assertEquals(1, idx.getHits());
+        assertEquals(2, idx.getMisses());
+        // the misses of a batch are not cached
+        assertEquals(1, idx.getSize());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        Graph g = createSampleGraph(new EncodingManager("CAR"));
+        Location2NodesNtree tree = new Location2NodesNtree(g, new RAMDirectory(location));
+        CachedLocation2IDIndex idx = new CachedLocation2IDIndex(tree, 32, 1);
+        idx.setResolution(500000).prepareIndex();
+        for (int i = 0; i < 1000; i++)
+        {
+            idx.findClosest(i * 0.004, 0.5, EdgeFilter.ALL_EDGES);
+        }
+        assertTrue("size " + idx.getSize(), idx.getSize() <= 32);
+        assertEquals(1000, idx.getMisses());
+
+        idx.clear();
+        assertEquals(0, idx.getSize());
+        idx.findClosest(0, 0.5, EdgeFilter.ALL_EDGES);
+        assertEquals(1, idx.getSize());
+        idx.close();
+        assertEquals(0, idx.getSize());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor license
+ *  agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License. You may obtain a copy of the
+ *  License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Circle;
+import com.graphhopper.util.shapes.Shape;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class Location2IDRTreeTest extends AbstractLocation2IDIndexTester
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+
+    @Override
+    public Location2IDIndex createIndex( Graph g, int resolution )
+    {
+        return new Location2IDRTree(g, new RAMDirectory()).setNodeCapacity(4).prepareIndex();
+    }
+
+    @Override
+    public boolean hasEdgeSupport()
+    {
+        return true;
+    }
+
+    @Test
+    public void testExactClosestSegment()
+    {
+        Random rand = new Random(12);
+        Graph g = createRandomGraph(encodingManager, rand, 300);
+        Location2IDRTree index = new Location2IDRTree(g, new RAMDirectory());
+        index.setNodeCapacity(5).prepareIndex();
+        DistanceCalc distCalc = new DistancePlaneProjection();
+        for (int i = 0; i < 200; i++)
+        {
+            double lat = 49.95 + rand.nextDouble() * 0.3;
+            double lon = 9.95 + rand.nextDouble() * 0.4;
+            double expected = Double.MAX_VALUE;
+            AllEdgesIterator iter = g.getAllEdges();
+            while (iter.next())
+            {
+                PointList points = iter.getWayGeometry();
+                points.add(g.getLatitude(iter.getAdjNode()), g.getLongitude(iter.getAdjNode()));
+                double prevLat = g.getLatitude(iter.getBaseNode());
+                double prevLon = g.getLongitude(iter.getBaseNode());
+                for (int j = 0; j < points.getSize(); j++)
+                {
+                    double currLat = points.getLatitude(j);
+                    double currLon = points.getLongitude(j);
+                    double dist;
+                    if (distCalc.validEdgeDistance(lat, lon, prevLat, prevLon, currLat, currLon))
+                    {
+                        dist = distCalc.calcNormalizedEdgeDistance(lat, lon, prevLat, prevLon, currLat, currLon);
+                    } else
+                    {
+                        dist = Math.min(distCalc.calcNormalizedDist(lat, lon, prevLat, prevLon),
+                                distCalc.calcNormalizedDist(lat, lon, currLat, currLon));
+                    }
+                    expected = Math.min(expected, dist);
+                    prevLat = currLat;
+                    prevLon = currLon;
+                }
+            }
+            LocationIDResult res = index.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            // the index stores the coordinates with a precision of about 1cm
+            assertEquals(distCalc.calcDenormalizedDist(expected), distCalc.calcDenormalizedDist(res.getWeight()), 0.05);
+        }
+    }
+
+    @Test
+    public void testFindNodesAndEdges()
+    {
+        Random rand = new Random(12);
+        int nodes = 300;
+        Graph g = createRandomGraph(encodingManager, rand, nodes);
+        // a node without edges is not indexed
+        g.setNode(nodes, 50.1, 10.1);
+        Location2IDRTree index = new Location2IDRTree(g, new RAMDirectory());
+        index.prepareIndex();
+        Location2NodesNtree ntree = new Location2NodesNtree(g, new RAMDirectory());
+
+        for (int i = 0; i < 100; i++)
+        {
+            double lat = 49.95 + rand.nextDouble() * 0.3;
+            double lon = 9.95 + rand.nextDouble() * 0.4;
+            Shape shape;
+            if (i % 2 == 0)
+            {
+                shape = new Circle(lat, lon, 50 + rand.nextDouble() * 3000);
+            } else
+            {
+                shape = new BBox(lon, lon + rand.nextDouble() * 0.05, lat, lat + rand.nextDouble() * 0.05);
+            }
+
+            TIntHashSet expectedNodes = new TIntHashSet();
+            TIntHashSet expectedEdges = new TIntHashSet();
+            AllEdgesIterator iter = g.getAllEdges();
+            while (iter.next())
+            {
+                if (ntree.intersects(shape, iter))
+                {
+                    expectedEdges.add(iter.getEdge());
+                }
+                for (int node : new int[]
+                {
+                    iter.getBaseNode(), iter.getAdjNode()
+                })
+                {
+                    if (shape.contains(g.getLatitude(node), g.getLongitude(node)))
+                    {
+                        expectedNodes.add(node);
+                    }
+                }
+            }
+
+            TIntArrayList foundNodes = new TIntArrayList();
+            index.findNodes(shape, EdgeFilter.ALL_EDGES, foundNodes);
+            assertEquals(shape.toString(), expectedNodes.size(), foundNodes.size());
+            assertTrue(shape.toString(), expectedNodes.containsAll(foundNodes));
+
+            TIntArrayList foundEdges = new TIntArrayList();
+            index.findEdges(shape, EdgeFilter.ALL_EDGES, foundEdges);
+            assertEquals(shape.toString(), expectedEdges.size(), foundEdges.size());
+            assertTrue(shape.toString(), expectedEdges.containsAll(foundEdges));
+        }
+    }
+
+    @Test
+    public void testLoadExisting()
+    {
+        Graph g = createRandomGraph(encodingManager, new Random(12), 300);
+        Location2IDRTree index = new Location2IDRTree(g, new RAMDirectory(location, true));
+        index.setNodeCapacity(8).prepareIndex();
+        index.close();
+
+        Location2IDRTree loaded = new Location2IDRTree(g, new RAMDirectory(location, true));
+        assertTrue(loaded.loadExisting());
+        Location2IDRTree expected = new Location2IDRTree(g, new RAMDirectory());
+        expected.setNodeCapacity(8).prepareIndex();
+        Random rand = new Random(1);
+        for (int i = 0; i < 200; i++)
+        {
+            double lat = 50 + rand.nextDouble() * 0.2;
+            double lon = 10 + rand.nextDouble() * 0.3;
+            assertEquals(expected.findID(lat, lon), loaded.findID(lat, lon));
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package com.graphhopper.storage.index;
 
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.Directory;
@@ -26,7 +27,14 @@ import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Circle;
+import com.graphhopper.util.shapes.Shape;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TIntHashSet;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -278,6 +286,219 @@ public class Location2NodesNtreeTest extends AbstractLocation2IDIndexTester
         }).getClosestNode());
     }
 
+    @Test
+    public void testReuseResult()
+    {
+        Graph g = createTestGraph();
+        Location2NodesNtree index = (Location2NodesNtree) createIndex(g, 1000);
+        LocationIDResult res = new LocationIDResult();
+        assertSame(res, index.findClosest(-.6, -.6, EdgeFilter.ALL_EDGES, res));
+        assertEquals(1, res.getClosestNode());
+        double weight = res.getWeight();
+
+        // the result is reset, otherwise the smaller weight of the previous lookup would win
+        index.findClosest(-.6, 1.6, EdgeFilter.ALL_EDGES, res);
+        assertEquals(4, res.getClosestNode());
+        index.findClosest(-.6, -.6, EdgeFilter.ALL_EDGES, res);
+        assertEquals(1, res.getClosestNode());
+        assertEquals(weight, res.getWeight(), 1e-9);
+    }
+
+    @Test
+    public void testBatchLookup()
+    {
+        Graph g = createSampleGraph(encodingManager);
+        Location2NodesNtree index = internalCreateIndex(g, 50000);
+        BBox bounds = g.getBounds();
+        Random rand = new Random(1);
+        int count = 1000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            lats[i] = bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat);
+            lons[i] = bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon);
+        }
+        // same point several times
+        lats[5] = lats[500];
+        lons[5] = lons[500];
+
+        int[] nodes = index.findClosest(lats, lons, EdgeFilter.ALL_EDGES);
+        int[] nodesThreaded = index.findClosest(lats, lons, EdgeFilter.ALL_EDGES, 3);
+        int found = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (nodes[i] >= 0)
+            {
+                found++;
+            }
+            int expected = index.findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES).getClosestNode();
+            assertEquals(i + " " + lats[i] + "," + lons[i], expected, nodes[i]);
+            assertEquals(expected, nodesThreaded[i]);
+        }
+        assertTrue("found " + found, found > count / 2);
+        assertEquals(0, index.findClosest(new double[0], new double[0], EdgeFilter.ALL_EDGES).length);
+    }
+
+    @Test
+    public void testBulkPrepareEqualsInMemIndex()
+    {
+        Graph g = createSampleGraph(encodingManager);
+        g.edge(0, 5, 1, true).setWayGeometry(Helper.createPointList(
+                g.getLatitude(3), g.getLongitude(3), g.getLatitude(9), g.getLongitude(9)));
+        for (int minMeter : new int[]
+        {
+            50000, 5000, 500
+        })
+        {
+            for (boolean compact : new boolean[]
+            {
+                false, true
+            })
+            {
+                assertBulkPrepareEqualsInMemIndex(g, minMeter, compact);
+            }
+        }
+    }
+
+    private void assertBulkPrepareEqualsInMemIndex( Graph g, int minMeter, boolean compact )
+    {
+        Location2NodesNtree inMemIndex = new Location2NodesNtree(g, new RAMDirectory());
+        inMemIndex.setCompactLeafs(compact).setResolution(minMeter);
+        inMemIndex.prepareAlgo();
+        Location2NodesNtree.InMemConstructionIndex inMem = inMemIndex.getPrepareInMemIndex();
+        inMemIndex.dataAccess.create(64 * 1024);
+        int lastIndex = inMem.store(inMem.root, Location2NodesNtree.START_POINTER);
+
+        for (int threads = 1; threads <= 3; threads++)
+        {
+            Location2NodesNtree index = new Location2NodesNtree(g, new RAMDirectory());
+            index.setCompactLeafs(compact).setPrepareThreads(threads).setResolution(minMeter).prepareIndex();
+            for (long pointer = 0; pointer < (long) (lastIndex + 1) * 4; pointer += 4)
+            {
+                assertEquals(minMeter + " " + compact + " " + threads + " " + pointer,
+                        inMemIndex.dataAccess.getInt(pointer), index.dataAccess.getInt(pointer));
+            }
+        }
+    }
+
+    @Test
+    public void testCompactLeafs()
+    {
+        Graph g = createRandomGraph(encodingManager, new Random(12), 300);
+        Location2NodesNtree index = internalCreateIndex(g, 500);
+        Location2NodesNtree compactIndex = new Location2NodesNtree(g, new RAMDirectory(location, true));
+        compactIndex.setCompactLeafs(true).setResolution(500).prepareIndex();
+        compactIndex.flush();
+        compactIndex.close();
+        compactIndex = new Location2NodesNtree(g, new RAMDirectory(location, true));
+        assertTrue(compactIndex.loadExisting());
+        assertTrue(compactIndex.isCompactLeafs());
+
+        Random rand = new Random(1);
+        for (int i = 0; i < 500; i++)
+        {
+            double lat = 50 + rand.nextDouble() * 0.2;
+            double lon = 10 + rand.nextDouble() * 0.3;
+            assertEquals(index.findID(lat, lon), compactIndex.findID(lat, lon));
+        }
+    }
+
+    @Test
+    public void testEncodeLeaf()
+    {
+        // count, 5, 1, 1, 993 and 99000 need 1+1+1+1+2+3 bytes
+        int[] nodes = new int[]
+        {
+            5, 6, 7, 1000, 100000
+        };
+        assertEquals(3, Location2NodesNtree.encodeLeaf(nodes, 0, nodes.length).length);
+        assertEquals(1, Location2NodesNtree.encodeLeaf(nodes, 0, 2).length);
+        assertEquals(2, Location2NodesNtree.encodeLeaf(new int[]
+        {
+            0, Integer.MAX_VALUE
+        }, 0, 2).length);
+    }
+
+    @Test
+    public void testFindNodesAndEdges()
+    {
+        Random rand = new Random(12);
+        int nodes = 300;
+        Graph g = createRandomGraph(encodingManager, rand, nodes);
+        // a node without edges is not indexed
+        g.setNode(nodes, 50.1, 10.1);
+        Location2NodesNtree index = internalCreateIndex(g, 500);
+
+        for (int i = 0; i < 100; i++)
+        {
+            double lat = 49.95 + rand.nextDouble() * 0.3;
+            double lon = 9.95 + rand.nextDouble() * 0.4;
+            Shape shape;
+            if (i % 2 == 0)
+            {
+                shape = new Circle(lat, lon, 50 + rand.nextDouble() * 3000);
+            } else
+            {
+                shape = new BBox(lon, lon + rand.nextDouble() * 0.05, lat, lat + rand.nextDouble() * 0.05);
+            }
+
+            TIntHashSet expectedNodes = new TIntHashSet();
+            TIntHashSet expectedEdges = new TIntHashSet();
+            AllEdgesIterator iter = g.getAllEdges();
+            while (iter.next())
+            {
+                if (index.intersects(shape, iter))
+                {
+                    expectedEdges.add(iter.getEdge());
+                }
+                for (int node : new int[]
+                {
+                    iter.getBaseNode(), iter.getAdjNode()
+                })
+                {
+                    if (shape.contains(g.getLatitude(node), g.getLongitude(node)))
+                    {
+                        expectedNodes.add(node);
+                    }
+                }
+            }
+
+            TIntArrayList foundNodes = new TIntArrayList();
+            index.findNodes(shape, EdgeFilter.ALL_EDGES, foundNodes);
+            assertEquals(shape.toString(), expectedNodes.size(), foundNodes.size());
+            assertTrue(shape.toString(), expectedNodes.containsAll(foundNodes));
+
+            TIntArrayList foundEdges = new TIntArrayList();
+            index.findEdges(shape, EdgeFilter.ALL_EDGES, foundEdges);
+            assertEquals(shape.toString(), expectedEdges.size(), foundEdges.size());
+            assertTrue(shape.toString(), expectedEdges.containsAll(foundEdges));
+        }
+    }
+
+    @Test
+    public void testIntersects()
+    {
+        Graph g = createGraph(encodingManager);
+        g.setNode(0, 0, 0);
+        g.setNode(1, 0, 1);
+        g.setNode(2, 1, 1);
+        EdgeIterator straight = g.edge(0, 1, 1, true);
+        EdgeIterator bent = g.edge(0, 2, 1, true);
+        bent.setWayGeometry(Helper.createPointList(1, 0));
+        Location2NodesNtree index = internalCreateIndex(g, 50000);
+
+        // no point inside but the line crosses the shape
+        BBox box = new BBox(0.4, 0.6, -0.1, 0.1);
+        assertTrue(index.intersects(box, straight));
+        assertFalse(index.intersects(box, bent));
+        Circle circle = new Circle(0.01, 0.5, 2000);
+        assertTrue(index.intersects(circle, straight));
+        assertFalse(index.intersects(circle, bent));
+        assertTrue(index.intersects(new Circle(0.5, 0.01, 2000), bent));
+        assertFalse(index.intersects(new Circle(0.5, 0.5, 2000), bent));
+    }
+
     // see testgraph2.jpg
     Graph createTestGraph2()
     {
@@ -373,4 +594,59 @@ public class Location2NodesNtreeTest extends AbstractLocation2IDIndexTester
         graph.edge(28, 34, 10, true);
         return graph;
     }
+
+    @Test
+    public void testLookupWithReusedResultCreatesNoGarbage()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocBean = (com.sun.management.ThreadMXBean) bean;
+
+        // a grid where the horizontal edges have a pillar node
+        Graph g = createGraph(new RAMDirectory(), encodingManager);
+        int size = 10;
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                g.setNode(y * size + x, y * 0.01, x * 0.01);
+            }
+        }
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                int node = y * size + x;
+                if (x + 1 < size)
+                {
+                    g.edge(node, node + 1, 700, true).setWayGeometry(Helper.createPointList(y * 0.01 + 0.002, x * 0.01 + 0.005));
+                }
+                if (y + 1 < size)
+                {
+                    g.edge(node, node + size, 1100, true);
+                }
+            }
+        }
+        Location2NodesNtree idx = createIndex(g, -1);
+        LocationIDResult res = new LocationIDResult();
+        Random rand = new Random(12);
+        int count = 1000;
+        for (int i = 0; i < count; i++)
+        {
+            idx.findClosest(rand.nextDouble() * 0.1, rand.nextDouble() * 0.1, EdgeFilter.ALL_EDGES, res);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < count; i++)
+        {
+            idx.findClosest(rand.nextDouble() * 0.1, rand.nextDouble() * 0.1, EdgeFilter.ALL_EDGES, res);
+        }
+        long allocated = allocBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("allocated " + allocated + " bytes for " + count + " lookups", allocated < count);
+        idx.close();
+    }
 }
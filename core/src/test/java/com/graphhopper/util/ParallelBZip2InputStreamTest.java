@@ -0,0 +1,207 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class ParallelBZip2InputStreamTest
+{
+    static byte[] createData( Random rand, int size )
+    {
+        // compressible but not too much, like OSM XML
+        String[] words =
+        {
+            "<node id=\"", "\" lat=\"", "\" lon=\"", "\"/>\n", "<tag k=\"highway\" v=\"", "residential", "\n"
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        while (out.size() < size)
+        {
+            byte[] bytes = (words[rand.nextInt(words.length)] + rand.nextInt(100000)).getBytes();
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] compress( byte[] data, int level ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BZip2CompressorOutputStream bzOut = new BZip2CompressorOutputStream(out, level);
+        bzOut.write(data);
+        bzOut.close();
+        return out.toByteArray();
+    }
+
+    static byte[] readAll( InputStream in ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) >= 0)
+        {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testMultipleBlocks() throws IOException
+    {
+        byte[] data = createData(new Random(0), 1000000);
+        byte[] compressed = compress(data, 1);
+        for (int threads = 1; threads < 5; threads++)
+        {
+            byte[] result = readAll(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed), threads));
+            assertTrue(Arrays.equals(data, result));
+        }
+    }
+
+    @Test
+    public void testConcatenatedStreams() throws IOException
+    {
+        Random rand = new Random(1);
+        byte[] data1 = createData(rand, 300000);
+        byte[] data2 = createData(rand, 10);
+        byte[] data3 = createData(rand, 200000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(compress(data1, 1));
+        out.write(compress(data2, 9));
+        out.write(compress(data3, 2));
+        out.write(data1, 0, data1.length);
+        out.write(data2, 0, data2.length);
+        out.write(data3, 0, data3.length);
+        byte[] all = out.toByteArray();
+        int dataLength = data1.length + data2.length + data3.length;
+        byte[] compressed = Arrays.copyOf(all, all.length - dataLength);
+        byte[] expected = Arrays.copyOfRange(all, compressed.length, all.length);
+
+        byte[] result = readAll(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed), 3));
+        assertTrue(Arrays.equals(expected, result));
+    }
+
+    @Test
+    public void testMergeSplitBlock() throws IOException
+    {
+        byte[] data = createData(new Random(2), 50000);
+        byte[] compressed = compress(data, 1);
+        // the first block starts after the header, it ends before the end of stream magic and CRC
+        long start = 32;
+        long end = compressed.length * 8L;
+        while (true)
+        {
+            end--;
+            if (readBits(compressed, end, 48) == 0x177245385090L)
+            {
+                break;
+            }
+        }
+
+        ParallelBZip2InputStream.Chunk chunk = createChunk(compressed, start, end, 1);
+        assertTrue(Arrays.equals(data, chunk.decode(ParallelBZip2InputStream.getBZip2Constructor())));
+
+        long split = start + 12345;
+        ParallelBZip2InputStream.Chunk first = createChunk(compressed, start, split, 1);
+        ParallelBZip2InputStream.Chunk second = createChunk(compressed, split, end, 1);
+        try
+        {
+            first.decode(ParallelBZip2InputStream.getBZip2Constructor());
+            assertTrue(false);
+        } catch (IOException ex)
+        {
+        }
+        assertTrue(Arrays.equals(data, first.merge(second).decode(ParallelBZip2InputStream.getBZip2Constructor())));
+    }
+
+    static ParallelBZip2InputStream.Chunk createChunk( byte[] bytes, long start, long end, int level )
+    {
+        return new ParallelBZip2InputStream.Chunk(Arrays.copyOfRange(bytes, (int) (start / 8), (int) ((end + 7) / 8)),
+                (int) (start % 8), end - start, level);
+    }
+
+    static long readBits( byte[] bytes, long bit, int count )
+    {
+        long value = 0;
+        for (int i = 0; i < count; i++)
+        {
+            long index = (bit + i) / 8;
+            if (index >= bytes.length)
+            {
+                return -1;
+            }
+            value = value << 1 | ((bytes[(int) index] >>> (7 - (bit + i) % 8)) & 1);
+        }
+        return value;
+    }
+
+    @Test
+    public void testBitWriter()
+    {
+        byte[] src =
+        {
+            (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 0x12
+        };
+        // not byte aligned and byte aligned writer
+        for (int prefix : new int[]
+        {
+            3, 8
+        })
+        {
+            for (int start = 0; start < 32; start++)
+            {
+                for (int count = 0; start + count <= 32; count++)
+                {
+                    ParallelBZip2InputStream.BitWriter writer = new ParallelBZip2InputStream.BitWriter(4);
+                    writer.writeBits(prefix, 5);
+                    writer.copyBits(src, start, count);
+                    byte[] result = writer.toByteArray();
+                    assertEquals(5, readBits(result, 0, prefix));
+                    assertEquals(readBits(src, start, count), readBits(result, prefix, count));
+                    assertEquals((prefix + count + 7) / 8, result.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadAhead() throws IOException
+    {
+        byte[] data = createData(new Random(3), 300000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzOut = new GZIPOutputStream(out);
+        gzOut.write(data);
+        gzOut.close();
+
+        byte[] result = readAll(new ReadAheadInputStream(new GZIPInputStream(
+                new ByteArrayInputStream(out.toByteArray())), 1000));
+        assertTrue(Arrays.equals(data, result));
+    }
+}
@@ -41,4 +41,31 @@ public class PointListTest
         assertEquals(2, instance.getLongitude(0), 1e-7);
         assertEquals(1, instance.getLongitude(1), 1e-7);
     }
+
+    @Test
+    public void testAddPointList()
+    {
+        PointList instance = new PointList();
+        instance.add(1, 1);
+        instance.add(2, 2);
+
+        PointList other = new PointList();
+        for (int i = 2; i < 12; i++)
+        {
+            other.add(i, i);
+        }
+        instance.add(other, true);
+        assertEquals(11, instance.getSize());
+        assertEquals(2, instance.getLatitude(1), 1e-7);
+        assertEquals(3, instance.getLatitude(2), 1e-7);
+        assertEquals(11, instance.getLongitude(10), 1e-7);
+
+        instance.add(other, false);
+        assertEquals(21, instance.getSize());
+        assertEquals(2, instance.getLatitude(11), 1e-7);
+
+        // nothing to add
+        instance.add(new PointList(), true);
+        assertEquals(21, instance.getSize());
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util.shapes;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class PolygonTest
+{
+    // concave, like an 'L'
+    private final Polygon poly = new Polygon(new double[]
+    {
+        0, 0, 1, 1, 3, 3
+    }, new double[]
+    {
+        0, 2, 2, 1, 1, 0
+    });
+
+    @Test
+    public void testContains()
+    {
+        assertTrue(poly.contains(0.5, 0.5));
+        assertTrue(poly.contains(0.5, 1.5));
+        assertTrue(poly.contains(2.5, 0.5));
+        assertFalse(poly.contains(2, 1.5));
+        assertFalse(poly.contains(-1, 0.5));
+        assertFalse(poly.contains(0.5, 3));
+        assertEquals(new BBox(0, 2, 0, 3).toString(), poly.getBounds().toString());
+    }
+
+    @Test
+    public void testIntersect()
+    {
+        // inside of the bounds but in the notch of the 'L'
+        assertFalse(poly.intersect(new BBox(1.5, 1.9, 1.5, 2.5)));
+        assertTrue(poly.intersect(new BBox(0.5, 1.5, 0.5, 2.5)));
+        // no point of one is inside of the other, but the edges cross
+        assertTrue(poly.intersect(new BBox(-1, 3, 2, 2.5)));
+        assertFalse(poly.intersect(new BBox(5, 6, 0, 1)));
+    }
+
+    @Test
+    public void testContainsShape()
+    {
+        assertTrue(poly.contains(new BBox(0.1, 0.9, 0.1, 0.9)));
+        assertFalse(poly.contains(new BBox(0.1, 1.5, 0.1, 1.5)));
+    }
+
+    @Test
+    public void testParse()
+    {
+        Polygon p = Polygon.parse("0,0, 0,2, 1,2, 1,1, 3,1, 3,0");
+        assertEquals(6, p.size());
+        assertEquals(poly.toString(), p.toString());
+        try
+        {
+            Polygon.parse("0,0,1");
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+}
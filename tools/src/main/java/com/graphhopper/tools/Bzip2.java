@@ -18,13 +18,18 @@
 package com.graphhopper.tools;
 
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.ParallelBZip2InputStream;
+import com.graphhopper.util.StopWatch;
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 
 /**
- * Simple bzip2 uncompression. TODO integrate with OSMReader!
+ * Simple bzip2 uncompression. Usage: Bzip2 file.bz2 [threads]. The blocks are decompressed in
+ * parallel with the specified number of threads, which defaults to the number of processors.
  */
 public class Bzip2
 {
@@ -41,22 +46,40 @@ public class Bzip2
             throw new IllegalArgumentException("You need to specify a bz2 file! But was:" + fromFile);
         }
         String toFile = Helper.pruneFileEnd(fromFile);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 1)
+        {
+            threads = Integer.parseInt(args[1]);
+        }
 
-        FileInputStream in = new FileInputStream(fromFile);
+        InputStream in = new BufferedInputStream(new FileInputStream(fromFile), 1 << 16);
         FileOutputStream out = new FileOutputStream(toFile);
-        BZip2CompressorInputStream bzIn = new BZip2CompressorInputStream(in);
+        InputStream bzIn;
+        if (threads > 1)
+        {
+            bzIn = new ParallelBZip2InputStream(in, threads);
+        } else
+        {
+            bzIn = new BZip2CompressorInputStream(in, true);
+        }
+        StopWatch sw = new StopWatch().start();
+        long bytes = 0;
         try
         {
-            final byte[] buffer = new byte[1024 * 8];
+            final byte[] buffer = new byte[1 << 16];
             int n = 0;
             while (-1 != (n = bzIn.read(buffer)))
             {
                 out.write(buffer, 0, n);
+                bytes += n;
             }
         } finally
         {
             out.close();
             bzIn.close();
         }
+        float seconds = sw.stop().getSeconds();
+        System.out.println("uncompressed " + bytes / Helper.MB + "MB with " + threads + " threads in "
+                + seconds + "s, " + bytes / Helper.MB / Math.max(seconds, 0.001f) + "MB/s");
     }
 }
@@ -0,0 +1,126 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import static javax.servlet.http.HttpServletResponse.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Administrative tasks of a running server which require the token configured via
+ * web.admin.token, e.g. POST /admin/reload?graph=<folder> loads a new graph and replaces the
+ * current one without dropping requests. Disabled if no token is configured.
+ * <p/>
+ * The token is sent in the header X-GH-Admin-Token and not as parameter, so that it does not end
+ * up in access logs.
+ * <p/>
+ * @author Peter Karich
+ */
+public class AdminServlet extends HttpServlet
+{
+    static final String TOKEN_HEADER = "X-GH-Admin-Token";
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    @Inject
+    private GraphHopperHolder hopperHolder;
+    @Inject
+    @Named("adminToken")
+    private String adminToken;
+
+    @Override
+    public void doPost( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        if (Helper.isEmpty(adminToken))
+        {
+            res.sendError(SC_FORBIDDEN, "admin endpoint is disabled, configure web.admin.token");
+            return;
+        }
+        if (!isValidToken(adminToken, req.getHeader(TOKEN_HEADER)))
+        {
+            res.sendError(SC_FORBIDDEN, "invalid token");
+            return;
+        }
+
+        if ("/reload".equals(req.getPathInfo()))
+        {
+            reload(req, res);
+        } else
+        {
+            res.sendError(SC_NOT_FOUND, "unknown admin task " + req.getPathInfo());
+        }
+    }
+
+    /**
+     * Compares in constant time so that the response time does not tell how much of the token was
+     * guessed correctly.
+     */
+    static boolean isValidToken( String expected, String token )
+    {
+        if (token == null)
+        {
+            return false;
+        }
+        try
+        {
+            return MessageDigest.isEqual(expected.getBytes("UTF-8"), token.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    void reload( HttpServletRequest req, HttpServletResponse res ) throws IOException
+    {
+        String folder = req.getParameter("graph");
+        if (Helper.isEmpty(folder))
+        {
+            res.sendError(SC_BAD_REQUEST, "specify the graph folder via graph=<folder>");
+            return;
+        }
+        StopWatch sw = new StopWatch().start();
+        try
+        {
+            GraphHopper hopper = hopperHolder.reload(folder);
+            String str = new JSONBuilder().
+                    startObject("info").
+                    object("location", hopper.getGraphHopperLocation()).
+                    object("nodes", hopper.getGraph().getNodes()).
+                    object("took", sw.stop().getSeconds()).
+                    endObject().build().toString();
+            res.setContentType("application/json");
+            res.setCharacterEncoding("UTF-8");
+            res.setStatus(SC_OK);
+            res.getWriter().append(str);
+        } catch (Exception ex)
+        {
+            logger.error("Couldn't reload graph " + folder, ex);
+            res.sendError(SC_INTERNAL_SERVER_ERROR, "Couldn't reload graph, the old one is still used: " + ex.getMessage());
+        }
+    }
+}
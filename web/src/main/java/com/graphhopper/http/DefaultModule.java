@@ -46,7 +46,11 @@ public class DefaultModule extends AbstractModule
                     + ", acceptWay:" + hopper.getEncodingManager()
                     + ", class:" + hopper.getGraph().getClass().getSimpleName());
 
-            bind(GraphHopper.class).toInstance(hopper);
+            // the servlets get the current graph from the holder as it can be reloaded
+            bind(GraphHopperHolder.class).toInstance(new GraphHopperHolder(hopper, args).
+                    setValidationQueries(args.getInt("web.reload.validationQueries", 100)));
+            bind(String.class).annotatedWith(Names.named("adminToken")).
+                    toInstance(args.get("web.admin.token", ""));
 
             String algo = args.get("routing.defaultAlgorithm", "dijkstrabi");
             bind(String.class).annotatedWith(Names.named("defaultAlgorithm")).toInstance(algo);
@@ -0,0 +1,179 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the GraphHopper instance of the servlets and replaces it with a new graph without a
+ * restart. Requests which started before a replacement finish with the old instance, it is closed
+ * after the last of them.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GraphHopperHolder
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final CmdArgs args;
+    private int validationQueries = 100;
+    private volatile Instance current;
+
+    public GraphHopperHolder( GraphHopper hopper, CmdArgs args )
+    {
+        this.args = args;
+        current = new Instance(hopper);
+    }
+
+    /**
+     * Specifies the number of routes between random points which are calculated with a new graph
+     * before it replaces the old one. At least one of them has to be found.
+     */
+    public GraphHopperHolder setValidationQueries( int queries )
+    {
+        validationQueries = queries;
+        return this;
+    }
+
+    /**
+     * Returns the current instance which has to be released after the request.
+     */
+    public Instance acquire()
+    {
+        while (true)
+        {
+            Instance instance = current;
+            if (instance.use())
+            {
+                return instance;
+            }
+            // replaced and closed in the meantime
+        }
+    }
+
+    /**
+     * Loads the graph of the specified folder with the configuration of the current one, checks
+     * it and then uses it for all new requests. The graph has to be imported already.
+     */
+    public synchronized GraphHopper reload( String graphHopperFolder )
+    {
+        StopWatch sw = new StopWatch().start();
+        CmdArgs tmpArgs = new CmdArgs().merge(args).put("graph.location", graphHopperFolder);
+        GraphHopper hopper;
+        try
+        {
+            hopper = new GraphHopper().init(tmpArgs).forServer();
+        } catch (Exception ex)
+        {
+            throw new IllegalStateException("Couldn't initialize graph " + graphHopperFolder, ex);
+        }
+        try
+        {
+            if (!hopper.load(graphHopperFolder))
+            {
+                throw new IllegalStateException("No graph found at " + graphHopperFolder);
+            }
+            validate(hopper);
+        } catch (RuntimeException ex)
+        {
+            hopper.close();
+            throw ex;
+        }
+
+        Instance old = current;
+        current = new Instance(hopper);
+        old.retire();
+        logger.info("reloaded graph at:" + hopper.getGraphHopperLocation()
+                + ", acceptWay:" + hopper.getEncodingManager()
+                + ", took:" + sw.stop().getSeconds() + "s");
+        return hopper;
+    }
+
+    private void validate( GraphHopper hopper )
+    {
+        if (hopper.getGraph().getNodes() == 0)
+        {
+            throw new IllegalStateException("Graph at " + hopper.getGraphHopperLocation() + " is empty");
+        }
+        if (validationQueries > 0 && hopper.routeRandomly(validationQueries, 0) == 0)
+        {
+            throw new IllegalStateException("None of " + validationQueries + " routes was found in graph at "
+                    + hopper.getGraphHopperLocation());
+        }
+    }
+
+    /**
+     * Counts the requests which use a GraphHopper instance.
+     */
+    public static class Instance
+    {
+        private final GraphHopper hopper;
+        private int users;
+        private boolean retired;
+        private boolean closed;
+
+        Instance( GraphHopper hopper )
+        {
+            this.hopper = hopper;
+        }
+
+        public GraphHopper getHopper()
+        {
+            return hopper;
+        }
+
+        synchronized boolean use()
+        {
+            if (retired)
+            {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        public synchronized void release()
+        {
+            users--;
+            closeIfUnused();
+        }
+
+        synchronized void retire()
+        {
+            retired = true;
+            closeIfUnused();
+        }
+
+        synchronized boolean isClosed()
+        {
+            return closed;
+        }
+
+        private void closeIfUnused()
+        {
+            if (retired && users == 0 && !closed)
+            {
+                closed = true;
+                hopper.close();
+            }
+        }
+    }
+}
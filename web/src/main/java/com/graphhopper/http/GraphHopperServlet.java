@@ -57,7 +57,7 @@ public class GraphHopperServlet extends HttpServlet
 {
     private Logger logger = LoggerFactory.getLogger(getClass());
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
     @Inject
     private Geocoding geocoding;
     @Inject
@@ -72,23 +72,32 @@ public class GraphHopperServlet extends HttpServlet
     @Override
     public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
     {
+        // a reload of the graph does not affect this request
+        GraphHopperHolder.Instance instance = hopperHolder.acquire();
         try
         {
+            GraphHopper hopper = instance.getHopper();
             if ("/info".equals(req.getPathInfo()))
             {
-                writeInfos(req, res);
+                writeInfos(hopper, req, res);
             } else if ("/route".equals(req.getPathInfo()))
             {
-                writePath(req, res);
+                writePath(hopper, req, res);
+            } else if ("/nearest".equals(req.getPathInfo()))
+            {
+                writeNearest(hopper, req, res);
             }
         } catch (Exception ex)
         {
             logger.error("Error while executing request: " + req.getQueryString(), ex);
             writeError(res, SC_INTERNAL_SERVER_ERROR, "Problem occured:" + ex.getMessage());
+        } finally
+        {
+            instance.release();
         }
     }
 
-    void writeInfos( HttpServletRequest req, HttpServletResponse res ) throws JSONException
+    void writeInfos( GraphHopper hopper, HttpServletRequest req, HttpServletResponse res ) throws JSONException
     {
         BBox bb = hopper.getGraph().getBounds();
         List<Double> list = new ArrayList<Double>(4);
@@ -104,13 +113,13 @@ public class GraphHopperServlet extends HttpServlet
         writeJson(req, res, json.build());
     }
 
-    void writePath( HttpServletRequest req, HttpServletResponse res ) throws Exception
+    void writePath( GraphHopper hopper, HttpServletRequest req, HttpServletResponse res ) throws Exception
     {
         StopWatch sw = new StopWatch().start();
         List<GHPlace> infoPoints = getPoints(req);
         float tookGeocoding = sw.stop().getSeconds();
         GHPlace start = infoPoints.get(0);
-        GHPlace end = infoPoints.get(1);
+        GHPlace end = infoPoints.get(infoPoints.size() - 1);
         // we can reduce the path length based on the maximum differences to the original coordinates
         double minPathPrecision = getDoubleParam(req, "minPathPrecision", 1d);
         boolean enableInstructions = getBooleanParam(req, "instructions", true);
@@ -127,25 +136,16 @@ public class GraphHopperServlet extends HttpServlet
         try
         {
             sw = new StopWatch().start();
-            GHResponse rsp = hopper.route(new GHRequest(start, end).
+            GHResponse rsp = hopper.route(new GHRequest(infoPoints).
                     setVehicle(algoVehicle.toString()).
                     setType(algoType).
                     setAlgorithm(algoStr).
                     putHint("instructions", enableInstructions).
-                    putHint("douglas.minprecision", minPathPrecision));
+                    putHint("douglas.minprecision", minPathPrecision).
+                    putHint("routing.timeout", timeOutInMillis));
             if (rsp.hasError())
             {
-                JSONBuilder builder = new JSONBuilder().startObject("info");
-                List<Map<String, String>> list = new ArrayList<Map<String, String>>();
-                for (Throwable t : rsp.getErrors())
-                {
-                    Map<String, String> map = new HashMap<String, String>();
-                    map.put("message", t.getMessage());
-                    map.put("details", t.getClass().getName());
-                    list.add(map);
-                }
-                builder = builder.object("errors", list).endObject();
-                writeJson(req, res, builder.build());
+                writeErrors(req, res, rsp.getErrors());
                 return;
             }
 
@@ -214,6 +214,81 @@ public class GraphHopperServlet extends HttpServlet
         }
     }
 
+    /**
+     * Returns the k points which are nearest to the first point, e.g.
+     * /nearest?point=customer&point=vehicle1&point=vehicle2&k=1
+     */
+    void writeNearest( GraphHopper hopper, HttpServletRequest req, HttpServletResponse res ) throws Exception
+    {
+        StopWatch sw = new StopWatch().start();
+        List<GHPlace> infoPoints = getPoints(req);
+        float tookGeocoding = sw.stop().getSeconds();
+        int k = (int) getDoubleParam(req, "k", 1);
+        boolean calcPoints = getBooleanParam(req, "calcPoints", false);
+        String vehicleStr = getParam(req, "vehicle", "CAR");
+        FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicleStr.toUpperCase());
+        WeightCalculation algoType = new FastestCalc(algoVehicle);
+        if ("shortest".equalsIgnoreCase(getParam(req, "algoType", null)))
+        {
+            algoType = new ShortestCalc();
+        }
+
+        String algoStr = getParam(req, "algorithm", defaultAlgorithm);
+        sw = new StopWatch().start();
+        List<GHResponse> list = hopper.routeNearest(new GHRequest(infoPoints).
+                setVehicle(algoVehicle.toString()).
+                setType(algoType).
+                setAlgorithm(algoStr).
+                putHint("calcPoints", calcPoints).
+                putHint("instructions", false).
+                putHint("routing.timeout", timeOutInMillis), k);
+        if (list.size() == 1 && list.get(0).hasError())
+        {
+            writeErrors(req, res, list.get(0).getErrors());
+            return;
+        }
+
+        float took = sw.stop().getSeconds();
+        List<Map<String, Object>> nearest = new ArrayList<Map<String, Object>>(list.size());
+        for (GHResponse rsp : list)
+        {
+            Map<String, Object> map = new HashMap<String, Object>();
+            map.put("pointIndex", rsp.getPointIndex());
+            map.put("distance", rsp.getDistance() / 1000);
+            map.put("time", rsp.getTime());
+            if (calcPoints)
+            {
+                map.put("coordinates", WebHelper.encodePolyline(rsp.getPoints()));
+            }
+            nearest.add(map);
+        }
+        JSONBuilder builder = new JSONBuilder().
+                startObject("info").
+                object("took", took).
+                object("tookGeocoding", tookGeocoding).
+                endObject().
+                object("nearest", nearest);
+        writeJson(req, res, builder.build());
+        logger.info(req.getQueryString() + " " + req.getRemoteAddr() + " nearest " + k + " of "
+                + (infoPoints.size() - 1) + ", found:" + list.size() + ", took:" + took + ", "
+                + algoStr + ", " + algoType + ", " + algoVehicle);
+    }
+
+    private void writeErrors( HttpServletRequest req, HttpServletResponse res, List<Throwable> errors ) throws JSONException
+    {
+        JSONBuilder builder = new JSONBuilder().startObject("info");
+        List<Map<String, String>> list = new ArrayList<Map<String, String>>();
+        for (Throwable t : errors)
+        {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("message", t.getMessage());
+            map.put("details", t.getClass().getName());
+            list.add(map);
+        }
+        builder = builder.object("errors", list).endObject();
+        writeJson(req, res, builder.build());
+    }
+
     protected String getParam( HttpServletRequest req, String string, String _default )
     {
         String[] l = req.getParameterMap().get(string);
@@ -387,12 +462,6 @@ public class GraphHopperServlet extends HttpServlet
             throw new IllegalArgumentException("Did you specify point=<from>&point=<to> ? Use at least 2 points! " + infoPoints);
         }
 
-        // TODO execute algorithm multiple times!
-        if (infoPoints.size() != 2)
-        {
-            throw new IllegalArgumentException("TODO! At the moment only 2 points can be specified");
-        }
-
         return infoPoints;
     }
 }
@@ -22,6 +22,7 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPlace;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -81,9 +82,13 @@ public class GraphHopperWeb implements GraphHopperAPI
         double took = 0;
         try
         {
-            String url = serviceUrl
-                    + "?from=" + request.getFrom().lat + "," + request.getFrom().lon
-                    + "&to=" + request.getTo().lat + "," + request.getTo().lon
+            StringBuilder points = new StringBuilder();
+            for (GHPlace p : request.getPoints())
+            {
+                points.append(points.length() == 0 ? "?" : "&");
+                points.append("point=").append(p.lat).append(',').append(p.lon);
+            }
+            String url = serviceUrl + points
                     + "&type=json"
                     + "&encodedPolyline=" + encodePolyline
                     + "&minPathPrecision=" + request.getHint("douglas.minprecision", 1)
@@ -68,6 +68,9 @@ public class GuiceServletConfig extends GuiceServletContextListener
 
                 serve("/api*").with(GraphHopperServlet.class);
                 bind(GraphHopperServlet.class).in(Singleton.class);
+
+                serve("/admin*").with(AdminServlet.class);
+                bind(AdminServlet.class).in(Singleton.class);
             }
         };
     }
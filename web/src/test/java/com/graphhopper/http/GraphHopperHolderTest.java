@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Directory.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class GraphHopperHolderTest
+{
+    private final String location = "./target/tmp/holder";
+    private final CmdArgs args = new CmdArgs().put("graph.dataaccess", "ram+save");
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown()
+    {
+        setUp();
+    }
+
+    private String createGraph( String name, int nodes )
+    {
+        String folder = location + "/" + name;
+        GraphStorage g = new GraphStorage(new GHDirectory(folder, DAType.RAM_STORE), new EncodingManager("CAR"));
+        g.create(100);
+        for (int i = 0; i < nodes; i++)
+        {
+            g.setNode(i, 50 + i / 100.0, 10 + i / 100.0);
+        }
+        for (int i = 1; i < nodes; i++)
+        {
+            g.edge(i - 1, i, 1000, true);
+        }
+        g.flush();
+        g.close();
+        return folder;
+    }
+
+    private GraphHopper load( String folder ) throws Exception
+    {
+        GraphHopper hopper = new GraphHopper().
+                init(new CmdArgs().merge(args).put("graph.location", folder)).forServer();
+        assertTrue(hopper.load(folder));
+        return hopper;
+    }
+
+    @Test
+    public void testReload() throws Exception
+    {
+        GraphHopperHolder holder = new GraphHopperHolder(load(createGraph("old", 5)), args).
+                setValidationQueries(10);
+        String newFolder = createGraph("new", 10);
+
+        GraphHopperHolder.Instance inFlight = holder.acquire();
+        GraphHopper oldHopper = inFlight.getHopper();
+        assertEquals(5, oldHopper.getGraph().getNodes());
+
+        GraphHopper newHopper = holder.reload(newFolder);
+        assertEquals(10, newHopper.getGraph().getNodes());
+
+        // new requests get the new graph, the old one stays open for the running request
+        GraphHopperHolder.Instance next = holder.acquire();
+        assertSame(newHopper, next.getHopper());
+        next.release();
+        assertFalse(inFlight.isClosed());
+        assertTrue(oldHopper.route(new GHRequest(50, 10, 50.04, 10.04)).isFound());
+
+        inFlight.release();
+        assertTrue(inFlight.isClosed());
+        assertFalse(next.isClosed());
+        newHopper.close();
+    }
+
+    @Test
+    public void testInvalidGraphIsNotUsed() throws Exception
+    {
+        GraphHopper hopper = load(createGraph("old", 5));
+        GraphHopperHolder holder = new GraphHopperHolder(hopper, args);
+        try
+        {
+            holder.reload(location + "/missing");
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        // no route between the two islands
+        String folder = location + "/islands";
+        GraphStorage g = new GraphStorage(new GHDirectory(folder, DAType.RAM_STORE), new EncodingManager("CAR"));
+        g.create(100);
+        g.setNode(0, 50, 10);
+        g.setNode(1, 51, 11);
+        g.flush();
+        g.close();
+        try
+        {
+            holder.reload(folder);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("None of"));
+        }
+
+        GraphHopperHolder.Instance instance = holder.acquire();
+        assertSame(hopper, instance.getHopper());
+        instance.release();
+        assertFalse(instance.isClosed());
+        hopper.close();
+    }
+}